@@ -7,6 +7,8 @@ const val grpcVersion = "1.43.1"
 const val protobufVersion = "3.19.1"
 const val commonsCodec = "1.15"
 const val hamcrest = "2.2"
+const val hdrHistogram = "2.1.12"
+const val jmh = "1.35"
 
 object Spring {
     const val context = "5.3.14"
@@ -53,6 +53,9 @@ dependencies {
     implementation("com.datastax.oss:java-driver-mapper-processor:$datastaxDriver")
     implementation("org.apache.tinkerpop:tinkergraph-gremlin:${Apache.tinkerpop}")
 
+    // Latency histograms, exposed by com.killrvideo.metrics.LatencyHistograms
+    api("org.hdrhistogram:HdrHistogram:$hdrHistogram")
+
     // Transport Guava Bus (In Memory)
     implementation("com.google.guava:guava:${Google.guava}")
 
@@ -71,6 +74,27 @@ dependencies {
 
 description = "+ killrvideo-commons"
 
+// Benchmarks (JMH, src/jmh/java): ./gradlew :killrvideo-commons:jmh [-Pbenchmark=<regular expression>]
+val benchmarks: SourceSet = sourceSets.create("jmh") {
+    compileClasspath += sourceSets["main"].output
+    runtimeClasspath += sourceSets["main"].output
+}
+configurations[benchmarks.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[benchmarks.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmh")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmh")
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks."
+    group = "verification"
+    classpath = benchmarks.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(project.findProperty("benchmark")?.toString() ?: ".*Benchmark.*")
+}
+
 protobuf {
     protoc {
         artifact = "com.google.protobuf:protoc:${Google.protobuf}"
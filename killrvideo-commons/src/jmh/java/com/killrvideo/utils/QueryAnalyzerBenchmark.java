@@ -0,0 +1,103 @@
+package com.killrvideo.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of building the Solr queries of a request: former regular expressions, split and set filtering against the
+ * {@link QueryAnalyzer}.
+ * <p>
+ * Run with {@code mvn -Pbenchmark -pl killrvideo-commons test-compile exec:exec}.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryAnalyzerBenchmark {
+
+    /** Default 'killrvideo.search.ignoredWords'. */
+    private static final String IGNORED_WORDS = "and,or,but,nor,so,for,yet,after,as,till,to,the,at,in,not,now,of,if," +
+            "this,an,are,all,about,along,by,is,it,on,why,be,can,com,get,out,see,some,new,these,that,thing,things,wish," +
+            "known,say,they,had,here,like,live,let,do,with,what,when,www,watch,will,http,https,us,you,your,more,his,her," +
+            "they,them,their,me,we,near,bit,ly,back,meet,know,key,video,various,find,only,from,kind,channel,comments," +
+            "below,check,right,full,while,gets,up,each,no,buy,a,b,c,d,e,f,g,h,i,j,k,l,m,n,o,p,q,r,s,t,u,v,w,x,y,z";
+
+    private static final String SEARCH_QUERY = "cassandra data model";
+
+    private static final String VIDEO_NAME = "Data Modeling with Apache Cassandra: Getting Started";
+    private static final Set<String> VIDEO_TAGS = new HashSet<>(Arrays.asList("cassandra", "data modeling", "nosql"));
+    private static final String VIDEO_DESCRIPTION = "In this video we walk through the basics of data modeling with " +
+            "Apache Cassandra: partition keys, clustering columns and how to design tables for your queries. Check " +
+            "the links below for the slides, the code and more videos about the KillrVideo reference application.";
+
+    private Set<String> ignoredWords;
+    private QueryAnalyzer analyzer;
+
+    @Setup
+    public void setUp() {
+        ignoredWords = new HashSet<>(Arrays.asList(IGNORED_WORDS.split(",")));
+        analyzer = new QueryAnalyzer(ignoredWords);
+    }
+
+    /**
+     * Former search query: words joined with AND by a regular expression.
+     */
+    @Benchmark
+    public String searchQueryRegex() {
+        String requestQuery = SEARCH_QUERY.trim().replaceAll(" ", Matcher.quoteReplacement(" AND "));
+        return "name:(" + requestQuery + "*)^4 OR tags:(" + requestQuery + "*)^2 OR description:(" + requestQuery + "*)";
+    }
+
+    @Benchmark
+    public String searchQueryAnalyzer() {
+        StringBuilder terms = new StringBuilder(SEARCH_QUERY.length() + 16);
+        QueryAnalyzer.NO_STOP_WORDS.analyze(SEARCH_QUERY, term -> {
+            if (terms.length() > 0) {
+                terms.append(" AND ");
+            }
+            QueryAnalyzer.appendEscaped(term, terms);
+        });
+        return "name:(" + terms + "*)^4 OR tags:(" + terms + "*)^2 OR description:(" + terms + "*)";
+    }
+
+    /**
+     * Former related videos query: split on non word characters, then set filtering.
+     */
+    @Benchmark
+    public String relatedVideosQueryRegex() {
+        final String eachWordPattern = Pattern.compile("[^\\w]").pattern();
+        final HashSet<String> termSet = new HashSet<>(50);
+        Collections.addAll(termSet, VIDEO_NAME.toLowerCase().split(eachWordPattern));
+        termSet.addAll(VIDEO_TAGS);
+        Collections.addAll(termSet, VIDEO_DESCRIPTION.toLowerCase().split(eachWordPattern));
+        termSet.removeAll(ignoredWords);
+        termSet.removeIf(String::isEmpty);
+        String delimitedTermList = termSet.stream().map(Object::toString).collect(Collectors.joining(","));
+        return "name:(" + delimitedTermList + ")^2 tags:(" + delimitedTermList + ")^4 description:" + delimitedTermList;
+    }
+
+    @Benchmark
+    public String relatedVideosQueryAnalyzer() {
+        final Set<String> termSet = new LinkedHashSet<>(50);
+        analyzer.analyze(VIDEO_NAME, termSet::add);
+        VIDEO_TAGS.forEach(tag -> analyzer.analyze(tag, termSet::add));
+        analyzer.analyze(VIDEO_DESCRIPTION, termSet::add);
+        StringBuilder delimitedTermList = new StringBuilder();
+        for (String term : termSet) {
+            if (delimitedTermList.length() > 0) {
+                delimitedTermList.append(',');
+            }
+            QueryAnalyzer.appendEscaped(term, delimitedTermList);
+        }
+        return "name:(" + delimitedTermList + ")^2 tags:(" + delimitedTermList + ")^4 description:" + delimitedTermList;
+    }
+}
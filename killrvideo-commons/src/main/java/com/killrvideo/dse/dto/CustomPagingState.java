@@ -1,23 +1,31 @@
 package com.killrvideo.dse.dto;
 
+import com.datastax.oss.protocol.internal.util.Bytes;
 import lombok.Getter;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.LongStream;
 
 import static java.util.Collections.emptyList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 /**
  * Entity handling pagination.
+ * <p>
+ * Buckets follow a {@link TimeBucketing} layout. Serialized as an URL safe base64 binary token: version (1 byte),
+ * bucket unit (1 byte), units per bucket (2 bytes), number of buckets (2 bytes), number of the first bucket
+ * (4 bytes), current bucket index (2 bytes), paging state kind (1 byte) then the paging state bytes, raw bytes
+ * for a Cassandra paging state or UTF-8 for any other value. Former tokens, eight daily buckets either binary
+ * (version 1) or text ({@code yyyyMMdd_..._yyyyMMdd,<index>,<Cassandra paging state>}), are still accepted.
  *
  * @author DataStax Developer Advocates team.
  */
@@ -30,11 +38,36 @@ public class CustomPagingState implements Serializable {
      */
     private static final Pattern PARSE_LATEST_PAGING_STATE = Pattern.compile("((?:[0-9]{8}_){7}[0-9]{8}),([0-9]),(.*)");
 
-    private static final DateTimeFormatter DATEFORMATTER =
-            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneId.from(ZoneOffset.UTC));
+    private static final DateTimeFormatter DATEFORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /** Binary token format. */
+    private static final byte TOKEN_VERSION = 2;
+    private static final int TOKEN_HEADER_SIZE = 13;
+    private static final byte TOKEN_VERSION_DAILY = 1;
+    private static final int TOKEN_HEADER_SIZE_DAILY = 7;
+    private static final byte UNIT_HOURS = 0;
+    private static final byte UNIT_DAYS = 1;
+    private static final byte PAGING_STATE_NONE = 0;
+    private static final byte PAGING_STATE_CASSANDRA = 1;
+    private static final byte PAGING_STATE_OPAQUE = 2;
+    private static final String HEX_PREFIX = "0x";
+
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder TOKEN_DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Bucket unit and width.
+     */
+    private final ChronoUnit bucketUnit;
+    private final int unitsPerBucket;
 
     /**
-     * List of Buckets of dates in yyyyMMdd format.
+     * Number of the first (most recent) bucket, see {@link TimeBucketing#bucketNumber(Instant)}.
+     */
+    private final long firstBucket;
+
+    /**
+     * List of Buckets partition keys, most recent first.
      */
     private final List<String> listOfBuckets;
 
@@ -48,25 +81,41 @@ public class CustomPagingState implements Serializable {
      */
     private final String cassandraPagingState;
 
-    private CustomPagingState(List<String> listOfBuckets, int currentBucket, String cassandraPagingState) {
+    private CustomPagingState(ChronoUnit bucketUnit, int unitsPerBucket, long firstBucket,
+                              List<String> listOfBuckets, int currentBucket, String cassandraPagingState) {
+        this.bucketUnit = bucketUnit;
+        this.unitsPerBucket = unitsPerBucket;
+        this.firstBucket = firstBucket;
         this.listOfBuckets = listOfBuckets != null ? Collections.unmodifiableList(listOfBuckets) : emptyList();
         this.currentBucket = currentBucket;
         this.cassandraPagingState = cassandraPagingState != null ? cassandraPagingState : "";
     }
 
+    private CustomPagingState(ChronoUnit bucketUnit, int unitsPerBucket, long firstBucket, int numberOfBuckets,
+                              int currentBucket, String cassandraPagingState) {
+        this(bucketUnit, unitsPerBucket, firstBucket,
+                TimeBucketing.bucketKeys(bucketUnit, unitsPerBucket, firstBucket, numberOfBuckets),
+                currentBucket, cassandraPagingState);
+    }
+
     /**
-     * Build the first paging state if one does not already exist and return an object containing 3 elements
-     * representing the initial state (List<String>, Integer, String).
+     * Build the first paging state, eight daily buckets in UTC.
      *
      * @return CustomPagingState
      */
     public static CustomPagingState buildFirstCustomPagingState() {
-        List<String> buckets = LongStream.rangeClosed(0L, 7L).boxed()
-                .map(Instant.now().atZone(ZoneId.systemDefault())::minusDays)
-                .map(x -> x.format(DATEFORMATTER))
-                .collect(Collectors.toList());
+        return buildFirstCustomPagingState(TimeBucketing.DEFAULT);
+    }
 
-        return new CustomPagingState(buckets, 0, null);
+    /**
+     * Build the first paging state, the lookback window of a bucketing ending now.
+     *
+     * @param bucketing buckets layout
+     * @return CustomPagingState
+     */
+    public static CustomPagingState buildFirstCustomPagingState(TimeBucketing bucketing) {
+        return new CustomPagingState(bucketing.getUnit(), bucketing.getUnitsPerBucket(),
+                bucketing.bucketNumber(Instant.now()), bucketing.getLookbackBuckets(), 0, null);
     }
 
     /**
@@ -77,16 +126,85 @@ public class CustomPagingState implements Serializable {
      */
     public static Optional<CustomPagingState> deserialize(String customPagingStateString) {
         if (isNotBlank(customPagingStateString)) {
-            Matcher matcher = PARSE_LATEST_PAGING_STATE.matcher(customPagingStateString);
-            if (matcher.matches()) {
-                List<String> buckets = Arrays.asList(matcher.group(1).split("_"));
-                int currentBucket = Integer.parseInt(matcher.group(2));
-                String cassandraPagingState = matcher.group(3);
-
-                CustomPagingState customPagingState = new CustomPagingState(
-                        buckets, currentBucket, cassandraPagingState
-                );
-                return Optional.of(customPagingState);
+            return customPagingStateString.indexOf(',') >= 0 ?
+                    deserializeLegacy(customPagingStateString) :
+                    deserializeToken(customPagingStateString);
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<CustomPagingState> deserializeToken(String token) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(TOKEN_DECODER.decode(token));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+        if (buffer.remaining() < TOKEN_HEADER_SIZE_DAILY) {
+            return Optional.empty();
+        }
+        ChronoUnit bucketUnit;
+        int unitsPerBucket;
+        int numberOfBuckets;
+        long firstBucket;
+        int currentBucket;
+        byte version = buffer.get();
+        if (version == TOKEN_VERSION_DAILY) {
+            bucketUnit = ChronoUnit.DAYS;
+            unitsPerBucket = 1;
+            numberOfBuckets = TimeBucketing.DEFAULT.getLookbackBuckets();
+            firstBucket = buffer.getInt();
+            currentBucket = buffer.get();
+        } else if (version == TOKEN_VERSION && buffer.remaining() >= TOKEN_HEADER_SIZE - 1) {
+            byte unit = buffer.get();
+            if (unit != UNIT_HOURS && unit != UNIT_DAYS) {
+                return Optional.empty();
+            }
+            bucketUnit = (unit == UNIT_DAYS) ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+            unitsPerBucket = buffer.getShort();
+            numberOfBuckets = buffer.getShort();
+            firstBucket = buffer.getInt();
+            currentBucket = buffer.getShort();
+        } else {
+            return Optional.empty();
+        }
+        byte pagingStateKind = buffer.get();
+        if (unitsPerBucket < 1 || numberOfBuckets < 1 || numberOfBuckets > TimeBucketing.MAX_LOOKBACK_BUCKETS ||
+                currentBucket < 0 || currentBucket > numberOfBuckets) {
+            return Optional.empty();
+        }
+        String pagingState;
+        switch (pagingStateKind) {
+            case PAGING_STATE_NONE:
+                pagingState = "";
+                break;
+            case PAGING_STATE_CASSANDRA:
+                pagingState = Bytes.toHexString(buffer.slice());
+                break;
+            case PAGING_STATE_OPAQUE:
+                pagingState = StandardCharsets.UTF_8.decode(buffer).toString();
+                break;
+            default:
+                return Optional.empty();
+        }
+        return Optional.of(new CustomPagingState(
+                bucketUnit, unitsPerBucket, firstBucket, numberOfBuckets, currentBucket, pagingState
+        ));
+    }
+
+    private static Optional<CustomPagingState> deserializeLegacy(String customPagingStateString) {
+        Matcher matcher = PARSE_LATEST_PAGING_STATE.matcher(customPagingStateString);
+        if (matcher.matches()) {
+            List<String> buckets = Arrays.asList(matcher.group(1).split("_"));
+            int currentBucket = Integer.parseInt(matcher.group(2));
+            String cassandraPagingState = matcher.group(3);
+            try {
+                long firstBucketEpochDay = LocalDate.parse(buckets.get(0), DATEFORMATTER).toEpochDay();
+                return Optional.of(new CustomPagingState(
+                        ChronoUnit.DAYS, 1, firstBucketEpochDay, buckets, currentBucket, cassandraPagingState
+                ));
+            } catch (DateTimeParseException ex) {
+                return Optional.empty();
             }
         }
         return Optional.empty();
@@ -99,15 +217,33 @@ public class CustomPagingState implements Serializable {
         return getListOfBuckets().size();
     }
 
+    /**
+     * Tell if both states split time in the same buckets: a state issued before a bucketing change refers to
+     * partitions not written anymore.
+     */
+    public boolean hasSameBucketing(CustomPagingState other) {
+        return bucketUnit == other.bucketUnit &&
+                unitsPerBucket == other.unitsPerBucket &&
+                getListOfBucketsSize() == other.getListOfBucketsSize();
+    }
+
     /**
      * Increment index.
      */
     public CustomPagingState incCurrentBucketIndex() {
-        return new CustomPagingState(listOfBuckets, currentBucket + 1, "");
+        return changeCurrentBucket(currentBucket + 1, "");
     }
 
     public CustomPagingState changeCassandraPagingState(String newCassandraPagingState) {
-        return new CustomPagingState(listOfBuckets, currentBucket, newCassandraPagingState);
+        return changeCurrentBucket(currentBucket, newCassandraPagingState);
+    }
+
+    /**
+     * Move to a bucket and resume from a paging state in this bucket.
+     */
+    public CustomPagingState changeCurrentBucket(int newCurrentBucket, String newCassandraPagingState) {
+        return new CustomPagingState(bucketUnit, unitsPerBucket, firstBucket,
+                listOfBuckets, newCurrentBucket, newCassandraPagingState);
     }
 
     /**
@@ -118,9 +254,40 @@ public class CustomPagingState implements Serializable {
     }
 
     public String serialize() {
-        StringJoiner joiner = new StringJoiner("_");
-        getListOfBuckets().forEach(joiner::add);
-        return joiner + "," + getCurrentBucket() + "," + getCassandraPagingState();
+        byte pagingStateKind;
+        ByteBuffer pagingState;
+        if (cassandraPagingState.isEmpty()) {
+            pagingStateKind = PAGING_STATE_NONE;
+            pagingState = ByteBuffer.allocate(0);
+        } else if (isHexPagingState(cassandraPagingState)) {
+            pagingStateKind = PAGING_STATE_CASSANDRA;
+            pagingState = Bytes.fromHexString(cassandraPagingState);
+        } else {
+            pagingStateKind = PAGING_STATE_OPAQUE;
+            pagingState = StandardCharsets.UTF_8.encode(cassandraPagingState);
+        }
+        ByteBuffer token = ByteBuffer.allocate(TOKEN_HEADER_SIZE + pagingState.remaining())
+                .put(TOKEN_VERSION)
+                .put(bucketUnit == ChronoUnit.DAYS ? UNIT_DAYS : UNIT_HOURS)
+                .putShort((short) unitsPerBucket)
+                .putShort((short) listOfBuckets.size())
+                .putInt((int) firstBucket)
+                .putShort((short) currentBucket)
+                .put(pagingStateKind)
+                .put(pagingState);
+        return TOKEN_ENCODER.encodeToString(token.array());
+    }
+
+    private static boolean isHexPagingState(String pagingState) {
+        if (!pagingState.startsWith(HEX_PREFIX) || pagingState.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = HEX_PREFIX.length(); i < pagingState.length(); i++) {
+            if (Character.digit(pagingState.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
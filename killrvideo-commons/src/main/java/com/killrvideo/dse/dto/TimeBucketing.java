@@ -0,0 +1,108 @@
+package com.killrvideo.dse.dto;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * How rows partitioned by time ('latest_videos') are split into buckets, and how many buckets are read back.
+ * <p>
+ * A bucket spans {@code unitsPerBucket} hours or days, aligned on the epoch in the configured time zone, and is
+ * numbered from the epoch. Its partition key is the start of the bucket: {@code yyyyMMdd} for daily and multi-day
+ * buckets (the historical one-day format), {@code yyyyMMddHH} for hourly ones. Keys of a given layout sort as the
+ * buckets do. The time zone only maps instants to buckets, keys are computed from bucket numbers.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Getter
+public final class TimeBucketing implements Serializable {
+    private static final long serialVersionUID = -2563120488547812207L;
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    /** Upper bound of buckets in a paging state. */
+    public static final int MAX_LOOKBACK_BUCKETS = 1024;
+
+    /** Eight one-day buckets in UTC. */
+    public static final TimeBucketing DEFAULT = new TimeBucketing(ChronoUnit.DAYS, 1, 8, ZoneOffset.UTC);
+
+    /** Hours or days. */
+    private final ChronoUnit unit;
+
+    /** Bucket width in units. */
+    private final int unitsPerBucket;
+
+    /** Number of buckets read back from the current one. */
+    private final int lookbackBuckets;
+
+    /** Time zone buckets are aligned in. */
+    private final ZoneId zone;
+
+    public TimeBucketing(ChronoUnit unit, int unitsPerBucket, int lookbackBuckets, ZoneId zone) {
+        if (unit != ChronoUnit.HOURS && unit != ChronoUnit.DAYS) {
+            throw new IllegalArgumentException("Bucket unit should be HOURS or DAYS, not " + unit);
+        }
+        if (unitsPerBucket < 1 || unitsPerBucket > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Units per bucket should be in [1, " + Short.MAX_VALUE + "]");
+        }
+        if (lookbackBuckets < 1 || lookbackBuckets > MAX_LOOKBACK_BUCKETS) {
+            throw new IllegalArgumentException("Lookback buckets should be in [1, " + MAX_LOOKBACK_BUCKETS + "]");
+        }
+        this.unit = unit;
+        this.unitsPerBucket = unitsPerBucket;
+        this.lookbackBuckets = lookbackBuckets;
+        this.zone = Objects.requireNonNull(zone);
+    }
+
+    /**
+     * Number of the bucket holding an instant.
+     */
+    public long bucketNumber(Instant instant) {
+        LocalDateTime local = LocalDateTime.ofInstant(instant, zone);
+        long units = (unit == ChronoUnit.DAYS) ?
+                local.toLocalDate().toEpochDay() :
+                Math.floorDiv(local.toEpochSecond(ZoneOffset.UTC), 3600);
+        return Math.floorDiv(units, unitsPerBucket);
+    }
+
+    /**
+     * Partition key of the bucket holding an instant.
+     */
+    public String bucketKey(Instant instant) {
+        return bucketKey(unit, unitsPerBucket, bucketNumber(instant));
+    }
+
+    static String bucketKey(ChronoUnit unit, int unitsPerBucket, long bucketNumber) {
+        long start = bucketNumber * unitsPerBucket;
+        return (unit == ChronoUnit.DAYS) ?
+                LocalDate.ofEpochDay(start).format(DAY_FORMATTER) :
+                LocalDateTime.ofEpochSecond(start * 3600, 0, ZoneOffset.UTC).format(HOUR_FORMATTER);
+    }
+
+    static List<String> bucketKeys(ChronoUnit unit, int unitsPerBucket, long firstBucketNumber, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(bucketKey(unit, unitsPerBucket, firstBucketNumber - i));
+        }
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return lookbackBuckets + " bucket(s) of " + unitsPerBucket + " " + unit + " in " + zone;
+    }
+}
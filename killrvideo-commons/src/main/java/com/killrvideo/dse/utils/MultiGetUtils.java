@@ -0,0 +1,149 @@
+package com.killrvideo.dse.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Read many partitions by key without 'IN' clause.
+ * <p>
+ * A 'WHERE key IN (...)' select is sent to a single coordinator which then scatters it across the cluster and
+ * holds every result until the slowest replica answers. Issuing one select per partition key instead lets the
+ * token aware load balancing policy of the driver send each of them straight to a replica. The number of selects
+ * in flight is capped so that a large key list does not flood the connection pool.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public class MultiGetUtils {
+
+    /** Default number of concurrent selects for one multi-get. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+    private MultiGetUtils() {}
+
+    /**
+     * Load values of many keys, at most {@code maxConcurrency} loads in flight.
+     *
+     * @param keys           keys to read, duplicates are read once
+     * @param loader         asynchronous single partition read, completes with null when there is no row
+     * @param maxConcurrency maximum number of loads in flight
+     * @return the values found, in the order of the keys; completes exceptionally with the first load error
+     */
+    public static <K, V> CompletableFuture<List<V>> getAll(List<K> keys,
+                                                            Function<K, CompletableFuture<V>> loader,
+                                                            int maxConcurrency) {
+        List<K> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinctKeys.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return new MultiGet<>(distinctKeys, loader).start(Math.max(1, maxConcurrency));
+    }
+
+    /**
+     * State of one multi-get: every completed load starts the next pending key.
+     */
+    private static final class MultiGet<K, V> {
+        private final List<K> keys;
+        private final Function<K, CompletableFuture<V>> loader;
+        private final Iterator<K> pending;
+        private final Map<K, V> values = new ConcurrentHashMap<>();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<V>> result = new CompletableFuture<>();
+
+        private MultiGet(List<K> keys, Function<K, CompletableFuture<V>> loader) {
+            this.keys = keys;
+            this.loader = loader;
+            this.pending = keys.iterator();
+            this.remaining = new AtomicInteger(keys.size());
+        }
+
+        private CompletableFuture<List<V>> start(int maxConcurrency) {
+            for (int i = 0; i < maxConcurrency; i++) {
+                loadNext();
+            }
+            return result;
+        }
+
+        /**
+         * Start pending loads until one is in flight. Loads already completed when returned, such as cache hits,
+         * are handled in this loop rather than from their callback, the stack does not grow with the keys.
+         */
+        private void loadNext() {
+            while (true) {
+                K key;
+                synchronized (pending) {
+                    if (result.isDone() || !pending.hasNext()) {
+                        return;
+                    }
+                    key = pending.next();
+                }
+                CompletableFuture<V> load;
+                try {
+                    load = loader.apply(key);
+                } catch (RuntimeException ex) {
+                    load = CompletableFuture.failedFuture(ex);
+                }
+                if (!load.isDone()) {
+                    load.whenComplete((value, error) -> {
+                        if (onLoaded(key, value, error)) {
+                            loadNext();
+                        }
+                    });
+                    return;
+                }
+                V value = null;
+                Throwable error = null;
+                try {
+                    value = load.join();
+                } catch (CompletionException ex) {
+                    error = ex.getCause() != null ? ex.getCause() : ex;
+                } catch (CancellationException ex) {
+                    error = ex;
+                }
+                if (!onLoaded(key, value, error)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Keep the outcome of a load.
+         *
+         * @return true when more keys are to be loaded
+         */
+        private boolean onLoaded(K key, V value, Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return false;
+            }
+            if (value != null) {
+                values.put(key, value);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(inKeysOrder());
+                return false;
+            }
+            return true;
+        }
+
+        private List<V> inKeysOrder() {
+            List<V> ordered = new ArrayList<>(values.size());
+            for (K key : keys) {
+                V value = values.get(key);
+                if (value != null) {
+                    ordered.add(value);
+                }
+            }
+            return ordered;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.killrvideo.dse.utils;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Pages of a query read one after the other by a single reader.
+ * <p>
+ * A cursor of a {@link PageableQuery} keeps its driver result set open and fetches the next page from it, instead of
+ * executing the query again with a paging state (for DSE Search "paging":"driver" queries, the Solr cursor is kept).
+ * After {@link #close()} no page is fetched anymore.
+ *
+ * @param <T> entity type
+ * @author DataStax Developer Advocates team.
+ */
+public interface PageCursor<T> {
+
+    /**
+     * Fetch the next page, its paging state is empty when it is the last one.
+     */
+    CompletableFuture<ResultListPage<T>> next();
+
+    /**
+     * Stop reading and release the result set, idempotent.
+     */
+    void close();
+
+    /**
+     * Cursor loading every page from the paging state of the previous one.
+     *
+     * @param pageLoader         load a page from a paging state (empty for the first page)
+     * @param initialPagingState paging state of the first page
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    static <T> PageCursor<T> of(Function<Optional<String>, CompletableFuture<ResultListPage<T>>> pageLoader,
+                                Optional<String> initialPagingState) {
+        return new PageCursor<T>() {
+            private Optional<String> pagingState = initialPagingState;
+            private volatile boolean closed;
+
+            @Override
+            public CompletableFuture<ResultListPage<T>> next() {
+                if (closed) {
+                    return CompletableFuture.completedFuture(ResultListPage.empty());
+                }
+                return pageLoader.apply(pagingState).thenApply(page -> {
+                    pagingState = page.getPagingState().filter(StringUtils::isNotBlank);
+                    return page;
+                });
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+    }
+
+    /**
+     * Cursor mapping the entities of this one.
+     */
+    default <R> PageCursor<R> map(Function<ResultListPage<T>, ResultListPage<R>> mapper) {
+        PageCursor<T> source = this;
+        return new PageCursor<R>() {
+            @Override
+            public CompletableFuture<ResultListPage<R>> next() {
+                return source.next().thenApply(mapper);
+            }
+
+            @Override
+            public void close() {
+                source.close();
+            }
+        };
+    }
+}
@@ -11,4 +11,14 @@ public interface PageableQuery<ENTITY> {
             Optional<Integer> pageSize,
             Optional<String> pageState,
             Object... queryParams);
+
+    /**
+     * Open a cursor over the pages of the query, starting at a paging state.
+     */
+    default PageCursor<ENTITY> openCursor(
+            Optional<Integer> pageSize,
+            Optional<String> pageState,
+            Object... queryParams) {
+        return PageCursor.of(state -> queryNext(pageSize, state, queryParams), pageState);
+    }
 }
@@ -2,6 +2,7 @@ package com.killrvideo.dse.utils;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
 import static com.killrvideo.dse.utils.AsyncResultSetUtils.toResultListPage;
@@ -65,6 +67,17 @@ public class PageableQueryFactory {
             return result;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PageCursor<ENTITY> openCursor(
+                Optional<Integer> pageSize,
+                Optional<String> pageState,
+                Object... queryParams) {
+            return new ResultSetCursor(buildStatement(queryParams, pageSize, pageState));
+        }
+
         @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
         private BoundStatement buildStatement(
                 Object[] queryParams,
@@ -83,5 +96,43 @@ public class PageableQueryFactory {
             return this.session.executeAsync(statement).toCompletableFuture()
                     .thenApply(rs -> toResultListPage(rs, rowMapper));
         }
+
+        /**
+         * Pages fetched from the result set of the previous one.
+         */
+        private class ResultSetCursor implements PageCursor<ENTITY> {
+            private final BoundStatement statement;
+            private AsyncResultSet current;
+            private boolean closed;
+
+            private ResultSetCursor(BoundStatement statement) {
+                this.statement = statement;
+            }
+
+            @Override
+            public synchronized CompletableFuture<ResultListPage<ENTITY>> next() {
+                CompletionStage<AsyncResultSet> page;
+                if (closed || (current != null && !current.hasMorePages())) {
+                    return CompletableFuture.completedFuture(ResultListPage.empty());
+                } else if (current == null) {
+                    page = session.executeAsync(statement);
+                } else {
+                    page = current.fetchNextPage();
+                }
+                return page.toCompletableFuture().thenApply(rs -> {
+                    synchronized (this) {
+                        // Keep no reference to the result set once closed
+                        current = closed ? null : rs;
+                    }
+                    return toResultListPage(rs, rowMapper);
+                });
+            }
+
+            @Override
+            public synchronized void close() {
+                closed = true;
+                current = null;
+            }
+        }
     }
 }
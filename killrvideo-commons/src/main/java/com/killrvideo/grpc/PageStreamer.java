@@ -0,0 +1,167 @@
+package com.killrvideo.grpc;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.utils.PageCursor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Stream every row of a paged query to a gRPC server stream with flow control.
+ * <p>
+ * Rows are sent only while the call {@link ServerCallStreamObserver#isReady() is ready}, the next page is fetched
+ * once the current one has been sent: at most one page is held in memory whatever the client speed. Streaming
+ * stops when the client cancels the call, or once a maximum number of rows has been sent. A {@link PageCursor}
+ * streamed is closed as soon as the stream is over. A stream cancelled by the client completes its future with a
+ * {@link Status#CANCELLED} error, told apart from the failures with {@link #isCancelled(Throwable)}.
+ *
+ * @param <T> message type
+ * @author DataStax Developer Advocates team.
+ */
+public class PageStreamer<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final Function<Optional<String>, CompletableFuture<ResultListPage<T>>> pageLoader;
+    private final long maxRows;
+
+    /** Invoked once when the stream is over. */
+    private final Runnable onClose;
+
+    /** Rows of the current page not sent yet. */
+    private final Deque<T> buffer = new ArrayDeque<>();
+
+    /** Completed with the number of rows sent when the stream is over. */
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    private Optional<String> pagingState;
+    private boolean lastPage;
+    private boolean fetching;
+    private boolean done;
+    private long sent;
+
+    private PageStreamer(ServerCallStreamObserver<T> observer,
+                         Function<Optional<String>, CompletableFuture<ResultListPage<T>>> pageLoader,
+                         Optional<String> pagingState, long maxRows, Runnable onClose) {
+        this.observer = observer;
+        this.pageLoader = pageLoader;
+        this.pagingState = pagingState;
+        this.maxRows = maxRows;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Start streaming, must be invoked from the gRPC method to register flow control handlers.
+     *
+     * @param grpcResObserver    response observer of a server streaming call
+     * @param pageLoader         load a page from a paging state (empty for the first page)
+     * @param initialPagingState paging state of the first page
+     * @return future completed with the number of rows sent, or exceptionally if a page cannot be loaded or the
+     *         client cancelled the call
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    public static <T> CompletableFuture<Long> stream(StreamObserver<T> grpcResObserver,
+                                                     Function<Optional<String>, CompletableFuture<ResultListPage<T>>> pageLoader,
+                                                     Optional<String> initialPagingState) {
+        return start(new PageStreamer<>((ServerCallStreamObserver<T>) grpcResObserver,
+                pageLoader, initialPagingState, Long.MAX_VALUE, () -> { }));
+    }
+
+    /**
+     * Start streaming the pages of a cursor, must be invoked from the gRPC method to register flow control handlers.
+     *
+     * @param grpcResObserver response observer of a server streaming call
+     * @param cursor          pages to send, closed when the stream is over (completed, failed or cancelled)
+     * @param maxRows         maximum number of rows sent, the stream completes once reached
+     * @return future completed with the number of rows sent, or exceptionally if a page cannot be loaded or the
+     *         client cancelled the call
+     */
+    public static <T> CompletableFuture<Long> stream(StreamObserver<T> grpcResObserver, PageCursor<T> cursor, long maxRows) {
+        return start(new PageStreamer<>((ServerCallStreamObserver<T>) grpcResObserver,
+                pagingState -> cursor.next(), Optional.empty(), Math.max(0, maxRows), cursor::close));
+    }
+
+    /**
+     * Tell if a stream ended because the client cancelled the call.
+     *
+     * @param error error of the future returned by {@code stream}
+     */
+    public static boolean isCancelled(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof StatusRuntimeException
+                && ((StatusRuntimeException) cause).getStatus().getCode() == Status.Code.CANCELLED;
+    }
+
+    private static <T> CompletableFuture<Long> start(PageStreamer<T> streamer) {
+        streamer.observer.setOnReadyHandler(streamer::drain);
+        streamer.observer.setOnCancelHandler(streamer::cancel);
+        streamer.drain();
+        return streamer.result;
+    }
+
+    private synchronized void drain() {
+        if (done) {
+            return;
+        }
+        while (!buffer.isEmpty() && sent < maxRows && observer.isReady()) {
+            observer.onNext(buffer.poll());
+            sent++;
+        }
+        if (sent >= maxRows || (buffer.isEmpty() && lastPage)) {
+            finish();
+            observer.onCompleted();
+            result.complete(sent);
+        } else if (buffer.isEmpty()) {
+            if (!fetching) {
+                fetching = true;
+                CompletableFuture<ResultListPage<T>> page;
+                try {
+                    page = pageLoader.apply(pagingState);
+                } catch (RuntimeException ex) {
+                    page = CompletableFuture.failedFuture(ex);
+                }
+                page.whenComplete(this::onPage);
+            }
+        }
+    }
+
+    private synchronized void onPage(ResultListPage<T> page, Throwable error) {
+        fetching = false;
+        if (done) {
+            return;
+        }
+        if (error != null) {
+            finish();
+            observer.onError(Status.INTERNAL.withCause(error).asRuntimeException());
+            result.completeExceptionally(error);
+            return;
+        }
+        buffer.addAll(page.getResults());
+        pagingState = page.getPagingState().filter(StringUtils::isNotBlank);
+        lastPage = pagingState.isEmpty();
+        drain();
+    }
+
+    private synchronized void cancel() {
+        if (!done) {
+            finish();
+            result.completeExceptionally(Status.CANCELLED
+                    .withDescription("Cancelled by the client after " + sent + " row(s)")
+                    .asRuntimeException());
+        }
+    }
+
+    private void finish() {
+        done = true;
+        buffer.clear();
+        onClose.run();
+    }
+}
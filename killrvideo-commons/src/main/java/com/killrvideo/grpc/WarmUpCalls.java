@@ -0,0 +1,68 @@
+package com.killrvideo.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Calls replayed by the warm-up of the services, told apart from the calls of the clients.
+ * <p>
+ * The warm-up sends its calls with the {@link #CLIENT_INTERCEPTOR}, which adds the 'killrvideo-warmup' header. The
+ * {@link #SERVER_INTERCEPTOR} of the Grpc server runs the calls with that header in a context where
+ * {@link #isWarmUp()} is true: services read it when the call starts, on the Grpc thread, to keep warm-up calls out
+ * of their metrics and caches.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public final class WarmUpCalls {
+
+    /** Header of the warm-up calls. */
+    static final Metadata.Key<String> HEADER = Metadata.Key.of("killrvideo-warmup", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Context.Key<Boolean> WARM_UP = Context.key("killrvideo-warmup");
+
+    /** Interceptor of the Grpc server, tells the warm-up calls. */
+    public static final ServerInterceptor SERVER_INTERCEPTOR = new ServerInterceptor() {
+        @Override
+        public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                           ServerCallHandler<Q, R> next) {
+            if (!headers.containsKey(HEADER)) {
+                return next.startCall(call, headers);
+            }
+            return Contexts.interceptCall(Context.current().withValue(WARM_UP, Boolean.TRUE), call, headers, next);
+        }
+    };
+
+    /** Interceptor of the warm-up channel, marks its calls. */
+    public static final ClientInterceptor CLIENT_INTERCEPTOR = new ClientInterceptor() {
+        @Override
+        public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions callOptions, Channel next) {
+            return new SimpleForwardingClientCall<Q, R>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<R> responseListener, Metadata headers) {
+                    headers.put(HEADER, "true");
+                    super.start(responseListener, headers);
+                }
+            };
+        }
+    };
+
+    private WarmUpCalls() {
+    }
+
+    /**
+     * Tell if the current call was sent by the warm-up, to read on the thread the call started on.
+     */
+    public static boolean isWarmUp() {
+        return Boolean.TRUE.equals(WARM_UP.get());
+    }
+}
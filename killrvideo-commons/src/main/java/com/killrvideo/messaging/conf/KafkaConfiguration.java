@@ -106,6 +106,19 @@ public class KafkaConfiguration {
         return new KafkaConsumer<>(props);
     }
     
+    /**
+     * Search indexes every new video: its own group so that it does not share the events with other services.
+     */
+    @Bean("kafka.consumer.videoCreating.search")
+    public KafkaConsumer<String, byte[]> videoCreatingSearchConsumer() {
+        Properties props = new Properties();
+        props.put(BOOTSTRAP_SERVERS_CONFIG,        getKafkaServerConnectionUrl());
+        props.put(GROUP_ID_CONFIG,                 consumerGroup.trim() + "-search");
+        props.put(KEY_DESERIALIZER_CLASS_CONFIG,   StringDeserializer.class.getName());
+        props.put(VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return new KafkaConsumer<>(props);
+    }
+    
     @Bean("kafka.consumer.error")
     public KafkaConsumer<String, byte[]> errorConsumer() {
         Properties props = new Properties();
@@ -3,6 +3,7 @@ package com.killrvideo.messaging.dao;
 import static com.killrvideo.messaging.utils.MessagingUtils.mapCustomError;
 import static com.killrvideo.messaging.utils.MessagingUtils.mapError;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
@@ -22,6 +23,22 @@ public interface MessagingDao {
      *          event serialized as binary
      */
     CompletableFuture<?> sendEvent(String targetDestination, Object event);
+
+    /**
+     * Will send a batch of events to target destination.
+     *
+     * @param targetDestination
+     *           adress of destination : queue, topic, shared memory (className).
+     * @param events
+     *          events serialized as binary
+     * @return
+     *          completed when every event is sent, exceptionally if one of them failed
+     */
+    default CompletableFuture<Void> sendEvents(String targetDestination, List<?> events) {
+        return CompletableFuture.allOf(events.stream()
+                .map(event -> sendEvent(targetDestination, event))
+                .toArray(CompletableFuture[]::new));
+    }
     
     /** 
      * Channel to send errors.
@@ -26,6 +26,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -95,6 +96,34 @@ public class MessagingDaoKafka implements MessagingDao {
         return cfv;
     }
 
+    /**
+     * Serialize every event first then hand them over to the producer in a row, without waiting for any
+     * acknowledgement in between, so that they end up in the same producer batches.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> sendEvents(String targetDestination, List<?> events) {
+        if (events.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LOGGER.info("Sending {} Event(s) '{}' ..", events.size(), events.get(0).getClass().getName());
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            CompletableFuture<RecordMetadata> ack = new CompletableFuture<>();
+            protobufProducer.send(new ProducerRecord<>(targetDestination, serializePayload(events.get(i))),
+                    (metadata, error) -> {
+                        if (error != null) {
+                            ack.completeExceptionally(error);
+                        } else {
+                            ack.complete(metadata);
+                        }
+                    });
+            acks[i] = ack;
+        }
+        return CompletableFuture.allOf(acks);
+    }
+
     // -- Common Error Handling --
 
     @PostConstruct
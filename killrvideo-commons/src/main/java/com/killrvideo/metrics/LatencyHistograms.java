@@ -0,0 +1,249 @@
+package com.killrvideo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the RPCs, one HDR histogram per RPC, query shape and outcome (ok, error, or cancelled by the client).
+ * <p>
+ * Latencies are recorded in microseconds (3 significant digits) into a {@link Recorder}, wait free for the calling
+ * threads, and accumulated since startup when read. A query shape is a short description of the request class,
+ * such as its number of terms: the number of distinct series is capped ('killrvideo.metrics.latency.maxSeries'),
+ * the shapes of the series over it are recorded as {@link #OTHER_SHAPE}.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class LatencyHistograms implements MetricsWriter {
+
+    /** Shape of the requests without one, or over the series cap. */
+    public static final String NO_SHAPE = "-";
+    public static final String OTHER_SHAPE = "other";
+
+    /** Upper bounds of the exported buckets, in seconds. */
+    static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /** Exported quantiles. */
+    static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** Outcomes of the calls. */
+    private static final String OK = "ok";
+    private static final String ERROR = "error";
+    private static final String CANCELLED = "cancelled";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final String METRIC = "killrvideo_rpc_latency_seconds";
+
+    private static final Comparator<Series> BY_LABELS = Comparator
+            .comparing((Series series) -> series.rpc)
+            .thenComparing(series -> series.shape)
+            .thenComparing(series -> series.outcome);
+
+    private final int maxSeries;
+    private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    public LatencyHistograms(@Value("${killrvideo.metrics.latency.maxSeries: 500}") int maxSeries) {
+        this.maxSeries = Math.max(1, maxSeries);
+    }
+
+    /**
+     * Record the latency of a call.
+     *
+     * @param rpc      name of the RPC
+     * @param shape    shape of the request, {@link #NO_SHAPE} if none
+     * @param success  call succeeded
+     * @param duration time spent
+     */
+    public void record(String rpc, String shape, boolean success, Duration duration) {
+        record(rpc, shape, success ? OK : ERROR, duration);
+    }
+
+    /**
+     * Record the latency of a call cancelled by the client, apart from the calls which succeeded or failed.
+     *
+     * @param rpc      name of the RPC
+     * @param shape    shape of the request, {@link #NO_SHAPE} if none
+     * @param duration time spent until the cancellation
+     */
+    public void recordCancelled(String rpc, String shape, Duration duration) {
+        record(rpc, shape, CANCELLED, duration);
+    }
+
+    private void record(String rpc, String shape, String outcome, Duration duration) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(duration.toNanos()));
+        series(rpc, shape, outcome).recorder.recordValue(micros);
+    }
+
+    private Series series(String rpc, String shape, String outcome) {
+        SeriesKey key = new SeriesKey(rpc, shape, outcome);
+        Series existing = series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (series.size() >= maxSeries) {
+            key = new SeriesKey(rpc, OTHER_SHAPE, outcome);
+        }
+        return series.computeIfAbsent(key, Series::new);
+    }
+
+    /**
+     * Latencies recorded since startup.
+     *
+     * @param rpc   name of the RPC
+     * @param shape shape of the requests
+     * @return histogram in microseconds, empty if none
+     */
+    public Histogram getHistogram(String rpc, String shape, boolean success) {
+        return getHistogram(rpc, shape, success ? OK : ERROR);
+    }
+
+    /**
+     * Latencies of the calls cancelled by the client since startup.
+     *
+     * @param rpc   name of the RPC
+     * @param shape shape of the requests
+     * @return histogram in microseconds, empty if none
+     */
+    public Histogram getCancelledHistogram(String rpc, String shape) {
+        return getHistogram(rpc, shape, CANCELLED);
+    }
+
+    private Histogram getHistogram(String rpc, String shape, String outcome) {
+        Series found = series.get(new SeriesKey(rpc, shape, outcome));
+        return found == null ? new Histogram(SIGNIFICANT_DIGITS) : found.accumulate();
+    }
+
+    /**
+     * Write every series in the Prometheus text format: a histogram with fixed buckets (to aggregate and compute
+     * quantiles over time windows) and the quantiles since startup.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        List<Series> all = new ArrayList<>(series.values());
+        all.sort(BY_LABELS);
+        List<Histogram> histograms = new ArrayList<>(all.size());
+        for (Series one : all) {
+            histograms.add(one.accumulate());
+        }
+        out.append("# HELP ").append(METRIC).append(" Latency of the RPCs by query shape.\n");
+        out.append("# TYPE ").append(METRIC).append(" histogram\n");
+        for (int i = 0; i < all.size(); i++) {
+            String labels = all.get(i).labels();
+            Histogram histogram = histograms.get(i);
+            for (double bucket : BUCKETS) {
+                long upTo = histogram.getCountBetweenValues(0, (long) (bucket * 1_000_000));
+                out.append(METRIC).append("_bucket{").append(labels).append(",le=\"").append(format(bucket))
+                        .append("\"} ").append(Long.toString(upTo)).append('\n');
+            }
+            out.append(METRIC).append("_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                    .append(Long.toString(histogram.getTotalCount())).append('\n');
+            double sumSeconds = histogram.getMean() * histogram.getTotalCount() / 1_000_000;
+            out.append(METRIC).append("_sum{").append(labels).append("} ").append(format(sumSeconds)).append('\n');
+            out.append(METRIC).append("_count{").append(labels).append("} ")
+                    .append(Long.toString(histogram.getTotalCount())).append('\n');
+        }
+        out.append("# HELP ").append(METRIC).append("_quantile Latency quantiles of the RPCs since startup.\n");
+        out.append("# TYPE ").append(METRIC).append("_quantile gauge\n");
+        for (int i = 0; i < all.size(); i++) {
+            String labels = all.get(i).labels();
+            Histogram histogram = histograms.get(i);
+            for (double quantile : QUANTILES) {
+                double seconds = histogram.getValueAtPercentile(quantile * 100) / 1_000_000.0;
+                out.append(METRIC).append("_quantile{").append(labels).append(",quantile=\"").append(format(quantile))
+                        .append("\"} ").append(format(seconds)).append('\n');
+            }
+            out.append(METRIC).append("_quantile{").append(labels).append(",quantile=\"1\"} ")
+                    .append(format(histogram.getMaxValue() / 1_000_000.0)).append('\n');
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%s", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Number of series recorded.
+     */
+    public int size() {
+        return series.size();
+    }
+
+    private static final class SeriesKey {
+        private final String rpc;
+        private final String shape;
+        private final String outcome;
+
+        private SeriesKey(String rpc, String shape, String outcome) {
+            this.rpc = rpc;
+            this.shape = shape == null || shape.isEmpty() ? NO_SHAPE : shape;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) o;
+            return rpc.equals(other.rpc) && shape.equals(other.shape) && outcome.equals(other.outcome);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rpc, shape, outcome);
+        }
+    }
+
+    /**
+     * Latencies of a series, recorded by the callers and accumulated by the readers.
+     */
+    private static final class Series {
+        private final String rpc;
+        private final String shape;
+        private final String outcome;
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram accumulated = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        private Series(SeriesKey key) {
+            this.rpc = key.rpc;
+            this.shape = key.shape;
+            this.outcome = key.outcome;
+        }
+
+        /**
+         * Add the latencies recorded since the last read.
+         *
+         * @return copy of the latencies since startup
+         */
+        private synchronized Histogram accumulate() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.add(interval);
+            return accumulated.copy();
+        }
+
+        private String labels() {
+            return "rpc=\"" + escape(rpc) + "\",shape=\"" + escape(shape) + "\",outcome=\"" + outcome + "\"";
+        }
+    }
+}
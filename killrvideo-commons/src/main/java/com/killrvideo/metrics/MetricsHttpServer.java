@@ -0,0 +1,90 @@
+package com.killrvideo.metrics;
+
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Expose the {@link LatencyHistograms} and the other {@link MetricsWriter}s on 'GET /metrics', in the Prometheus text
+ * format.
+ * <p>
+ * The services only serve gRPC, a bare JDK HTTP server is enough for a scraper. Disabled when
+ * 'killrvideo.metrics.port' is 0.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class MetricsHttpServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    static final String PATH = "/metrics";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final List<MetricsWriter> writers;
+    private final int port;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsHttpServer(List<MetricsWriter> writers,
+                             @Value("${killrvideo.metrics.port: 0}") int port) {
+        this.writers = writers;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (port <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(new KillrVideoThreadFactory());
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("Metrics available on port {} at '{}'", port, PATH);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder body = new StringBuilder();
+            for (MetricsWriter writer : writers) {
+                writer.writeTo(body);
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.killrvideo.metrics;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Metrics served on 'GET /metrics' by the {@link MetricsHttpServer}, every Spring bean implementing it is written.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public interface MetricsWriter {
+
+    /**
+     * Write the metrics in the Prometheus text format, names not shared with other writers.
+     */
+    void writeTo(Appendable out) throws IOException;
+
+    /**
+     * Write a counter without labels.
+     *
+     * @param out   metrics text
+     * @param name  metric name, ending with '_total'
+     * @param help  description of the metric
+     * @param value count since startup
+     */
+    static void writeCounter(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * Write a gauge without labels.
+     *
+     * @param out   metrics text
+     * @param name  metric name
+     * @param help  description of the metric
+     * @param value current value
+     */
+    static void writeGauge(Appendable out, String name, String help, double value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(String.format(Locale.ROOT, "%s", value)).append('\n');
+    }
+}
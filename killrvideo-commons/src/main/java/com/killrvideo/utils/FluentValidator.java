@@ -4,6 +4,8 @@ import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 
+import java.util.Optional;
+
 public class FluentValidator {
 
     private final Logger logger;
@@ -44,6 +46,15 @@ public class FluentValidator {
         return error(String.format("%s should be strictly positive for %s", fieldName, this.requestName), assertion);
     }
 
+    /**
+     * Evaluate the rules without failing the call.
+     *
+     * @return the error description when a rule is broken
+     */
+    public Optional<String> check() {
+        return isValid ? Optional.empty() : Optional.of(errorMessage.toString().trim());
+    }
+
     public void validate() {
         if (!isValid) {
             final String description = errorMessage.toString();
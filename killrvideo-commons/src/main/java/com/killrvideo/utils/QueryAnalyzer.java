@@ -0,0 +1,180 @@
+package com.killrvideo.utils;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Split text into lower case words (letters and digits), dropping stop words, in a single pass.
+ * <p>
+ * ASCII characters are classified and lower cased with a precompiled table, others with {@link Character}. Stop
+ * words live in an open addressing table probed with the characters read, so only kept words are allocated.
+ * Instances are immutable and thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public final class QueryAnalyzer {
+
+    /** Analyzer keeping every word. */
+    public static final QueryAnalyzer NO_STOP_WORDS = new QueryAnalyzer(Collections.emptySet());
+
+    /** Lower case of ASCII word characters, 0 for separators. */
+    private static final char[] ASCII_WORD = new char[128];
+
+    /** ASCII characters escaped in Solr queries. */
+    private static final boolean[] SOLR_SPECIAL = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            ASCII_WORD[c] = c;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            ASCII_WORD[c] = c;
+            ASCII_WORD[c - 'a' + 'A'] = c;
+        }
+        for (char c : "+-&|!(){}[]^\"~*?:\\/ ".toCharArray()) {
+            SOLR_SPECIAL[c] = true;
+        }
+    }
+
+    /** Stop words by hash, linear probing. */
+    private final char[][] stopWords;
+    private final int[] stopWordHashes;
+    private final int mask;
+
+    /**
+     * Analyzer dropping stop words.
+     *
+     * @param stopWords words to drop, compared in lower case
+     */
+    public QueryAnalyzer(Collection<String> stopWords) {
+        Set<String> words = new HashSet<>();
+        for (String word : stopWords) {
+            if (word != null && !word.trim().isEmpty()) {
+                words.add(word.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, words.size()) * 2 - 1) << 1;
+        this.stopWords = new char[capacity][];
+        this.stopWordHashes = new int[capacity];
+        this.mask = capacity - 1;
+        for (String word : words) {
+            int slot = word.hashCode() & mask;
+            while (this.stopWords[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.stopWords[slot] = word.toCharArray();
+            this.stopWordHashes[slot] = word.hashCode();
+        }
+    }
+
+    /**
+     * Words of a text, in order, duplicates included.
+     */
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, terms::add);
+        return terms;
+    }
+
+    /**
+     * Send the words of a text, in order, to a consumer.
+     *
+     * @param text  text, nothing when null
+     * @param terms receiver of the lower case words which are not stop words
+     */
+    public void analyze(CharSequence text, Consumer<String> terms) {
+        if (text == null) {
+            return;
+        }
+        char[] word = new char[16];
+        int length = 0;
+        int hash = 0;
+        int textLength = text.length();
+        for (int i = 0; i < textLength; i++) {
+            char c = text.charAt(i);
+            char lower;
+            if (c < 128) {
+                lower = ASCII_WORD[c];
+            } else if (Character.isHighSurrogate(c) && i + 1 < textLength && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                if (Character.isLetterOrDigit(codePoint)) {
+                    // Rare enough to be appended as is, surrogates are not table candidates
+                    if (length + 2 > word.length) {
+                        word = Arrays.copyOf(word, word.length * 2);
+                    }
+                    int lowerCodePoint = Character.toLowerCase(codePoint);
+                    word[length++] = Character.highSurrogate(lowerCodePoint);
+                    word[length++] = Character.lowSurrogate(lowerCodePoint);
+                    hash = 31 * (31 * hash + word[length - 2]) + word[length - 1];
+                    i++;
+                    continue;
+                }
+                lower = 0;
+            } else {
+                lower = Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+            }
+            if (lower != 0) {
+                if (length == word.length) {
+                    word = Arrays.copyOf(word, length * 2);
+                }
+                word[length++] = lower;
+                hash = 31 * hash + lower;
+            } else if (length > 0) {
+                emit(word, length, hash, terms);
+                length = 0;
+                hash = 0;
+            }
+        }
+        if (length > 0) {
+            emit(word, length, hash, terms);
+        }
+    }
+
+    private void emit(char[] word, int length, int hash, Consumer<String> terms) {
+        if (!isStopWord(word, length, hash)) {
+            terms.accept(new String(word, 0, length));
+        }
+    }
+
+    /**
+     * Tell if a lower case word is a stop word.
+     */
+    public boolean isStopWord(String word) {
+        return isStopWord(word.toCharArray(), word.length(), word.hashCode());
+    }
+
+    private boolean isStopWord(char[] word, int length, int hash) {
+        // Same hash as String.hashCode()
+        for (int slot = hash & mask; stopWords[slot] != null; slot = (slot + 1) & mask) {
+            if (stopWordHashes[slot] == hash && Arrays.equals(stopWords[slot], 0, stopWords[slot].length, word, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append a term to a Solr query sent in a JSON 'q' string: Solr special characters are escaped with a
+     * backslash, then backslashes and quotes are escaped for JSON. Control characters are dropped.
+     *
+     * @param term term
+     * @param out  query being built
+     * @return {@code out}
+     */
+    public static StringBuilder appendEscaped(CharSequence term, StringBuilder out) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c < 128 && SOLR_SPECIAL[c]) {
+                // Solr backslash, itself escaped for JSON
+                out.append("\\\\");
+                if (c == '"' || c == '\\') {
+                    out.append('\\');
+                }
+                out.append(c);
+            } else if (c >= ' ') {
+                out.append(c);
+            }
+        }
+        return out;
+    }
+}
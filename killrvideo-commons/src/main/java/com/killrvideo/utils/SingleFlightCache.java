@@ -0,0 +1,207 @@
+package com.killrvideo.utils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Coalesce concurrent asynchronous lookups of the same key and keep results for a short time.
+ * <p>
+ * The first caller for a key triggers the load, callers arriving while it is in flight share its
+ * {@link CompletableFuture} (they are counted as <i>collapsed</i>). Non null results are then served from memory
+ * until they expire or are invalidated. When full, the oldest value makes room for the new one. A time to live of
+ * zero disables the result cache and keeps only request coalescing. A load running while values are invalidated
+ * is not stored, as it may have read data older than the invalidation.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author DataStax Developer Advocates team.
+ */
+public class SingleFlightCache<K, V> {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    /** Loads in progress. */
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /** Loaded values. */
+    private final ConcurrentMap<K, Entry<V>> values = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** Incremented on every invalidation. */
+    private final AtomicLong generation = new AtomicLong();
+
+    public SingleFlightCache(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, System::nanoTime);
+    }
+
+    SingleFlightCache(Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        this.ttlNanos = Math.max(0, ttl.toNanos());
+        this.maxEntries = Math.max(0, maxEntries);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Get the value of a key from memory, from a load in progress or from the loader.
+     *
+     * @param key    key to lookup
+     * @param loader asynchronous load of the value, invoked at most once per key at a time
+     * @return the value (completed with the loader error if the load failed)
+     */
+    public CompletableFuture<V> get(K key, Function<K, CompletableFuture<V>> loader) {
+        Entry<V> entry = values.get(key);
+        if (entry != null) {
+            if (entry.expiresAt - nanoClock.getAsLong() > 0) {
+                hits.increment();
+                return CompletableFuture.completedFuture(entry.value);
+            }
+            values.remove(key, entry);
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            collapsed.increment();
+            // Callers must not be able to complete the shared future
+            return running.copy();
+        }
+        loads.increment();
+        long loadGeneration = generation.get();
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException ex) {
+            loaded = CompletableFuture.failedFuture(ex);
+        }
+        loaded.whenComplete((value, error) -> {
+            if (error == null && value != null && generation.get() == loadGeneration) {
+                store(key, value);
+            }
+            // Value is stored before the load is removed: no window where a caller reloads it
+            inFlight.remove(key, load);
+            if (error != null) {
+                load.completeExceptionally(error);
+            } else {
+                load.complete(value);
+            }
+        });
+        return load.copy();
+    }
+
+    /**
+     * Drop the value of a key, the next lookup loads it again.
+     */
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        if (values.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Drop the values of the keys matching a predicate.
+     *
+     * @return number of values dropped
+     */
+    public int invalidateIf(Predicate<? super K> predicate) {
+        generation.incrementAndGet();
+        int dropped = 0;
+        for (K key : values.keySet()) {
+            if (predicate.test(key) && values.remove(key) != null) {
+                dropped++;
+            }
+        }
+        invalidations.add(dropped);
+        return dropped;
+    }
+
+    private void store(K key, V value) {
+        if (ttlNanos == 0 || maxEntries == 0) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        if (values.size() >= maxEntries) {
+            values.values().removeIf(entry -> entry.expiresAt - now <= 0);
+            while (values.size() >= maxEntries && evictOldest()) {
+                evictions.increment();
+            }
+        }
+        values.put(key, new Entry<>(value, now + ttlNanos));
+    }
+
+    /**
+     * Drop the value closest to expiry, which is the oldest one.
+     */
+    private boolean evictOldest() {
+        K oldest = null;
+        long oldestExpiresAt = 0;
+        for (Map.Entry<K, Entry<V>> entry : values.entrySet()) {
+            if (oldest == null || entry.getValue().expiresAt - oldestExpiresAt < 0) {
+                oldest = entry.getKey();
+                oldestExpiresAt = entry.getValue().expiresAt;
+            }
+        }
+        return oldest != null && values.remove(oldest) != null;
+    }
+
+    /** Number of values in memory, expired ones included until they are looked up or evicted. */
+    public int size() {
+        return values.size();
+    }
+
+    /** Number of lookups served from memory. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Number of lookups which joined a load already in progress. */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    /** Number of lookups which triggered a load. */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /** Number of values dropped by invalidations. */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /** Number of values dropped to make room for new ones. */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /** Share of lookups served from memory, 0 before the first lookup. */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long lookups = hitCount + getCollapsedCount() + getLoadCount();
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
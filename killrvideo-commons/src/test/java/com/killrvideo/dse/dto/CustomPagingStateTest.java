@@ -49,4 +49,77 @@ class CustomPagingStateTest {
     private String format(Instant instant) {
         return DATEFORMATTER.format(instant);
     }
+
+    @Test
+    public void testBinaryTokenWithCassandraPagingState() {
+        CustomPagingState state = CustomPagingState.buildFirstCustomPagingState()
+                .incCurrentBucketIndex()
+                .changeCassandraPagingState("0x001a0010000a6d797661726368617200f07ffffffe");
+        String serialized = state.serialize();
+
+        assertFalse(serialized.contains(","));
+        CustomPagingState parsed = CustomPagingState.deserialize(serialized).orElseThrow();
+        assertEquals(1, parsed.getCurrentBucket());
+        assertEquals(state.getListOfBuckets(), parsed.getListOfBuckets());
+        assertEquals(state.getCassandraPagingState(), parsed.getCassandraPagingState());
+        assertTrue(serialized.length() < legacyFormat(state).length());
+    }
+
+    @Test
+    public void testBinaryTokenWithoutPagingState() {
+        CustomPagingState state = CustomPagingState.buildFirstCustomPagingState();
+        CustomPagingState parsed = CustomPagingState.deserialize(state.serialize()).orElseThrow();
+        assertEquals(0, parsed.getCurrentBucket());
+        assertEquals(state.getListOfBuckets(), parsed.getListOfBuckets());
+        assertEquals("", parsed.getCassandraPagingState());
+    }
+
+    @Test
+    public void testLegacyFormatIsAccepted() {
+        String legacy = "20200110_20200109_20200108_20200107_20200106_20200105_20200104_20200103,2,0x0abc";
+        CustomPagingState parsed = CustomPagingState.deserialize(legacy).orElseThrow();
+        assertEquals(2, parsed.getCurrentBucket());
+        assertEquals("20200108", parsed.getCurrentBucketValue());
+        assertEquals("0x0abc", parsed.getCassandraPagingState());
+
+        CustomPagingState reparsed = CustomPagingState.deserialize(parsed.serialize()).orElseThrow();
+        assertEquals(parsed.getListOfBuckets(), reparsed.getListOfBuckets());
+        assertEquals(parsed.getCassandraPagingState(), reparsed.getCassandraPagingState());
+    }
+
+    @Test
+    public void testHourlyBuckets() {
+        TimeBucketing hourly = new TimeBucketing(ChronoUnit.HOURS, 1, 48, ZoneOffset.UTC);
+        CustomPagingState state = CustomPagingState.buildFirstCustomPagingState(hourly).incCurrentBucketIndex();
+
+        assertEquals(48, state.getListOfBucketsSize());
+        assertEquals(10, state.getCurrentBucketValue().length());
+        CustomPagingState parsed = CustomPagingState.deserialize(state.serialize()).orElseThrow();
+        assertEquals(state.getListOfBuckets(), parsed.getListOfBuckets());
+        assertEquals(1, parsed.getCurrentBucket());
+        assertTrue(parsed.hasSameBucketing(CustomPagingState.buildFirstCustomPagingState(hourly)));
+        assertFalse(parsed.hasSameBucketing(CustomPagingState.buildFirstCustomPagingState()));
+    }
+
+    @Test
+    public void testDailyTokenVersion1IsAccepted() {
+        // version 1, epoch day 18271 (2020-01-10), bucket 2, no paging state
+        String token = "AQAAR18CAA";
+        CustomPagingState parsed = CustomPagingState.deserialize(token).orElseThrow();
+        assertEquals("20200108", parsed.getCurrentBucketValue());
+        assertTrue(parsed.hasSameBucketing(CustomPagingState.buildFirstCustomPagingState()));
+    }
+
+    @Test
+    public void testInvalidTokens() {
+        assertFalse(CustomPagingState.deserialize("").isPresent());
+        assertFalse(CustomPagingState.deserialize("not a token!").isPresent());
+        assertFalse(CustomPagingState.deserialize("AAAA").isPresent());
+        assertFalse(CustomPagingState.deserialize("1,2,3").isPresent());
+    }
+
+    private String legacyFormat(CustomPagingState state) {
+        return String.join("_", state.getListOfBuckets()) + "," +
+                state.getCurrentBucket() + "," + state.getCassandraPagingState();
+    }
 }
@@ -0,0 +1,51 @@
+package com.killrvideo.dse.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeBucketingTest {
+    private static final Instant INSTANT = Instant.parse("2020-01-10T23:30:00Z");
+
+    @Test
+    public void testDailyBuckets() {
+        assertEquals("20200110", TimeBucketing.DEFAULT.bucketKey(INSTANT));
+        assertEquals(18271, TimeBucketing.DEFAULT.bucketNumber(INSTANT));
+    }
+
+    @Test
+    public void testHourlyBuckets() {
+        TimeBucketing hourly = new TimeBucketing(ChronoUnit.HOURS, 1, 24, ZoneOffset.UTC);
+        assertEquals("2020011023", hourly.bucketKey(INSTANT));
+
+        TimeBucketing sixHours = new TimeBucketing(ChronoUnit.HOURS, 6, 4, ZoneOffset.UTC);
+        assertEquals("2020011018", sixHours.bucketKey(INSTANT));
+    }
+
+    @Test
+    public void testMultiDayBucketsStartOnTheirFirstDay() {
+        // Epoch day 18271 is in the bucket of 7 days starting on epoch day 18270
+        TimeBucketing weekly = new TimeBucketing(ChronoUnit.DAYS, 7, 4, ZoneOffset.UTC);
+        assertEquals("20200109", weekly.bucketKey(INSTANT));
+        assertEquals("20200109", weekly.bucketKey(Instant.parse("2020-01-15T23:59:59Z")));
+        assertEquals("20200116", weekly.bucketKey(Instant.parse("2020-01-16T00:00:00Z")));
+    }
+
+    @Test
+    public void testTimeZone() {
+        TimeBucketing paris = new TimeBucketing(ChronoUnit.DAYS, 1, 8, ZoneId.of("Europe/Paris"));
+        assertEquals("20200111", paris.bucketKey(INSTANT));
+    }
+
+    @Test
+    public void testInvalidBucketing() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeBucketing(ChronoUnit.MINUTES, 1, 8, ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new TimeBucketing(ChronoUnit.DAYS, 0, 8, ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> new TimeBucketing(ChronoUnit.DAYS, 1, 0, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,78 @@
+package com.killrvideo.dse.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiGetUtilsTest {
+
+    @Test
+    public void testResultsInKeysOrderWithConcurrencyCap() {
+        Map<Integer, CompletableFuture<String>> loads = new HashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        CompletableFuture<List<String>> result = MultiGetUtils.getAll(Arrays.asList(1, 2, 3, 2, 4), key -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<String> load = new CompletableFuture<>();
+            loads.put(key, load);
+            return load.whenComplete((value, error) -> inFlight.decrementAndGet());
+        }, 2);
+
+        assertEquals(2, loads.size());
+        loads.get(2).complete("two");
+        loads.get(1).complete("one");
+        loads.get(3).complete(null);
+        loads.get(4).complete("four");
+
+        assertEquals(Arrays.asList("one", "two", "four"), result.join());
+        assertEquals(4, loads.size());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void testErrorIsPropagated() {
+        CompletableFuture<List<String>> result = MultiGetUtils.getAll(Arrays.asList(1, 2), key -> key == 2 ?
+                CompletableFuture.failedFuture(new IllegalStateException("boom")) :
+                CompletableFuture.completedFuture("one"), 4);
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertTrue(error.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testManyKeysLoadedImmediately() throws Exception {
+        List<Integer> keys = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+
+        // Cache hits: every load is completed when returned, the stack must not grow with the keys
+        // (a stack overflow in a callback would leave the result incomplete)
+        assertEquals(keys, MultiGetUtils.getAll(keys, CompletableFuture::completedFuture, 1).get(10, TimeUnit.SECONDS));
+
+        // Then one load in flight, the following ones completed in the callback of the first one
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<List<Integer>> result = MultiGetUtils.getAll(keys,
+                key -> key == 0 ? first : CompletableFuture.completedFuture(key), 1);
+        assertFalse(result.isDone());
+        first.complete(0);
+        assertEquals(keys, result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEmptyKeys() {
+        assertEquals(Collections.emptyList(), MultiGetUtils.getAll(Collections.<Integer>emptyList(), key -> {
+            throw new AssertionError("no load expected");
+        }, 4).join());
+    }
+}
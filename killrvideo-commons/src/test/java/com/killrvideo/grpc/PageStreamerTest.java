@@ -0,0 +1,147 @@
+package com.killrvideo.grpc;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.utils.PageCursor;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+class PageStreamerTest {
+    private ServerCallStreamObserver<String> observer;
+    private List<Optional<String>> requestedPages;
+    private boolean ready;
+    private Runnable onReady;
+    private Runnable onCancel;
+    private int closed;
+
+    @BeforeEach
+    public void setUp() {
+        observer = mock(ServerCallStreamObserver.class);
+        requestedPages = new ArrayList<>();
+        ready = true;
+        when(observer.isReady()).thenAnswer(invocation -> ready);
+        doAnswer(invocation -> onReady = invocation.getArgument(0)).when(observer).setOnReadyHandler(any());
+        doAnswer(invocation -> onCancel = invocation.getArgument(0)).when(observer).setOnCancelHandler(any());
+    }
+
+    private CompletableFuture<ResultListPage<String>> page(Optional<String> pagingState) {
+        requestedPages.add(pagingState);
+        if (pagingState.isEmpty()) {
+            return CompletableFuture.completedFuture(new ResultListPage<>(Arrays.asList("a", "b"), Optional.of("0x01")));
+        }
+        return CompletableFuture.completedFuture(new ResultListPage<>(Arrays.asList("c"), Optional.empty()));
+    }
+
+    @Test
+    public void testStreamsEveryPage() {
+        CompletableFuture<Long> result = PageStreamer.stream(observer, this::page, Optional.empty());
+
+        assertEquals(3L, result.join());
+        assertEquals(Arrays.asList(Optional.empty(), Optional.of("0x01")), requestedPages);
+        verify(observer).onNext("a");
+        verify(observer).onNext("b");
+        verify(observer).onNext("c");
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    public void testWaitsForReadyBeforeSendingOrFetching() {
+        ready = false;
+        CompletableFuture<Long> result = PageStreamer.stream(observer, this::page, Optional.empty());
+
+        // First page loaded but nothing sent, next page not fetched
+        verify(observer, never()).onNext(any());
+        assertEquals(1, requestedPages.size());
+        assertFalse(result.isDone());
+
+        ready = true;
+        onReady.run();
+        assertEquals(3L, result.join());
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    public void testCancelStopsStreaming() {
+        ready = false;
+        CompletableFuture<Long> result = PageStreamer.stream(observer, this::page, Optional.empty());
+        onCancel.run();
+        ready = true;
+        onReady.run();
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertTrue(PageStreamer.isCancelled(error));
+        assertEquals(1, requestedPages.size());
+        verify(observer, never()).onNext(any());
+        verify(observer, never()).onCompleted();
+    }
+
+    @Test
+    public void testPageErrorEndsStream() {
+        CompletableFuture<Long> result = PageStreamer.stream(observer,
+                pagingState -> CompletableFuture.failedFuture(new IllegalStateException("boom")), Optional.empty());
+
+        assertTrue(result.isCompletedExceptionally());
+        assertFalse(PageStreamer.isCancelled(assertThrows(CompletionException.class, result::join)));
+        verify(observer).onError(any(StatusRuntimeException.class));
+        verify(observer, never()).onCompleted();
+    }
+
+    /**
+     * Cursor over the test pages counting its closes.
+     */
+    private PageCursor<String> cursor() {
+        PageCursor<String> pages = PageCursor.of(this::page, Optional.empty());
+        return new PageCursor<String>() {
+            @Override
+            public CompletableFuture<ResultListPage<String>> next() {
+                return pages.next();
+            }
+
+            @Override
+            public void close() {
+                closed++;
+                pages.close();
+            }
+        };
+    }
+
+    @Test
+    public void testCursorStreamStopsAtMaxRowsAndCloses() {
+        PageCursor<String> cursor = cursor();
+        CompletableFuture<Long> result = PageStreamer.stream(observer, cursor, 2);
+
+        assertEquals(2L, result.join());
+        assertEquals(1, requestedPages.size());
+        verify(observer).onNext("a");
+        verify(observer).onNext("b");
+        verify(observer, never()).onNext("c");
+        verify(observer).onCompleted();
+        assertEquals(1, closed);
+    }
+
+    @Test
+    public void testCursorClosedOnCancel() {
+        ready = false;
+        PageCursor<String> cursor = cursor();
+        CompletableFuture<Long> result = PageStreamer.stream(observer, cursor, Long.MAX_VALUE);
+        onCancel.run();
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1, closed);
+        assertEquals(ResultListPage.empty().getResults(), cursor.next().join().getResults());
+        assertEquals(1, requestedPages.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.killrvideo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramsTest {
+
+    @Test
+    public void testRecordsBySeries() {
+        LatencyHistograms histograms = new LatencyHistograms(10);
+        histograms.record("searchVideos", "terms:1", true, Duration.ofMillis(3));
+        histograms.record("searchVideos", "terms:1", true, Duration.ofMillis(7));
+        histograms.record("searchVideos", "terms:2", true, Duration.ofMillis(40));
+        histograms.record("searchVideos", "terms:1", false, Duration.ofMillis(1));
+        histograms.recordCancelled("searchVideos", "terms:1", Duration.ofMillis(2));
+
+        Histogram oneTerm = histograms.getHistogram("searchVideos", "terms:1", true);
+        assertEquals(2, oneTerm.getTotalCount());
+        assertEquals(7000, oneTerm.getMaxValue(), 10);
+        assertEquals(1, histograms.getHistogram("searchVideos", "terms:2", true).getTotalCount());
+        assertEquals(1, histograms.getHistogram("searchVideos", "terms:1", false).getTotalCount());
+        assertEquals(1, histograms.getCancelledHistogram("searchVideos", "terms:1").getTotalCount());
+        assertEquals(0, histograms.getHistogram("getQuerySuggestions", "terms:1", true).getTotalCount());
+        // Read twice, still since startup
+        assertEquals(2, histograms.getHistogram("searchVideos", "terms:1", true).getTotalCount());
+    }
+
+    @Test
+    public void testSeriesOverCapRecordedAsOther() {
+        LatencyHistograms histograms = new LatencyHistograms(2);
+        histograms.record("searchVideos", "terms:1", true, Duration.ofMillis(1));
+        histograms.record("searchVideos", "terms:2", true, Duration.ofMillis(1));
+        histograms.record("searchVideos", "terms:3", true, Duration.ofMillis(1));
+        histograms.record("searchVideos", "terms:4+", true, Duration.ofMillis(1));
+        histograms.record("searchVideos", "terms:1", true, Duration.ofMillis(1));
+
+        assertEquals(3, histograms.size());
+        assertEquals(2, histograms.getHistogram("searchVideos", "terms:1", true).getTotalCount());
+        assertEquals(2, histograms.getHistogram("searchVideos", LatencyHistograms.OTHER_SHAPE, true).getTotalCount());
+    }
+
+    @Test
+    public void testWritesPrometheusText() throws IOException {
+        LatencyHistograms histograms = new LatencyHistograms(10);
+        histograms.record("searchVideos", "terms:1 \"x\"", true, Duration.ofMillis(3));
+        histograms.record("searchVideos", "terms:1 \"x\"", true, Duration.ofMillis(30));
+        StringBuilder text = new StringBuilder();
+        histograms.writeTo(text);
+
+        String labels = "rpc=\"searchVideos\",shape=\"terms:1 \\\"x\\\"\",outcome=\"ok\"";
+        assertTrue(text.toString().contains("# TYPE killrvideo_rpc_latency_seconds histogram\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_bucket{" + labels + ",le=\"0.001\"} 0\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_bucket{" + labels + ",le=\"0.05\"} 2\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_count{" + labels + "} 2\n"));
+        assertTrue(text.toString().contains("killrvideo_rpc_latency_seconds_quantile{" + labels + ",quantile=\"0.99\"}"));
+    }
+}
@@ -0,0 +1,49 @@
+package com.killrvideo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryAnalyzerTest {
+
+    @Test
+    public void testTermsAreLowerCaseWords() {
+        assertEquals(Arrays.asList("cassandra", "3", "0", "data", "modeling", "c"),
+                QueryAnalyzer.NO_STOP_WORDS.terms("  Cassandra 3.0: DATA-modeling (C++)"));
+        assertEquals(Arrays.asList("\u00e9lan", "stra\u00dfe", "\u6771\u4eac"), QueryAnalyzer.NO_STOP_WORDS.terms("\u00c9lan, Stra\u00dfe/\u6771\u4eac"));
+        assertEquals(Collections.singletonList("\ud801\udc28x"), QueryAnalyzer.NO_STOP_WORDS.terms("\ud801\udc00X!"));
+        assertTrue(QueryAnalyzer.NO_STOP_WORDS.terms("").isEmpty());
+        assertTrue(QueryAnalyzer.NO_STOP_WORDS.terms(null).isEmpty());
+    }
+
+    @Test
+    public void testStopWordsAreDropped() {
+        QueryAnalyzer analyzer = new QueryAnalyzer(Arrays.asList("the", " Of", "a", ""));
+
+        assertEquals(Arrays.asList("lord", "rings", "then"), analyzer.terms("The Lord of the Rings, then A"));
+        assertTrue(analyzer.isStopWord("of"));
+        assertFalse(analyzer.isStopWord("lord"));
+    }
+
+    @Test
+    public void testManyStopWords() {
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + i;
+        }
+        QueryAnalyzer analyzer = new QueryAnalyzer(Arrays.asList(words));
+
+        assertEquals(Arrays.asList("w500", "x1"), analyzer.terms("w0 w499 w500 x1 w250"));
+    }
+
+    @Test
+    public void testAppendEscaped() {
+        assertEquals("cassandra", QueryAnalyzer.appendEscaped("cassandra", new StringBuilder()).toString());
+        // Solr escapes (\+ \" \\) written in a JSON string
+        assertEquals("c\\\\+\\\\+\\\\\\\"\\\\\\\\", QueryAnalyzer.appendEscaped("c++\"\\", new StringBuilder()).toString());
+        assertEquals("ab", QueryAnalyzer.appendEscaped("a\nb", new StringBuilder()).toString());
+    }
+}
@@ -0,0 +1,112 @@
+package com.killrvideo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightCacheTest {
+
+    @Test
+    public void testConcurrentLookupsShareOneLoad() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ZERO, 10);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = cache.get("k", key -> { loads.incrementAndGet(); return pending; });
+        CompletableFuture<String> second = cache.get("k", key -> { loads.incrementAndGet(); return pending; });
+        pending.complete("v");
+
+        assertEquals("v", first.join());
+        assertEquals("v", second.join());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(1, cache.getCollapsedCount());
+
+        // No result cache: a new lookup loads again
+        cache.get("k", key -> CompletableFuture.completedFuture("v2"));
+        assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    public void testValuesExpire() {
+        AtomicLong now = new AtomicLong();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofNanos(100), 10, now::get);
+
+        assertEquals("v1", cache.get("k", key -> CompletableFuture.completedFuture("v1")).join());
+        now.set(50);
+        assertEquals("v1", cache.get("k", key -> CompletableFuture.completedFuture("v2")).join());
+        assertEquals(1, cache.getHitCount());
+        now.set(100);
+        assertEquals("v2", cache.get("k", key -> CompletableFuture.completedFuture("v2")).join());
+        assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    public void testFailuresAndNullsAreNotCached() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofMinutes(1), 10);
+
+        CompletableFuture<String> failed = cache.get("k", key -> { throw new IllegalStateException("boom"); });
+        assertThrows(CompletionException.class, failed::join);
+        assertNull(cache.get("k", key -> CompletableFuture.completedFuture(null)).join());
+        assertEquals("v", cache.get("k", key -> CompletableFuture.completedFuture("v")).join());
+        assertEquals(3, cache.getLoadCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofMinutes(1), 10);
+        cache.get("k", key -> CompletableFuture.completedFuture("v1")).join();
+        cache.invalidate("k");
+        assertEquals("v2", cache.get("k", key -> CompletableFuture.completedFuture("v2")).join());
+    }
+
+    @Test
+    public void testInvalidateIf() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofMinutes(1), 10);
+        cache.get("cassandra", key -> CompletableFuture.completedFuture("v1")).join();
+        cache.get("castle", key -> CompletableFuture.completedFuture("v1")).join();
+        cache.get("graph", key -> CompletableFuture.completedFuture("v1")).join();
+
+        assertEquals(2, cache.invalidateIf(key -> key.startsWith("cas")));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getInvalidationCount());
+        assertEquals("v1", cache.get("graph", key -> CompletableFuture.completedFuture("v2")).join());
+        assertEquals(0.25, cache.getHitRate());
+    }
+
+    @Test
+    public void testLoadRunningDuringInvalidationIsNotStored() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofMinutes(1), 10);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> lookup = cache.get("k", key -> pending);
+        cache.invalidateIf(key -> true);
+        pending.complete("stale");
+
+        assertEquals("stale", lookup.join());
+        assertEquals("fresh", cache.get("k", key -> CompletableFuture.completedFuture("fresh")).join());
+    }
+
+    @Test
+    public void testOldestValueIsEvictedWhenFull() {
+        AtomicLong now = new AtomicLong();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofNanos(100), 2, now::get);
+
+        cache.get("a", key -> CompletableFuture.completedFuture("a")).join();
+        now.set(10);
+        cache.get("b", key -> CompletableFuture.completedFuture("b")).join();
+        now.set(20);
+        cache.get("c", key -> CompletableFuture.completedFuture("c")).join();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("b", cache.get("b", key -> CompletableFuture.completedFuture("b2")).join());
+        assertEquals("a2", cache.get("a", key -> CompletableFuture.completedFuture("a2")).join());
+    }
+}
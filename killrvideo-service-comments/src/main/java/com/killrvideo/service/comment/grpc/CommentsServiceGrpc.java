@@ -150,7 +150,7 @@ public class CommentsServiceGrpc extends CommentsServiceImplBase {
      */
     private void traceSuccess(String method, Instant starts) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).getNano() / 1000);
+            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).toMillis());
         }
     }
 
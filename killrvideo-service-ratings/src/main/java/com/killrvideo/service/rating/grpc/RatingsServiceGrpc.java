@@ -167,7 +167,7 @@ public class RatingsServiceGrpc extends RatingsServiceImplBase {
      */
     private void traceSuccess(String method, Instant starts) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).getNano() / 1000);
+            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).toMillis());
         }
     }
 
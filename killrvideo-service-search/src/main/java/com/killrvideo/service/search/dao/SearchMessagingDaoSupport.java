@@ -0,0 +1,58 @@
+package com.killrvideo.service.search.dao;
+
+import com.killrvideo.service.search.engine.EmbeddedSearchEngine;
+import com.killrvideo.service.search.grpc.SearchServiceGrpcMapper;
+import com.killrvideo.service.search.repository.QueryCorrectionsIndex;
+import com.killrvideo.service.search.repository.QuerySuggestionsIndex;
+import com.killrvideo.service.search.repository.SearchResultsCache;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Message processing for search services.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public abstract class SearchMessagingDaoSupport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchMessagingDaoSupport.class);
+
+    protected final QuerySuggestionsIndex querySuggestionsIndex;
+
+    protected final QueryCorrectionsIndex queryCorrectionsIndex;
+
+    protected final EmbeddedSearchEngine embeddedSearchEngine;
+
+    protected final SearchResultsCache searchResultsCache;
+
+    protected final SearchServiceGrpcMapper mapper;
+
+    public SearchMessagingDaoSupport(QuerySuggestionsIndex querySuggestionsIndex,
+                                     QueryCorrectionsIndex queryCorrectionsIndex,
+                                     EmbeddedSearchEngine embeddedSearchEngine,
+                                     SearchResultsCache searchResultsCache,
+                                     SearchServiceGrpcMapper mapper) {
+        this.querySuggestionsIndex = querySuggestionsIndex;
+        this.queryCorrectionsIndex = queryCorrectionsIndex;
+        this.embeddedSearchEngine = embeddedSearchEngine;
+        this.searchResultsCache = searchResultsCache;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Message is consumed from specialized class but treatment is the same, indexing the new video terms
+     * (suggestions and corrections) and the video itself for the embedded search engine, then dropping the cached results it may change.
+     *
+     * @param videoAdded
+     *      a video has been created
+     */
+    protected void onYoutubeVideoAddingMessage(YouTubeVideoAdded videoAdded) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[NewVideoEvent] Indexing suggestions of video {}", videoAdded.getVideoId().getValue());
+        }
+        querySuggestionsIndex.addVideo(videoAdded.getName(), videoAdded.getTagsList());
+        queryCorrectionsIndex.addVideo(videoAdded.getName(), videoAdded.getTagsList(), videoAdded.getDescription());
+        embeddedSearchEngine.addVideo(mapper.mapVideoAddedToVideo(videoAdded));
+        searchResultsCache.onVideoAdded(videoAdded.getName(), videoAdded.getTagsList(), videoAdded.getDescription());
+    }
+}
@@ -0,0 +1,105 @@
+package com.killrvideo.service.search.dao;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.killrvideo.conf.KillrVideoConfiguration;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.killrvideo.service.search.engine.EmbeddedSearchEngine;
+import com.killrvideo.service.search.grpc.SearchServiceGrpcMapper;
+import com.killrvideo.service.search.repository.QueryCorrectionsIndex;
+import com.killrvideo.service.search.repository.QuerySuggestionsIndex;
+import com.killrvideo.service.search.repository.SearchResultsCache;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Consume 'YouTubeVideoAdded' events for the whole life of the service, in its own consumer group so that every
+ * event reaches the search index.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Repository("killrvideo.search.dao.messaging")
+@Profile(KillrVideoConfiguration.PROFILE_MESSAGING_KAFKA)
+public class SearchMessagingKafkaDao extends SearchMessagingDaoSupport {
+
+    /**
+     * Loger for that class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchMessagingKafkaDao.class);
+
+    @Value("${killrvideo.messaging.destination.youTubeVideoAdded : topic-kv-videoCreation}")
+    private String topicVideoCreated;
+
+    private final KafkaConsumer<String, byte[]> consumerVideoCreatedProtobuf;
+
+    private ExecutorService poller;
+
+    private volatile boolean running;
+
+    public SearchMessagingKafkaDao(
+            QuerySuggestionsIndex querySuggestionsIndex,
+            QueryCorrectionsIndex queryCorrectionsIndex,
+            EmbeddedSearchEngine embeddedSearchEngine,
+            SearchResultsCache searchResultsCache,
+            SearchServiceGrpcMapper mapper,
+            @Qualifier("kafka.consumer.videoCreating.search") KafkaConsumer<String, byte[]> consumerVideoCreatedProtobuf) {
+        super(querySuggestionsIndex, queryCorrectionsIndex, embeddedSearchEngine, searchResultsCache, mapper);
+        this.consumerVideoCreatedProtobuf = consumerVideoCreatedProtobuf;
+    }
+
+    @PostConstruct
+    public void registerConsumerYoutubeVideoAdded() {
+        LOGGER.info("Start consuming events from topic '{}' ..", topicVideoCreated);
+        consumerVideoCreatedProtobuf.subscribe(Collections.singletonList(topicVideoCreated));
+        running = true;
+        poller = Executors.newSingleThreadExecutor(new KillrVideoThreadFactory());
+        poller.submit(this::pollYoutubeVideoAdded);
+    }
+
+    private void pollYoutubeVideoAdded() {
+        try {
+            while (running) {
+                for (ConsumerRecord<String, byte[]> record : consumerVideoCreatedProtobuf.poll(Duration.ofSeconds(2L))) {
+                    parseYoutubeVideoAddedMessage(record.value());
+                }
+            }
+        } catch (WakeupException ex) {
+            // Stopping
+        } catch (RuntimeException ex) {
+            LOGGER.error("Stop consuming events from topic '{}'", topicVideoCreated, ex);
+        } finally {
+            consumerVideoCreatedProtobuf.close();
+        }
+    }
+
+    private void parseYoutubeVideoAddedMessage(byte[] payload) {
+        try {
+            super.onYoutubeVideoAddingMessage(YouTubeVideoAdded.parseFrom(payload));
+        } catch (InvalidProtocolBufferException e) {
+            LOGGER.error("Cannot parse message expecting object " + YouTubeVideoAdded.class.getName(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        consumerVideoCreatedProtobuf.wakeup();
+        if (poller != null) {
+            poller.shutdown();
+        }
+    }
+}
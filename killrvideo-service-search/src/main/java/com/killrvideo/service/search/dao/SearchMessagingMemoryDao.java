@@ -0,0 +1,50 @@
+package com.killrvideo.service.search.dao;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.killrvideo.conf.KillrVideoConfiguration;
+import com.killrvideo.service.search.engine.EmbeddedSearchEngine;
+import com.killrvideo.service.search.grpc.SearchServiceGrpcMapper;
+import com.killrvideo.service.search.repository.QueryCorrectionsIndex;
+import com.killrvideo.service.search.repository.QuerySuggestionsIndex;
+import com.killrvideo.service.search.repository.SearchResultsCache;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * With Guava subscription is done with annotation Subscribe. Event are sent in the
+ * bus and correct method is invoked based on the event type (classname).
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Repository("killrvideo.search.dao.messaging")
+@Profile(KillrVideoConfiguration.PROFILE_MESSAGING_MEMORY)
+public class SearchMessagingMemoryDao extends SearchMessagingDaoSupport {
+
+    private final EventBus eventBus;
+
+    public SearchMessagingMemoryDao(QuerySuggestionsIndex querySuggestionsIndex,
+                                    QueryCorrectionsIndex queryCorrectionsIndex,
+                                    EmbeddedSearchEngine embeddedSearchEngine,
+                                    SearchResultsCache searchResultsCache,
+                                    SearchServiceGrpcMapper mapper, EventBus eventBus) {
+        super(querySuggestionsIndex, queryCorrectionsIndex, embeddedSearchEngine, searchResultsCache, mapper);
+        this.eventBus = eventBus;
+    }
+
+    @PostConstruct
+    public void registerSubscriber() {
+        eventBus.register(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Subscribe
+    public void onYoutubeVideoAddingMessage(YouTubeVideoAdded youTubeVideoAdded) {
+        super.onYoutubeVideoAddingMessage(youTubeVideoAdded);
+    }
+}
@@ -0,0 +1,16 @@
+package com.killrvideo.service.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Tag of the videos found by a search, with the number of videos holding it.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Getter @AllArgsConstructor @ToString
+public class TagFacet {
+    private final String tag;
+    private final int count;
+}
@@ -0,0 +1,164 @@
+package com.killrvideo.service.search.engine;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.killrvideo.dse.dao.VideoRowMapper;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Search videos with the 'solr_query' pseudo column of DSE Search.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class DseSearchEngine implements SearchEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DseSearchEngine.class);
+
+    /** Name in 'killrvideo.search.engine'. */
+    public static final String NAME = "dse";
+
+    private static final String QUERY_VIDEO_BY_TAGS = "SELECT * " +
+            "FROM killrvideo.videos " +
+            "WHERE solr_query = ?";
+
+    /**
+     * Wrap search queries with "paging":"driver" to dynamically enable
+     * paging to ensure we pull back all available results in the application.
+     * https://docs.datastax.com/en/dse/6.0/cql/cql/cql_using/search_index/cursorsDeepPaging.html#cursorsDeepPaging__using-paging-with-cql-solr-queries-solrquery-Rim2GsbY
+     */
+    private static final String PAGING_DRIVER_START = "{\"q\":\"";
+    private static final String PAGING_DRIVER_END = "\", \"paging\":\"driver\"}";
+
+    private final PageableQuery<Video> findVideosByTags;
+
+    public DseSearchEngine(PageableQueryFactory pageableQueryFactory, VideoRowMapper videoRowMapper) {
+        this.findVideosByTags = pageableQueryFactory.newPageableQuery(
+                QUERY_VIDEO_BY_TAGS,
+                ConsistencyLevel.LOCAL_ONE,
+                videoRowMapper::map
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Do a Solr query against DSE search to find videos using Solr's ExtendedDisMax query parser. Query the
+     * name, tags, and description fields in the videos table giving a boost to matches in the name and tags
+     * fields as opposed to the description field
+     * More info on ExtendedDisMax: http://wiki.apache.org/solr/ExtendedDisMax
+     * <p>
+     * Notice the "paging":"driver" parameter.  This is to ensure we dynamically
+     * enable pagination regardless of our nodes dse.yaml setting.
+     * https://docs.datastax.com/en/dse/5.1/dse-dev/datastax_enterprise/search/cursorsDeepPaging.html#cursorsDeepPaging__srchCursorCQL
+     */
+    @Override
+    public CompletableFuture<ResultListPage<Video>> searchVideosAsync(SearchVideosRequestData request) {
+        Optional<String> solrQuery = buildSolrQueryToSearchVideos(request.getQuery());
+        if (solrQuery.isEmpty()) {
+            return CompletableFuture.completedFuture(ResultListPage.empty());
+        }
+        return findVideosByTags.queryNext(
+                Optional.of(request.getPageSize()),
+                request.getPagingState(),
+                solrQuery.get()
+        );
+    }
+
+    /**
+     * Keep the result set of the "paging":"driver" query and fetch the next pages from it, the Solr cursor stays
+     * open on the coordinator between two pages instead of being restarted from the paging state.
+     */
+    @Override
+    public PageCursor<Video> openCursor(SearchVideosRequestData request) {
+        Optional<String> solrQuery = buildSolrQueryToSearchVideos(request.getQuery());
+        if (solrQuery.isEmpty()) {
+            return PageCursor.of(pagingState -> CompletableFuture.completedFuture(ResultListPage.empty()), Optional.empty());
+        }
+        return findVideosByTags.openCursor(
+                Optional.of(request.getPageSize()),
+                request.getPagingState(),
+                solrQuery.get()
+        );
+    }
+
+    /**
+     * In this case we are using DSE Search to query across the name, tags, and
+     * description columns with a boost on name and tags.  Note that tags is a
+     * collection of tags per each row with no extra steps to include all data
+     * in the collection.
+     * <p>
+     * This is a more comprehensive search as
+     * we are not just looking at values within the tags column, but also looking
+     * across the other fields for similar occurrences.  This is especially helpful
+     * if there are no tags for a given video as it is more likely to give us results.
+     *
+     * @return empty when the query has no term (only punctuation for instance): 'name:(*)' would match every video
+     */
+    private Optional<String> buildSolrQueryToSearchVideos(String query) {
+        LOGGER.debug("Start searching videos by name, tag, and description");
+        /*
+         * Perform a query using DSE search to find videos. Query the
+         * name, tags, and description columns in the videos table giving a boost to matches in the name and tags
+         * columns as opposed to the description column. All the words of the query must match.
+         */
+        StringBuilder terms = new StringBuilder(query.length() + 16);
+        QueryAnalyzer.NO_STOP_WORDS.analyze(query, term -> {
+            if (terms.length() > 0) {
+                terms.append(" AND ");
+            }
+            QueryAnalyzer.appendEscaped(term, terms);
+        });
+        if (terms.length() == 0) {
+            return Optional.empty();
+        }
+        String requestQuery = terms.toString();
+
+        /*
+         * In this case we are using DSE Search to query across the name, tags, and
+         * description columns with a boost on name and tags.  The boost will put
+         * more priority on the name column, then tags, and finally description.
+         *
+         * Note that tags is a
+         * collection of tags per each row with no extra steps to include all data
+         * in the collection.  This is a more comprehensive search as
+         * we are not just looking at values within the tags column, but also looking
+         * across the other columns for similar occurrences.  This is especially helpful
+         * if there are no tags for a given video as it is more likely to give us results.
+         *
+         * Refer to the following documentation for a deeper look at term boosting:
+         * https://docs.datastax.com/en/dse/6.0/cql/cql/cql_using/search_index/advancedTerms.html
+         */
+        return Optional.of(new StringBuilder()
+                .append(PAGING_DRIVER_START)
+                .append("name:(").append(requestQuery).append("*)^4 OR ")
+                .append("tags:(").append(requestQuery).append("*)^2 OR ")
+                .append("description:(").append(requestQuery).append("*)")
+                .append(PAGING_DRIVER_END)
+                .toString());
+    }
+}
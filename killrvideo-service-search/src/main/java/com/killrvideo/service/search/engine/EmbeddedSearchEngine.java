@@ -0,0 +1,187 @@
+package com.killrvideo.service.search.engine;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.killrvideo.dse.dao.VideoRowMapper;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search videos in a local {@link InvertedIndex}, no DSE Search node needed.
+ * <p>
+ * Used when 'killrvideo.search.engine' is 'embedded'. Loaded at startup from 'killrvideo.videos', then kept current
+ * with the 'YouTubeVideoAdded' events. As with DSE Search, all the words of the query must match (in any field) and
+ * the last one is a prefix. The paging state is the offset of the next page.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class EmbeddedSearchEngine implements SearchEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedSearchEngine.class);
+
+    /** Name in 'killrvideo.search.engine'. */
+    public static final String NAME = "embedded";
+
+    private static final String QUERY_VIDEOS = "SELECT * FROM killrvideo.videos";
+
+    private final CqlSession session;
+    private final VideoRowMapper videoRowMapper;
+    private final boolean enabled;
+    private final int loadPageSize;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public EmbeddedSearchEngine(CqlSession session, VideoRowMapper videoRowMapper,
+                                @Value("${killrvideo.search.engine: dse}") String engine,
+                                @Value("${killrvideo.search.embedded.loadPageSize: 1000}") int loadPageSize) {
+        this.session = session;
+        this.videoRowMapper = videoRowMapper;
+        this.enabled = NAME.equalsIgnoreCase(engine.trim());
+        this.loadPageSize = Math.max(1, loadPageSize);
+    }
+
+    /**
+     * Start loading the index when this engine is selected.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            load().whenComplete((count, error) -> {
+                if (error != null) {
+                    LOGGER.warn("Cannot load embedded search index, DSE Search will be used: {}", error.getMessage());
+                } else {
+                    LOGGER.info("Embedded search index loaded with {} video(s)", count);
+                }
+            });
+        }
+    }
+
+    /**
+     * Read every video.
+     *
+     * @return number of videos read
+     */
+    CompletableFuture<Long> load() {
+        SimpleStatement stmt = SimpleStatement.newInstance(QUERY_VIDEOS)
+                .setPageSize(loadPageSize)
+                .setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+        return session.executeAsync(stmt)
+                .thenCompose(rs -> loadPage(rs, 0L))
+                .thenApply(count -> {
+                    ready = true;
+                    return count;
+                })
+                .toCompletableFuture();
+    }
+
+    private CompletionStage<Long> loadPage(AsyncResultSet rs, long count) {
+        long loaded = count;
+        for (Row row : rs.currentPage()) {
+            addVideo(videoRowMapper.map(row));
+            loaded++;
+        }
+        if (rs.hasMorePages()) {
+            final long total = loaded;
+            return rs.fetchNextPage().thenCompose(next -> loadPage(next, total));
+        }
+        return CompletableFuture.completedFuture(loaded);
+    }
+
+    /**
+     * Index a new (or updated) video.
+     */
+    public void addVideo(Video video) {
+        if (!enabled || video == null || video.getVideoid() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.add(video);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAvailable() {
+        return ready;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ResultListPage<Video>> searchVideosAsync(SearchVideosRequestData request) {
+        List<String> terms = QueryAnalyzer.NO_STOP_WORDS.terms(request.getQuery());
+        int offset = request.getPagingState().map(EmbeddedSearchEngine::parseOffset).orElse(0);
+        int pageSize = Math.max(1, request.getPageSize());
+        // One more to know if there is a next page
+        int limit = (int) Math.min(Integer.MAX_VALUE, (long) offset + pageSize + 1);
+        List<Video> videos;
+        lock.readLock().lock();
+        try {
+            videos = index.search(terms, true, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (videos.size() <= offset) {
+            return CompletableFuture.completedFuture(ResultListPage.empty());
+        }
+        int end = Math.min(videos.size(), offset + pageSize);
+        Optional<String> nextPage = (videos.size() > end) ? Optional.of(String.valueOf(end)) : Optional.empty();
+        return CompletableFuture.completedFuture(new ResultListPage<>(videos.subList(offset, end), nextPage));
+    }
+
+    /**
+     * Offset of a paging state, the first page when it is not one of ours.
+     */
+    private static int parseOffset(String pagingState) {
+        try {
+            return Math.max(0, Integer.parseInt(pagingState.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Number of indexed videos.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
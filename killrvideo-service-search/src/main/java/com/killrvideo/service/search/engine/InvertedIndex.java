@@ -0,0 +1,240 @@
+package com.killrvideo.service.search.engine;
+
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.utils.QueryAnalyzer;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Inverted index of videos over their name, tags and description, scored with BM25.
+ * <p>
+ * Each field keeps its terms sorted (prefix queries are range scans) with a posting list of the documents holding
+ * them and their frequency, in two growable int arrays ordered by document id. A field score is weighted by its
+ * boost, as the DSE Search query did: name^4, tags^2, description. Re-adding a video replaces it. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class InvertedIndex {
+
+    /** BM25 term frequency saturation. */
+    static final double K1 = 1.2;
+
+    /** BM25 length normalization. */
+    static final double B = 0.75;
+
+    /** Best first: highest score, then latest added. */
+    private static final Comparator<Hit> BEST_FIRST = Comparator
+            .comparingDouble((Hit hit) -> hit.score).reversed()
+            .thenComparing((Hit hit) -> hit.addedDate, Comparator.reverseOrder())
+            .thenComparingInt(hit -> hit.doc);
+
+    private final Field[] fields = {
+            new Field(4, video -> Collections.singletonList(video.getName())),
+            new Field(2, video -> video.getTags() == null ? Collections.emptyList() : video.getTags()),
+            new Field(1, video -> Collections.singletonList(video.getDescription()))
+    };
+
+    /** Documents by id, null once replaced. */
+    private final List<Video> documents = new ArrayList<>();
+
+    private final Map<UUID, Integer> documentIds = new HashMap<>();
+
+    /**
+     * Index a video, replacing the previous version with the same id.
+     */
+    void add(Video video) {
+        Integer previous = documentIds.get(video.getVideoid());
+        if (previous != null) {
+            remove(previous);
+        }
+        int doc = documents.size();
+        documents.add(video);
+        documentIds.put(video.getVideoid(), doc);
+        for (Field field : fields) {
+            field.add(doc, termFrequencies(field, video));
+        }
+    }
+
+    private void remove(int doc) {
+        Video video = documents.get(doc);
+        for (Field field : fields) {
+            field.remove(doc, termFrequencies(field, video).keySet());
+        }
+        documents.set(doc, null);
+    }
+
+    private static Map<String, Integer> termFrequencies(Field field, Video video) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String text : field.values.apply(video)) {
+            QueryAnalyzer.NO_STOP_WORDS.analyze(text, term -> frequencies.merge(term, 1, Integer::sum));
+        }
+        return frequencies;
+    }
+
+    /**
+     * Best videos holding all terms, in any field.
+     *
+     * @param terms      query terms, the last one may be a prefix
+     * @param lastPrefix match the last term as a prefix
+     * @param limit      maximum number of videos
+     * @return videos, best first
+     */
+    List<Video> search(List<String> terms, boolean lastPrefix, int limit) {
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Double> scores = null;
+        for (int i = 0; i < terms.size(); i++) {
+            boolean prefix = lastPrefix && i == terms.size() - 1;
+            Map<Integer, Double> termScores = new HashMap<>();
+            for (Field field : fields) {
+                field.score(terms.get(i), prefix, size(), termScores);
+            }
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((doc, score) -> score + termScores.get(doc));
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        // Keep the best ones only: the worst of them on top
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+            Video video = documents.get(score.getKey());
+            best.add(new Hit(score.getKey(), score.getValue(), video.getAddedDate()));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(BEST_FIRST);
+        List<Video> videos = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            videos.add(documents.get(hit.doc));
+        }
+        return videos;
+    }
+
+    /**
+     * Number of videos.
+     */
+    int size() {
+        return documentIds.size();
+    }
+
+    /**
+     * Terms of a field with their postings, and the length of its documents.
+     */
+    private static final class Field {
+        private final double boost;
+        private final Function<Video, Collection<String>> values;
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private int[] lengths = new int[16];
+        private long totalLength;
+
+        private Field(double boost, Function<Video, Collection<String>> values) {
+            this.boost = boost;
+            this.values = values;
+        }
+
+        private void add(int doc, Map<String, Integer> frequencies) {
+            if (doc >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(doc + 1, lengths.length * 2));
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                terms.computeIfAbsent(frequency.getKey(), term -> new Postings()).add(doc, frequency.getValue());
+                length += frequency.getValue();
+            }
+            lengths[doc] = length;
+            totalLength += length;
+        }
+
+        private void remove(int doc, Set<String> docTerms) {
+            for (String term : docTerms) {
+                Postings postings = terms.get(term);
+                if (postings != null && postings.remove(doc) && postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+            totalLength -= lengths[doc];
+            lengths[doc] = 0;
+        }
+
+        /**
+         * Add the BM25 score of a term (or of every term starting with it) to the documents holding it: a short prefix
+         * costs a scan of the postings of all its terms, but finds the same videos as the DSE Search prefix query.
+         */
+        private void score(String term, boolean prefix, int documentCount, Map<Integer, Double> scores) {
+            if (documentCount == 0) {
+                return;
+            }
+            Collection<Postings> matches;
+            if (prefix) {
+                matches = terms.subMap(term, true, term + Character.MAX_VALUE, false).values();
+            } else {
+                Postings postings = terms.get(term);
+                matches = postings == null ? Collections.emptyList() : Collections.singletonList(postings);
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+            for (Postings postings : matches) {
+                double idf = Math.log(1 + (documentCount - postings.size + 0.5) / (postings.size + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    int frequency = postings.frequencies[i];
+                    double norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    double score = boost * idf * frequency * (K1 + 1) / (frequency + norm);
+                    scores.merge(doc, score, Double::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Documents holding a term with its frequency, by increasing document id.
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            // Document ids only grow
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        private boolean remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    private static final class Hit {
+        private final int doc;
+        private final double score;
+        private final Instant addedDate;
+
+        private Hit(int doc, double score, Instant addedDate) {
+            this.doc = doc;
+            this.score = score;
+            this.addedDate = addedDate == null ? Instant.EPOCH : addedDate;
+        }
+    }
+}
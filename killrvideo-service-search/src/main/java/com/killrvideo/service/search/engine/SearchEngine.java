@@ -0,0 +1,47 @@
+package com.killrvideo.service.search.engine;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Full text search of videos over their name, tags and description, matches in the name weighting the most, then
+ * the tags. Implementations are Spring beans picked with 'killrvideo.search.engine'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public interface SearchEngine {
+
+    /**
+     * Name of the engine in the configuration.
+     */
+    String getName();
+
+    /**
+     * Tell if the engine can serve queries now (an index may still be loading).
+     */
+    boolean isAvailable();
+
+    /**
+     * Search a page of videos, best matches first.
+     *
+     * @param request query, page size and paging state issued by the same engine
+     * @return videos and the paging state of the next page
+     */
+    CompletableFuture<ResultListPage<Video>> searchVideosAsync(SearchVideosRequestData request);
+
+    /**
+     * Read every page of results of a query, one after the other.
+     *
+     * @param request query, size of the pages and paging state of the first one
+     * @return cursor over the pages, to close when done
+     */
+    default PageCursor<Video> openCursor(SearchVideosRequestData request) {
+        return PageCursor.of(pagingState -> searchVideosAsync(
+                new SearchVideosRequestData(request.getQuery(), request.getPageSize(), pagingState)),
+                request.getPagingState());
+    }
+}
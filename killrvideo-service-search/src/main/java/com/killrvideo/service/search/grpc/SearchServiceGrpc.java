@@ -1,22 +1,34 @@
 package com.killrvideo.service.search.grpc;
 
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.grpc.PageStreamer;
+import com.killrvideo.grpc.WarmUpCalls;
+import com.killrvideo.metrics.LatencyHistograms;
+import com.killrvideo.service.search.dto.TagFacet;
 import com.killrvideo.service.search.repository.SearchRepository;
 import com.killrvideo.service.search.request.GetQuerySuggestionsRequestData;
 import com.killrvideo.service.search.request.SearchVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import killrvideo.search.SearchServiceGrpc.SearchServiceImplBase;
 import killrvideo.search.SearchServiceOuterClass.GetQuerySuggestionsRequest;
 import killrvideo.search.SearchServiceOuterClass.GetQuerySuggestionsResponse;
+import killrvideo.search.SearchServiceOuterClass.SearchResultsVideoPreview;
 import killrvideo.search.SearchServiceOuterClass.SearchVideosRequest;
 import killrvideo.search.SearchServiceOuterClass.SearchVideosResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static com.killrvideo.utils.GrpcUtils.returnSingleResult;
 
@@ -33,17 +45,46 @@ public class SearchServiceGrpc extends SearchServiceImplBase {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchServiceGrpc.class);
 
+    /**
+     * Rows fetched per page when streaming search results and the client does not provide a page size.
+     */
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 100;
+
+    /**
+     * Maximum number of tag facets returned with search results.
+     */
+    private static final int MAX_TAG_FACETS = 100;
+
+    /**
+     * Terms counted apart in the query shapes, longer queries are counted together.
+     */
+    private static final int MAX_SHAPE_TERMS = 4;
+
+    /**
+     * Longest last term counted as a short prefix in the query shapes: such a prefix expands to many terms.
+     */
+    private static final int SHORT_PREFIX_LENGTH = 2;
+
     @Value("${killrvideo.discovery.services.search : SearchService}")
     private String serviceKey;
 
+    /**
+     * Maximum number of videos streamed for a query.
+     */
+    @Value("${killrvideo.search.stream.maxResults : 1000}")
+    private long streamMaxResults;
+
     private final SearchRepository searchRepository;
     private final SearchServiceGrpcValidator validator;
     private final SearchServiceGrpcMapper mapper;
+    private final LatencyHistograms latencyHistograms;
 
-    public SearchServiceGrpc(SearchRepository searchRepository, SearchServiceGrpcValidator validator, SearchServiceGrpcMapper mapper) {
+    public SearchServiceGrpc(SearchRepository searchRepository, SearchServiceGrpcValidator validator,
+                             SearchServiceGrpcMapper mapper, LatencyHistograms latencyHistograms) {
         this.searchRepository = searchRepository;
         this.validator = validator;
         this.mapper = mapper;
+        this.latencyHistograms = latencyHistograms;
     }
 
     /**
@@ -56,20 +97,72 @@ public class SearchServiceGrpc extends SearchServiceImplBase {
 
         // Stands as stopwatch for logging and messaging 
         final Instant starts = Instant.now();
+        final boolean warmUp = WarmUpCalls.isWarmUp();
 
         // Mapping GRPC => Domain (Dao)
         SearchVideosRequestData requestData = mapper.parseSearchVideosRequestData(grpcReq);
+        final String shape = queryShape(grpcReq.getQuery(), requestData.getPagingState().isPresent());
+
+        // Tags of the first videos found, read along with the first page when asked for
+        boolean withTagFacets = grpcReq.getTagFacets() > 0 && requestData.getPagingState().isEmpty();
+        CompletableFuture<List<TagFacet>> tagFacets = withTagFacets ?
+                searchRepository.searchTagFacetsAsync(requestData, Math.min(grpcReq.getTagFacets(), MAX_TAG_FACETS)) :
+                CompletableFuture.completedFuture(Collections.emptyList());
 
-        // Map Result back to GRPC
-        searchRepository.searchVideosAsync(requestData)
-                .whenComplete((resultPage, error) -> {
+        // Map Result back to GRPC, warm-up calls searched past the results cache
+        (warmUp ? searchRepository.searchVideosUncachedAsync(requestData) : searchRepository.searchVideosAsync(requestData))
+                .thenCombine(tagFacets, (resultPage, facets) ->
+                        mapper.buildSearchGrpcResponse(resultPage, grpcReq.getQuery(), facets))
+                .whenComplete((response, error) -> {
                     if (error != null) {
-                        traceError("searchVideos", starts, error);
-                        grpcResObserver.onError(Status.INTERNAL.withCause(error).asRuntimeException());
+                        traceError("searchVideos", shape, starts, warmUp, error);
+                        grpcResObserver.onError(errorStatus(error).asRuntimeException());
 
                     } else {
-                        traceSuccess("searchVideos", starts);
-                        returnSingleResult(mapper.buildSearchGrpcResponse(resultPage, grpcReq.getQuery()), grpcResObserver);
+                        traceSuccess("searchVideos", shape, starts, warmUp);
+                        returnSingleResult(response, grpcResObserver);
+                    }
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pages are read from a single search cursor and sent as the client is ready for them, until the results or
+     * 'killrvideo.search.stream.maxResults' are exhausted. The cursor is closed as soon as the call ends, cancelled
+     * by the client included.
+     */
+    @Override
+    public void streamSearchVideos(SearchVideosRequest grpcReq, StreamObserver<SearchResultsVideoPreview> grpcResObserver) {
+        // Validate Parameters
+        validator.validateGrpcRequest_StreamSearchVideos(grpcReq, grpcResObserver);
+
+        // Stands as stopwatch for logging and messaging
+        final Instant starts = Instant.now();
+        final boolean warmUp = WarmUpCalls.isWarmUp();
+
+        // Mapping GRPC => Domain (Dao)
+        SearchVideosRequestData parsed = mapper.parseSearchVideosRequestData(grpcReq);
+        final SearchVideosRequestData requestData = grpcReq.getPageSize() > 0 ? parsed :
+                new SearchVideosRequestData(parsed.getQuery(), DEFAULT_STREAM_FETCH_SIZE, parsed.getPagingState());
+        final String shape = queryShape(grpcReq.getQuery(), requestData.getPagingState().isPresent());
+
+        PageCursor<SearchResultsVideoPreview> cursor;
+        try {
+            cursor = searchRepository.openSearchCursor(requestData).map(mapper::mapToResultVideoPreviewPage);
+        } catch (IllegalArgumentException e) {
+            traceError("streamSearchVideos", shape, starts, warmUp, e);
+            grpcResObserver.onError(errorStatus(e).asRuntimeException());
+            return;
+        }
+        PageStreamer.stream(grpcResObserver, cursor, streamMaxResults)
+                .whenComplete((count, error) -> {
+                    if (PageStreamer.isCancelled(error)) {
+                        traceCancelled("streamSearchVideos", shape, starts, warmUp);
+                    } else if (error != null) {
+                        traceError("streamSearchVideos", shape, starts, warmUp, error);
+                    } else {
+                        traceSuccess("streamSearchVideos", shape, starts, warmUp);
                     }
                 });
     }
@@ -84,20 +177,22 @@ public class SearchServiceGrpc extends SearchServiceImplBase {
 
         // Stands as stopwatch for logging and messaging 
         final Instant starts = Instant.now();
+        final boolean warmUp = WarmUpCalls.isWarmUp();
 
         // Mapping GRPC => Domain (Dao)
         GetQuerySuggestionsRequestData requestData = mapper.parseGetQuerySuggestionsRequestData(grpcReq);
+        final String shape = queryShape(grpcReq.getQuery());
 
         // Invoke Dao (Async)
         searchRepository.getQuerySuggestionsAsync(requestData)
                 .whenComplete((suggestionSet, error) -> {
                     // Mapping back to GRPC beans
                     if (error != null) {
-                        traceError("getQuerySuggestions", starts, error);
+                        traceError("getQuerySuggestions", shape, starts, warmUp, error);
                         grpcResObserver.onError(Status.INTERNAL.withCause(error).asRuntimeException());
 
                     } else {
-                        traceSuccess("getQuerySuggestions", starts);
+                        traceSuccess("getQuerySuggestions", shape, starts, warmUp);
                         GetQuerySuggestionsResponse response = mapper.buildQuerySuggestionsResponse(suggestionSet, requestData.getQuery());
                         returnSingleResult(response, grpcResObserver);
                     }
@@ -105,25 +200,100 @@ public class SearchServiceGrpc extends SearchServiceImplBase {
     }
 
     /**
-     * Utility to TRACE.
+     * Status of a failed search: an invalid request, such as a malformed paging state, is an error of the client.
+     */
+    static Status errorStatus(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            return Status.INVALID_ARGUMENT.withDescription(cause.getMessage());
+        }
+        return Status.INTERNAL.withCause(error);
+    }
+
+    /**
+     * Shape of a search query, the latencies of its calls being recorded apart: number of terms, breadth of the last
+     * term (the prefix) and page read, such as 'terms:2 wildcard:long page:first'.
+     *
+     * @param query    query as typed
+     * @param nextPage a paging state is provided
+     * @return query shape
+     */
+    static String queryShape(String query, boolean nextPage) {
+        return queryShape(query) + (nextPage ? " page:next" : " page:first");
+    }
+
+    /**
+     * Shape of a query, without page: number of terms and breadth of the last term.
+     * <p>
+     * The last term of a query is searched as a prefix: 'typed' when the query holds wildcards, 'short' when the
+     * prefix has at most 2 characters and so expands to many terms, 'long' otherwise.
+     */
+    static String queryShape(String query) {
+        List<String> terms = QueryAnalyzer.NO_STOP_WORDS.terms(query);
+        String wildcard;
+        if (StringUtils.hasText(query) && (query.indexOf('*') >= 0 || query.indexOf('?') >= 0)) {
+            wildcard = "typed";
+        } else if (terms.isEmpty()) {
+            wildcard = "none";
+        } else if (terms.get(terms.size() - 1).length() <= SHORT_PREFIX_LENGTH) {
+            wildcard = "short";
+        } else {
+            wildcard = "long";
+        }
+        String count = terms.size() >= MAX_SHAPE_TERMS ? MAX_SHAPE_TERMS + "+" : String.valueOf(terms.size());
+        return "terms:" + count + " wildcard:" + wildcard;
+    }
+
+    /**
+     * Utility to TRACE, recording the latency of the call.
      *
      * @param method current operation
+     * @param shape  shape of the query
      * @param starts timestamp for starting
+     * @param warmUp call of the warm-up, latency not recorded
      */
-    private void traceSuccess(String method, Instant starts) {
+    private void traceSuccess(String method, String shape, Instant starts, boolean warmUp) {
+        Duration elapsed = Duration.between(starts, Instant.now());
+        if (!warmUp) {
+            latencyHistograms.record(method, shape, true, elapsed);
+        }
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).getNano() / 1000);
+            LOGGER.debug("End successfully '{}' in {} millis", method, elapsed.toMillis());
         }
     }
 
     /**
-     * Utility to TRACE.
+     * Utility to TRACE, recording the latency of a call cancelled by the client apart.
      *
      * @param method current operation
+     * @param shape  shape of the query
      * @param starts timestamp for starting
+     * @param warmUp call of the warm-up, latency not recorded
      */
-    private void traceError(String method, Instant starts, Throwable t) {
-        LOGGER.error("An error occured in {} after {}", method, Duration.between(starts, Instant.now()), t);
+    private void traceCancelled(String method, String shape, Instant starts, boolean warmUp) {
+        Duration elapsed = Duration.between(starts, Instant.now());
+        if (!warmUp) {
+            latencyHistograms.recordCancelled(method, shape, elapsed);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("'{}' cancelled by the client after {} millis", method, elapsed.toMillis());
+        }
+    }
+
+    /**
+     * Utility to TRACE, recording the latency of the call.
+     *
+     * @param method current operation
+     * @param shape  shape of the query
+     * @param starts timestamp for starting
+     * @param warmUp call of the warm-up, latency not recorded
+     */
+    private void traceError(String method, String shape, Instant starts, boolean warmUp, Throwable t) {
+        Duration elapsed = Duration.between(starts, Instant.now());
+        if (!warmUp) {
+            latencyHistograms.record(method, shape, false, elapsed);
+        }
+        LOGGER.error("An error occured in {} after {}", method, elapsed, t);
     }
 
     /**
@@ -2,16 +2,22 @@ package com.killrvideo.service.search.grpc;
 
 import com.killrvideo.dse.dto.ResultListPage;
 import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.dto.TagFacet;
 import com.killrvideo.service.search.request.GetQuerySuggestionsRequestData;
 import com.killrvideo.service.search.request.SearchVideosRequestData;
 import com.killrvideo.utils.GrpcMappingUtils;
 
 import killrvideo.search.SearchServiceOuterClass.*;
 import killrvideo.search.SearchServiceOuterClass.SearchResultsVideoPreview.Builder;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 
 /**
@@ -24,15 +30,30 @@ public class SearchServiceGrpcMapper {
 
     public SearchVideosResponse buildSearchGrpcResponse(ResultListPage<Video> resultPage,
                                                         String query) {
+        return buildSearchGrpcResponse(resultPage, query, Collections.emptyList());
+    }
+
+    public SearchVideosResponse buildSearchGrpcResponse(ResultListPage<Video> resultPage,
+                                                        String query, List<TagFacet> tagFacets) {
         final SearchVideosResponse.Builder builder = SearchVideosResponse.newBuilder();
         builder.setQuery(query);
         resultPage.getPagingState().ifPresent(builder::setPagingState);
         resultPage.getResults().stream()
                 .map(this::maptoResultVideoPreview)
                 .forEach(builder::addVideos);
+        tagFacets.stream()
+                .map(facet -> SearchResultsTagFacet.newBuilder().setTag(facet.getTag()).setCount(facet.getCount()))
+                .forEach(builder::addTagFacets);
         return builder.build();
     }
 
+    public ResultListPage<SearchResultsVideoPreview> mapToResultVideoPreviewPage(ResultListPage<Video> resultPage) {
+        return new ResultListPage<>(
+                resultPage.getResults().stream().map(this::maptoResultVideoPreview).collect(Collectors.toList()),
+                resultPage.getPagingState()
+        );
+    }
+
     /**
      * Mapping to generated GPRC beans (Search result special).
      */
@@ -58,6 +79,22 @@ public class SearchServiceGrpcMapper {
         return new SearchVideosRequestData(searchQuery, searchPageSize, searchPagingState);
     }
 
+    /**
+     * Video indexed by the embedded search engine from its creation event.
+     */
+    public Video mapVideoAddedToVideo(YouTubeVideoAdded videoAdded) {
+        Video video = new Video();
+        video.setVideoid(GrpcMappingUtils.fromUuid(videoAdded.getVideoId()));
+        video.setUserid(GrpcMappingUtils.fromUuid(videoAdded.getUserId()));
+        video.setName(videoAdded.getName());
+        video.setDescription(videoAdded.getDescription());
+        video.setLocation(videoAdded.getLocation());
+        video.setPreviewImageLocation(videoAdded.getPreviewImageLocation());
+        video.setTags(new HashSet<>(videoAdded.getTagsList()));
+        video.setAddedDate(GrpcMappingUtils.timestampToInstant(videoAdded.getAddedDate()));
+        return video;
+    }
+
     public GetQuerySuggestionsResponse buildQuerySuggestionsResponse(
             Iterable<String> suggestions, String query
     ) {
@@ -28,6 +28,17 @@ public class SearchServiceGrpcValidator  {
         FluentValidator.of("searchVideos", request, LOGGER, streamObserver)
                 .notEmpty("query string", isBlank(request.getQuery()))
                 .positive("page size", request.getPageSize() <= 0)
+                .error("tag facets should not be negative for searchVideos", request.getTagFacets() < 0)
+                .validate();
+    }
+
+    /**
+     * Validation for streamed search, page size is optional.
+     */
+    public void validateGrpcRequest_StreamSearchVideos(SearchVideosRequest request, StreamObserver<?> streamObserver) {
+        FluentValidator.of("streamSearchVideos", request, LOGGER, streamObserver)
+                .notEmpty("query string", isBlank(request.getQuery()))
+                .error("page size should not be negative for streamSearchVideos", request.getPageSize() < 0)
                 .validate();
     }
 }
@@ -0,0 +1,205 @@
+package com.killrvideo.service.search.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Character trigram index of the words of video names and tags, to find the closest word of a misspelled one.
+ * <p>
+ * Words are padded ('^word$') and each trigram keeps the ids of the words holding it. Candidates of a word are the
+ * words sharing enough trigrams with it (an edit changes at most 4 trigrams, a transposition included), checked
+ * with a bounded Damerau-Levenshtein distance: the closest wins, then the most frequent. Every word of the videos
+ * (descriptions included) is also kept as known, known words are never corrected. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class NGramIndex {
+
+    /** Length of the grams. */
+    static final int N = 3;
+
+    /** Trigrams an edit may change. */
+    private static final int GRAMS_PER_EDIT = N + 1;
+
+    /** Candidates checked between two reads of the clock. */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /** Words which can be suggested, by id. */
+    private String[] words = new String[16];
+    private int[] frequencies = new int[16];
+    private int size;
+
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final Map<String, IntList> grams = new HashMap<>();
+
+    /** Every word of the videos, sorted for prefix lookups. */
+    private final TreeSet<String> known = new TreeSet<>();
+
+    /**
+     * Add occurrences of a word of a name or tag, a candidate correction.
+     */
+    void add(String word, int count) {
+        if (word.isEmpty() || count <= 0) {
+            return;
+        }
+        known.add(word);
+        Integer id = wordIds.get(word);
+        if (id == null) {
+            id = size++;
+            if (id == words.length) {
+                words = Arrays.copyOf(words, id * 2);
+                frequencies = Arrays.copyOf(frequencies, id * 2);
+            }
+            words[id] = word;
+            wordIds.put(word, id);
+            for (String gram : grams(word)) {
+                grams.computeIfAbsent(gram, g -> new IntList()).add(id);
+            }
+        }
+        frequencies[id] = (int) Math.min(Integer.MAX_VALUE, (long) frequencies[id] + count);
+    }
+
+    /**
+     * Add a word found anywhere in a video (description included), never corrected.
+     */
+    void addKnown(String word) {
+        if (!word.isEmpty()) {
+            known.add(word);
+        }
+    }
+
+    /**
+     * Tell if a word, or a word starting with it, is in a video.
+     */
+    boolean isKnown(String word, boolean prefix) {
+        if (!prefix) {
+            return known.contains(word);
+        }
+        String ceiling = known.ceiling(word);
+        return ceiling != null && ceiling.startsWith(word);
+    }
+
+    /**
+     * Closest word of the names and tags.
+     *
+     * @param word          misspelled word
+     * @param maxEdits      maximum distance
+     * @param deadlineNanos give up after this {@link System#nanoTime()}
+     * @return closest word, the most frequent one for the same distance, or null if none is close enough
+     * @throws TimeoutException deadline reached
+     */
+    String closest(String word, int maxEdits, long deadlineNanos) throws TimeoutException {
+        Set<String> wordGrams = grams(word);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : wordGrams) {
+            IntList ids = grams.get(gram);
+            if (ids != null) {
+                for (int i = 0; i < ids.size; i++) {
+                    shared.merge(ids.values[i], 1, Integer::sum);
+                }
+            }
+        }
+        int minShared = Math.max(1, wordGrams.size() - maxEdits * GRAMS_PER_EDIT);
+        String best = null;
+        int bestDistance = maxEdits + 1;
+        int bestFrequency = 0;
+        int checked = 0;
+        for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+            String other = words[candidate.getKey()];
+            if (candidate.getValue() < minShared || Math.abs(other.length() - word.length()) > maxEdits) {
+                continue;
+            }
+            if (++checked % CLOCK_INTERVAL == 0 && System.nanoTime() - deadlineNanos > 0) {
+                throw new TimeoutException("No correction of '" + word + "' within budget");
+            }
+            int distance = distance(word, other, bestDistance);
+            int frequency = frequencies[candidate.getKey()];
+            if (distance < bestDistance || (distance == bestDistance && best != null
+                    && (frequency > bestFrequency || (frequency == bestFrequency && other.compareTo(best) < 0)))) {
+                best = other;
+                bestDistance = distance;
+                bestFrequency = frequency;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Distinct padded trigrams of a word.
+     */
+    static Set<String> grams(String word) {
+        String padded = '^' + word + '$';
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + N <= padded.length(); i++) {
+            result.add(padded.substring(i, i + N));
+        }
+        return result;
+    }
+
+    /**
+     * Damerau-Levenshtein distance (optimal string alignment) of two words, stopping once over a limit.
+     *
+     * @return distance, or more than limit
+     */
+    static int distance(CharSequence a, CharSequence b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > limit) {
+            return limit + 1;
+        }
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+
+    /**
+     * Number of words which can be suggested.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Growable array of word ids.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.killrvideo.service.search.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Best completions of every short prefix, kept current term by term.
+ * <p>
+ * Each prefix of up to 'maxPrefixLength' characters keeps its most frequent terms, most frequent first. As term
+ * weights only grow, updating the prefixes of a term whose weight changed keeps every list exact: a term out of a
+ * list only comes back by beating its last term. Longer prefixes are served by filtering the list of their parent
+ * prefix, when it holds enough terms. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class PrefixSuggestions {
+
+    private final int maxPrefixLength;
+    private final int termsPerPrefix;
+    private final Map<String, Ranked> prefixes = new HashMap<>();
+
+    /**
+     * @param maxPrefixLength longest prefix kept
+     * @param termsPerPrefix  terms kept per prefix
+     */
+    PrefixSuggestions(int maxPrefixLength, int termsPerPrefix) {
+        this.maxPrefixLength = Math.max(1, maxPrefixLength);
+        this.termsPerPrefix = Math.max(1, termsPerPrefix);
+    }
+
+    /**
+     * Record the new weight of a term in the lists of its prefixes.
+     */
+    void update(String term, int weight) {
+        for (int length = 1; length <= Math.min(maxPrefixLength, term.length()); length++) {
+            prefixes.computeIfAbsent(term.substring(0, length), prefix -> new Ranked(termsPerPrefix))
+                    .update(term, weight);
+        }
+    }
+
+    /**
+     * Most frequent terms starting with a prefix, from the list of the prefix or of its parent.
+     *
+     * @param prefix prefix, not empty
+     * @param limit  maximum number of terms
+     * @return terms, most frequent first, or null when the lists do not hold enough terms to tell
+     */
+    List<String> complete(String prefix, int limit) {
+        boolean filtered = prefix.length() > maxPrefixLength;
+        Ranked ranked = prefixes.get(filtered ? prefix.substring(0, maxPrefixLength) : prefix);
+        if (ranked == null) {
+            return Collections.emptyList();
+        }
+        List<String> completions = new ArrayList<>(Math.min(limit, ranked.size));
+        for (int i = 0; i < ranked.size && completions.size() < limit; i++) {
+            if (!filtered || ranked.terms[i].startsWith(prefix)) {
+                completions.add(ranked.terms[i]);
+            }
+        }
+        // Terms out of the list may be next
+        if (completions.size() < limit && ranked.truncated) {
+            return null;
+        }
+        return completions;
+    }
+
+    /**
+     * Number of prefixes kept.
+     */
+    int size() {
+        return prefixes.size();
+    }
+
+    /**
+     * Most frequent terms of a prefix, then alphabetical order.
+     */
+    private static final class Ranked {
+        private final String[] terms;
+        private final int[] weights;
+        private int size;
+
+        /** Some terms with this prefix are not in the list. */
+        private boolean truncated;
+
+        private Ranked(int capacity) {
+            terms = new String[capacity];
+            weights = new int[capacity];
+        }
+
+        private void update(String term, int weight) {
+            int index = indexOf(term);
+            if (index < 0) {
+                if (size == terms.length) {
+                    if (!before(term, weight, size - 1)) {
+                        truncated = true;
+                        return;
+                    }
+                    // The last one leaves the list
+                    size--;
+                    truncated = true;
+                }
+                index = size++;
+            }
+            // Weight only grew: move up
+            while (index > 0 && before(term, weight, index - 1)) {
+                terms[index] = terms[index - 1];
+                weights[index] = weights[index - 1];
+                index--;
+            }
+            terms[index] = term;
+            weights[index] = weight;
+        }
+
+        private int indexOf(String term) {
+            for (int i = 0; i < size; i++) {
+                if (terms[i].equals(term)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean before(String term, int weight, int index) {
+            return weight > weights[index] || (weight == weights[index] && term.compareTo(terms[index]) < 0);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.killrvideo.service.search.repository;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.metrics.MetricsWriter;
+import com.killrvideo.utils.QueryAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local typo tolerance: rewrite the words of a query found in no video to the closest word of a video name or tag.
+ * <p>
+ * A word of the query found nowhere (the last one being a prefix) makes the search return nothing, such a query is
+ * rewritten before being searched. Words of 3 to 5 characters accept 1 edit, longer ones up to
+ * 'killrvideo.search.typoTolerance.maxEdits', shorter ones are never corrected. Corrections are computed within
+ * 'killrvideo.search.typoTolerance.budgetMillis', past it the query is searched as typed.
+ * <p>
+ * Loaded at startup from 'killrvideo.videos', then kept current with the 'YouTubeVideoAdded' events. Until the
+ * load completes (or when disabled) no query is corrected.
+ * <p>
+ * The queries checked, corrected and recovered, the recovery rate and the time spent are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class QueryCorrectionsIndex implements MetricsWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryCorrectionsIndex.class);
+    private static final String QUERY_VIDEOS_WORDS =
+            "SELECT name, tags, description " +
+            "FROM killrvideo.videos";
+
+    private static final String METRICS_PREFIX = "killrvideo_search_typo_";
+
+    /** Shorter words are not corrected. */
+    private static final int MIN_CORRECTED_LENGTH = 3;
+
+    /** Longer words accept more than one edit. */
+    private static final int ONE_EDIT_MAX_LENGTH = 5;
+
+    private final CqlSession session;
+    private final boolean enabled;
+    private final int loadPageSize;
+    private final int maxEdits;
+    private final long budgetNanos;
+
+    private final NGramIndex index = new NGramIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final LongAdder checkedCount = new LongAdder();
+    private final LongAdder lowRecallCount = new LongAdder();
+    private final LongAdder correctedCount = new LongAdder();
+    private final LongAdder recoveredCount = new LongAdder();
+    private final LongAdder budgetExceededCount = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    public QueryCorrectionsIndex(CqlSession session,
+                                 @Value("${killrvideo.search.typoTolerance.enabled: false}") boolean enabled,
+                                 @Value("${killrvideo.search.typoTolerance.loadPageSize: 1000}") int loadPageSize,
+                                 @Value("${killrvideo.search.typoTolerance.maxEdits: 2}") int maxEdits,
+                                 @Value("${killrvideo.search.typoTolerance.budgetMillis: 20}") long budgetMillis) {
+        this.session = session;
+        this.enabled = enabled;
+        this.loadPageSize = Math.max(1, loadPageSize);
+        this.maxEdits = Math.max(0, maxEdits);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+    }
+
+    /**
+     * Start loading the index, queries are searched as typed meanwhile.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            load().whenComplete((count, error) -> {
+                if (error != null) {
+                    LOGGER.warn("Cannot load query corrections index, queries will not be corrected: {}", error.getMessage());
+                } else {
+                    LOGGER.info("Query corrections index loaded from {} video(s), {} word(s)", count, size());
+                }
+            });
+        }
+    }
+
+    /**
+     * Read the name, tags and description of every video.
+     *
+     * @return number of videos read
+     */
+    CompletableFuture<Long> load() {
+        SimpleStatement stmt = SimpleStatement.newInstance(QUERY_VIDEOS_WORDS)
+                .setPageSize(loadPageSize)
+                .setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+        return session.executeAsync(stmt)
+                .thenCompose(rs -> loadPage(rs, 0L))
+                .thenApply(count -> {
+                    ready = true;
+                    return count;
+                })
+                .toCompletableFuture();
+    }
+
+    private CompletionStage<Long> loadPage(AsyncResultSet rs, long count) {
+        long loaded = count;
+        for (Row row : rs.currentPage()) {
+            addVideo(row.getString(Video.COLUMN_NAME), row.getSet(Video.COLUMN_TAGS, String.class),
+                    row.getString(Video.COLUMN_DESCRIPTION));
+            loaded++;
+        }
+        if (rs.hasMorePages()) {
+            final long total = loaded;
+            return rs.fetchNextPage().thenCompose(next -> loadPage(next, total));
+        }
+        return CompletableFuture.completedFuture(loaded);
+    }
+
+    /**
+     * Index the words of a video, name and tags words becoming candidate corrections.
+     */
+    public void addVideo(String name, Collection<String> tags, String description) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> words = new HashMap<>();
+        QueryAnalyzer.NO_STOP_WORDS.analyze(name, word -> words.merge(word, 1, Integer::sum));
+        if (tags != null) {
+            tags.forEach(tag -> QueryAnalyzer.NO_STOP_WORDS.analyze(tag, word -> words.merge(word, 1, Integer::sum)));
+        }
+        List<String> descriptionWords = QueryAnalyzer.NO_STOP_WORDS.terms(description);
+        lock.writeLock().lock();
+        try {
+            words.forEach(index::add);
+            descriptionWords.forEach(index::addKnown);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Correct the words of a query found in no video.
+     *
+     * @param query query as typed
+     * @return corrected query (lower case words), or empty if it needs no correction, none is found within the
+     *         budget or the index is not available
+     */
+    public Optional<String> correct(String query) {
+        return correct(query, true);
+    }
+
+    /**
+     * Correct the words of a query found in no video.
+     *
+     * @param query    query as typed
+     * @param recorded count the query in the metrics, false for the cursors of streamed searches and facets
+     * @return corrected query, or empty
+     */
+    Optional<String> correct(String query, boolean recorded) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        long starts = System.nanoTime();
+        List<String> terms = QueryAnalyzer.NO_STOP_WORDS.terms(query);
+        boolean lowRecall = false;
+        boolean corrected = false;
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                if (index.isKnown(term, i == terms.size() - 1)) {
+                    continue;
+                }
+                lowRecall = true;
+                int edits = maxEdits(term);
+                String closest = edits == 0 ? null : index.closest(term, edits, starts + budgetNanos);
+                if (closest != null) {
+                    terms.set(i, closest);
+                    corrected = true;
+                }
+            }
+        } catch (TimeoutException e) {
+            if (recorded) {
+                budgetExceededCount.increment();
+            }
+            corrected = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (recorded) {
+            checkedCount.increment();
+            latencyNanos.add(System.nanoTime() - starts);
+            if (lowRecall) {
+                lowRecallCount.increment();
+            }
+            if (corrected) {
+                correctedCount.increment();
+            }
+        }
+        if (!corrected) {
+            return Optional.empty();
+        }
+        String correction = String.join(" ", terms);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Query '{}' searched as '{}', corrected in {} micros", query, correction,
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - starts));
+        }
+        return Optional.of(correction);
+    }
+
+    private int maxEdits(String term) {
+        if (term.length() < MIN_CORRECTED_LENGTH) {
+            return 0;
+        }
+        return term.length() <= ONE_EDIT_MAX_LENGTH ? Math.min(1, maxEdits) : maxEdits;
+    }
+
+    /**
+     * Record if the search of a corrected query found videos.
+     */
+    public void onCorrectedResults(boolean found) {
+        if (found) {
+            recoveredCount.increment();
+        }
+    }
+
+    /**
+     * Write the counts of queries checked, corrected and recovered, the recovery rate and the average check time.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "checked_total",
+                "Search queries checked for words found in no video.", getCheckedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "low_recall_total",
+                "Search queries with a word found in no video.", getLowRecallCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "corrected_total",
+                "Search queries rewritten to the closest words.", getCorrectedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "recovered_total",
+                "Corrected search queries which found videos.", getRecoveredCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "budget_exceeded_total",
+                "Search queries not corrected within the time budget.", getBudgetExceededCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "recovery_ratio",
+                "Share of the search queries with a word found in no video which found videos once corrected.",
+                getRecoveryRate());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "check_latency_average_seconds",
+                "Average time spent checking a search query.", getAverageLatencyMicros() / 1_000_000.0);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Number of distinct words of names and tags.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of queries checked. */
+    public long getCheckedCount() {
+        return checkedCount.sum();
+    }
+
+    /** Number of queries with a word found in no video. */
+    public long getLowRecallCount() {
+        return lowRecallCount.sum();
+    }
+
+    /** Number of queries rewritten. */
+    public long getCorrectedCount() {
+        return correctedCount.sum();
+    }
+
+    /** Number of queries rewritten which found videos. */
+    public long getRecoveredCount() {
+        return recoveredCount.sum();
+    }
+
+    /** Number of queries not corrected within the budget. */
+    public long getBudgetExceededCount() {
+        return budgetExceededCount.sum();
+    }
+
+    /** Share of the queries with a word found in no video which found videos once corrected. */
+    public double getRecoveryRate() {
+        long lowRecall = lowRecallCount.sum();
+        return lowRecall == 0 ? 0 : (double) recoveredCount.sum() / lowRecall;
+    }
+
+    /** Average time spent checking a query, in microseconds. */
+    public double getAverageLatencyMicros() {
+        long checked = checkedCount.sum();
+        return checked == 0 ? 0 : latencyNanos.sum() / 1000.0 / checked;
+    }
+}
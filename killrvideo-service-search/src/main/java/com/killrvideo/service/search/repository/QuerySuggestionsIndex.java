@@ -0,0 +1,201 @@
+package com.killrvideo.service.search.repository;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.utils.QueryAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local autocomplete index of the words of video names and tags, weighted by their number of occurrences.
+ * <p>
+ * Loaded at startup from 'killrvideo.videos', then kept current with the 'YouTubeVideoAdded' events. Until the
+ * load completes (or when disabled) no suggestion is served from here and callers fall back to DSE Search.
+ * <p>
+ * The best completions of the prefixes of up to 'killrvideo.search.suggestions.index.prefixLength' characters
+ * are kept as words are added, the short prefixes typed first are then served without walking the trie. Longer
+ * prefixes filter the completions of their parent prefix, the trie is only walked when they are not enough.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class QuerySuggestionsIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuerySuggestionsIndex.class);
+    private static final String QUERY_VIDEOS_TERMS =
+            "SELECT name, tags " +
+            "FROM killrvideo.videos";
+
+    private final CqlSession session;
+    private final boolean enabled;
+    private final int loadPageSize;
+    private final QueryAnalyzer analyzer;
+
+    private final SuggestionTrie trie = new SuggestionTrie();
+    private final PrefixSuggestions prefixSuggestions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private final LongAdder prefixHitCount = new LongAdder();
+    private final LongAdder trieCount = new LongAdder();
+
+    public QuerySuggestionsIndex(CqlSession session,
+                                 @Value("${killrvideo.search.suggestions.index.enabled: false}") boolean enabled,
+                                 @Value("${killrvideo.search.suggestions.index.loadPageSize: 1000}") int loadPageSize,
+                                 @Value("${killrvideo.search.suggestions.index.prefixLength: 3}") int prefixLength,
+                                 @Value("${killrvideo.search.suggestions.index.suggestionsPerPrefix: 20}") int suggestionsPerPrefix,
+                                 @Value("#{'${killrvideo.search.ignoredWords:}'.split(',')}") Set<String> ignoredWords) {
+        this.session = session;
+        this.enabled = enabled;
+        this.loadPageSize = Math.max(1, loadPageSize);
+        this.prefixSuggestions = new PrefixSuggestions(prefixLength, suggestionsPerPrefix);
+        this.analyzer = new QueryAnalyzer(ignoredWords);
+    }
+
+    /**
+     * Start loading the index, the service is available meanwhile.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            load().whenComplete((count, error) -> {
+                if (error != null) {
+                    LOGGER.warn("Cannot load query suggestions index, DSE Search will be used: {}", error.getMessage());
+                } else {
+                    LOGGER.info("Query suggestions index loaded from {} video(s), {} term(s)", count, size());
+                }
+            });
+        }
+    }
+
+    /**
+     * Read the name and tags of every video.
+     *
+     * @return number of videos read
+     */
+    CompletableFuture<Long> load() {
+        SimpleStatement stmt = SimpleStatement.newInstance(QUERY_VIDEOS_TERMS)
+                .setPageSize(loadPageSize)
+                .setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+        return session.executeAsync(stmt)
+                .thenCompose(rs -> loadPage(rs, 0L))
+                .thenApply(count -> {
+                    ready = true;
+                    return count;
+                })
+                .toCompletableFuture();
+    }
+
+    private CompletionStage<Long> loadPage(AsyncResultSet rs, long count) {
+        long loaded = count;
+        for (Row row : rs.currentPage()) {
+            addVideo(row.getString(Video.COLUMN_NAME), row.getSet(Video.COLUMN_TAGS, String.class));
+            loaded++;
+        }
+        if (rs.hasMorePages()) {
+            final long total = loaded;
+            return rs.fetchNextPage().thenCompose(next -> loadPage(next, total));
+        }
+        return CompletableFuture.completedFuture(loaded);
+    }
+
+    /**
+     * Index the words of a video name and tags.
+     */
+    public void addVideo(String name, Collection<String> tags) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> words = new HashMap<>();
+        analyzer.analyze(name, word -> words.merge(word, 1, Integer::sum));
+        if (tags != null) {
+            tags.forEach(tag -> analyzer.analyze(tag, word -> words.merge(word, 1, Integer::sum)));
+        }
+        lock.writeLock().lock();
+        try {
+            words.forEach((word, count) -> {
+                trie.add(word, count);
+                prefixSuggestions.update(word, trie.weight(word));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suggest completions of the last word of a query, most frequent first.
+     *
+     * @param query query typed so far
+     * @param limit maximum number of suggestions
+     * @return suggestions (the query with its last word completed), or empty if the index is not available
+     */
+    public Optional<Set<String>> suggest(String query, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        int lastSpace = normalized.lastIndexOf(' ');
+        String leading = normalized.substring(0, lastSpace + 1);
+        String prefix = normalized.substring(lastSpace + 1);
+        if (prefix.isEmpty()) {
+            return Optional.of(Collections.emptySet());
+        }
+        List<String> completions;
+        lock.readLock().lock();
+        try {
+            completions = prefixSuggestions.complete(prefix, Math.max(1, limit));
+            if (completions != null) {
+                prefixHitCount.increment();
+            } else {
+                trieCount.increment();
+                completions = trie.complete(prefix, Math.max(1, limit));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (String completion : completions) {
+            suggestions.add(leading + completion);
+        }
+        return Optional.of(suggestions);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Number of suggestions served from the completions kept per prefix. */
+    public long getPrefixHitCount() {
+        return prefixHitCount.sum();
+    }
+
+    /** Number of suggestions which walked the trie. */
+    public long getTrieCount() {
+        return trieCount.sum();
+    }
+
+    /**
+     * Number of distinct terms.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return trie.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
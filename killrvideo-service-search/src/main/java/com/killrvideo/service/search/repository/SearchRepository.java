@@ -3,25 +3,29 @@ package com.killrvideo.service.search.repository;
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.*;
-import com.killrvideo.dse.dao.VideoRowMapper;
 import com.killrvideo.dse.dto.ResultListPage;
 import com.killrvideo.dse.dto.Video;
-import com.killrvideo.dse.utils.PageableQuery;
-import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.service.search.dto.TagFacet;
+import com.killrvideo.service.search.engine.DseSearchEngine;
+import com.killrvideo.service.search.engine.SearchEngine;
 import com.killrvideo.service.search.request.GetQuerySuggestionsRequestData;
 import com.killrvideo.service.search.request.SearchVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 /**
  * Implementations of operation for Videos.
@@ -35,9 +39,6 @@ public class SearchRepository {
             "SELECT name, tags, description " +
             "FROM killrvideo.videos " +
             "WHERE solr_query = ?";
-    private static final String QUERY_VIDEO_BY_TAGS = "SELECT * " +
-            "FROM killrvideo.videos " +
-            "WHERE solr_query = ?";
 
     /**
      * Wrap search queries with "paging":"driver" to dynamically enable
@@ -47,112 +48,262 @@ public class SearchRepository {
     private static final String PAGING_DRIVER_START = "{\"q\":\"";
     private static final String PAGING_DRIVER_END = "\", \"paging\":\"driver\"}";
 
+    /**
+     * Paging states of the corrected queries: prefix, corrected query (Base64 URL), separator, paging state of the
+     * engine (hexadecimal or offset, without separator).
+     */
+    static final String CORRECTED_PAGING_STATE_PREFIX = "corrected:";
+    private static final char CORRECTED_PAGING_STATE_SEPARATOR = ':';
+
     /**
      * Precompile statements to speed up queries.
      */
     private final PreparedStatement findSuggestedTags;
 
-    private final PageableQuery<Video> findVideosByTags;
-
     /**
-     * Create a set of sentence conjunctions and other "undesirable"
-     * words we will use later to exclude from search results.
-     * Had to use .split() below because of the following conversation:
-     * https://github.com/spring-projects/spring-boot/issues/501
+     * Words of the suggestions, without the sentence conjunctions and other "undesirable" words.
      */
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
-    @Value("#{'${killrvideo.search.ignoredWords}'.split(',')}")
-    private final Set<String> ignoredWords = new HashSet<>();
+    private final QueryAnalyzer analyzer;
 
     private final CqlSession session;
 
-    public SearchRepository(CqlSession session, PageableQueryFactory pageableQueryFactory, VideoRowMapper videoRowMapper) {
+    /**
+     * Local autocomplete index, DSE Search is queried while it is not available.
+     */
+    private final QuerySuggestionsIndex querySuggestionsIndex;
+
+    /**
+     * Engine searching videos ('killrvideo.search.engine'), and DSE Search as fallback.
+     */
+    private final SearchEngine searchEngine;
+    private final SearchEngine dseSearchEngine;
+
+    /**
+     * Pages of the popular searches.
+     */
+    private final SearchResultsCache searchResultsCache;
+
+    /**
+     * Corrections of the misspelled queries.
+     */
+    private final QueryCorrectionsIndex queryCorrectionsIndex;
+
+    /**
+     * Number of videos found whose tags are counted for the facets of a search.
+     */
+    private final int facetsSampleSize;
+
+    public SearchRepository(CqlSession session, QuerySuggestionsIndex querySuggestionsIndex,
+                            SearchResultsCache searchResultsCache,
+                            QueryCorrectionsIndex queryCorrectionsIndex,
+                            List<SearchEngine> searchEngines,
+                            @Value("${killrvideo.search.engine: dse}") String engine,
+                            @Value("${killrvideo.search.facets.sampleSize: 500}") int facetsSampleSize,
+                            @Value("#{'${killrvideo.search.ignoredWords:}'.split(',')}") Set<String> ignoredWords) {
         this.session = session;
+        this.analyzer = new QueryAnalyzer(ignoredWords);
+        this.querySuggestionsIndex = querySuggestionsIndex;
+        this.searchResultsCache = searchResultsCache;
+        this.queryCorrectionsIndex = queryCorrectionsIndex;
+        this.facetsSampleSize = Math.max(1, facetsSampleSize);
+        this.dseSearchEngine = findEngine(searchEngines, DseSearchEngine.NAME);
+        this.searchEngine = findEngine(searchEngines, engine.trim());
+        LOGGER.info("Videos are searched with the '{}' engine", searchEngine.getName());
 
         // Statement for tags
         this.findSuggestedTags = session.prepare(QUERY_SUGGESTED_TAGS);
+    }
 
-        // Statement for videos
-        this.findVideosByTags = pageableQueryFactory.newPageableQuery(
-                QUERY_VIDEO_BY_TAGS,
-                ConsistencyLevel.LOCAL_ONE,
-                videoRowMapper::map
-        );
+    private static SearchEngine findEngine(List<SearchEngine> searchEngines, String name) {
+        return searchEngines.stream()
+                .filter(searchEngine -> searchEngine.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown search engine '" + name + "'"));
     }
 
     /**
-     * Do a Solr query against DSE search to find videos using Solr's ExtendedDisMax query parser. Query the
-     * name, tags, and description fields in the videos table giving a boost to matches in the name and tags
-     * fields as opposed to the description field
-     * More info on ExtendedDisMax: http://wiki.apache.org/solr/ExtendedDisMax
+     * Search videos from the {@link SearchResultsCache}, or with the configured {@link SearchEngine} (DSE Search
+     * while it is not available). Queries with a word found in no video are searched as corrected by the
+     * {@link QueryCorrectionsIndex}.
      * <p>
-     * Notice the "paging":"driver" parameter.  This is to ensure we dynamically
-     * enable pagination regardless of our nodes dse.yaml setting.
-     * https://docs.datastax.com/en/dse/5.1/dse-dev/datastax_enterprise/search/cursorsDeepPaging.html#cursorsDeepPaging__srchCursorCQL
+     * Only the first page is corrected: the paging states of a corrected query carry the query searched, so that its
+     * next pages are read with the same query even if the index learns new words meanwhile.
      */
     public CompletableFuture<ResultListPage<Video>> searchVideosAsync(SearchVideosRequestData request) {
-        return findVideosByTags.queryNext(
-                Optional.of(request.getPageSize()),
-                request.getPagingState(),
-                buildSolrQueryToSearchVideos(request.getQuery())
-        );
+        if (request.getPagingState().isPresent()) {
+            Optional<SearchVideosRequestData> carried;
+            try {
+                carried = correctedNextPage(request);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            if (carried.isEmpty()) {
+                return searchResultsCache.get(request, this::searchWithEngineAsync);
+            }
+            return searchResultsCache.get(carried.get(), this::searchWithEngineAsync)
+                    .thenApply(page -> withCorrectedPagingState(page, carried.get().getQuery()));
+        }
+        Optional<String> correction = queryCorrectionsIndex.correct(request.getQuery());
+        if (correction.isEmpty()) {
+            return searchResultsCache.get(request, this::searchWithEngineAsync);
+        }
+        return searchResultsCache.get(corrected(request, correction.get(), Optional.empty()),
+                        this::searchWithEngineAsync)
+                .thenApply(page -> {
+                    queryCorrectionsIndex.onCorrectedResults(!page.getResults().isEmpty());
+                    return withCorrectedPagingState(page, correction.get());
+                });
     }
 
     /**
-     * In this case we are using DSE Search to query across the name, tags, and
-     * description columns with a boost on name and tags.  Note that tags is a
-     * collection of tags per each row with no extra steps to include all data
-     * in the collection.
-     * <p>
-     * This is a more comprehensive search as
-     * we are not just looking at values within the tags column, but also looking
-     * across the other fields for similar occurrences.  This is especially helpful
-     * if there are no tags for a given video as it is more likely to give us results.
-     */
-    private String buildSolrQueryToSearchVideos(String query) {
-        LOGGER.debug("Start searching videos by name, tag, and description");
-        // Escaping special characters for query
-        final String replaceFind = " ";
-        final String replaceWith = " AND ";
-        /*
-         * Perform a query using DSE search to find videos. Query the
-         * name, tags, and description columns in the videos table giving a boost to matches in the name and tags
-         * columns as opposed to the description column.
-         */
-        String requestQuery = query.trim()
-                .replaceAll(replaceFind, Matcher.quoteReplacement(replaceWith));
-
-        /*
-         * In this case we are using DSE Search to query across the name, tags, and
-         * description columns with a boost on name and tags.  The boost will put
-         * more priority on the name column, then tags, and finally description.
-         *
-         * Note that tags is a
-         * collection of tags per each row with no extra steps to include all data
-         * in the collection.  This is a more comprehensive search as
-         * we are not just looking at values within the tags column, but also looking
-         * across the other columns for similar occurrences.  This is especially helpful
-         * if there are no tags for a given video as it is more likely to give us results.
-         *
-         * Refer to the following documentation for a deeper look at term boosting:
-         * https://docs.datastax.com/en/dse/6.0/cql/cql/cql_using/search_index/advancedTerms.html
-         */
-        return new StringBuilder()
-                .append(PAGING_DRIVER_START)
-                .append("name:(").append(requestQuery).append("*)^4 OR ")
-                .append("tags:(").append(requestQuery).append("*)^2 OR ")
-                .append("description:(").append(requestQuery).append("*)")
-                .append(PAGING_DRIVER_END)
-                .toString();
+     * Search videos with the configured {@link SearchEngine} (DSE Search while it is not available), for the calls
+     * of the warm-up: corrected as {@link #searchVideosAsync}, neither through the {@link SearchResultsCache} nor
+     * counted in the metrics of the {@link QueryCorrectionsIndex}.
+     */
+    public CompletableFuture<ResultListPage<Video>> searchVideosUncachedAsync(SearchVideosRequestData request) {
+        if (request.getPagingState().isPresent()) {
+            Optional<SearchVideosRequestData> carried;
+            try {
+                carried = correctedNextPage(request);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return carried
+                    .map(corrected -> searchWithEngineAsync(corrected)
+                            .thenApply(page -> withCorrectedPagingState(page, corrected.getQuery())))
+                    .orElseGet(() -> searchWithEngineAsync(request));
+        }
+        Optional<String> correction = queryCorrectionsIndex.correct(request.getQuery(), false);
+        if (correction.isEmpty()) {
+            return searchWithEngineAsync(request);
+        }
+        return searchWithEngineAsync(corrected(request, correction.get(), Optional.empty()))
+                .thenApply(page -> withCorrectedPagingState(page, correction.get()));
+    }
+
+    private static SearchVideosRequestData corrected(SearchVideosRequestData request, String query,
+                                                     Optional<String> pagingState) {
+        return new SearchVideosRequestData(query, request.getPageSize(), pagingState);
+    }
+
+    /**
+     * Request of the next page of a corrected query: corrected query and paging state of the engine.
+     *
+     * @return empty when the paging state is not the one of a corrected query
+     * @throws IllegalArgumentException when the paging state of a corrected query is malformed
+     */
+    static Optional<SearchVideosRequestData> correctedNextPage(SearchVideosRequestData request) {
+        return request.getPagingState()
+                .filter(pagingState -> pagingState.startsWith(CORRECTED_PAGING_STATE_PREFIX))
+                .map(pagingState -> {
+                    int separator = pagingState.indexOf(CORRECTED_PAGING_STATE_SEPARATOR,
+                            CORRECTED_PAGING_STATE_PREFIX.length());
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Invalid paging state '" + pagingState + "'");
+                    }
+                    String query;
+                    try {
+                        query = new String(Base64.getUrlDecoder().decode(
+                                pagingState.substring(CORRECTED_PAGING_STATE_PREFIX.length(), separator)),
+                                StandardCharsets.UTF_8);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Invalid paging state '" + pagingState + "'", e);
+                    }
+                    return corrected(request, query, Optional.of(pagingState.substring(separator + 1)));
+                });
+    }
+
+    /**
+     * Page whose paging state carries the corrected query it was searched with.
+     */
+    static ResultListPage<Video> withCorrectedPagingState(ResultListPage<Video> page, String query) {
+        if (page.getPagingState().isEmpty()) {
+            return page;
+        }
+        String carried = CORRECTED_PAGING_STATE_PREFIX
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(query.getBytes(StandardCharsets.UTF_8))
+                + CORRECTED_PAGING_STATE_SEPARATOR + page.getPagingState().get();
+        return new ResultListPage<>(page.getResults(), Optional.of(carried));
+    }
+
+    /**
+     * Read every page of results of a search with the configured {@link SearchEngine} (DSE Search while it is not
+     * available), pages are not cached. Misspelled queries are corrected as for {@link #searchVideosAsync}.
+     *
+     * @param request query, size of the pages and paging state of the first one
+     * @return cursor over the pages, to close when done
+     * @throws IllegalArgumentException when the paging state of a corrected query is malformed
+     */
+    public PageCursor<Video> openSearchCursor(SearchVideosRequestData request) {
+        SearchEngine engine = searchEngine.isAvailable() ? searchEngine : dseSearchEngine;
+        if (request.getPagingState().isPresent()) {
+            return engine.openCursor(correctedNextPage(request).orElse(request));
+        }
+        return engine.openCursor(queryCorrectionsIndex.correct(request.getQuery(), false)
+                .map(query -> corrected(request, query, Optional.empty()))
+                .orElse(request));
     }
 
     /**
-     * Search for tags starting with provided query string (ASYNC).
+     * Count the tags of the first videos found by a search ('killrvideo.search.facets.sampleSize'), read with a
+     * single search cursor whatever the number of tags. Counts are kept in the {@link SearchResultsCache}, the pages
+     * of a query share them.
+     *
+     * @param request search request, its page size and paging state are ignored
+     * @param limit   maximum number of tags
+     * @return most frequent tags first
+     */
+    public CompletableFuture<List<TagFacet>> searchTagFacetsAsync(SearchVideosRequestData request, int limit) {
+        return searchResultsCache.getTagFacets(request.getQuery(), limit, query -> countTagFacetsAsync(query, limit));
+    }
+
+    private CompletableFuture<List<TagFacet>> countTagFacetsAsync(String query, int limit) {
+        PageCursor<Video> cursor = openSearchCursor(new SearchVideosRequestData(query, facetsSampleSize, Optional.empty()));
+        TagFacetCounter counter = new TagFacetCounter();
+        return countTags(cursor, counter, 0)
+                .whenComplete((count, error) -> cursor.close())
+                .thenApply(count -> {
+                    LOGGER.debug("{} distinct tag(s) counted over {} video(s) found", counter.size(), count);
+                    return counter.top(limit);
+                });
+    }
+
+    private CompletableFuture<Integer> countTags(PageCursor<Video> cursor, TagFacetCounter counter, int counted) {
+        return cursor.next().thenCompose(page -> {
+            int total = counted;
+            for (Video video : page.getResults()) {
+                if (total == facetsSampleSize) {
+                    break;
+                }
+                if (video.getTags() != null) {
+                    video.getTags().forEach(counter::add);
+                }
+                total++;
+            }
+            if (total == facetsSampleSize || page.getResults().isEmpty() || page.getPagingState().isEmpty()) {
+                return CompletableFuture.completedFuture(total);
+            }
+            return countTags(cursor, counter, total);
+        });
+    }
+
+    private CompletableFuture<ResultListPage<Video>> searchWithEngineAsync(SearchVideosRequestData request) {
+        SearchEngine engine = searchEngine.isAvailable() ? searchEngine : dseSearchEngine;
+        return engine.searchVideosAsync(request);
+    }
+
+    /**
+     * Search for tags starting with provided query string (ASYNC), from the {@link QuerySuggestionsIndex} when
+     * available.
      *
      * @param request     request.
      * @return tags.
      */
     public CompletableFuture<Set<String>> getQuerySuggestionsAsync(GetQuerySuggestionsRequestData request) {
+        Optional<Set<String>> indexed = querySuggestionsIndex.suggest(request.getQuery(), request.getPageSize());
+        if (indexed.isPresent()) {
+            return CompletableFuture.completedFuture(indexed.get());
+        }
         BoundStatement stmt = createStatementToQuerySuggestions(request.getQuery(), request.getPageSize());
         return this.session.executeAsync(stmt).toCompletableFuture()
                 .thenApply(rs -> mapTagSet(rs, request.getQuery()));
@@ -168,11 +319,18 @@ public class SearchRepository {
      * https://docs.datastax.com/en/dse/5.1/dse-dev/datastax_enterprise/search/cursorsDeepPaging.html#cursorsDeepPaging__srchCursorCQL
      */
     private BoundStatement createStatementToQuerySuggestions(String query, int fetchSize) {
+        final StringBuilder terms = new StringBuilder(query.length());
+        QueryAnalyzer.NO_STOP_WORDS.analyze(query, term -> {
+            if (terms.length() > 0) {
+                terms.append(' ');
+            }
+            QueryAnalyzer.appendEscaped(term, terms);
+        });
         final StringBuilder solrQuery = new StringBuilder()
                 .append(PAGING_DRIVER_START)
-                .append("name:(").append(query).append("*) OR ")
-                .append("tags:(").append(query).append("*) OR ")
-                .append("description:(").append(query).append("*)")
+                .append("name:(").append(terms).append("*) OR ")
+                .append("tags:(").append(terms).append("*) OR ")
+                .append("description:(").append(terms).append("*)")
                 .append(PAGING_DRIVER_END);
         LOGGER.debug("getQuerySuggestions() solr_query is : {}", solrQuery);
 
@@ -189,28 +347,33 @@ public class SearchRepository {
      * like "c", "ca", or "cas" as someone starts to type the word "cassandra".
      * <p>
      * For each of these cases we are looking for any words in the search data that
-     * start with the values above.
+     * start with the values above (the last word of the query, the leading ones are kept).
      *
      * @param rs           current resultset
      * @param requestQuery query
      * @return set of tags
      */
     private TreeSet<String> mapTagSet(AsyncResultSet rs, String requestQuery) {
-        final Pattern checkRegex = Pattern.compile("(?i)\\b" + requestQuery + "[a-z]*\\b");
+        final String normalized = requestQuery.trim().toLowerCase(Locale.ROOT);
+        final String leading = normalized.substring(0, normalized.lastIndexOf(' ') + 1);
+        final String prefix = normalized.substring(leading.length());
         TreeSet<String> suggestionSet = new TreeSet<>();
+        Consumer<String> collectSuggestion = word -> {
+            if (word.startsWith(prefix)) {
+                suggestionSet.add(leading + word);
+            }
+        };
         for (Row row : rs.currentPage()) {
             /*
              * Since I simply want matches from both the name and tags fields
-             * concatenate them together, apply regex, and add any results into
+             * analyze them both, and add any results into
              * our suggestionSet TreeSet.  The TreeSet will handle any duplicates.
              */
-            String name = row.getString(Video.COLUMN_NAME);
+            analyzer.analyze(row.getString(Video.COLUMN_NAME), collectSuggestion);
             Set<String> tags = row.getSet(Video.COLUMN_TAGS, String.class);
-            Matcher regexMatcher = checkRegex.matcher(name.concat(tags.toString()));
-            while (regexMatcher.find()) {
-                suggestionSet.add(regexMatcher.group().toLowerCase());
+            if (tags != null) {
+                tags.forEach(tag -> analyzer.analyze(tag, collectSuggestion));
             }
-            suggestionSet.removeAll(ignoredWords);
         }
         LOGGER.debug("TagSet returned are {}", suggestionSet);
         return suggestionSet;
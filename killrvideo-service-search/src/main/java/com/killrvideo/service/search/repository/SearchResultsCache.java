@@ -0,0 +1,227 @@
+package com.killrvideo.service.search.repository;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.metrics.MetricsWriter;
+import com.killrvideo.service.search.dto.TagFacet;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
+import com.killrvideo.utils.SingleFlightCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Pages of search results of the popular queries, kept for a short time.
+ * <p>
+ * Pages are keyed by the normalized query (trimmed, lower case, single spaces), the page size and the paging
+ * state, and the same query searched concurrently runs once. A new video drops the cached pages of the queries
+ * it may match: any word of the query being the start of a word of the video (a superset of the queries whose
+ * results may change). Pages are otherwise dropped after their time to live, or when room is needed.
+ * <p>
+ * The tag facets of a query are kept the same way, counted once for all its pages.
+ * <p>
+ * Hits, misses, pages dropped and the hit rate are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class SearchResultsCache implements MetricsWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultsCache.class);
+
+    private static final String METRICS_PREFIX = "killrvideo_search_results_cache_";
+
+    private final boolean enabled;
+    private final SingleFlightCache<SearchKey, ResultListPage<Video>> pages;
+    private final SingleFlightCache<SearchKey, List<TagFacet>> tagFacets;
+
+    public SearchResultsCache(@Value("${killrvideo.search.resultsCache.enabled: false}") boolean enabled,
+                              @Value("${killrvideo.search.resultsCache.maxEntries: 1000}") int maxEntries,
+                              @Value("${killrvideo.search.resultsCache.ttlSeconds: 60}") int ttlSeconds) {
+        this.enabled = enabled;
+        this.pages = new SingleFlightCache<>(Duration.ofSeconds(Math.max(0, ttlSeconds)), maxEntries);
+        this.tagFacets = new SingleFlightCache<>(Duration.ofSeconds(Math.max(0, ttlSeconds)), maxEntries);
+    }
+
+    /**
+     * Get a page of results from memory or from the search.
+     *
+     * @param request search request
+     * @param search  search of a (normalized) request
+     * @return page of results
+     */
+    public CompletableFuture<ResultListPage<Video>> get(SearchVideosRequestData request,
+                                                       Function<SearchVideosRequestData, CompletableFuture<ResultListPage<Video>>> search) {
+        if (!enabled) {
+            return search.apply(request);
+        }
+        SearchKey key = new SearchKey(normalize(request.getQuery()), request.getPageSize(),
+                request.getPagingState().orElse(""));
+        return pages.get(key, k -> search.apply(new SearchVideosRequestData(k.query, k.pageSize,
+                request.getPagingState())));
+    }
+
+    /**
+     * Get the tag facets of a query from memory or from the count.
+     *
+     * @param query query as typed
+     * @param limit maximum number of tags
+     * @param count count of the tags of a (normalized) query
+     * @return most frequent tags first
+     */
+    public CompletableFuture<List<TagFacet>> getTagFacets(String query, int limit,
+                                                          Function<String, CompletableFuture<List<TagFacet>>> count) {
+        if (!enabled) {
+            return count.apply(query);
+        }
+        return tagFacets.get(new SearchKey(normalize(query), limit, ""), k -> count.apply(k.query));
+    }
+
+    /**
+     * Drop the pages and tag facets of the queries a new video may match.
+     *
+     * @return number of pages dropped
+     */
+    public int onVideoAdded(String name, Collection<String> tags, String description) {
+        if (!enabled) {
+            return 0;
+        }
+        Set<String> videoWords = new HashSet<>();
+        QueryAnalyzer.NO_STOP_WORDS.analyze(name, videoWords::add);
+        if (tags != null) {
+            tags.forEach(tag -> QueryAnalyzer.NO_STOP_WORDS.analyze(tag, videoWords::add));
+        }
+        QueryAnalyzer.NO_STOP_WORDS.analyze(description, videoWords::add);
+        int dropped = pages.invalidateIf(key -> key.mayMatch(videoWords));
+        tagFacets.invalidateIf(key -> key.mayMatch(videoWords));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} cached search page(s) dropped for new video '{}', hit rate:{}", dropped, name, getHitRate());
+        }
+        return dropped;
+    }
+
+    static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Write the hits, misses, collapsed searches, pages dropped, number of pages and hit rate.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "hits_total",
+                "Searches served from the results cache.", getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "misses_total",
+                "Searches run by the results cache.", getMissCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "collapsed_total",
+                "Searches which joined the same search running.", getCollapsedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "invalidations_total",
+                "Cached search pages dropped because of new videos.", getInvalidationCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "evictions_total",
+                "Cached search pages dropped to make room.", getEvictionCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "tag_facets_hits_total",
+                "Tag facets served from the results cache.", tagFacets.getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "tag_facets_misses_total",
+                "Tag facets counted by the results cache.", tagFacets.getLoadCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "entries", "Cached search pages.", size());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "hit_ratio",
+                "Share of the searches served from the results cache.", getHitRate());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Number of searches served from memory. */
+    public long getHitCount() {
+        return pages.getHitCount();
+    }
+
+    /** Number of searches which ran, others were served from memory or joined a running one. */
+    public long getMissCount() {
+        return pages.getLoadCount();
+    }
+
+    /** Number of searches which joined the same search running. */
+    public long getCollapsedCount() {
+        return pages.getCollapsedCount();
+    }
+
+    /** Number of pages dropped because of new videos. */
+    public long getInvalidationCount() {
+        return pages.getInvalidationCount();
+    }
+
+    /** Number of pages dropped to make room. */
+    public long getEvictionCount() {
+        return pages.getEvictionCount();
+    }
+
+    /** Share of searches served from memory. */
+    public double getHitRate() {
+        return pages.getHitRate();
+    }
+
+    /** Number of cached pages. */
+    public int size() {
+        return pages.size();
+    }
+
+    /**
+     * Normalized query, page size (or number of tag facets) and paging state.
+     */
+    private static final class SearchKey {
+        private final String query;
+        private final int pageSize;
+        private final String pagingState;
+        private final List<String> words;
+
+        private SearchKey(String query, int pageSize, String pagingState) {
+            this.query = query;
+            this.pageSize = pageSize;
+            this.pagingState = pagingState;
+            this.words = QueryAnalyzer.NO_STOP_WORDS.terms(query);
+        }
+
+        /**
+         * Tell if a video with these words may be in the results.
+         */
+        private boolean mayMatch(Set<String> videoWords) {
+            if (words.isEmpty()) {
+                return true;
+            }
+            for (String word : words) {
+                for (String videoWord : videoWords) {
+                    if (videoWord.startsWith(word)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey other = (SearchKey) o;
+            return pageSize == other.pageSize && query.equals(other.query) && pagingState.equals(other.pagingState);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, pageSize, pagingState);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.killrvideo.service.search.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Prefix tree of search terms weighted by their number of occurrences.
+ * <p>
+ * Children of a node are kept in two parallel arrays sorted by character (no map per node), and each node keeps
+ * the highest weight of the terms below it. The best completions of a prefix are then found best first: a branch
+ * is only visited when it can still beat the completions already found. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class SuggestionTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** Best first: highest weight, then alphabetical order. */
+    private static final Comparator<Candidate> BEST_FIRST = Comparator
+            .comparingInt((Candidate candidate) -> candidate.weight).reversed()
+            .thenComparing(candidate -> candidate.text)
+            .thenComparing(candidate -> candidate.node != null);
+
+    private final Node root = new Node();
+
+    /** Number of distinct terms. */
+    private int size;
+
+    /**
+     * Add occurrences of a term.
+     *
+     * @param term   term, not empty
+     * @param weight occurrences to add
+     */
+    void add(String term, int weight) {
+        if (term.isEmpty() || weight <= 0) {
+            return;
+        }
+        Node[] path = new Node[term.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.childOrCreate(term.charAt(i));
+            path[i + 1] = node;
+        }
+        if (node.weight == 0) {
+            size++;
+        }
+        node.weight = (int) Math.min(Integer.MAX_VALUE, (long) node.weight + weight);
+        // Weights only grow: ancestors keep the max of their subtree by a single comparison
+        for (Node ancestor : path) {
+            ancestor.maxWeight = Math.max(ancestor.maxWeight, node.weight);
+        }
+    }
+
+    /**
+     * Most frequent terms starting with a prefix.
+     *
+     * @param prefix prefix, all terms when empty
+     * @param limit  maximum number of terms
+     * @return terms, most frequent first
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>(Math.max(0, limit));
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null || limit <= 0 || node.maxWeight == 0) {
+            return completions;
+        }
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        candidates.add(new Candidate(prefix, node.maxWeight, node));
+        while (!candidates.isEmpty() && completions.size() < limit) {
+            Candidate candidate = candidates.poll();
+            if (candidate.node == null) {
+                completions.add(candidate.text);
+                continue;
+            }
+            Node current = candidate.node;
+            if (current.weight > 0) {
+                candidates.add(new Candidate(candidate.text, current.weight, null));
+            }
+            for (int i = 0; i < current.keys.length; i++) {
+                Node child = current.children[i];
+                candidates.add(new Candidate(candidate.text + current.keys[i], child.maxWeight, child));
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Weight of a term, 0 when unknown.
+     */
+    int weight(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length() && node != null; i++) {
+            node = node.child(term.charAt(i));
+        }
+        return node == null ? 0 : node.weight;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+
+        /** Occurrences of the term ending here, 0 if none. */
+        private int weight;
+
+        /** Highest weight of the terms of this subtree. */
+        private int maxWeight;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node();
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    /**
+     * A term to return (no node) or a subtree to explore.
+     */
+    private static final class Candidate {
+        private final String text;
+        private final int weight;
+        private final Node node;
+
+        private Candidate(String text, int weight, Node node) {
+            this.text = text;
+            this.weight = weight;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.killrvideo.service.search.repository;
+
+import com.killrvideo.service.search.dto.TagFacet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Occurrences of tags, counted in an open addressing table keyed by the tag hash.
+ * <p>
+ * Slots hold the hash and the count in int arrays next to the tag, so counting an already seen tag neither boxes
+ * nor allocates: the hash is compared first, the tag only when hashes are equal. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class TagFacetCounter {
+
+    /** Most videos first, then alphabetical order. */
+    private static final Comparator<TagFacet> MOST_FIRST = Comparator
+            .comparingInt(TagFacet::getCount).reversed()
+            .thenComparing(TagFacet::getTag);
+
+    private int[] hashes;
+    private int[] counts;
+    private String[] tags;
+    private int size;
+
+    TagFacetCounter() {
+        this(64);
+    }
+
+    /**
+     * @param expectedTags number of distinct tags expected
+     */
+    TagFacetCounter(int expectedTags) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedTags) * 2 - 1) << 1;
+        hashes = new int[capacity];
+        counts = new int[capacity];
+        tags = new String[capacity];
+    }
+
+    /**
+     * Count an occurrence of a tag.
+     */
+    void add(String tag) {
+        if (tag == null || tag.isEmpty()) {
+            return;
+        }
+        int hash = spread(tag.hashCode());
+        int mask = tags.length - 1;
+        int slot = hash & mask;
+        while (tags[slot] != null) {
+            if (hashes[slot] == hash && tags[slot].equals(tag)) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        tags[slot] = tag;
+        hashes[slot] = hash;
+        counts[slot] = 1;
+        // Keep the table at most half full
+        if (++size * 2 > tags.length) {
+            resize();
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        String[] oldTags = tags;
+        hashes = new int[oldTags.length * 2];
+        counts = new int[oldTags.length * 2];
+        tags = new String[oldTags.length * 2];
+        int mask = tags.length - 1;
+        for (int i = 0; i < oldTags.length; i++) {
+            if (oldTags[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (tags[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                tags[slot] = oldTags[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Number of occurrences of a tag.
+     */
+    int count(String tag) {
+        int hash = spread(tag.hashCode());
+        int mask = tags.length - 1;
+        for (int slot = hash & mask; tags[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && tags[slot].equals(tag)) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Most frequent tags.
+     *
+     * @param limit maximum number of tags
+     * @return tags with their count, most frequent first
+     */
+    List<TagFacet> top(int limit) {
+        if (limit <= 0 || size == 0) {
+            return Collections.emptyList();
+        }
+        // Keep the best ones only: the worst of them on top
+        PriorityQueue<TagFacet> best = new PriorityQueue<>(Math.min(limit, size) + 1, MOST_FIRST.reversed());
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] != null) {
+                best.add(new TagFacet(tags[i], counts[i]));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<TagFacet> facets = new ArrayList<>(best);
+        facets.sort(MOST_FIRST);
+        return facets;
+    }
+
+    /**
+     * Number of distinct tags.
+     */
+    int size() {
+        return size;
+    }
+}
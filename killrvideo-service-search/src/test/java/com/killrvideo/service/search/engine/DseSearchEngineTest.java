@@ -0,0 +1,57 @@
+package com.killrvideo.service.search.engine;
+
+import com.killrvideo.dse.dao.VideoRowMapper;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DseSearchEngineTest {
+    private PageableQuery<Video> findVideosByTags;
+    private DseSearchEngine engine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        findVideosByTags = mock(PageableQuery.class);
+        PageableQueryFactory pageableQueryFactory = mock(PageableQueryFactory.class);
+        when(pageableQueryFactory.<Video>newPageableQuery(any(), any(), any())).thenReturn(findVideosByTags);
+        engine = new DseSearchEngine(pageableQueryFactory, mock(VideoRowMapper.class));
+    }
+
+    @Test
+    public void testSearchVideos() {
+        when(findVideosByTags.queryNext(any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(ResultListPage.empty()));
+
+        engine.searchVideosAsync(new SearchVideosRequestData("Cassandra", 10, Optional.empty())).join();
+
+        verify(findVideosByTags).queryNext(eq(Optional.of(10)), eq(Optional.empty()),
+                (Object) argThat(query -> query.toString().contains("name:(cassandra*)^4")));
+    }
+
+    @Test
+    public void testSearchVideosWithoutTerms() {
+        SearchVideosRequestData request = new SearchVideosRequestData("?! ...", 10, Optional.empty());
+
+        ResultListPage<Video> page = engine.searchVideosAsync(request).join();
+        PageCursor<Video> cursor = engine.openCursor(request);
+
+        assertTrue(page.getResults().isEmpty());
+        assertFalse(page.getPagingState().isPresent());
+        assertTrue(cursor.next().join().getResults().isEmpty());
+        verify(findVideosByTags, never()).queryNext(any(), any(), any());
+        verify(findVideosByTags, never()).openCursor(any(), any(), any());
+    }
+}
@@ -0,0 +1,147 @@
+package com.killrvideo.service.search.engine;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.killrvideo.dse.dao.VideoRowMapper;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EmbeddedSearchEngineTest {
+    private CqlSession session;
+    private VideoRowMapper videoRowMapper;
+    private EmbeddedSearchEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        session = mock(CqlSession.class);
+        videoRowMapper = mock(VideoRowMapper.class);
+        engine = new EmbeddedSearchEngine(session, videoRowMapper, "embedded", 100);
+    }
+
+    @Test
+    public void testLoadThenEvents() {
+        Row first = mock(Row.class);
+        Row second = mock(Row.class);
+        when(videoRowMapper.map(first)).thenReturn(video("Cassandra data model", "", 1));
+        when(videoRowMapper.map(second)).thenReturn(video("Castle tour", "", 2));
+        AsyncResultSet firstPage = page(true, first);
+        AsyncResultSet lastPage = page(false, second);
+        when(firstPage.fetchNextPage()).thenAnswer(invocation -> CompletableFuture.completedFuture(lastPage));
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(firstPage));
+
+        assertFalse(engine.isAvailable());
+        assertEquals(2L, engine.load().join());
+        assertTrue(engine.isAvailable());
+        // Shorter name first
+        assertEquals(Arrays.asList("Castle tour", "Cassandra data model"), names(search("cas", 10, null)));
+
+        engine.addVideo(video("Cassandra at scale", "", 3));
+        assertEquals(3, engine.size());
+        assertEquals(Collections.singletonList("Cassandra at scale"), names(search("cassandra sc", 10, null)));
+    }
+
+    @Test
+    public void testNameOutweighsTagsAndDescription() {
+        engine.addVideo(video("Cooking pasta", "all about graphs", 1, "kitchen"));
+        engine.addVideo(video("Travel vlog", "a trip", 2, "graph"));
+        engine.addVideo(video("Graph databases", "an introduction", 3));
+        engine.addVideo(video("Weather", "nothing to see", 4));
+
+        assertEquals(Arrays.asList("Graph databases", "Travel vlog", "Cooking pasta"), names(search("graph", 10, null)));
+        // Every word must match, in any field
+        assertEquals(Collections.singletonList("Cooking pasta"), names(search("kitchen graphs", 10, null)));
+        assertTrue(search("kitchen weather", 10, null).getResults().isEmpty());
+    }
+
+    @Test
+    public void testShortPrefixMatchesEveryTerm() {
+        // Many terms starting with 'c' sorted before 'cassandra'
+        for (int i = 0; i < 100; i++) {
+            engine.addVideo(video(String.format("ca%03d", i), "", i));
+        }
+        engine.addVideo(video("Cassandra", "", 100));
+
+        assertEquals(101, search("c", 200, null).getResults().size());
+        assertEquals(Collections.singletonList("Cassandra"), names(search("c", 200, null)).stream()
+                .filter(name -> name.startsWith("Cass")).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPaging() {
+        for (int i = 0; i < 5; i++) {
+            engine.addVideo(video("Video " + i, "same words", i));
+        }
+        // Same score: latest first
+        ResultListPage<Video> page = search("same", 2, null);
+        assertEquals(Arrays.asList("Video 4", "Video 3"), names(page));
+        assertEquals(Optional.of("2"), page.getPagingState());
+
+        page = search("same", 2, page.getPagingState().get());
+        assertEquals(Arrays.asList("Video 2", "Video 1"), names(page));
+
+        page = search("same", 2, page.getPagingState().get());
+        assertEquals(Collections.singletonList("Video 0"), names(page));
+        assertFalse(page.getPagingState().isPresent());
+
+        // A state of another engine restarts from the first page
+        assertEquals(Arrays.asList("Video 4", "Video 3"), names(search("same", 2, "AAECAw==")));
+    }
+
+    @Test
+    public void testAddingAgainReplacesTheVideo() {
+        Video video = video("Old title", "", 1);
+        engine.addVideo(video);
+        Video renamed = video("New title", "", 1);
+        renamed.setVideoid(video.getVideoid());
+        engine.addVideo(renamed);
+
+        assertEquals(1, engine.size());
+        assertTrue(search("old", 10, null).getResults().isEmpty());
+        assertEquals(Collections.singletonList("New title"), names(search("title", 10, null)));
+    }
+
+    @Test
+    public void testDisabledEngineIgnoresVideos() {
+        engine = new EmbeddedSearchEngine(session, videoRowMapper, "dse", 100);
+        engine.start();
+        engine.addVideo(video("Cassandra", "", 1));
+
+        assertFalse(engine.isAvailable());
+        assertEquals(0, engine.size());
+        verify(session, never()).executeAsync(any(Statement.class));
+    }
+
+    private ResultListPage<Video> search(String query, int pageSize, String pagingState) {
+        return engine.searchVideosAsync(new SearchVideosRequestData(query, pageSize, Optional.ofNullable(pagingState))).join();
+    }
+
+    private static List<String> names(ResultListPage<Video> page) {
+        return page.getResults().stream().map(Video::getName).collect(Collectors.toList());
+    }
+
+    private static Video video(String name, String description, long addedSeconds, String... tags) {
+        return new Video(UUID.randomUUID(), UUID.randomUUID(), name, description, "location", 0, "preview",
+                new HashSet<>(Arrays.asList(tags)), Instant.ofEpochSecond(addedSeconds));
+    }
+
+    private static AsyncResultSet page(boolean hasMorePages, Row... rows) {
+        AsyncResultSet rs = mock(AsyncResultSet.class);
+        when(rs.currentPage()).thenReturn(Arrays.asList(rows));
+        when(rs.hasMorePages()).thenReturn(hasMorePages);
+        return rs;
+    }
+}
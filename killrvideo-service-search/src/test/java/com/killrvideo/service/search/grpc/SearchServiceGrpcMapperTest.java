@@ -2,6 +2,7 @@ package com.killrvideo.service.search.grpc;
 
 import com.killrvideo.dse.dto.ResultListPage;
 import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.dto.TagFacet;
 import com.killrvideo.service.search.request.GetQuerySuggestionsRequestData;
 import com.killrvideo.service.search.request.SearchVideosRequestData;
 import killrvideo.search.SearchServiceOuterClass.*;
@@ -35,6 +36,18 @@ class SearchServiceGrpcMapperTest {
         assertEquals(1, response.getVideosCount());
     }
 
+    @Test
+    public void testBuildSearchGrpcResponseWithTagFacets() {
+        ResultListPage<Video> resultPage = new ResultListPage<>(Collections.emptyList(), Optional.empty());
+
+        SearchVideosResponse response = mapper.buildSearchGrpcResponse(resultPage, "query",
+                asList(new TagFacet("cassandra", 3), new TagFacet("nosql", 1)));
+        assertEquals(2, response.getTagFacetsCount());
+        assertEquals("cassandra", response.getTagFacets(0).getTag());
+        assertEquals(3, response.getTagFacets(0).getCount());
+        assertEquals("nosql", response.getTagFacets(1).getTag());
+    }
+
     @Test
     public void testParseSearchVideosRequestData() {
         SearchVideosRequest request = SearchVideosRequest.newBuilder()
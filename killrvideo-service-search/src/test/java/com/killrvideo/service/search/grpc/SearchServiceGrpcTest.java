@@ -2,23 +2,39 @@ package com.killrvideo.service.search.grpc;
 
 import com.killrvideo.dse.dto.ResultListPage;
 import com.killrvideo.dse.dto.Video;
+import com.killrvideo.dse.utils.PageCursor;
+import com.killrvideo.grpc.WarmUpCalls;
+import com.killrvideo.metrics.LatencyHistograms;
+import com.killrvideo.service.search.dto.TagFacet;
 import com.killrvideo.service.search.repository.SearchRepository;
 import com.killrvideo.service.search.request.GetQuerySuggestionsRequestData;
 import com.killrvideo.service.search.request.SearchVideosRequestData;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import killrvideo.search.SearchServiceOuterClass.GetQuerySuggestionsRequest;
 import killrvideo.search.SearchServiceOuterClass.GetQuerySuggestionsResponse;
+import killrvideo.search.SearchServiceOuterClass.SearchResultsVideoPreview;
 import killrvideo.search.SearchServiceOuterClass.SearchVideosRequest;
 import killrvideo.search.SearchServiceOuterClass.SearchVideosResponse;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.lang.reflect.Field;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
@@ -33,6 +49,8 @@ class SearchServiceGrpcTest {
     private SearchServiceGrpcValidator validator;
     @Mock
     private SearchServiceGrpcMapper mapper;
+    @Mock
+    private LatencyHistograms latencyHistograms;
 
     private AutoCloseable closeable;
 
@@ -75,6 +93,44 @@ class SearchServiceGrpcTest {
         verify(grpcResObserver, times(1)).onError(any());
         verify(grpcResObserver, times(0)).onNext(any());
         verify(grpcResObserver, times(0)).onCompleted();
+        verify(latencyHistograms, times(1)).record(eq("searchVideos"), eq("terms:0 wildcard:none page:first"), eq(false), any());
+    }
+
+    @Test
+    void testSearchVideosWithInvalidPagingState() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").setPagingState("corrected:garbage").build();
+        StreamObserver<SearchVideosResponse> grpcResObserver = mock(StreamObserver.class);
+
+        doNothing().when(this.validator).validateGrpcRequest_SearchVideos(any(), any());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra", 10, Optional.of("corrected:garbage")));
+        when(searchRepository.searchVideosAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalArgumentException("Invalid paging state 'corrected:garbage'")));
+
+        this.service.searchVideos(grpcReq, grpcResObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(grpcResObserver, times(1)).onError(error.capture());
+        Assertions.assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(error.getValue()).getCode());
+        verify(latencyHistograms, times(1)).record(eq("searchVideos"), eq("terms:1 wildcard:long page:next"), eq(false), any());
+    }
+
+    @Test
+    void testStreamSearchVideosWithInvalidPagingState() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").setPagingState("corrected:garbage").build();
+        ServerCallStreamObserver<SearchResultsVideoPreview> grpcResObserver = mock(ServerCallStreamObserver.class);
+
+        doNothing().when(this.validator).validateGrpcRequest_StreamSearchVideos(any(), any());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra", 10, Optional.of("corrected:garbage")));
+        when(searchRepository.openSearchCursor(any())).thenThrow(new IllegalArgumentException("Invalid paging state"));
+
+        this.service.streamSearchVideos(grpcReq, grpcResObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(grpcResObserver, times(1)).onError(error.capture());
+        Assertions.assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(error.getValue()).getCode());
+        verify(latencyHistograms, times(1)).record(eq("streamSearchVideos"), any(), eq(false), any());
     }
 
     @Test
@@ -86,7 +142,7 @@ class SearchServiceGrpcTest {
 
         ResultListPage<Video> resultPage = mock(ResultListPage.class);
         SearchVideosResponse response = SearchVideosResponse.getDefaultInstance();
-        when(mapper.buildSearchGrpcResponse(any(), any())).thenReturn(response);
+        when(mapper.buildSearchGrpcResponse(any(), any(), any())).thenReturn(response);
 
         SearchVideosRequestData requestData = mock(SearchVideosRequestData.class);
         when(mapper.parseSearchVideosRequestData(any())).thenReturn(requestData);
@@ -101,6 +157,130 @@ class SearchServiceGrpcTest {
         verify(grpcResObserver, times(1)).onCompleted();
     }
 
+    @Test
+    void testSearchVideosWithTagFacets() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").setTagFacets(5).build();
+        StreamObserver<SearchVideosResponse> grpcResObserver = mock(StreamObserver.class);
+
+        doNothing().when(this.validator).validateGrpcRequest_SearchVideos(any(), any());
+        SearchVideosRequestData requestData = new SearchVideosRequestData("cassandra", 10, Optional.empty());
+        when(mapper.parseSearchVideosRequestData(any())).thenReturn(requestData);
+
+        ResultListPage<Video> resultPage = ResultListPage.empty();
+        List<TagFacet> facets = Collections.singletonList(new TagFacet("nosql", 3));
+        when(searchRepository.searchVideosAsync(any())).thenReturn(CompletableFuture.completedFuture(resultPage));
+        when(searchRepository.searchTagFacetsAsync(requestData, 5)).thenReturn(CompletableFuture.completedFuture(facets));
+        SearchVideosResponse response = SearchVideosResponse.getDefaultInstance();
+        when(mapper.buildSearchGrpcResponse(resultPage, "cassandra", facets)).thenReturn(response);
+
+        this.service.searchVideos(grpcReq, grpcResObserver);
+
+        verify(searchRepository, times(1)).searchTagFacetsAsync(requestData, 5);
+        verify(grpcResObserver, times(0)).onError(any());
+        verify(grpcResObserver, times(1)).onNext(response);
+        verify(grpcResObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void testNextPagesWithoutTagFacets() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").setTagFacets(5)
+                .setPagingState("0a0b").build();
+        StreamObserver<SearchVideosResponse> grpcResObserver = mock(StreamObserver.class);
+
+        doNothing().when(this.validator).validateGrpcRequest_SearchVideos(any(), any());
+        SearchVideosRequestData requestData = new SearchVideosRequestData("cassandra", 10, Optional.of("0a0b"));
+        when(mapper.parseSearchVideosRequestData(any())).thenReturn(requestData);
+
+        ResultListPage<Video> resultPage = ResultListPage.empty();
+        when(searchRepository.searchVideosAsync(any())).thenReturn(CompletableFuture.completedFuture(resultPage));
+        SearchVideosResponse response = SearchVideosResponse.getDefaultInstance();
+        when(mapper.buildSearchGrpcResponse(resultPage, "cassandra", Collections.emptyList())).thenReturn(response);
+
+        this.service.searchVideos(grpcReq, grpcResObserver);
+
+        verify(searchRepository, never()).searchTagFacetsAsync(any(), anyInt());
+        verify(grpcResObserver, times(1)).onNext(response);
+        verify(grpcResObserver, times(1)).onCompleted();
+    }
+
+    @Test
+    void testStreamSearchVideosClosesCursor() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").build();
+        ServerCallStreamObserver<SearchResultsVideoPreview> grpcResObserver = mock(ServerCallStreamObserver.class);
+        when(grpcResObserver.isReady()).thenReturn(true);
+
+        doNothing().when(this.validator).validateGrpcRequest_StreamSearchVideos(any(), any());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra", 0, Optional.empty()));
+        PageCursor<Video> cursor = mock(PageCursor.class);
+        when(cursor.map(any())).thenCallRealMethod();
+        when(cursor.next()).thenReturn(CompletableFuture.completedFuture(ResultListPage.empty()));
+        ArgumentCaptor<SearchVideosRequestData> requestData = ArgumentCaptor.forClass(SearchVideosRequestData.class);
+        when(searchRepository.openSearchCursor(requestData.capture())).thenReturn(cursor);
+
+        this.service.streamSearchVideos(grpcReq, grpcResObserver);
+
+        // Default fetch size, stream over (no result allowed here) and cursor released
+        Assertions.assertEquals(100, requestData.getValue().getPageSize());
+        verify(grpcResObserver, times(0)).onError(any());
+        verify(grpcResObserver, times(1)).onCompleted();
+        verify(cursor, times(1)).close();
+    }
+
+    @Test
+    void testStreamSearchVideosCancelledNotRecordedAsSuccess() throws Exception {
+        Field streamMaxResults = SearchServiceGrpc.class.getDeclaredField("streamMaxResults");
+        streamMaxResults.setAccessible(true);
+        streamMaxResults.setLong(this.service, 100L);
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra").build();
+        ServerCallStreamObserver<SearchResultsVideoPreview> grpcResObserver = mock(ServerCallStreamObserver.class);
+        when(grpcResObserver.isReady()).thenReturn(false);
+        ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+        doNothing().when(grpcResObserver).setOnCancelHandler(onCancel.capture());
+
+        doNothing().when(this.validator).validateGrpcRequest_StreamSearchVideos(any(), any());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra", 10, Optional.empty()));
+        PageCursor<Video> cursor = mock(PageCursor.class);
+        when(cursor.map(any())).thenCallRealMethod();
+        when(cursor.next()).thenReturn(new CompletableFuture<>());
+        when(searchRepository.openSearchCursor(any())).thenReturn(cursor);
+
+        this.service.streamSearchVideos(grpcReq, grpcResObserver);
+        onCancel.getValue().run();
+
+        verify(latencyHistograms, times(1)).recordCancelled(eq("streamSearchVideos"), any(), any());
+        verify(latencyHistograms, never()).record(any(), any(), anyBoolean(), any());
+        verify(cursor, times(1)).close();
+    }
+
+    @Test
+    void testWarmUpSearchVideosNotRecorded() throws Exception {
+        doNothing().when(this.validator).validateGrpcRequest_SearchVideos(any(), any());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra", 10, Optional.empty()));
+        when(mapper.buildSearchGrpcResponse(any(), any(), any())).thenReturn(SearchVideosResponse.getDefaultInstance());
+        when(searchRepository.searchVideosUncachedAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(ResultListPage.empty()));
+
+        String name = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(name).directExecutor()
+                .addService(ServerInterceptors.intercept(this.service, WarmUpCalls.SERVER_INTERCEPTOR))
+                .build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor()
+                .intercept(WarmUpCalls.CLIENT_INTERCEPTOR).build();
+        try {
+            killrvideo.search.SearchServiceGrpc.newBlockingStub(channel).searchVideos(SearchVideosRequest.newBuilder().setQuery("cassandra").build());
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+
+        verify(searchRepository, times(1)).searchVideosUncachedAsync(any());
+        verify(searchRepository, never()).searchVideosAsync(any());
+        verify(latencyHistograms, never()).record(any(), any(), anyBoolean(), any());
+    }
+
     @Test
     void testGetQuerySuggestionsWithValidationFailed() {
         GetQuerySuggestionsRequest grpcReq = GetQuerySuggestionsRequest.getDefaultInstance();
@@ -155,4 +335,31 @@ class SearchServiceGrpcTest {
         verify(grpcResObserver, times(1)).onNext(any());
         verify(grpcResObserver, times(1)).onCompleted();
     }
+
+    @Test
+    void testSearchVideosRecordsLatencyByShape() {
+        SearchVideosRequest grpcReq = SearchVideosRequest.newBuilder().setQuery("cassandra data mod").build();
+        StreamObserver<SearchVideosResponse> grpcResObserver = mock(StreamObserver.class);
+
+        doNothing().when(this.validator).validateGrpcRequest_SearchVideos(any(), any());
+        when(mapper.buildSearchGrpcResponse(any(), any(), any())).thenReturn(SearchVideosResponse.getDefaultInstance());
+        when(mapper.parseSearchVideosRequestData(any()))
+                .thenReturn(new SearchVideosRequestData("cassandra data mod", 10, Optional.of("state")));
+        when(searchRepository.searchVideosAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(ResultListPage.class)));
+
+        this.service.searchVideos(grpcReq, grpcResObserver);
+
+        verify(latencyHistograms, times(1)).record(eq("searchVideos"), eq("terms:3 wildcard:long page:next"), eq(true), any());
+    }
+
+    @Test
+    void testQueryShape() {
+        Assertions.assertEquals("terms:0 wildcard:none", SearchServiceGrpc.queryShape(""));
+        Assertions.assertEquals("terms:1 wildcard:short", SearchServiceGrpc.queryShape("ca"));
+        Assertions.assertEquals("terms:2 wildcard:long", SearchServiceGrpc.queryShape("Cassandra data"));
+        Assertions.assertEquals("terms:1 wildcard:typed", SearchServiceGrpc.queryShape("cass*"));
+        Assertions.assertEquals("terms:4+ wildcard:short page:first",
+                SearchServiceGrpc.queryShape("one two three four five s", false));
+    }
 }
@@ -64,6 +64,31 @@ class SearchServiceGrpcValidatorTest {
         verifyFailure();
     }
 
+    @Test
+    public void testValidateGrpcRequest_StreamSearchVideos_Success() {
+        SearchVideosRequest request = SearchVideosRequest.newBuilder()
+                .setQuery("Query")
+                .build();
+
+        validator.validateGrpcRequest_StreamSearchVideos(request, streamObserver);
+
+        verifySuccess();
+    }
+
+    @Test
+    public void testValidateGrpcRequest_StreamSearchVideos_Failure() {
+        SearchVideosRequest request = SearchVideosRequest.newBuilder()
+                .setQuery("Query")
+                .setPageSize(-1)
+                .build();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                validator.validateGrpcRequest_StreamSearchVideos(request, streamObserver)
+        );
+
+        verifyFailure();
+    }
+
     private void verifySuccess() {
         verify(streamObserver, times(0)).onError(any());
         verify(streamObserver, times(0)).onCompleted();
@@ -0,0 +1,74 @@
+package com.killrvideo.service.search.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixSuggestionsTest {
+
+    @Test
+    public void testShortPrefixes() {
+        PrefixSuggestions suggestions = new PrefixSuggestions(3, 2);
+        suggestions.update("cassandra", 3);
+        suggestions.update("castle", 1);
+        suggestions.update("cat", 1);
+
+        assertEquals(Arrays.asList("cassandra", "castle"), suggestions.complete("ca", 2));
+        assertEquals(Collections.singletonList("cassandra"), suggestions.complete("c", 1));
+        assertEquals(Collections.emptyList(), suggestions.complete("x", 5));
+        // 'cat' is out of the list of 'ca': the list cannot tell the third one
+        assertNull(suggestions.complete("ca", 3));
+
+        suggestions.update("cat", 5);
+        assertEquals(Arrays.asList("cat", "cassandra"), suggestions.complete("ca", 2));
+    }
+
+    @Test
+    public void testLongPrefixesFilterTheirParent() {
+        PrefixSuggestions suggestions = new PrefixSuggestions(3, 3);
+        suggestions.update("cassandra", 3);
+        suggestions.update("castle", 2);
+        suggestions.update("cast", 1);
+
+        assertEquals(Arrays.asList("castle", "cast"), suggestions.complete("cast", 5));
+        assertEquals(Collections.emptyList(), suggestions.complete("casx", 5));
+
+        suggestions.update("casino", 4);
+        // 'cast' left the list of 'cas'
+        assertEquals(Collections.singletonList("castle"), suggestions.complete("cast", 1));
+        assertNull(suggestions.complete("cast", 2));
+    }
+
+    @Test
+    public void testSameAsTrie() {
+        Random random = new Random(42);
+        SuggestionTrie trie = new SuggestionTrie();
+        PrefixSuggestions suggestions = new PrefixSuggestions(3, 10);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder term = new StringBuilder();
+            for (int length = 1 + random.nextInt(6); length > 0; length--) {
+                term.append((char) ('a' + random.nextInt(4)));
+            }
+            trie.add(term.toString(), 1 + random.nextInt(3));
+            suggestions.update(term.toString(), trie.weight(term.toString()));
+        }
+        // Short prefixes always known, longer ones when their parent holds enough terms
+        for (String prefix : Arrays.asList("a", "b", "ab", "cd", "abc", "dda")) {
+            assertEquals(trie.complete(prefix, 10), suggestions.complete(prefix, 10), prefix);
+        }
+        int filtered = 0;
+        for (String prefix : Arrays.asList("abca", "bcda", "dddd", "bcdab", "aaaaa")) {
+            List<String> cached = suggestions.complete(prefix, 2);
+            if (cached != null) {
+                assertEquals(trie.complete(prefix, 2), cached, prefix);
+                filtered++;
+            }
+        }
+        assertTrue(filtered > 0);
+    }
+}
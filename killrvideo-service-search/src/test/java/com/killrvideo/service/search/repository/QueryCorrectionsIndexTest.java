@@ -0,0 +1,137 @@
+package com.killrvideo.service.search.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.killrvideo.dse.dto.Video;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryCorrectionsIndexTest {
+    private CqlSession session;
+    private QueryCorrectionsIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        session = mock(CqlSession.class);
+        index = new QueryCorrectionsIndex(session, true, 100, 2, 1000);
+    }
+
+    @Test
+    public void testNoCorrectionBeforeLoad() {
+        index.addVideo("Cassandra", Collections.emptySet(), "");
+
+        assertFalse(index.isReady());
+        assertFalse(index.correct("cassadnra").isPresent());
+    }
+
+    @Test
+    public void testCorrectsWordsFoundInNoVideo() {
+        load();
+
+        // Transposition, missing letter, two edits on a long word
+        assertEquals(Optional.of("cassandra data"), index.correct("Casasndra data"));
+        assertEquals(Optional.of("cassandra modeling"), index.correct("cassandra modelng"));
+        assertEquals(Optional.of("kubernetes"), index.correct("kuberentse"));
+        // Most frequent of the closest words
+        assertEquals(Optional.of("castle"), index.correct("caxtle"));
+        assertEquals(4, index.getCorrectedCount());
+    }
+
+    @Test
+    public void testKeepsKnownWordsAndPrefixes() {
+        load();
+
+        // Found in a name, the last word is a prefix, found in a description
+        assertFalse(index.correct("cassandra").isPresent());
+        assertFalse(index.correct("data mod").isPresent());
+        assertFalse(index.correct("partition keys").isPresent());
+        // Too short or too far to be corrected
+        assertFalse(index.correct("zq").isPresent());
+        assertFalse(index.correct("xylophone").isPresent());
+        assertEquals(5, index.getCheckedCount());
+        assertEquals(2, index.getLowRecallCount());
+        assertEquals(0, index.getCorrectedCount());
+    }
+
+    @Test
+    public void testRecoveryRate() throws IOException {
+        load();
+        index.correct("cassadnra");
+        index.onCorrectedResults(true);
+        index.correct("xylophone");
+
+        assertEquals(2, index.getLowRecallCount());
+        assertEquals(0.5, index.getRecoveryRate());
+
+        StringBuilder out = new StringBuilder();
+        index.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_search_typo_corrected_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_search_typo_low_recall_total 2\n"), text);
+        assertTrue(text.contains("killrvideo_search_typo_recovered_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_search_typo_recovery_ratio 0.5\n"), text);
+    }
+
+    @Test
+    public void testNoCorrectionOutOfBudget() {
+        index = new QueryCorrectionsIndex(session, true, 100, 2, 0);
+        AsyncResultSet rs = page(false);
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(rs));
+        index.load().join();
+        // Enough candidates for the clock to be read
+        for (int i = 0; i < 200; i++) {
+            index.addVideo("cassandra" + i, Collections.emptySet(), "");
+        }
+
+        assertFalse(index.correct("cassandar").isPresent());
+        assertEquals(1, index.getBudgetExceededCount());
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, NGramIndex.distance("cassandra", "cassandra", 2));
+        assertEquals(1, NGramIndex.distance("cassandra", "cassnadra", 2));
+        assertEquals(2, NGramIndex.distance("cassandra", "casandr", 2));
+        assertEquals(3, NGramIndex.distance("cassandra", "data", 2));
+    }
+
+    private void load() {
+        AsyncResultSet firstPage = page(true,
+                row("Cassandra Data Modeling", "Partition keys and clustering columns", "cassandra", "nosql"),
+                row("Cassandra on Kubernetes", "", "cassandra", "kubernetes"));
+        AsyncResultSet lastPage = page(false,
+                row("Castle tour", "", "castle", "travel"),
+                row("Cattle farms", "", "farm"));
+        when(firstPage.fetchNextPage()).thenAnswer(invocation -> CompletableFuture.completedFuture(lastPage));
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(firstPage));
+
+        assertEquals(4L, index.load().join());
+        assertTrue(index.isReady());
+    }
+
+    private AsyncResultSet page(boolean hasMorePages, Row... rows) {
+        AsyncResultSet rs = mock(AsyncResultSet.class);
+        when(rs.currentPage()).thenReturn(Arrays.asList(rows));
+        when(rs.hasMorePages()).thenReturn(hasMorePages);
+        return rs;
+    }
+
+    private Row row(String name, String description, String... tags) {
+        Row row = mock(Row.class);
+        when(row.getString(Video.COLUMN_NAME)).thenReturn(name);
+        when(row.getString(Video.COLUMN_DESCRIPTION)).thenReturn(description);
+        when(row.getSet(Video.COLUMN_TAGS, String.class)).thenReturn(new HashSet<>(Arrays.asList(tags)));
+        return row;
+    }
+}
@@ -0,0 +1,81 @@
+package com.killrvideo.service.search.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.killrvideo.dse.dto.Video;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QuerySuggestionsIndexTest {
+    private CqlSession session;
+    private QuerySuggestionsIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        session = mock(CqlSession.class);
+        index = new QuerySuggestionsIndex(session, true, 100, 3, 20, new HashSet<>(Arrays.asList("the", "of")));
+    }
+
+    @Test
+    public void testNoSuggestionBeforeLoad() {
+        index.addVideo("Cassandra", Collections.emptySet());
+
+        assertFalse(index.isReady());
+        assertFalse(index.suggest("cas", 10).isPresent());
+    }
+
+    @Test
+    public void testLoadThenEvents() {
+        AsyncResultSet firstPage = page(true,
+                row("The Cassandra Data Model", "cassandra", "nosql"),
+                row("Cassandra of the future", "cassandra"));
+        AsyncResultSet lastPage = page(false, row("Castle tour", "travel"));
+        when(firstPage.fetchNextPage()).thenAnswer(invocation -> CompletableFuture.completedFuture(lastPage));
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(firstPage));
+
+        assertEquals(3L, index.load().join());
+        assertTrue(index.isReady());
+        assertEquals(Arrays.asList("cassandra", "castle"), new ArrayList<>(index.suggest("Cas", 10).orElseThrow()));
+        assertEquals(Collections.emptySet(), index.suggest("the", 10).orElseThrow());
+
+        index.addVideo("Castle Castle Castle", Arrays.asList("castle", "castle tour"));
+        assertEquals("castle", index.suggest("cas", 1).orElseThrow().iterator().next());
+        assertEquals(Collections.singleton("data castle"), index.suggest("data cast", 10).orElseThrow());
+        // Every prefix served from the completions kept per prefix
+        assertEquals(4, index.getPrefixHitCount());
+        assertEquals(0, index.getTrieCount());
+    }
+
+    @Test
+    public void testDisabledIndexIsNeverReady() {
+        index = new QuerySuggestionsIndex(session, false, 100, 3, 20, Collections.emptySet());
+        index.start();
+
+        assertFalse(index.suggest("cas", 10).isPresent());
+        assertEquals(0, index.size());
+    }
+
+    private AsyncResultSet page(boolean hasMorePages, Row... rows) {
+        AsyncResultSet rs = mock(AsyncResultSet.class);
+        when(rs.currentPage()).thenReturn(Arrays.asList(rows));
+        when(rs.hasMorePages()).thenReturn(hasMorePages);
+        return rs;
+    }
+
+    private Row row(String name, String... tags) {
+        Row row = mock(Row.class);
+        when(row.getString(Video.COLUMN_NAME)).thenReturn(name);
+        when(row.getSet(Video.COLUMN_TAGS, String.class)).thenReturn(new HashSet<>(Arrays.asList(tags)));
+        return row;
+    }
+}
@@ -0,0 +1,110 @@
+package com.killrvideo.service.search.repository;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.engine.DseSearchEngine;
+import com.killrvideo.service.search.engine.SearchEngine;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class SearchRepositoryTest {
+    private SearchEngine engine;
+    private QueryCorrectionsIndex queryCorrectionsIndex;
+    private SearchRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        CqlSession session = mock(CqlSession.class);
+        when(session.prepare(anyString())).thenReturn(mock(PreparedStatement.class));
+        engine = mock(SearchEngine.class);
+        when(engine.getName()).thenReturn(DseSearchEngine.NAME);
+        when(engine.isAvailable()).thenReturn(true);
+        when(engine.searchVideosAsync(any())).thenReturn(CompletableFuture.completedFuture(
+                new ResultListPage<>(Collections.singletonList(new Video()), Optional.of("0a0b"))));
+        queryCorrectionsIndex = mock(QueryCorrectionsIndex.class);
+        repository = new SearchRepository(session, mock(QuerySuggestionsIndex.class),
+                new SearchResultsCache(false, 100, 60), queryCorrectionsIndex, List.of(engine),
+                DseSearchEngine.NAME, 500, Collections.emptySet());
+    }
+
+    @Test
+    public void testNextPagesSearchedWithTheCorrectedQuery() {
+        when(queryCorrectionsIndex.correct("cassadnra")).thenReturn(Optional.of("cassandra"));
+
+        ResultListPage<Video> first = repository.searchVideosAsync(request("cassadnra", Optional.empty())).join();
+        String pagingState = first.getPagingState().orElseThrow();
+        assertTrue(pagingState.startsWith(SearchRepository.CORRECTED_PAGING_STATE_PREFIX), pagingState);
+        verify(queryCorrectionsIndex).onCorrectedResults(true);
+
+        // The index may know the typed word by now, the next page is not corrected again
+        ResultListPage<Video> second = repository.searchVideosAsync(request("cassadnra", Optional.of(pagingState))).join();
+        verify(queryCorrectionsIndex, times(1)).correct(anyString());
+        ArgumentCaptor<SearchVideosRequestData> searched = ArgumentCaptor.forClass(SearchVideosRequestData.class);
+        verify(engine, times(2)).searchVideosAsync(searched.capture());
+        assertEquals("cassandra", searched.getValue().getQuery());
+        assertEquals(Optional.of("0a0b"), searched.getValue().getPagingState());
+        assertEquals(first.getPagingState(), second.getPagingState());
+    }
+
+    @Test
+    public void testNextPagesOfTypedQueryNotCorrected() {
+        ResultListPage<Video> next = repository.searchVideosAsync(request("cassadnra", Optional.of("0a0b"))).join();
+
+        verify(queryCorrectionsIndex, never()).correct(anyString());
+        verify(engine).searchVideosAsync(argThat(request -> request.getQuery().equals("cassadnra")
+                && request.getPagingState().equals(Optional.of("0a0b"))));
+        assertEquals(Optional.of("0a0b"), next.getPagingState());
+    }
+
+    @Test
+    public void testWarmUpSearchesNotCachedNorCounted() {
+        repository = new SearchRepository(mock(CqlSession.class, RETURNS_MOCKS), mock(QuerySuggestionsIndex.class),
+                new SearchResultsCache(true, 100, 60), queryCorrectionsIndex, List.of(engine),
+                DseSearchEngine.NAME, 500, Collections.emptySet());
+
+        repository.searchVideosUncachedAsync(request("cassandra", Optional.empty())).join();
+        repository.searchVideosUncachedAsync(request("cassandra", Optional.empty())).join();
+
+        verify(engine, times(2)).searchVideosAsync(any());
+        verify(queryCorrectionsIndex, times(2)).correct("cassandra", false);
+        verify(queryCorrectionsIndex, never()).correct(anyString());
+    }
+
+    @Test
+    public void testInvalidCorrectedPagingState() {
+        assertThrows(IllegalArgumentException.class, () -> SearchRepository.correctedNextPage(
+                request("cassandra", Optional.of(SearchRepository.CORRECTED_PAGING_STATE_PREFIX + "abc"))));
+    }
+
+    @Test
+    public void testGarbageCorrectedPagingStateFailsTheSearch() {
+        for (String pagingState : List.of(SearchRepository.CORRECTED_PAGING_STATE_PREFIX + "abc",
+                SearchRepository.CORRECTED_PAGING_STATE_PREFIX + "!not base64!:0a0b")) {
+            CompletableFuture<ResultListPage<Video>> page = repository.searchVideosAsync(request("cassandra", Optional.of(pagingState)));
+            CompletionException error = assertThrows(CompletionException.class, page::join);
+            assertTrue(error.getCause() instanceof IllegalArgumentException, pagingState);
+            assertTrue(repository.searchVideosUncachedAsync(request("cassandra", Optional.of(pagingState)))
+                    .isCompletedExceptionally(), pagingState);
+        }
+        verify(engine, never()).searchVideosAsync(any());
+    }
+
+    private static SearchVideosRequestData request(String query, Optional<String> pagingState) {
+        return new SearchVideosRequestData(query, 10, pagingState);
+    }
+}
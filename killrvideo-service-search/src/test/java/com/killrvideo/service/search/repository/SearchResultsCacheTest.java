@@ -0,0 +1,106 @@
+package com.killrvideo.service.search.repository;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.search.dto.TagFacet;
+import com.killrvideo.service.search.request.SearchVideosRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultsCacheTest {
+    private SearchResultsCache cache;
+    private List<SearchVideosRequestData> searches;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new SearchResultsCache(true, 100, 60);
+        searches = new ArrayList<>();
+    }
+
+    private ResultListPage<Video> search(String query, int pageSize, String pagingState) {
+        return cache.get(new SearchVideosRequestData(query, pageSize, Optional.ofNullable(pagingState)), request -> {
+            searches.add(request);
+            return CompletableFuture.completedFuture(ResultListPage.empty());
+        }).join();
+    }
+
+    @Test
+    public void testSameNormalizedQueryIsServedFromMemory() {
+        search("Cassandra  Data", 10, null);
+        search(" cassandra data ", 10, null);
+        search("cassandra data", 20, null);
+        search("cassandra data", 10, "next");
+
+        assertEquals(3, searches.size());
+        assertEquals("cassandra data", searches.get(0).getQuery());
+        assertEquals(Optional.of("next"), searches.get(2).getPagingState());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0.25, cache.getHitRate());
+    }
+
+    @Test
+    public void testNewVideoDropsTheQueriesItMayMatch() {
+        search("cass", 10, null);
+        search("cassandra data", 10, null);
+        search("graph", 10, null);
+
+        assertEquals(2, cache.onVideoAdded("Cassandra at scale", Collections.singletonList("nosql"), "Intro"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.onVideoAdded("Travel", Collections.singletonList("graphs"), null));
+        assertEquals(3, cache.getInvalidationCount());
+
+        search("cass", 10, null);
+        assertEquals(4, searches.size());
+    }
+
+    @Test
+    public void testTagFacetsCountedOncePerQuery() {
+        List<String> counted = new ArrayList<>();
+        Function<String, CompletableFuture<List<TagFacet>>> count = query -> {
+            counted.add(query);
+            return CompletableFuture.completedFuture(Collections.singletonList(new TagFacet("nosql", 3)));
+        };
+        cache.getTagFacets("Cassandra", 5, count).join();
+        assertEquals(1, cache.getTagFacets(" cassandra ", 5, count).join().size());
+        assertEquals(Collections.singletonList("cassandra"), counted);
+
+        cache.onVideoAdded("Cassandra at scale", Collections.emptyList(), "");
+        cache.getTagFacets("cassandra", 5, count).join();
+        assertEquals(2, counted.size());
+    }
+
+    @Test
+    public void testMetricsExported() throws IOException {
+        search("cassandra", 10, null);
+        search("cassandra", 10, null);
+        cache.onVideoAdded("Cassandra", Collections.emptyList(), "");
+
+        StringBuilder out = new StringBuilder();
+        cache.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_search_results_cache_hits_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_search_results_cache_hits_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_search_results_cache_misses_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_search_results_cache_invalidations_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_search_results_cache_entries 0.0\n"), text);
+        assertTrue(text.contains("killrvideo_search_results_cache_hit_ratio 0.5\n"), text);
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysSearches() {
+        cache = new SearchResultsCache(false, 100, 60);
+        search("cassandra", 10, null);
+        search("cassandra", 10, null);
+
+        assertEquals(2, searches.size());
+        assertEquals(0, cache.onVideoAdded("Cassandra", Collections.emptyList(), ""));
+    }
+}
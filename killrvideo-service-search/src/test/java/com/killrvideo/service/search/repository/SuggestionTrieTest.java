@@ -0,0 +1,57 @@
+package com.killrvideo.service.search.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestionTrieTest {
+
+    @Test
+    public void testCompleteMostFrequentFirst() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("cassandra", 5);
+        trie.add("cat", 2);
+        trie.add("cast", 2);
+        trie.add("car", 9);
+        trie.add("dog", 20);
+
+        assertEquals(Arrays.asList("car", "cassandra", "cast", "cat"), trie.complete("ca", 10));
+        assertEquals(Arrays.asList("car", "cassandra"), trie.complete("ca", 2));
+        assertEquals(Arrays.asList("cassandra", "cast"), trie.complete("cas", 10));
+        assertEquals(5, trie.size());
+    }
+
+    @Test
+    public void testPrefixIsATerm() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("cass", 1);
+        trie.add("cassandra", 3);
+
+        assertEquals(Arrays.asList("cassandra", "cass"), trie.complete("cass", 10));
+    }
+
+    @Test
+    public void testWeightsAccumulate() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("java", 1);
+        trie.add("javascript", 2);
+        trie.add("java", 2);
+
+        assertEquals(3, trie.weight("java"));
+        assertEquals(Arrays.asList("java", "javascript"), trie.complete("j", 10));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    public void testUnknownPrefix() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("cassandra", 1);
+
+        assertEquals(Collections.emptyList(), trie.complete("x", 10));
+        assertEquals(Collections.emptyList(), trie.complete("cassandras", 10));
+        assertEquals(0, trie.weight("cass"));
+    }
+}
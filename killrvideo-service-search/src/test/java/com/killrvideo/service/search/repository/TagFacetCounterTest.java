@@ -0,0 +1,55 @@
+package com.killrvideo.service.search.repository;
+
+import com.killrvideo.service.search.dto.TagFacet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagFacetCounterTest {
+
+    @Test
+    public void testTopTags() {
+        TagFacetCounter counter = new TagFacetCounter();
+        for (String tag : Arrays.asList("nosql", "cassandra", "travel", "cassandra", "nosql", "cassandra", "", null)) {
+            counter.add(tag);
+        }
+
+        assertEquals(3, counter.size());
+        assertEquals(3, counter.count("cassandra"));
+        assertEquals(0, counter.count("castle"));
+        List<TagFacet> top = counter.top(2);
+        assertEquals(Arrays.asList("cassandra", "nosql"), top.stream().map(TagFacet::getTag).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(3, 2), top.stream().map(TagFacet::getCount).collect(Collectors.toList()));
+        assertEquals(Collections.emptyList(), counter.top(0));
+    }
+
+    @Test
+    public void testGrowsAndKeepsCounts() {
+        TagFacetCounter counter = new TagFacetCounter(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 1000; i++) {
+                counter.add("tag" + i);
+            }
+        }
+        counter.add("tag7");
+
+        assertEquals(1000, counter.size());
+        assertEquals(3, counter.count("tag999"));
+        assertEquals(new TagFacet("tag7", 4).toString(), counter.top(1).get(0).toString());
+    }
+
+    @Test
+    public void testSameCountInAlphabeticalOrder() {
+        TagFacetCounter counter = new TagFacetCounter();
+        counter.add("b");
+        counter.add("a");
+        counter.add("c");
+
+        assertEquals(Arrays.asList("a", "b"), counter.top(2).stream().map(TagFacet::getTag).collect(Collectors.toList()));
+    }
+}
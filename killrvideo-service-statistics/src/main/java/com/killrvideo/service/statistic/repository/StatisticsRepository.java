@@ -3,7 +3,8 @@ package com.killrvideo.service.statistic.repository;
 import com.killrvideo.service.statistic.dao.VideoPlaybackStatsDao;
 import com.killrvideo.service.statistic.dao.VideoPlaybackStatsMapper;
 import com.killrvideo.service.statistic.dto.VideoPlaybackStats;
-import com.killrvideo.dse.utils.MappedAsyncPagingIterableUtils;
+import com.killrvideo.dse.utils.MultiGetUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
@@ -19,9 +20,12 @@ import java.util.concurrent.CompletableFuture;
 @Repository
 public class StatisticsRepository {
     private final VideoPlaybackStatsDao videoPlaybackStatsDao;
+    private final int multiGetConcurrency;
 
-    public StatisticsRepository(VideoPlaybackStatsMapper mapper) {
+    public StatisticsRepository(VideoPlaybackStatsMapper mapper,
+                                @Value("${killrvideo.cassandra.multiGetConcurrency: " + MultiGetUtils.DEFAULT_MAX_CONCURRENCY + "}") int multiGetConcurrency) {
         this.videoPlaybackStatsDao = mapper.getVideoPlaybackStatsDao();
+        this.multiGetConcurrency = multiGetConcurrency;
     }
 
     /**
@@ -41,11 +45,10 @@ public class StatisticsRepository {
      * @param listOfVideoIds
      *      list of EXISTING videoid
      * @return
-     *      future for the list
+     *      future for the list, in the order of the videoids, one select per video
      */
     public CompletableFuture<List<VideoPlaybackStats>> getNumberOfPlaysAsync(List<UUID> listOfVideoIds) {
         Assert.notNull(listOfVideoIds, "videoid list cannot be null");
-        return videoPlaybackStatsDao.getNumberOfPlays(listOfVideoIds)
-                .thenApply(MappedAsyncPagingIterableUtils::all);
+        return MultiGetUtils.getAll(listOfVideoIds, videoPlaybackStatsDao::getNumberOfPlays, multiGetConcurrency);
     }
 }
@@ -1,6 +1,5 @@
 package com.killrvideo.service.statistic.repository;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.killrvideo.service.statistic.dao.VideoPlaybackStatsDao;
 import com.killrvideo.service.statistic.dao.VideoPlaybackStatsMapper;
 import com.killrvideo.service.statistic.dto.VideoPlaybackStats;
@@ -11,7 +10,6 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
-import static com.killrvideo.utils.test.CassandraTestUtils.mockMappedAsyncPagingIterable;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,7 +24,7 @@ class StatisticsRepositoryTest {
         this.videoPlaybackStatsDao = mock(VideoPlaybackStatsDao.class);
         when(mapper.getVideoPlaybackStatsDao()).thenReturn(videoPlaybackStatsDao);
 
-        this.repository = new StatisticsRepository(mapper);
+        this.repository = new StatisticsRepository(mapper, 4);
     }
 
     @Test
@@ -47,14 +45,12 @@ class StatisticsRepositoryTest {
         List<UUID> videoids = singletonList(videoid);
         List<VideoPlaybackStats> videoPlaybackStatsList = singletonList(videoPlaybackStats);
 
-        MappedAsyncPagingIterable<VideoPlaybackStats> iter = mockMappedAsyncPagingIterable(videoPlaybackStatsList);
-
         when(videoPlaybackStatsDao.getNumberOfPlays(any())).thenReturn(
-            CompletableFuture.completedFuture(iter)
+            CompletableFuture.completedFuture(videoPlaybackStats)
         );
 
         repository.getNumberOfPlaysAsync(videoids).whenComplete((result, error) -> {
-            assertEquals(1, result.size());
+            assertEquals(videoPlaybackStatsList, result);
             assertNull(error);
         });
     }
@@ -32,6 +32,7 @@ dependencies {
     implementation("javax.inject:javax.inject:${Javax.inject}")
     implementation("org.apache.kafka:connect-api:${Apache.kafka}")
     implementation("org.apache.tinkerpop:tinkergraph-gremlin:${Apache.tinkerpop}")
+    implementation("org.hdrhistogram:HdrHistogram:$hdrHistogram")
 
     annotationProcessor("org.projectlombok:lombok:$lombok")
     annotationProcessor("com.datastax.oss:java-driver-mapper-processor:$datastaxDriver")
@@ -56,3 +57,20 @@ protobuf {
         }
     }
 }
+
+// Offline evaluations run with the 'evaluation' task only
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("evaluation")
+    }
+}
+
+tasks.register<Test>("evaluation") {
+    description = "Offline evaluation of the recommendation engines."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("evaluation")
+    }
+}
@@ -0,0 +1,229 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.killrvideo.metrics.LatencyHistograms;
+import com.killrvideo.metrics.MetricsWriter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling parameters of the 'recommendByUserRating' traversal, picked per request.
+ * <p>
+ * The settings ('killrvideo.suggestedVideos.adaptive.settings', 'numRatingsToSample:localUserRatingsToSample'
+ * pairs) are listed from the richest to the cheapest. Without the adaptive mode the first one is always used.
+ * With it, each request gets the richest setting whose estimated traversal time (moving average of the measured
+ * ones) is within the latency objective, one setting cheaper for every 'inFlightPerStep' traversals already
+ * running since they share the graph. One request out of 'probeEvery' tries the next richer setting, so that its
+ * estimate recovers once the load is gone.
+ * <p>
+ * The latency of each setting is recorded in the {@link LatencyHistograms} ('recommendByUserRating' RPC, setting as
+ * shape), its number of videos found and its estimate are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class AdaptiveSampling implements MetricsWriter {
+
+    /** Name of the traversal in the latency histograms. */
+    static final String RPC = "recommendByUserRating";
+
+    /** Upper bounds of the exported buckets of videos found. */
+    static final long[] RESULT_BUCKETS = {0, 1, 2, 3, 5, 10, 20, 50};
+
+    /** Weight of the last traversal time in the estimate of a setting. */
+    private static final double SMOOTHING = 0.2;
+
+    private static final String RESULTS_METRIC = "killrvideo_recommendation_results";
+    private static final String ESTIMATE_METRIC = "killrvideo_recommendation_latency_estimate_seconds";
+
+    private final LatencyHistograms histograms;
+    private final boolean enabled;
+    private final long sloNanos;
+    private final int inFlightPerStep;
+    private final int probeEvery;
+    private final List<Setting> settings;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+
+    public AdaptiveSampling(LatencyHistograms histograms,
+                            @Value("${killrvideo.suggestedVideos.adaptive.enabled: false}") boolean enabled,
+                            @Value("${killrvideo.suggestedVideos.adaptive.sloMillis: 200}") long sloMillis,
+                            @Value("${killrvideo.suggestedVideos.adaptive.settings: 1000:5,500:4,250:3,100:2}") String settings,
+                            @Value("${killrvideo.suggestedVideos.adaptive.inFlightPerStep: 16}") int inFlightPerStep,
+                            @Value("${killrvideo.suggestedVideos.adaptive.probeEvery: 20}") int probeEvery) {
+        this.histograms = histograms;
+        this.enabled = enabled;
+        this.sloNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, sloMillis));
+        this.inFlightPerStep = Math.max(1, inFlightPerStep);
+        this.probeEvery = probeEvery;
+        this.settings = parse(settings);
+    }
+
+    static List<Setting> parse(String settings) {
+        List<Setting> parsed = new ArrayList<>();
+        for (String setting : settings.split(",")) {
+            String[] values = setting.trim().split(":");
+            if (values.length != 2) {
+                throw new IllegalArgumentException(String.format("Invalid sampling setting '%s', expected "
+                        + "'numRatingsToSample:localUserRatingsToSample'", setting));
+            }
+            parsed.add(new Setting(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())));
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * Pick the setting of a traversal about to run, to {@link #release} when done.
+     */
+    public Setting acquire() {
+        int running = inFlight.getAndIncrement();
+        if (!enabled) {
+            return settings.get(0);
+        }
+        int last = settings.size() - 1;
+        int level = 0;
+        while (level < last && settings.get(level).estimateNanos.get() > sloNanos) {
+            level++;
+        }
+        level = Math.min(last, level + running / inFlightPerStep);
+        if (level > 0 && probeEvery > 0 && requests.incrementAndGet() % probeEvery == 0) {
+            level--;
+        }
+        return settings.get(level);
+    }
+
+    /**
+     * Measure a traversal.
+     *
+     * @param setting setting of the traversal
+     * @param success traversal succeeded
+     * @param elapsed time spent
+     * @param results number of videos found
+     */
+    public void release(Setting setting, boolean success, Duration elapsed, int results) {
+        inFlight.decrementAndGet();
+        histograms.record(RPC, setting.getName(), success, elapsed);
+        // A timed out traversal was slow too
+        setting.measure(elapsed.toNanos());
+        if (success) {
+            setting.results.recordValue(Math.max(0, results));
+        }
+    }
+
+    /**
+     * Write the videos found by each setting (histogram) and the estimates of their traversal time.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        out.append("# HELP ").append(RESULTS_METRIC).append(" Videos found by the recommendation traversal by sampling setting.\n");
+        out.append("# TYPE ").append(RESULTS_METRIC).append(" histogram\n");
+        for (Setting setting : settings) {
+            Histogram histogram = setting.accumulate();
+            String labels = setting.labels();
+            for (long bucket : RESULT_BUCKETS) {
+                out.append(RESULTS_METRIC).append("_bucket{").append(labels).append(",le=\"").append(Long.toString(bucket))
+                        .append("\"} ").append(Long.toString(histogram.getCountBetweenValues(0, bucket))).append('\n');
+            }
+            out.append(RESULTS_METRIC).append("_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                    .append(Long.toString(histogram.getTotalCount())).append('\n');
+            out.append(RESULTS_METRIC).append("_sum{").append(labels).append("} ")
+                    .append(Long.toString(Math.round(histogram.getMean() * histogram.getTotalCount()))).append('\n');
+            out.append(RESULTS_METRIC).append("_count{").append(labels).append("} ")
+                    .append(Long.toString(histogram.getTotalCount())).append('\n');
+        }
+        out.append("# HELP ").append(ESTIMATE_METRIC).append(" Estimated time of the recommendation traversal by sampling setting.\n");
+        out.append("# TYPE ").append(ESTIMATE_METRIC).append(" gauge\n");
+        for (Setting setting : settings) {
+            out.append(ESTIMATE_METRIC).append('{').append(setting.labels()).append("} ")
+                    .append(String.format(Locale.ROOT, "%s", setting.estimateNanos.get() / 1_000_000_000.0)).append('\n');
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Settings, richest first. */
+    public List<Setting> getSettings() {
+        return settings;
+    }
+
+    /** Number of traversals running. */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Sampling parameters of the traversal, with their measures.
+     */
+    public static final class Setting {
+        private final int numRatingsToSample;
+        private final int localUserRatingsToSample;
+        private final String name;
+
+        /** Moving average of the traversal times, 0 before the first one. */
+        private final AtomicLong estimateNanos = new AtomicLong();
+        private final Recorder results = new Recorder(2);
+        private final Histogram accumulated = new Histogram(2);
+        private Histogram interval;
+
+        private Setting(int numRatingsToSample, int localUserRatingsToSample) {
+            if (numRatingsToSample <= 0 || localUserRatingsToSample <= 0) {
+                throw new IllegalArgumentException("Sampling sizes must be greater than zero");
+            }
+            this.numRatingsToSample = numRatingsToSample;
+            this.localUserRatingsToSample = localUserRatingsToSample;
+            this.name = "ratings:" + numRatingsToSample + " local:" + localUserRatingsToSample;
+        }
+
+        private void measure(long nanos) {
+            estimateNanos.updateAndGet(estimate -> estimate == 0 ? Math.max(1, nanos)
+                    : Math.max(1, Math.round(estimate + SMOOTHING * (nanos - estimate))));
+        }
+
+        private synchronized Histogram accumulate() {
+            interval = results.getIntervalHistogram(interval);
+            accumulated.add(interval);
+            return accumulated.copy();
+        }
+
+        private String labels() {
+            return "setting=\"" + name + "\"";
+        }
+
+        public int getNumRatingsToSample() {
+            return numRatingsToSample;
+        }
+
+        public int getLocalUserRatingsToSample() {
+            return localUserRatingsToSample;
+        }
+
+        /** Shape of the setting in the latency histograms. */
+        public String getName() {
+            return name;
+        }
+
+        /** Estimated traversal time, zero before the first traversal. */
+        public Duration getEstimate() {
+            return Duration.ofNanos(estimateNanos.get());
+        }
+
+        /** Videos found since startup. */
+        public Histogram getResults() {
+            return accumulate();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.killrvideo.dse.dto.Video;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import static com.killrvideo.dse.dto.AbstractVideo.COLUMN_NAME;
+import static com.killrvideo.dse.dto.AbstractVideo.COLUMN_PREVIEW;
+import static com.killrvideo.dse.dto.Video.COLUMN_ADDED_DATE;
+import static com.killrvideo.dse.dto.Video.COLUMN_USERID;
+import static com.killrvideo.dse.dto.Video.COLUMN_VIDEOID;
+
+/**
+ * Suggest videos from a local {@link ItemSimilarityIndex}, no DSE Graph needed: videos most often liked along with
+ * the videos the user liked.
+ * <p>
+ * Used when 'killrvideo.suggestedVideos.engine' is 'embedded'. Loaded at startup from 'killrvideo.videos' (previews)
+ * and 'killrvideo.video_ratings_by_user', then kept current with the 'YouTubeVideoAdded' and 'UserRatedVideo'
+ * events. Until the load completes, suggestions come from the ratings read so far.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class EmbeddedRecommendationEngine implements RecommendationEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedRecommendationEngine.class);
+
+    /** Name in 'killrvideo.suggestedVideos.engine'. */
+    public static final String NAME = "embedded";
+
+    private static final String QUERY_VIDEOS =
+            "SELECT videoid, userid, name, preview_image_location, added_date " +
+            "FROM killrvideo.videos";
+    private static final String QUERY_RATINGS =
+            "SELECT videoid, userid, rating " +
+            "FROM killrvideo.video_ratings_by_user";
+
+    private final CqlSession session;
+    private final boolean enabled;
+    private final int loadPageSize;
+
+    private final ItemSimilarityIndex index;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Previews of the videos, by id. */
+    private final ConcurrentMap<UUID, Video> previews = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public EmbeddedRecommendationEngine(CqlSession session,
+                                        @Value("${killrvideo.suggestedVideos.engine: graph}") String engine,
+                                        @Value("${killrvideo.suggestedVideos.embedded.loadPageSize: 1000}") int loadPageSize,
+                                        @Value("${killrvideo.suggestedVideos.embedded.maxLikesPerUser: 200}") int maxLikesPerUser) {
+        this.session = session;
+        this.enabled = NAME.equalsIgnoreCase(engine.trim());
+        this.loadPageSize = Math.max(1, loadPageSize);
+        this.index = new ItemSimilarityIndex(GraphRecommendationEngine.MIN_RATING, maxLikesPerUser);
+    }
+
+    /**
+     * Start loading the index when this engine is selected.
+     */
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            load().whenComplete((count, error) -> {
+                if (error != null) {
+                    LOGGER.warn("Cannot load embedded recommendation index: {}", error.getMessage());
+                } else {
+                    LOGGER.info("Embedded recommendation index loaded with {} rating(s) of {} video(s)", count, size());
+                }
+            });
+        }
+    }
+
+    /**
+     * Read the previews of every video, then every rating.
+     *
+     * @return number of ratings read
+     */
+    CompletableFuture<Long> load() {
+        return readAll(QUERY_VIDEOS, row -> addPreview(row.getUuid(COLUMN_VIDEOID), row.getUuid(COLUMN_USERID),
+                        row.getString(COLUMN_NAME), row.getString(COLUMN_PREVIEW), row.getInstant(COLUMN_ADDED_DATE)))
+                .thenCompose(videos -> readAll(QUERY_RATINGS, row -> onRating(row.getUuid("videoid"),
+                        row.getUuid("userid"), row.getInt("rating"))))
+                .thenApply(count -> {
+                    ready = true;
+                    return count;
+                });
+    }
+
+    /**
+     * Keep the fields of a video its preview needs.
+     */
+    private void addPreview(UUID videoId, UUID userId, String name, String previewImageLocation, Instant addedDate) {
+        if (!enabled || videoId == null) {
+            return;
+        }
+        Video preview = new Video();
+        preview.setVideoid(videoId);
+        preview.setUserid(userId);
+        preview.setName(name);
+        preview.setPreviewImageLocation(previewImageLocation);
+        preview.setAddedDate(addedDate);
+        previews.put(videoId, preview);
+    }
+
+    private CompletableFuture<Long> readAll(String query, Consumer<Row> consumer) {
+        SimpleStatement stmt = SimpleStatement.newInstance(query)
+                .setPageSize(loadPageSize)
+                .setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+        return session.executeAsync(stmt)
+                .thenCompose(rs -> readPage(rs, consumer, 0L))
+                .toCompletableFuture();
+    }
+
+    private CompletionStage<Long> readPage(AsyncResultSet rs, Consumer<Row> consumer, long count) {
+        long read = count;
+        for (Row row : rs.currentPage()) {
+            consumer.accept(row);
+            read++;
+        }
+        if (rs.hasMorePages()) {
+            final long total = read;
+            return rs.fetchNextPage().thenCompose(next -> readPage(next, consumer, total));
+        }
+        return CompletableFuture.completedFuture(read);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Videos without a preview (not added through the catalog) are not suggested.
+     */
+    @Override
+    public CompletableFuture<List<Video>> recommendForUser(UUID userId, int limit) {
+        List<UUID> videoIds;
+        lock.readLock().lock();
+        try {
+            // Skip the videos without a preview while ranking, not after: the next candidates fill their places
+            videoIds = index.recommend(userId, limit, previews::containsKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Video> videos = new ArrayList<>(videoIds.size());
+        for (UUID videoId : videoIds) {
+            videos.add(previews.get(videoId));
+        }
+        return CompletableFuture.completedFuture(videos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRating(UUID videoId, UUID userId, int rating) {
+        if (!enabled || videoId == null || userId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.add(userId, videoId, rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onVideoAdded(Video video) {
+        if (video != null) {
+            addPreview(video.getVideoid(), video.getUserid(), video.getName(), video.getPreviewImageLocation(),
+                    video.getAddedDate());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Number of videos rated.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.datastax.dse.driver.api.core.graph.AsyncGraphResultSet;
+import com.datastax.dse.driver.api.core.graph.FluentGraphStatement;
+import com.datastax.dse.driver.api.core.graph.GraphNode;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.dse.graph.KillrVideoTraversal;
+import com.killrvideo.dse.graph.KillrVideoTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static com.killrvideo.dse.graph.KillrVideoTraversalConstants.VERTEX_USER;
+import static com.killrvideo.dse.graph.KillrVideoTraversalConstants.VERTEX_VIDEO;
+
+/**
+ * Suggest videos with the 'recommendByUserRating' traversal of DSE Graph: videos liked by the users who liked the
+ * same videos as the user. Used when 'killrvideo.suggestedVideos.engine' is 'graph'. The sampling parameters of the
+ * traversal come from the {@link AdaptiveSampling}.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class GraphRecommendationEngine implements RecommendationEngine {
+
+    /** Name in 'killrvideo.suggestedVideos.engine'. */
+    public static final String NAME = "graph";
+
+    /** Lowest rating counted as a like. */
+    static final int MIN_RATING = 4;
+
+    private final CqlSession session;
+    private final AdaptiveSampling sampling;
+
+    @Inject
+    private KillrVideoTraversalSource traversalSource;
+
+    public GraphRecommendationEngine(CqlSession session, AdaptiveSampling sampling) {
+        this.session = session;
+        this.sampling = sampling;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Video>> recommendForUser(UUID userId, int limit) {
+        AdaptiveSampling.Setting setting = sampling.acquire();
+        long start = System.nanoTime();
+        CompletableFuture<List<Video>> videos;
+        try {
+            // Build statement
+            KillrVideoTraversal<Vertex, Map<String, Object>> graphTraversal = traversalSource.users(userId.toString())
+                    .recommendByUserRating(limit, MIN_RATING, setting.getNumRatingsToSample(),
+                            setting.getLocalUserRatingsToSample());
+            FluentGraphStatement graphStatement = FluentGraphStatement.newInstance(graphTraversal);
+            //if (LOGGER.isDebugEnabled()) {
+            //LOGGER.debug("Recommend TRAVERSAL is {} ",  DseUtils.displayGraphTranserval(graphTraversal));
+            //}
+
+            // Execute Sync
+            CompletableFuture<AsyncGraphResultSet> futureRs = session.executeAsync(graphStatement).toCompletableFuture();
+
+            // Mapping to expected List
+            videos = futureRs.thenApply(
+                    rs -> StreamSupport.stream(rs.currentPage().spliterator(), false)
+                            .map(this::mapGraphNode2Video).collect(Collectors.toList()
+                            )
+            );
+        } catch (RuntimeException ex) {
+            sampling.release(setting, false, Duration.ofNanos(System.nanoTime() - start), 0);
+            throw ex;
+        }
+        videos.whenComplete((found, error) -> sampling.release(setting, error == null,
+                Duration.ofNanos(System.nanoTime() - start), found == null ? 0 : found.size()));
+        return videos;
+    }
+
+    private Video mapGraphNode2Video(GraphNode node) {
+        GraphNode v = node.getByKey(VERTEX_VIDEO);
+        GraphNode u = node.getByKey(VERTEX_USER);
+
+        Video video = new Video();
+        video.setAddedDate(v.getByKey("added_date").as(Instant.class));
+        video.setName(v.getByKey("name").asString());
+        video.setPreviewImageLocation(v.getByKey("preview_image_location").asString());
+        video.setVideoid(v.getByKey("videoId").as(UUID.class));
+        video.setUserid(u.getByKey("userId").as(UUID.class));
+        return video;
+    }
+}
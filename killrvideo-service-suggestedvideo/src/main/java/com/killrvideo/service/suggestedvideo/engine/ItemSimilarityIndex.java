@@ -0,0 +1,313 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Item-to-item co-rating counts: for each pair of videos, the number of users who liked both.
+ * <p>
+ * Videos are numbered in order of appearance and every count lives in primitive arrays: likes per video, pair
+ * counts in an open addressing table keyed by the two video numbers, and per video the numbers of the videos it
+ * shares a liker with. The videos of a user are scored by the cosine similarity of their co-rating counts with the
+ * videos the user liked, a rating of at least 'minRating' being a like. Only the last 'maxLikesPerUser' likes of a
+ * user are paired with a new like, which bounds the cost of a rating. Not thread safe.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class ItemSimilarityIndex {
+
+    private final int minRating;
+    private final int maxLikesPerUser;
+
+    /** Number of each video. */
+    private final Map<UUID, Integer> itemNumbers = new HashMap<>();
+    private UUID[] items = new UUID[256];
+    private int[] likes = new int[256];
+    private int itemCount;
+
+    /** Videos sharing a liker with each video. */
+    private int[][] neighbors = new int[256][];
+    private int[] neighborCounts = new int[256];
+
+    /** Pair counts, key is (low number << 32 | high number), high number is never 0 so 0 is a free slot. */
+    private long[] pairKeys = new long[1024];
+    private int[] pairCounts = new int[1024];
+    private int pairCount;
+
+    private final Map<UUID, UserRatings> users = new HashMap<>();
+
+    /**
+     * @param minRating       lowest rating counted as a like
+     * @param maxLikesPerUser last likes of a user paired with a new like
+     */
+    ItemSimilarityIndex(int minRating, int maxLikesPerUser) {
+        this.minRating = minRating;
+        this.maxLikesPerUser = Math.max(1, maxLikesPerUser);
+    }
+
+    /**
+     * Count a rating.
+     *
+     * @return false when the user already rated the video
+     */
+    boolean add(UUID userId, UUID videoId, int rating) {
+        int item = number(videoId);
+        UserRatings user = users.computeIfAbsent(userId, id -> new UserRatings());
+        if (user.hasRated(item)) {
+            return false;
+        }
+        user.rated = append(user.rated, user.ratedCount++, item);
+        if (rating >= minRating) {
+            likes[item]++;
+            for (int i = Math.max(0, user.likedCount - maxLikesPerUser); i < user.likedCount; i++) {
+                incrementPair(item, user.liked[i]);
+            }
+            user.liked = append(user.liked, user.likedCount++, item);
+        }
+        return true;
+    }
+
+    /**
+     * Videos most similar to the likes of a user, the ones the user rated excluded. Users without likes get the
+     * most liked videos.
+     *
+     * @param userId user
+     * @param limit  maximum number of videos
+     * @return videos, best first
+     */
+    List<UUID> recommend(UUID userId, int limit) {
+        return recommend(userId, limit, video -> true);
+    }
+
+    /**
+     * Videos most similar to the likes of a user, among the eligible ones: every scored video is tested, so fewer
+     * than 'limit' videos means no other eligible video scored.
+     *
+     * @param userId   user
+     * @param limit    maximum number of videos
+     * @param eligible videos that may be recommended
+     * @return videos, best first
+     */
+    List<UUID> recommend(UUID userId, int limit, Predicate<UUID> eligible) {
+        UserRatings user = users.get(userId);
+        int[] rated = user == null ? new int[0] : Arrays.copyOf(user.rated, user.ratedCount);
+        Arrays.sort(rated);
+        if (user == null || user.likedCount == 0) {
+            return mostLiked(limit, rated, eligible);
+        }
+        ScoreTable scores = new ScoreTable();
+        for (int l = Math.max(0, user.likedCount - maxLikesPerUser); l < user.likedCount; l++) {
+            int liked = user.liked[l];
+            int[] likedNeighbors = neighbors[liked];
+            for (int n = 0; n < neighborCounts[liked]; n++) {
+                int other = likedNeighbors[n];
+                scores.add(other, pairCount(liked, other) / Math.sqrt((double) likes[liked] * likes[other]));
+            }
+        }
+        return best(limit, rated, eligible, scores);
+    }
+
+    private List<UUID> best(int limit, int[] rated, Predicate<UUID> eligible, ScoreTable scores) {
+        // Worst of the best on top
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1,
+                Comparator.<double[]>comparingDouble(entry -> entry[1]).thenComparingDouble(entry -> -entry[0]));
+        for (int slot = 0; slot < scores.keys.length; slot++) {
+            int item = scores.keys[slot] - 1;
+            if (item >= 0 && Arrays.binarySearch(rated, item) < 0 && eligible.test(items[item])) {
+                best.add(new double[] {item, scores.values[slot]});
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        UUID[] videos = new UUID[best.size()];
+        for (int i = videos.length - 1; i >= 0; i--) {
+            videos[i] = items[(int) best.poll()[0]];
+        }
+        return Arrays.asList(videos);
+    }
+
+    private List<UUID> mostLiked(int limit, int[] rated, Predicate<UUID> eligible) {
+        ScoreTable scores = new ScoreTable();
+        for (int item = 0; item < itemCount; item++) {
+            if (likes[item] > 0) {
+                scores.add(item, likes[item]);
+            }
+        }
+        return best(limit, rated, eligible, scores);
+    }
+
+    private int number(UUID videoId) {
+        Integer known = itemNumbers.get(videoId);
+        if (known != null) {
+            return known;
+        }
+        if (itemCount == items.length) {
+            int capacity = items.length * 2;
+            items = Arrays.copyOf(items, capacity);
+            likes = Arrays.copyOf(likes, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+            neighborCounts = Arrays.copyOf(neighborCounts, capacity);
+        }
+        items[itemCount] = videoId;
+        itemNumbers.put(videoId, itemCount);
+        return itemCount++;
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        int[] target = array;
+        if (target == null) {
+            target = new int[4];
+        } else if (size == target.length) {
+            target = Arrays.copyOf(target, size * 2);
+        }
+        target[size] = value;
+        return target;
+    }
+
+    private static long pairKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void incrementPair(int a, int b) {
+        long key = pairKey(a, b);
+        int mask = pairKeys.length - 1;
+        int slot = slot(key, mask);
+        while (pairKeys[slot] != 0) {
+            if (pairKeys[slot] == key) {
+                pairCounts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        pairKeys[slot] = key;
+        pairCounts[slot] = 1;
+        neighbors[a] = append(neighbors[a], neighborCounts[a]++, b);
+        neighbors[b] = append(neighbors[b], neighborCounts[b]++, a);
+        // Keep the table at most half full
+        if (++pairCount * 2 > pairKeys.length) {
+            resizePairs();
+        }
+    }
+
+    private void resizePairs() {
+        long[] oldKeys = pairKeys;
+        int[] oldCounts = pairCounts;
+        pairKeys = new long[oldKeys.length * 2];
+        pairCounts = new int[oldKeys.length * 2];
+        int mask = pairKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (pairKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                pairKeys[slot] = oldKeys[i];
+                pairCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Number of users who liked two videos.
+     */
+    int pairCount(int a, int b) {
+        long key = pairKey(a, b);
+        int mask = pairKeys.length - 1;
+        for (int slot = slot(key, mask); pairKeys[slot] != 0; slot = (slot + 1) & mask) {
+            if (pairKeys[slot] == key) {
+                return pairCounts[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of users who liked two videos.
+     */
+    int pairCount(UUID a, UUID b) {
+        Integer first = itemNumbers.get(a);
+        Integer second = itemNumbers.get(b);
+        return first == null || second == null || first.equals(second) ? 0 : pairCount(first, second);
+    }
+
+    /** Number of videos rated. */
+    int size() {
+        return itemCount;
+    }
+
+    /** Number of pairs of videos liked by a same user. */
+    int pairs() {
+        return pairCount;
+    }
+
+    /** Number of users who rated videos. */
+    int users() {
+        return users.size();
+    }
+
+    /**
+     * Videos rated by a user, in order, and the liked ones.
+     */
+    private static final class UserRatings {
+        private int[] rated;
+        private int ratedCount;
+        private int[] liked;
+        private int likedCount;
+
+        private boolean hasRated(int item) {
+            for (int i = 0; i < ratedCount; i++) {
+                if (rated[i] == item) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Scores by video number, open addressing on number + 1 (0 is a free slot).
+     */
+    private static final class ScoreTable {
+        private int[] keys = new int[64];
+        private double[] values = new double[64];
+        private int size;
+
+        private void add(int item, double score) {
+            int key = item + 1;
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    values[slot] += score;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = score;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new double[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    add(oldKeys[i] - 1, oldValues[i]);
+                }
+            }
+        }
+    }
+}
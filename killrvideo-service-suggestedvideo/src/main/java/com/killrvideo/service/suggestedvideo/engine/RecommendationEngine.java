@@ -0,0 +1,42 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.killrvideo.dse.dto.Video;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Videos suggested to a user from the ratings of every user. Implementations are Spring beans picked with
+ * 'killrvideo.suggestedVideos.engine'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public interface RecommendationEngine {
+
+    /**
+     * Name of the engine in the configuration.
+     */
+    String getName();
+
+    /**
+     * Videos suggested to a user, the ones the user rated excluded.
+     *
+     * @param userId user
+     * @param limit  maximum number of videos
+     * @return videos (preview fields and uploader), best first
+     */
+    CompletableFuture<List<Video>> recommendForUser(UUID userId, int limit);
+
+    /**
+     * A user rated a video.
+     */
+    default void onRating(UUID videoId, UUID userId, int rating) {
+    }
+
+    /**
+     * A video was added to the catalog.
+     */
+    default void onVideoAdded(Video video) {
+    }
+}
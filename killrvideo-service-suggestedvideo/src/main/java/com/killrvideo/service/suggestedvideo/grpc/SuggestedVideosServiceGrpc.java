@@ -117,7 +117,7 @@ public class SuggestedVideosServiceGrpc extends SuggestedVideoServiceImplBase {
      */
     private void traceSuccess(String method, Instant starts) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).getNano()/1000);
+            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).toMillis());
         }
     }
     
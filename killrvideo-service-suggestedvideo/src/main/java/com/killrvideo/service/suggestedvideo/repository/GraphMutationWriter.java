@@ -0,0 +1,430 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.datastax.dse.driver.api.core.graph.BatchGraphStatement;
+import com.datastax.dse.driver.api.core.graph.FluentGraphStatement;
+import com.datastax.dse.driver.api.core.graph.GraphStatement;
+import com.datastax.oss.driver.api.core.AllNodesFailedException;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.servererrors.BootstrappingException;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.QueryValidationException;
+import com.datastax.oss.driver.api.core.servererrors.ServerError;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.killrvideo.metrics.MetricsWriter;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Graph mutations of the messaging events, written in batches by a background writer.
+ * <p>
+ * Mutations are queued in submission order and grouped in a {@link BatchGraphStatement}: a batch is written when
+ * it holds 'killrvideo.graph.writer.batchSize' mutations, or 'killrvideo.graph.writer.maxDelayMillis' after its
+ * first mutation was submitted.
+ * <p>
+ * Mutations are not idempotent ('rated' adds an edge), so only the errors raised before the write was applied
+ * (replica unavailable, node overloaded or bootstrapping, no node reachable) are retried, up to
+ * 'killrvideo.graph.writer.maxAttempts' attempts, the back-off doubling from 'initialBackoffMillis' to
+ * 'maxBackoffMillis'. A batch runs in a single graph transaction: when it is rejected (invalid mutation, server
+ * error) or still unavailable after the last attempt, its mutations are written again one at a time, so that one
+ * bad mutation does not fail the others. A write that may have been applied (timeout) is not written again.
+ * <p>
+ * The queue is bounded: when full, submitters wait for room (the event consumers are slowed down rather than DSE
+ * Graph saturated). Mutations still queued at shutdown are written before the session closes.
+ * <p>
+ * Throughput (mutations written, failed, batches, retries) and lag (queued mutations, time from submission to write)
+ * are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class GraphMutationWriter implements MetricsWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphMutationWriter.class);
+
+    private static final String METRICS_PREFIX = "killrvideo_graph_writer_";
+
+    private final CqlSession session;
+    private final boolean batched;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final BlockingQueue<Mutation> queue;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder splits = new LongAdder();
+    private final LongAdder lagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    private ExecutorService writer;
+    private volatile boolean running;
+
+    public GraphMutationWriter(CqlSession session,
+                               @Value("${killrvideo.graph.writer.batched: false}") boolean batched,
+                               @Value("${killrvideo.graph.writer.batchSize: 50}") int batchSize,
+                               @Value("${killrvideo.graph.writer.maxDelayMillis: 20}") long maxDelayMillis,
+                               @Value("${killrvideo.graph.writer.maxAttempts: 5}") int maxAttempts,
+                               @Value("${killrvideo.graph.writer.initialBackoffMillis: 50}") long initialBackoffMillis,
+                               @Value("${killrvideo.graph.writer.maxBackoffMillis: 2000}") long maxBackoffMillis,
+                               @Value("${killrvideo.graph.writer.queueCapacity: 10000}") int queueCapacity) {
+        this.session = session;
+        this.batched = batched;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (batched) {
+            running = true;
+            writer = Executors.newSingleThreadExecutor(new KillrVideoThreadFactory());
+            writer.submit(this::writeLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer != null) {
+            running = false;
+            writer.shutdownNow();
+            try {
+                writer.awaitTermination(maxDelayNanos + TimeUnit.SECONDS.toNanos(1), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!queue.isEmpty()) {
+                LOGGER.info("{} graph mutation(s) left at shutdown written", flush());
+            }
+        }
+    }
+
+    /**
+     * Queue a mutation, or write it at once when batching is disabled.
+     *
+     * @param description what the mutation does, for the logs
+     * @param traversal   mutation
+     * @return completed when written, or with the error of the last attempt
+     */
+    public CompletableFuture<Void> submit(String description, GraphTraversal<?, ?> traversal) {
+        submitted.increment();
+        Mutation mutation = new Mutation(description, traversal, System.nanoTime());
+        if (!batched) {
+            executeAsync(FluentGraphStatement.newInstance(traversal), 1, initialBackoffMillis).whenComplete((rs, error) -> {
+                if (error == null) {
+                    batches.increment();
+                }
+                done(mutation, error);
+            });
+            return mutation.written;
+        }
+        try {
+            queue.put(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done(mutation, e);
+        }
+        return mutation.written;
+    }
+
+    private void writeLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                Mutation first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    write(nextBatch(first));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error("Graph mutations writer error", e);
+            }
+        }
+    }
+
+    /**
+     * Gather the mutations submitted within the time window of the first one, until interrupted.
+     */
+    private List<Mutation> nextBatch(Mutation first) {
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        long deadline = first.submittedAt + maxDelayNanos;
+        try {
+            while (batch.size() < batchSize) {
+                long wait = deadline - System.nanoTime();
+                Mutation next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Write what was gathered, then stop
+            Thread.currentThread().interrupt();
+        }
+        return batch;
+    }
+
+    /**
+     * Execute a statement, retrying the errors raised before it was applied.
+     */
+    private CompletableFuture<Void> executeAsync(GraphStatement<?> statement, int attempt, long backoff) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletionStage<?> execution;
+        try {
+            execution = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        execution.whenComplete((rs, error) -> {
+            Throwable cause = unwrap(error);
+            if (cause == null) {
+                result.complete(null);
+            } else if (attempt < maxAttempts && isTransient(cause)) {
+                retries.increment();
+                LOGGER.warn("Cannot write graph mutation, retry in {} millis: {}", backoff, cause.getMessage());
+                CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS).execute(() ->
+                        executeAsync(statement, attempt + 1, Math.min(maxBackoffMillis, backoff * 2))
+                                .whenComplete((written, retryError) -> {
+                                    if (retryError == null) {
+                                        result.complete(null);
+                                    } else {
+                                        result.completeExceptionally(unwrap(retryError));
+                                    }
+                                }));
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Write the queued mutations, a batch at a time, in the calling thread (at shutdown, or in tests).
+     *
+     * @return number of mutations written or failed
+     */
+    int flush() {
+        int count = 0;
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            count += batch.size();
+            write(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+        return count;
+    }
+
+    /**
+     * Write a batch, one mutation at a time if the batch is not applied.
+     */
+    private void write(List<Mutation> batch) {
+        GraphStatement<?> statement = batch.size() == 1 ?
+                FluentGraphStatement.newInstance(batch.get(0).traversal) :
+                BatchGraphStatement.builder().addTraversals(traversals(batch)).build();
+        RuntimeException error = execute(statement, batch);
+        if (error == null) {
+            batches.increment();
+            batch.forEach(mutation -> done(mutation, null));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("{} graph mutation(s) written, first is '{}'", batch.size(), batch.get(0).description);
+            }
+        } else if (batch.size() > 1 && isNotApplied(error) && !Thread.currentThread().isInterrupted()) {
+            splits.increment();
+            LOGGER.warn("Cannot write {} graph mutations as a batch, writing them one at a time: {}",
+                    batch.size(), error.getMessage());
+            batch.forEach(mutation -> write(Collections.singletonList(mutation)));
+        } else {
+            LOGGER.error("Cannot write {} graph mutation(s), first is '{}': {}",
+                    batch.size(), batch.get(0).description, error.getMessage());
+            batch.forEach(mutation -> done(mutation, error));
+        }
+    }
+
+    /**
+     * Execute a statement, retrying with back-off the errors raised before it was applied.
+     *
+     * @return null when written, the last error otherwise
+     */
+    private RuntimeException execute(GraphStatement<?> statement, List<Mutation> batch) {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.execute(statement);
+                return null;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !isTransient(e)) {
+                    return e;
+                }
+                retries.increment();
+                LOGGER.warn("Cannot write {} graph mutation(s), retry in {} millis: {}", batch.size(), backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new CancellationException("Graph mutations writer interrupted");
+            }
+            backoff = Math.min(maxBackoffMillis, backoff * 2);
+        }
+    }
+
+    /**
+     * Tell if an error was raised before the statement reached a replica, the same statement may succeed later.
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof AllNodesFailedException) {
+            // No node could be tried (no error), or every node refused the statement
+            return ((AllNodesFailedException) error).getAllErrors().values().stream()
+                    .flatMap(List::stream)
+                    .allMatch(GraphMutationWriter::isTransient);
+        }
+        return error instanceof UnavailableException
+                || error instanceof OverloadedException
+                || error instanceof BootstrappingException;
+    }
+
+    /**
+     * Tell if an error means the statement was not applied: transient, or rejected by the server (the graph
+     * transaction is rolled back). Timeouts leave the outcome unknown.
+     */
+    static boolean isNotApplied(Throwable error) {
+        return isTransient(error) || error instanceof QueryValidationException || error instanceof ServerError;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static List<GraphTraversal> traversals(List<Mutation> batch) {
+        List<GraphTraversal> traversals = new ArrayList<>(batch.size());
+        batch.forEach(mutation -> traversals.add(mutation.traversal));
+        return traversals;
+    }
+
+    private void done(Mutation mutation, Throwable error) {
+        long lag = System.nanoTime() - mutation.submittedAt;
+        lagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        if (error == null) {
+            written.increment();
+            mutation.written.complete(null);
+        } else {
+            failed.increment();
+            mutation.written.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Write the mutations submitted, written and failed, the batches, retries and splits, the queued mutations and the
+     * lag from submission to write.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "submitted_total",
+                "Graph mutations submitted.", getSubmittedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "written_total",
+                "Graph mutations written.", getWrittenCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "failed_total",
+                "Graph mutations given up.", getFailedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "batches_total",
+                "Batches of graph mutations written.", getBatchCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "retries_total",
+                "Graph writes retried.", getRetryCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "splits_total",
+                "Batches of graph mutations written again one mutation at a time.", getSplitCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "queue_size",
+                "Graph mutations waiting to be written.", getQueueSize());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "lag_average_seconds",
+                "Average time from submission to write of the graph mutations.", getAverageLagMillis() / 1000.0);
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "lag_max_seconds",
+                "Longest time from submission to write of the graph mutations.", getMaxLagMillis() / 1000.0);
+    }
+
+    /** Number of mutations submitted. */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /** Number of mutations written. */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /** Number of mutations given up. */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /** Number of batches written. */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /** Number of writes retried. */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /** Number of batches written again one mutation at a time. */
+    public long getSplitCount() {
+        return splits.sum();
+    }
+
+    /** Number of mutations waiting to be written. */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /** Average time from submission to write, in milliseconds. */
+    public double getAverageLagMillis() {
+        long done = written.sum() + failed.sum();
+        return done == 0 ? 0 : lagNanos.sum() / 1_000_000.0 / done;
+    }
+
+    /** Longest time from submission to write, in milliseconds. */
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    /** Average number of mutations per batch written. */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) written.sum() / count;
+    }
+
+    private static final class Mutation {
+        private final String description;
+        private final GraphTraversal<?, ?> traversal;
+        private final long submittedAt;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Mutation(String description, GraphTraversal<?, ?> traversal, long submittedAt) {
+            this.description = description;
+            this.traversal = traversal;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
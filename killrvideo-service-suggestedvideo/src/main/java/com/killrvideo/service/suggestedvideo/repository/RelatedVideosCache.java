@@ -0,0 +1,167 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.metrics.MetricsWriter;
+import com.killrvideo.service.suggestedvideo.request.GetRelatedVideosRequestData;
+import com.killrvideo.utils.SingleFlightCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * First pages of the related videos of the popular videos, kept for a short time.
+ * <p>
+ * Pages are keyed by the source video and the page size, and the same page asked concurrently is read once: the
+ * viewers of a popular video share the lookup of the video and the search of its related videos. Next pages are
+ * always read. A 'YouTubeVideoAdded' event of a source video (its name, tags or description may have changed) drops
+ * its pages. Pages are otherwise dropped after their time to live, or when room is needed.
+ * <p>
+ * Hits, misses, pages dropped and the hit rate are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class RelatedVideosCache implements MetricsWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RelatedVideosCache.class);
+
+    private static final String METRICS_PREFIX = "killrvideo_related_videos_cache_";
+
+    private final boolean enabled;
+    private final SingleFlightCache<RelatedKey, ResultListPage<Video>> pages;
+
+    public RelatedVideosCache(@Value("${killrvideo.suggestedVideos.relatedCache.enabled: false}") boolean enabled,
+                              @Value("${killrvideo.suggestedVideos.relatedCache.maxEntries: 1000}") int maxEntries,
+                              @Value("${killrvideo.suggestedVideos.relatedCache.ttlSeconds: 60}") int ttlSeconds) {
+        this.enabled = enabled;
+        this.pages = new SingleFlightCache<>(Duration.ofSeconds(Math.max(0, ttlSeconds)), maxEntries);
+    }
+
+    /**
+     * Get a page of related videos from memory or from the search.
+     *
+     * @param request related videos request
+     * @param search  lookup of the source video and search of its related videos
+     * @return page of related videos
+     */
+    public CompletableFuture<ResultListPage<Video>> get(GetRelatedVideosRequestData request,
+                                                       Function<GetRelatedVideosRequestData, CompletableFuture<ResultListPage<Video>>> search) {
+        if (!enabled || request.getPagingState().isPresent()) {
+            return search.apply(request);
+        }
+        return pages.get(new RelatedKey(request.getVideoid(), request.getPageSize()), key -> search.apply(request));
+    }
+
+    /**
+     * Drop the pages of a source video which may have changed.
+     *
+     * @return number of pages dropped
+     */
+    public int onVideoChanged(UUID videoId) {
+        if (!enabled || videoId == null) {
+            return 0;
+        }
+        int dropped = pages.invalidateIf(key -> key.videoid.equals(videoId));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} cached related videos page(s) dropped for video {}, hit rate:{}", dropped, videoId, getHitRate());
+        }
+        return dropped;
+    }
+
+    /**
+     * Write the hits, misses, collapsed reads, pages dropped, number of pages and hit rate.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "hits_total",
+                "First pages of related videos served from memory.", getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "misses_total",
+                "First pages of related videos read.", getMissCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "collapsed_total",
+                "First pages of related videos which joined the same read running.", getCollapsedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "invalidations_total",
+                "Cached related videos pages dropped because their source video changed.", getInvalidationCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "evictions_total",
+                "Cached related videos pages dropped to make room.", getEvictionCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "entries", "Cached related videos pages.", size());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "hit_ratio",
+                "Share of the first pages of related videos served from memory.", getHitRate());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Number of pages served from memory. */
+    public long getHitCount() {
+        return pages.getHitCount();
+    }
+
+    /** Number of pages read, others were served from memory or joined a running read. */
+    public long getMissCount() {
+        return pages.getLoadCount();
+    }
+
+    /** Number of pages which joined the same read running. */
+    public long getCollapsedCount() {
+        return pages.getCollapsedCount();
+    }
+
+    /** Number of pages dropped because their source video changed. */
+    public long getInvalidationCount() {
+        return pages.getInvalidationCount();
+    }
+
+    /** Number of pages dropped to make room. */
+    public long getEvictionCount() {
+        return pages.getEvictionCount();
+    }
+
+    /** Share of first pages served from memory. */
+    public double getHitRate() {
+        return pages.getHitRate();
+    }
+
+    /** Number of cached pages. */
+    public int size() {
+        return pages.size();
+    }
+
+    /**
+     * Source video and page size.
+     */
+    private static final class RelatedKey {
+        private final UUID videoid;
+        private final int pageSize;
+
+        private RelatedKey(UUID videoid, int pageSize) {
+            this.videoid = videoid;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RelatedKey)) {
+                return false;
+            }
+            RelatedKey other = (RelatedKey) o;
+            return pageSize == other.pageSize && videoid.equals(other.videoid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(videoid, pageSize);
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package com.killrvideo.service.suggestedvideo.repository;
 
-import com.datastax.dse.driver.api.core.graph.AsyncGraphResultSet;
-import com.datastax.dse.driver.api.core.graph.FluentGraphStatement;
-import com.datastax.dse.driver.api.core.graph.GraphNode;
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.google.common.collect.Sets;
@@ -16,7 +13,10 @@ import com.killrvideo.dse.utils.PageableQuery;
 import com.killrvideo.dse.utils.PageableQueryFactory;
 import com.killrvideo.service.suggestedvideo.dao.VideoDao;
 import com.killrvideo.service.suggestedvideo.dao.VideoMapper;
+import com.killrvideo.service.suggestedvideo.engine.GraphRecommendationEngine;
+import com.killrvideo.service.suggestedvideo.engine.RecommendationEngine;
 import com.killrvideo.service.suggestedvideo.request.GetRelatedVideosRequestData;
+import com.killrvideo.utils.QueryAnalyzer;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,16 +24,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import java.time.Instant;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-
-import static com.killrvideo.dse.graph.KillrVideoTraversalConstants.VERTEX_USER;
-import static com.killrvideo.dse.graph.KillrVideoTraversalConstants.VERTEX_VIDEO;
 
 /**
  * Implementations of operation for Videos.
@@ -47,14 +44,36 @@ public class SuggestedVideosRepository {
             "SELECT * " +
             "FROM killrvideo.videos " +
             "WHERE solr_query = ?";
+
+    /**
+     * Videos suggested to a user.
+     */
+    private static final int SUGGESTED_VIDEOS = 5;
+
     private final CqlSession session;
     private final VideoDao videoDao;
 
+    /**
+     * Graph mutations of the messaging events.
+     */
+    private final GraphMutationWriter graphWriter;
+
+    /**
+     * Engine of the suggestions, the graph is only written when it is the graph engine.
+     */
+    private final RecommendationEngine recommendationEngine;
+    private final boolean writesGraph;
+
     /**
      * Precompile statements to speed up queries.
      */
     private final PageableQuery<Video> findRelatedVideos;
 
+    /**
+     * First pages of related videos of the popular videos.
+     */
+    private final RelatedVideosCache relatedVideosCache;
+
     @Inject
     private KillrVideoTraversalSource traversalSource;
 
@@ -67,17 +86,38 @@ public class SuggestedVideosRepository {
     private static final String PAGING_DRIVER_END = "\", \"paging\":\"driver\"}";
 
     /**
-     * Create a set of sentence conjunctions and other "undesirable"
-     * words we will use later to exclude from search results.
+     * Words of the videos, without the sentence conjunctions and other "undesirable" words.
      * Had to use .split() below because of the following conversation:
      * https://github.com/spring-projects/spring-boot/issues/501
      */
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
-    @Value("#{'${killrvideo.search.ignoredWords}'.split(',')}")
-    private final Set<String> ignoredWords = new HashSet<>();
+    private final QueryAnalyzer analyzer;
 
-    public SuggestedVideosRepository(CqlSession session, PageableQueryFactory pageableQueryFactory, VideoMapper mapper, VideoRowMapper videoRowMapper) {
+    /**
+     * Recommendation lists of the active users, null when disabled.
+     */
+    private final UserRecommendations recommendations;
+    private final long refreshPeriodMillis;
+
+    public SuggestedVideosRepository(CqlSession session, PageableQueryFactory pageableQueryFactory, VideoMapper mapper, VideoRowMapper videoRowMapper,
+                                     GraphMutationWriter graphWriter, RelatedVideosCache relatedVideosCache,
+                                     List<RecommendationEngine> engines,
+                                     @Value("${killrvideo.suggestedVideos.engine: graph}") String engine,
+                                     @Value("#{'${killrvideo.search.ignoredWords:}'.split(',')}") Set<String> ignoredWords,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.enabled: false}") boolean precomputed,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.maxUsers: 10000}") int maxUsers,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.refreshAfterSeconds: 300}") long refreshAfterSeconds,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.idleSeconds: 3600}") long idleSeconds,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.refreshBatchSize: 20}") int refreshBatchSize,
+                                     @Value("${killrvideo.suggestedVideos.precomputed.refreshPeriodMillis: 1000}") long refreshPeriodMillis) {
         this.session = session;
+        this.graphWriter = graphWriter;
+        this.relatedVideosCache = relatedVideosCache;
+        this.recommendationEngine = findEngine(engines, engine);
+        this.writesGraph = GraphRecommendationEngine.NAME.equals(recommendationEngine.getName());
+        this.analyzer = new QueryAnalyzer(ignoredWords);
+        this.recommendations = !precomputed ? null : new UserRecommendations(this::recommendByUserRating, maxUsers,
+                Duration.ofSeconds(refreshAfterSeconds), Duration.ofSeconds(idleSeconds), refreshBatchSize);
+        this.refreshPeriodMillis = Math.max(1, refreshPeriodMillis);
         this.videoDao = mapper.getVideoDao();
         this.findRelatedVideos = pageableQueryFactory.newPageableQuery(
                 QUERY_RELATED_VIDEOS,
@@ -86,15 +126,44 @@ public class SuggestedVideosRepository {
         );
     }
 
+    private static RecommendationEngine findEngine(List<RecommendationEngine> engines, String name) {
+        return engines.stream()
+                .filter(engine -> engine.getName().equalsIgnoreCase(name.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("Unknown recommendation engine '%s', expected one of %s",
+                        name, engines.stream().map(RecommendationEngine::getName).collect(Collectors.toList()))));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (recommendations != null) {
+            recommendations.start(Duration.ofMillis(refreshPeriodMillis));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recommendations != null) {
+            recommendations.stop();
+        }
+    }
+
     /**
-     * Get Pageable result for related video.
+     * Get Pageable result for related video, first pages from memory when cached.
      **/
     public CompletableFuture<ResultListPage<Video>> getRelatedVideos(GetRelatedVideosRequestData request) {
+        return relatedVideosCache.get(request, this::searchRelatedVideos);
+    }
+
+    private CompletableFuture<ResultListPage<Video>> searchRelatedVideos(GetRelatedVideosRequestData request) {
         return findVideoById(request.getVideoid()).thenCompose(video -> {
             if (video == null) {
                 throw new IllegalArgumentException(String.format("Video %s not found", request.getVideoid()));
             }
             String query = buildSolrQueryToSearchVideos(video);
+            if (query == null) {
+                return CompletableFuture.completedFuture(ResultListPage.<Video>empty());
+            }
             return findRelatedVideos.queryNext(
                     Optional.of(request.getPageSize()),
                     request.getPagingState(),
@@ -113,25 +182,34 @@ public class SuggestedVideosRepository {
      * to the "request" video using terms parsed from the name, tags,
      * and description columns of the "request" video.
      * <p>
-     * The regex below will help us parse out individual words that we add to our
+     * The analyzer below will help us parse out individual words that we add to our
      * set. The set will automatically handle any duplicates that we parse out.
      * We can then use the end result termSet to query across the name, tags, and
      * description columns to find similar videos.
+     *
+     * @return the query, null when the video has no word to search
      */
     private String buildSolrQueryToSearchVideos(Video video) {
         final String space = " ";
-        final String eachWordRegEx = "[^\\w]";
-        final String eachWordPattern = Pattern.compile(eachWordRegEx).pattern();
 
-        final HashSet<String> termSet = new HashSet<>(50);
-        Collections.addAll(termSet, video.getName().toLowerCase().split(eachWordPattern));
-        Collections.addAll(video.getTags()); // getTags already returns a set
-        Collections.addAll(termSet, video.getDescription().toLowerCase().split(eachWordPattern));
-        termSet.removeAll(ignoredWords);
-        termSet.removeIf(String::isEmpty);
+        final Set<String> termSet = new LinkedHashSet<>(50);
+        analyzer.analyze(video.getName(), termSet::add);
+        if (video.getTags() != null) {
+            video.getTags().forEach(tag -> analyzer.analyze(tag, termSet::add));
+        }
+        analyzer.analyze(video.getDescription(), termSet::add);
+        if (termSet.isEmpty()) {
+            return null;
+        }
 
-        final String delimitedTermList = termSet.stream().map(Object::toString).collect(Collectors.joining(","));
-        LOGGER.debug("delimitedTermList is : " + delimitedTermList);
+        final StringBuilder delimitedTermList = new StringBuilder();
+        for (String term : termSet) {
+            if (delimitedTermList.length() > 0) {
+                delimitedTermList.append(',');
+            }
+            QueryAnalyzer.appendEscaped(term, delimitedTermList);
+        }
+        LOGGER.debug("delimitedTermList is : {}", delimitedTermList);
 
         final StringBuilder solrQuery = new StringBuilder();
         solrQuery.append(PAGING_DRIVER_START);
@@ -144,7 +222,7 @@ public class SuggestedVideosRepository {
     }
 
     /**
-     * Search for videos.
+     * Search for videos, from the precomputed list of the user when enabled.
      *
      * @param userid current userid,
      * @return Async Page
@@ -152,36 +230,14 @@ public class SuggestedVideosRepository {
     public CompletableFuture<List<Video>> getSuggestedVideosForUser(UUID userid) {
         // Parameters validation
         Assert.notNull(userid, "videoid is required to update statistics");
-        // Build statement
-        KillrVideoTraversal<Vertex, Map<String, Object>> graphTraversal = traversalSource.users(userid.toString())
-                .recommendByUserRating(5, 4, 1000, 5);
-        FluentGraphStatement graphStatement = FluentGraphStatement.newInstance(graphTraversal);
-        //if (LOGGER.isDebugEnabled()) {
-        //LOGGER.debug("Recommend TRAVERSAL is {} ",  DseUtils.displayGraphTranserval(graphTraversal));
-        //}
-
-        // Execute Sync
-        CompletableFuture<AsyncGraphResultSet> futureRs = session.executeAsync(graphStatement).toCompletableFuture();
-
-        // Mapping to expected List
-        return futureRs.thenApply(
-                rs -> StreamSupport.stream(rs.currentPage().spliterator(), false)
-                        .map(this::mapGraphNode2Video).collect(Collectors.toList()
-                        )
-        );
+        return recommendations == null ? recommendByUserRating(userid) : recommendations.get(userid);
     }
 
-    private Video mapGraphNode2Video(GraphNode node) {
-        GraphNode v = node.getByKey(VERTEX_VIDEO);
-        GraphNode u = node.getByKey(VERTEX_USER);
-
-        Video video = new Video();
-        video.setAddedDate(v.getByKey("added_date").as(Instant.class));
-        video.setName(v.getByKey("name").asString());
-        video.setPreviewImageLocation(v.getByKey("preview_image_location").asString());
-        video.setVideoid(v.getByKey("videoId").as(UUID.class));
-        video.setUserid(u.getByKey("userId").as(UUID.class));
-        return video;
+    /**
+     * Ask the recommendation engine for the videos of a user.
+     */
+    private CompletableFuture<List<Video>> recommendByUserRating(UUID userid) {
+        return recommendationEngine.recommendForUser(userid, SUGGESTED_VIDEOS);
     }
 
     /**
@@ -249,6 +305,12 @@ public class SuggestedVideosRepository {
      * .addE("taggedWith").from("^video").inV()))
      */
     public void updateGraphNewVideo(Video video) {
+        // Name, tags or description of a known video may have changed
+        relatedVideosCache.onVideoChanged(video.getVideoid());
+        recommendationEngine.onVideoAdded(video);
+        if (!writesGraph) {
+            return;
+        }
         final KillrVideoTraversal<Vertex, ?> traversal =
                 // Add video Node
                 traversalSource.video(video.getVideoid(), video.getName(), new Date(), video.getDescription(), video.getPreviewImageLocation())
@@ -260,13 +322,11 @@ public class SuggestedVideosRepository {
          * Now that our video is successfully applied lets
          * insert that video into our graph for the recommendation engine
          */
-        FluentGraphStatement gStatement = FluentGraphStatement.newInstance(traversal);
         //LOGGER.info("Traversal for 'updateGraphNewVideo' : {}", DseUtils.displayGraphTranserval(traversal));
-        session.executeAsync(gStatement).whenComplete((graphResultSet, ex) -> {
-                    if (graphResultSet != null) {
-                        LOGGER.debug("Added video vertex, uploaded, and taggedWith edges: " + graphResultSet.one());
+        graphWriter.submit("video " + video.getVideoid(), traversal).whenComplete((written, ex) -> {
+                    if (ex == null) {
+                        LOGGER.debug("Added video vertex, uploaded, and taggedWith edges: " + video.getVideoid());
                     } else {
-                        //TODO: Potentially add some robustness code here
                         LOGGER.warn("Error handling YouTubeVideoAdded for graph: " + ex);
                     }
                 }
@@ -284,12 +344,14 @@ public class SuggestedVideosRepository {
      * @param userCreation user creation date.
      */
     public void updateGraphNewUser(UUID userId, String email, Date userCreation) {
+        if (!writesGraph) {
+            return;
+        }
         final KillrVideoTraversal<Vertex, Vertex> traversal = traversalSource.user(userId, email, userCreation);
-        FluentGraphStatement gStatement = FluentGraphStatement.newInstance(traversal);
         //LOGGER.info("Executed transversal for 'updateGraphNewUser' : {}", DseUtils.displayGraphTranserval(traversal));
-        session.executeAsync(gStatement).whenComplete((graphResultSet, ex) -> {
-                    if (graphResultSet != null) {
-                        LOGGER.debug("Added user vertex: " + graphResultSet.one());
+        graphWriter.submit("user " + userId, traversal).whenComplete((written, ex) -> {
+                    if (ex == null) {
+                        LOGGER.debug("Added user vertex: " + userId);
                     } else {
                         LOGGER.warn("Error creating user vertex: " + ex);
                     }
@@ -307,17 +369,34 @@ public class SuggestedVideosRepository {
      * already exist.
      */
     public void updateGraphNewUserRating(String videoId, UUID userId, int rate) {
+        recommendationEngine.onRating(parseVideoId(videoId), userId, rate);
+        if (!writesGraph) {
+            if (recommendations != null) {
+                recommendations.onRating(userId, parseVideoId(videoId));
+            }
+            return;
+        }
         final KillrVideoTraversal<Vertex, ?> traversal = traversalSource.videos(videoId).add(__.rated(userId, rate));
-        FluentGraphStatement gStatement = FluentGraphStatement.newInstance(traversal);
         //LOGGER.info("Executed transversal for 'updateGraphNewUserRating' : {}", DseUtils.displayGraphTranserval(traversal));
-        session.executeAsync(gStatement).whenComplete((graphResultSet, ex) -> {
-                    if (graphResultSet != null) {
-                        LOGGER.debug("Added rating between user and video: " + graphResultSet.one());
+        graphWriter.submit("rating of " + videoId + " by " + userId, traversal).whenComplete((written, ex) -> {
+                    if (ex == null) {
+                        LOGGER.debug("Added rating between user and video: " + videoId + ", " + userId);
+                        // The traversal now sees the rating
+                        if (recommendations != null) {
+                            recommendations.onRating(userId, parseVideoId(videoId));
+                        }
                     } else {
-                        //TODO: Potentially add some robustness code here
                         LOGGER.warn("Error Adding rating between user and video: " + ex);
                     }
                 }
         );
     }
+
+    private static UUID parseVideoId(String videoId) {
+        try {
+            return UUID.fromString(videoId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,222 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.killrvideo.utils.SingleFlightCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed recommendation lists of the active users, recomputed in the background.
+ * <p>
+ * The first request of a user computes the list, the next ones are a single lookup. A list older than
+ * 'refreshAfter' is still served but queued for recomputation, as is the list of a user who just rated a video
+ * (the rated video leaves the list at once). A background job recomputes a batch of queued lists at a time. Users
+ * not asking for their list for 'idle' are dropped, and when full the least recently read list makes room.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class UserRecommendations {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserRecommendations.class);
+
+    private final Function<UUID, CompletableFuture<List<Video>>> loader;
+    private final int maxUsers;
+    private final long refreshAfterNanos;
+    private final long idleNanos;
+    private final int refreshBatchSize;
+    private final LongSupplier nanoClock;
+
+    /** Lists of the active users. */
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Users whose list is to be recomputed. */
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    /** Concurrent computations of the same list run once. */
+    private final SingleFlightCache<UUID, List<Video>> computations = new SingleFlightCache<>(Duration.ZERO, 0);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @param loader           computation of the list of a user
+     * @param maxUsers         lists kept
+     * @param refreshAfter     age of a list queued for recomputation when read
+     * @param idle             time without read after which a list is dropped
+     * @param refreshBatchSize lists recomputed per run of the background job
+     */
+    UserRecommendations(Function<UUID, CompletableFuture<List<Video>>> loader, int maxUsers,
+                        Duration refreshAfter, Duration idle, int refreshBatchSize) {
+        this(loader, maxUsers, refreshAfter, idle, refreshBatchSize, System::nanoTime);
+    }
+
+    UserRecommendations(Function<UUID, CompletableFuture<List<Video>>> loader, int maxUsers,
+                        Duration refreshAfter, Duration idle, int refreshBatchSize, LongSupplier nanoClock) {
+        this.loader = loader;
+        this.maxUsers = Math.max(1, maxUsers);
+        this.refreshAfterNanos = Math.max(0, refreshAfter.toNanos());
+        this.idleNanos = Math.max(0, idle.toNanos());
+        this.refreshBatchSize = Math.max(1, refreshBatchSize);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Run the background job every period.
+     */
+    void start(Duration period) {
+        refresher = Executors.newSingleThreadScheduledExecutor(new KillrVideoThreadFactory());
+        refresher.scheduleWithFixedDelay(this::refreshAndWait, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * List of a user, from memory or computed.
+     */
+    CompletableFuture<List<Video>> get(UUID userId) {
+        long now = nanoClock.getAsLong();
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            hits.increment();
+            entry.readAt = now;
+            if (now - entry.computedAt > refreshAfterNanos) {
+                queued.add(userId);
+            }
+            return CompletableFuture.completedFuture(entry.videos);
+        }
+        misses.increment();
+        return compute(userId);
+    }
+
+    private CompletableFuture<List<Video>> compute(UUID userId) {
+        return computations.get(userId, id -> loader.apply(id).thenApply(videos -> store(id, videos)));
+    }
+
+    private List<Video> store(UUID userId, List<Video> videos) {
+        long now = nanoClock.getAsLong();
+        List<Video> kept = Collections.unmodifiableList(new ArrayList<>(videos));
+        Entry previous = entries.get(userId);
+        if (previous == null && entries.size() >= maxUsers) {
+            evictLeastRecentlyRead();
+        }
+        entries.put(userId, new Entry(kept, now, previous == null ? now : previous.readAt));
+        return kept;
+    }
+
+    private void evictLeastRecentlyRead() {
+        UUID oldest = null;
+        long oldestReadAt = 0;
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            if (oldest == null || entry.getValue().readAt - oldestReadAt < 0) {
+                oldest = entry.getKey();
+                oldestReadAt = entry.getValue().readAt;
+            }
+        }
+        if (oldest != null) {
+            entries.remove(oldest);
+            queued.remove(oldest);
+        }
+    }
+
+    /**
+     * A user rated a video: it leaves the list of the user, recomputed by the next run of the background job.
+     *
+     * @return the list was in memory
+     */
+    boolean onRating(UUID userId, UUID videoId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return false;
+        }
+        if (videoId != null) {
+            entry.videos = entry.videos.stream()
+                    .filter(video -> !videoId.equals(video.getVideoid()))
+                    .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        }
+        queued.add(userId);
+        return true;
+    }
+
+    /**
+     * Drop the lists of the idle users and recompute a batch of the queued ones.
+     *
+     * @return recomputations, completed when all are
+     */
+    CompletableFuture<Void> refresh() {
+        long now = nanoClock.getAsLong();
+        entries.entrySet().removeIf(entry -> now - entry.getValue().readAt > idleNanos);
+        List<CompletableFuture<List<Video>>> batch = new ArrayList<>(refreshBatchSize);
+        Iterator<UUID> users = queued.iterator();
+        while (users.hasNext() && batch.size() < refreshBatchSize) {
+            UUID userId = users.next();
+            users.remove();
+            // Idle users are not recomputed
+            if (entries.containsKey(userId)) {
+                refreshes.increment();
+                batch.add(compute(userId));
+            }
+        }
+        return CompletableFuture.allOf(batch.toArray(new CompletableFuture[0]));
+    }
+
+    private void refreshAndWait() {
+        try {
+            refresh().join();
+        } catch (CompletionException e) {
+            // Previous lists are kept, recomputed when read again
+            LOGGER.warn("Cannot recompute some recommendation lists: {}", e.getCause().getMessage());
+        }
+    }
+
+    /** Number of lists in memory. */
+    int size() {
+        return entries.size();
+    }
+
+    /** Number of lists waiting for recomputation. */
+    int queuedSize() {
+        return queued.size();
+    }
+
+    /** Number of requests served from memory. */
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Number of requests which computed the list. */
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Number of lists recomputed in the background. */
+    long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    private static final class Entry {
+        private volatile List<Video> videos;
+        private final long computedAt;
+        private volatile long readAt;
+
+        private Entry(List<Video> videos, long computedAt, long readAt) {
+            this.videos = videos;
+            this.computedAt = computedAt;
+            this.readAt = readAt;
+        }
+    }
+}
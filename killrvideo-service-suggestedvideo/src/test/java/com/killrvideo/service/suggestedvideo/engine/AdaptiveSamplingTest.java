@@ -0,0 +1,106 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.killrvideo.metrics.LatencyHistograms;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveSamplingTest {
+    private LatencyHistograms histograms;
+    private AdaptiveSampling sampling;
+
+    @BeforeEach
+    public void setUp() {
+        histograms = new LatencyHistograms(100);
+        sampling = new AdaptiveSampling(histograms, true, 100, "1000:5, 500:4,100:2", 4, 0);
+    }
+
+    private AdaptiveSampling.Setting run(long millis, int results) {
+        AdaptiveSampling.Setting setting = sampling.acquire();
+        sampling.release(setting, true, Duration.ofMillis(millis), results);
+        return setting;
+    }
+
+    @Test
+    public void testParseSettings() {
+        List<AdaptiveSampling.Setting> settings = sampling.getSettings();
+        assertEquals(3, settings.size());
+        assertEquals(500, settings.get(1).getNumRatingsToSample());
+        assertEquals(4, settings.get(1).getLocalUserRatingsToSample());
+        assertEquals("ratings:100 local:2", settings.get(2).getName());
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveSampling.parse("1000"));
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveSampling.parse("1000:0"));
+    }
+
+    @Test
+    public void testRichestSettingWithinObjective() {
+        assertEquals(1000, run(300, 5).getNumRatingsToSample());
+        // Over the objective: next one
+        assertEquals(500, run(50, 5).getNumRatingsToSample());
+        assertEquals(500, run(50, 5).getNumRatingsToSample());
+        assertEquals(Duration.ofMillis(50), sampling.getSettings().get(1).getEstimate());
+        assertEquals(500, sampling.acquire().getNumRatingsToSample());
+    }
+
+    @Test
+    public void testCheaperSettingsUnderLoad() {
+        List<AdaptiveSampling.Setting> acquired = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            acquired.add(sampling.acquire());
+        }
+        assertEquals(1000, acquired.get(3).getNumRatingsToSample());
+        assertEquals(500, acquired.get(4).getNumRatingsToSample());
+        assertEquals(100, acquired.get(8).getNumRatingsToSample());
+        assertEquals(100, acquired.get(9).getNumRatingsToSample());
+        assertEquals(10, sampling.getInFlight());
+
+        acquired.forEach(setting -> sampling.release(setting, true, Duration.ofMillis(10), 5));
+        assertEquals(0, sampling.getInFlight());
+        assertEquals(1000, sampling.acquire().getNumRatingsToSample());
+    }
+
+    @Test
+    public void testProbeRicherSetting() {
+        sampling = new AdaptiveSampling(histograms, true, 100, "1000:5,500:4,100:2", 4, 2);
+        run(300, 5);
+        assertEquals(500, sampling.acquire().getNumRatingsToSample());
+        assertEquals(1000, sampling.acquire().getNumRatingsToSample());
+    }
+
+    @Test
+    public void testDisabledAlwaysUsesFirstSetting() {
+        sampling = new AdaptiveSampling(histograms, false, 100, "1000:5,500:4", 1, 0);
+        run(300, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1000, sampling.acquire().getNumRatingsToSample());
+        }
+    }
+
+    @Test
+    public void testMeasuresExported() throws IOException {
+        run(20, 0);
+        run(20, 5);
+        run(20, 5);
+        AdaptiveSampling.Setting failed = sampling.acquire();
+        sampling.release(failed, false, Duration.ofMillis(2000), 0);
+
+        AdaptiveSampling.Setting richest = sampling.getSettings().get(0);
+        assertEquals(3, histograms.getHistogram(AdaptiveSampling.RPC, richest.getName(), true).getTotalCount());
+        assertEquals(1, histograms.getHistogram(AdaptiveSampling.RPC, richest.getName(), false).getTotalCount());
+        assertEquals(3, richest.getResults().getTotalCount());
+
+        StringBuilder out = new StringBuilder();
+        sampling.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("killrvideo_recommendation_results_bucket{setting=\"ratings:1000 local:5\",le=\"0\"} 1\n"), text);
+        assertTrue(text.contains("killrvideo_recommendation_results_bucket{setting=\"ratings:1000 local:5\",le=\"5\"} 3\n"), text);
+        assertTrue(text.contains("killrvideo_recommendation_results_sum{setting=\"ratings:1000 local:5\"} 10\n"), text);
+        assertTrue(text.contains("killrvideo_recommendation_latency_estimate_seconds{setting=\"ratings:100 local:2\"} 0.0\n"), text);
+    }
+}
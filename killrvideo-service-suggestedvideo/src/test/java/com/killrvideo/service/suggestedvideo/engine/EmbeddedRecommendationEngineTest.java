@@ -0,0 +1,45 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.killrvideo.dse.dto.Video;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class EmbeddedRecommendationEngineTest {
+
+    @Test
+    public void testVideosWithoutPreviewReplacedByNextCandidates() {
+        EmbeddedRecommendationEngine engine = new EmbeddedRecommendationEngine(mock(CqlSession.class),
+                EmbeddedRecommendationEngine.NAME, 100, 200);
+        UUID user = UUID.randomUUID();
+        UUID liked = UUID.randomUUID();
+        engine.onRating(liked, user, 5);
+        // The 10 most liked along with 'liked' have no preview, the 5 next ones have
+        UUID[] videos = new UUID[15];
+        for (int i = 0; i < videos.length; i++) {
+            videos[i] = UUID.randomUUID();
+            if (i >= 10) {
+                Video video = new Video();
+                video.setVideoid(videos[i]);
+                video.setName("Video " + i);
+                engine.onVideoAdded(video);
+            }
+            for (int l = 0; l < videos.length - i; l++) {
+                UUID other = UUID.randomUUID();
+                engine.onRating(liked, other, 5);
+                engine.onRating(videos[i], other, 5);
+            }
+        }
+
+        List<Video> recommended = engine.recommendForUser(user, 3).join();
+
+        assertEquals(3, recommended.size());
+        assertEquals(videos[10], recommended.get(0).getVideoid());
+        assertEquals(5, engine.recommendForUser(user, 10).join().size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemSimilarityIndexTest {
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+    private final UUID video1 = UUID.randomUUID();
+    private final UUID video2 = UUID.randomUUID();
+    private final UUID video3 = UUID.randomUUID();
+    private final UUID video4 = UUID.randomUUID();
+
+    private ItemSimilarityIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new ItemSimilarityIndex(4, 200);
+    }
+
+    @Test
+    public void testPairsCountedForLikesOnly() {
+        index.add(alice, video1, 5);
+        index.add(alice, video2, 4);
+        index.add(alice, video3, 2);
+        index.add(bob, video1, 4);
+        index.add(bob, video2, 5);
+
+        assertEquals(2, index.pairCount(video1, video2));
+        assertEquals(2, index.pairCount(video2, video1));
+        assertEquals(0, index.pairCount(video1, video3));
+        assertEquals(1, index.pairs());
+        assertEquals(3, index.size());
+        assertEquals(2, index.users());
+    }
+
+    @Test
+    public void testSecondRatingOfSameVideoIgnored() {
+        assertTrue(index.add(alice, video1, 5));
+        index.add(alice, video2, 5);
+        assertFalse(index.add(alice, video1, 5));
+
+        assertEquals(1, index.pairCount(video1, video2));
+    }
+
+    @Test
+    public void testRecommendVideosLikedWithTheLikesOfTheUser() {
+        index.add(alice, video1, 5);
+        index.add(alice, video2, 5);
+        index.add(bob, video1, 5);
+        index.add(bob, video2, 5);
+        index.add(bob, video3, 5);
+        index.add(carol, video2, 5);
+        index.add(carol, video4, 5);
+        index.add(carol, video3, 1);
+
+        // video3 shares a liker with video1 and video2, video4 only with video2
+        assertEquals(Arrays.asList(video3, video4), index.recommend(alice, 5));
+        assertEquals(Arrays.asList(video3), index.recommend(alice, 1));
+    }
+
+    @Test
+    public void testOnlyEligibleVideosRecommended() {
+        index.add(alice, video1, 5);
+        index.add(bob, video1, 5);
+        index.add(bob, video2, 5);
+        index.add(bob, video3, 5);
+        index.add(carol, video1, 5);
+        index.add(carol, video2, 5);
+
+        assertEquals(Arrays.asList(video2), index.recommend(alice, 1));
+        // The next candidate takes the place of the ineligible one
+        assertEquals(Arrays.asList(video3), index.recommend(alice, 1, video -> !video.equals(video2)));
+    }
+
+    @Test
+    public void testRatedVideosNotRecommended() {
+        index.add(alice, video1, 5);
+        index.add(alice, video2, 5);
+        index.add(bob, video1, 5);
+        index.add(bob, video2, 1);
+
+        assertTrue(index.recommend(bob, 5).isEmpty());
+    }
+
+    @Test
+    public void testUserWithoutLikesGetsMostLikedVideos() {
+        index.add(alice, video1, 5);
+        index.add(alice, video2, 5);
+        index.add(bob, video2, 5);
+        index.add(carol, video1, 1);
+
+        assertEquals(Arrays.asList(video2), index.recommend(carol, 5));
+        assertEquals(Arrays.asList(video2, video1), index.recommend(UUID.randomUUID(), 5));
+    }
+
+    @Test
+    public void testTablesGrow() {
+        UUID[] videos = new UUID[300];
+        for (int i = 0; i < videos.length; i++) {
+            videos[i] = UUID.randomUUID();
+        }
+        for (int u = 0; u < 10; u++) {
+            UUID user = UUID.randomUUID();
+            for (int i = 0; i < 60; i++) {
+                index.add(user, videos[(u * 30 + i) % videos.length], 5);
+            }
+        }
+        assertEquals(videos.length, index.size());
+        assertEquals(2, index.pairCount(videos[30], videos[59]));
+
+        List<UUID> recommended = index.recommend(alice, 10);
+        assertEquals(10, recommended.size());
+    }
+}
@@ -0,0 +1,176 @@
+package com.killrvideo.service.suggestedvideo.engine;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offline evaluation of the item-to-item index against the user-to-user logic of the 'recommendByUserRating'
+ * traversal, on synthetic ratings: users mostly like the videos of one genre. The last liked video of each user is
+ * held out and counted as a hit when it is among the videos suggested to the user.
+ * <p>
+ * The size of the data set can be set with -Devaluation.users, -Devaluation.videos, -Devaluation.genres and
+ * -Devaluation.ratingsPerUser. Not part of the default build, run with 'mvn test -P evaluation'.
+ */
+@Tag("evaluation")
+class RecommendationEvaluationTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecommendationEvaluationTest.class);
+    private static final int MIN_RATING = GraphRecommendationEngine.MIN_RATING;
+    private static final int LIMIT = 10;
+
+    private final int users = Integer.getInteger("evaluation.users", 2000);
+    private final int videos = Integer.getInteger("evaluation.videos", 1000);
+    private final int genres = Integer.getInteger("evaluation.genres", 20);
+    private final int ratingsPerUser = Integer.getInteger("evaluation.ratingsPerUser", 20);
+
+    @Test
+    public void testItemToItemRecallAndLatency() {
+        Random random = new Random(42);
+        UUID[] videoIds = new UUID[videos];
+        for (int v = 0; v < videos; v++) {
+            videoIds[v] = new UUID(0, v + 1);
+        }
+
+        // Ratings of every user, the last like held out
+        Map<UUID, Map<UUID, Integer>> training = new LinkedHashMap<>();
+        Map<UUID, UUID> heldOut = new HashMap<>();
+        for (int u = 0; u < users; u++) {
+            UUID user = new UUID(1, u + 1);
+            int genre = random.nextInt(genres);
+            Map<UUID, Integer> ratings = new LinkedHashMap<>();
+            UUID lastLiked = null;
+            while (ratings.size() < ratingsPerUser) {
+                boolean inGenre = random.nextDouble() < 0.8;
+                int video = inGenre ? genre + genres * random.nextInt(videos / genres) : random.nextInt(videos);
+                int rating = inGenre ? 3 + random.nextInt(3) : 1 + random.nextInt(4);
+                if (ratings.putIfAbsent(videoIds[video], rating) == null && rating >= MIN_RATING) {
+                    lastLiked = videoIds[video];
+                }
+            }
+            if (lastLiked != null) {
+                ratings.remove(lastLiked);
+                heldOut.put(user, lastLiked);
+            }
+            training.put(user, ratings);
+        }
+
+        ItemSimilarityIndex index = new ItemSimilarityIndex(MIN_RATING, 200);
+        long loadStart = System.nanoTime();
+        training.forEach((user, ratings) -> ratings.forEach((video, rating) -> index.add(user, video, rating)));
+        long loadMillis = (System.nanoTime() - loadStart) / 1_000_000;
+        UserBasedReference reference = new UserBasedReference(training, new Random(7));
+
+        Result itemBased = evaluate(heldOut, index::recommend);
+        Result userBased = evaluate(heldOut, reference::recommend);
+
+        LOGGER.info("Recommendation evaluation: {} users, {} videos, {} genres, {} ratings per user",
+                users, videos, genres, ratingsPerUser);
+        LOGGER.info("  item-to-item index loaded in {} ms, {} pairs", loadMillis, index.pairs());
+        LOGGER.info(String.format(Locale.ROOT, "  %-14s recall@%d %.3f  avg %6.1f us  max %8.1f us", "item-to-item",
+                LIMIT, itemBased.recall(), itemBased.averageMicros(), itemBased.maxMicros()));
+        LOGGER.info(String.format(Locale.ROOT, "  %-14s recall@%d %.3f  avg %6.1f us  max %8.1f us", "user-to-user",
+                LIMIT, userBased.recall(), userBased.averageMicros(), userBased.maxMicros()));
+
+        // Random suggestions would find LIMIT / videos of the held out videos
+        assertTrue(itemBased.recall() > 5.0 * LIMIT / videos, "Item-to-item recall too low: " + itemBased.recall());
+        assertTrue(itemBased.recall() >= userBased.recall() * 0.8,
+                "Item-to-item recall " + itemBased.recall() + " far below user-to-user " + userBased.recall());
+    }
+
+    private static Result evaluate(Map<UUID, UUID> heldOut, BiFunction<UUID, Integer, List<UUID>> recommender) {
+        Result result = new Result();
+        heldOut.forEach((user, video) -> {
+            long start = System.nanoTime();
+            List<UUID> recommended = recommender.apply(user, LIMIT);
+            long elapsed = System.nanoTime() - start;
+            result.count++;
+            result.totalNanos += elapsed;
+            result.maxNanos = Math.max(result.maxNanos, elapsed);
+            if (recommended.contains(video)) {
+                result.hits++;
+            }
+        });
+        return result;
+    }
+
+    private static final class Result {
+        private int count;
+        private int hits;
+        private long totalNanos;
+        private long maxNanos;
+
+        private double recall() {
+            return count == 0 ? 0 : (double) hits / count;
+        }
+
+        private double averageMicros() {
+            return count == 0 ? 0 : totalNanos / 1000.0 / count;
+        }
+
+        private double maxMicros() {
+            return maxNanos / 1000.0;
+        }
+    }
+
+    /**
+     * In memory version of the 'recommendByUserRating' traversal: the users who liked a video the user liked
+     * (1000 ratings sampled), 5 likes sampled per such user, ranked by number of occurrences.
+     */
+    private static final class UserBasedReference {
+        private static final int RATINGS_TO_SAMPLE = 1000;
+        private static final int LOCAL_USER_RATINGS_TO_SAMPLE = 5;
+
+        private final Map<UUID, Map<UUID, Integer>> ratingsByUser;
+        private final Map<UUID, List<UUID>> likersByVideo = new HashMap<>();
+        private final Random random;
+
+        private UserBasedReference(Map<UUID, Map<UUID, Integer>> ratingsByUser, Random random) {
+            this.ratingsByUser = ratingsByUser;
+            this.random = random;
+            ratingsByUser.forEach((user, ratings) -> ratings.forEach((video, rating) -> {
+                if (rating >= MIN_RATING) {
+                    likersByVideo.computeIfAbsent(video, v -> new ArrayList<>()).add(user);
+                }
+            }));
+        }
+
+        private List<UUID> recommend(UUID user, int limit) {
+            Map<UUID, Integer> rated = ratingsByUser.getOrDefault(user, Collections.emptyMap());
+            List<UUID> similarUsers = new ArrayList<>();
+            for (Map.Entry<UUID, Integer> rating : rated.entrySet()) {
+                if (rating.getValue() >= MIN_RATING) {
+                    for (UUID other : likersByVideo.getOrDefault(rating.getKey(), Collections.emptyList())) {
+                        if (!other.equals(user)) {
+                            similarUsers.add(other);
+                        }
+                    }
+                }
+            }
+            Collections.shuffle(similarUsers, random);
+            Map<UUID, Integer> counts = new HashMap<>();
+            for (UUID other : similarUsers.subList(0, Math.min(RATINGS_TO_SAMPLE, similarUsers.size()))) {
+                List<UUID> likes = new ArrayList<>();
+                ratingsByUser.get(other).forEach((video, rating) -> {
+                    if (rating >= MIN_RATING && !rated.containsKey(video)) {
+                        likes.add(video);
+                    }
+                });
+                Collections.shuffle(likes, random);
+                likes.stream().limit(LOCAL_USER_RATINGS_TO_SAMPLE).forEach(video -> counts.merge(video, 1, Integer::sum));
+            }
+            List<Map.Entry<UUID, Integer>> ranked = new ArrayList<>(counts.entrySet());
+            ranked.sort(Map.Entry.<UUID, Integer>comparingByValue().reversed());
+            List<UUID> recommended = new ArrayList<>(limit);
+            for (int i = 0; i < Math.min(limit, ranked.size()); i++) {
+                recommended.add(ranked.get(i).getKey());
+            }
+            return recommended;
+        }
+    }
+}
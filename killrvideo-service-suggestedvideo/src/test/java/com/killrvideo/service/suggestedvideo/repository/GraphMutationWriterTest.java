@@ -0,0 +1,199 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.datastax.dse.driver.api.core.graph.BatchGraphStatement;
+import com.datastax.dse.driver.api.core.graph.FluentGraphStatement;
+import com.datastax.dse.driver.api.core.graph.GraphStatement;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.dse.driver.api.core.graph.AsyncGraphResultSet;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GraphMutationWriterTest {
+    private CqlSession session;
+    private GraphMutationWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        session = mock(CqlSession.class);
+        writer = new GraphMutationWriter(session, true, 3, 20, 3, 1, 2, 100);
+    }
+
+    @Test
+    public void testMutationsWrittenInBatches() {
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            written.add(writer.submit("mutation " + i, mock(GraphTraversal.class)));
+        }
+        assertEquals(7, writer.getQueueSize());
+        assertTrue(written.stream().noneMatch(CompletableFuture::isDone));
+
+        assertEquals(7, writer.flush());
+
+        ArgumentCaptor<GraphStatement<?>> statements = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(session, times(3)).execute(statements.capture());
+        assertEquals(3, ((BatchGraphStatement) statements.getAllValues().get(0)).size());
+        assertEquals(3, ((BatchGraphStatement) statements.getAllValues().get(1)).size());
+        assertTrue(statements.getAllValues().get(2) instanceof FluentGraphStatement);
+        assertTrue(written.stream().allMatch(future -> future.isDone() && !future.isCompletedExceptionally()));
+        assertEquals(7, writer.getWrittenCount());
+        assertEquals(3, writer.getBatchCount());
+    }
+
+    @Test
+    public void testUnavailableBatchRetried() {
+        when(session.execute(any(GraphStatement.class)))
+                .thenThrow(mock(UnavailableException.class))
+                .thenReturn(null);
+        CompletableFuture<Void> written = writer.submit("mutation", mock(GraphTraversal.class));
+
+        writer.flush();
+
+        assertFalse(written.isCompletedExceptionally());
+        assertEquals(1, writer.getRetryCount());
+        assertEquals(1, writer.getWrittenCount());
+    }
+
+    @Test
+    public void testPossiblyAppliedBatchNotWrittenAgain() {
+        when(session.execute(any(GraphStatement.class))).thenThrow(mock(WriteTimeoutException.class));
+        CompletableFuture<Void> first = writer.submit("first", mock(GraphTraversal.class));
+        CompletableFuture<Void> second = writer.submit("second", mock(GraphTraversal.class));
+
+        writer.flush();
+
+        verify(session, times(1)).execute(any(GraphStatement.class));
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(2, writer.getFailedCount());
+        assertEquals(0, writer.getRetryCount());
+        assertEquals(0, writer.getSplitCount());
+    }
+
+    @Test
+    public void testUnavailableBatchWrittenOneAtATimeAfterMaxAttempts() {
+        when(session.execute(any(GraphStatement.class))).thenThrow(mock(UnavailableException.class));
+        CompletableFuture<Void> first = writer.submit("first", mock(GraphTraversal.class));
+        CompletableFuture<Void> second = writer.submit("second", mock(GraphTraversal.class));
+
+        writer.flush();
+
+        // 3 attempts of the batch, then 3 of each mutation
+        verify(session, times(9)).execute(any(GraphStatement.class));
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(2, writer.getFailedCount());
+        assertEquals(1, writer.getSplitCount());
+    }
+
+    @Test
+    public void testRejectedBatchWrittenOneAtATime() {
+        when(session.execute(any(GraphStatement.class)))
+                .thenThrow(mock(InvalidQueryException.class))
+                .thenReturn(null)
+                .thenThrow(mock(InvalidQueryException.class))
+                .thenReturn(null);
+        CompletableFuture<Void> good = writer.submit("good", mock(GraphTraversal.class));
+        CompletableFuture<Void> bad = writer.submit("bad", mock(GraphTraversal.class));
+        CompletableFuture<Void> other = writer.submit("other", mock(GraphTraversal.class));
+
+        writer.flush();
+
+        ArgumentCaptor<GraphStatement<?>> statements = ArgumentCaptor.forClass(GraphStatement.class);
+        verify(session, times(4)).execute(statements.capture());
+        assertTrue(statements.getAllValues().get(0) instanceof BatchGraphStatement);
+        assertTrue(statements.getAllValues().get(1) instanceof FluentGraphStatement);
+        assertFalse(good.isCompletedExceptionally());
+        assertTrue(bad.isCompletedExceptionally());
+        assertFalse(other.isCompletedExceptionally());
+        assertEquals(0, writer.getRetryCount());
+        assertEquals(1, writer.getSplitCount());
+    }
+
+    @Test
+    public void testUnbatchedWriteRetried() {
+        writer = new GraphMutationWriter(session, false, 3, 20, 3, 1, 2, 100);
+        when(session.executeAsync(any(GraphStatement.class)))
+                .thenReturn(CompletableFuture.failedFuture(mock(UnavailableException.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(AsyncGraphResultSet.class)));
+
+        writer.submit("mutation", mock(GraphTraversal.class)).join();
+
+        verify(session, times(2)).executeAsync(any(GraphStatement.class));
+        assertEquals(1, writer.getRetryCount());
+        assertEquals(1, writer.getWrittenCount());
+    }
+
+    @Test
+    public void testUnbatchedPossiblyAppliedWriteNotRetried() {
+        writer = new GraphMutationWriter(session, false, 3, 20, 3, 1, 2, 100);
+        when(session.executeAsync(any(GraphStatement.class)))
+                .thenReturn(CompletableFuture.failedFuture(mock(WriteTimeoutException.class)));
+
+        CompletableFuture<Void> written = writer.submit("mutation", mock(GraphTraversal.class));
+
+        assertThrows(CompletionException.class, written::join);
+        verify(session, times(1)).executeAsync(any(GraphStatement.class));
+        assertEquals(1, writer.getFailedCount());
+    }
+
+    @Test
+    public void testQueuedMutationsWrittenAtShutdown() {
+        writer.start();
+        writer.stop();
+        CompletableFuture<Void> late = writer.submit("late", mock(GraphTraversal.class));
+        assertFalse(late.isDone());
+
+        writer.stop();
+
+        assertFalse(late.isCompletedExceptionally());
+        assertTrue(late.isDone());
+    }
+
+    @Test
+    public void testBackgroundWriter() {
+        writer.start();
+        try {
+            writer.submit("first", mock(GraphTraversal.class));
+            writer.submit("second", mock(GraphTraversal.class)).join();
+        } finally {
+            writer.stop();
+        }
+        assertEquals(2, writer.getWrittenCount());
+        assertTrue(writer.getMaxLagMillis() >= 0);
+    }
+
+    @Test
+    public void testMetricsExported() throws IOException {
+        writer.start();
+        try {
+            writer.submit("first", mock(GraphTraversal.class));
+            writer.submit("second", mock(GraphTraversal.class)).join();
+        } finally {
+            writer.stop();
+        }
+
+        StringBuilder out = new StringBuilder();
+        writer.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_graph_writer_written_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_graph_writer_submitted_total 2\n"), text);
+        assertTrue(text.contains("killrvideo_graph_writer_written_total 2\n"), text);
+        assertTrue(text.contains("killrvideo_graph_writer_queue_size 0.0\n"), text);
+        assertTrue(text.contains("# TYPE killrvideo_graph_writer_lag_max_seconds gauge\n"), text);
+    }
+}
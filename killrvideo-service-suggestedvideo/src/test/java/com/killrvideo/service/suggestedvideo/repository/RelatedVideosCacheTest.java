@@ -0,0 +1,110 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.service.suggestedvideo.request.GetRelatedVideosRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelatedVideosCacheTest {
+    private final UUID video1 = UUID.randomUUID();
+    private final UUID video2 = UUID.randomUUID();
+
+    private RelatedVideosCache cache;
+    private List<GetRelatedVideosRequestData> searches;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new RelatedVideosCache(true, 100, 60);
+        searches = new ArrayList<>();
+    }
+
+    private ResultListPage<Video> related(UUID videoId, int pageSize, String pagingState) {
+        return cache.get(new GetRelatedVideosRequestData(videoId, pageSize, Optional.ofNullable(pagingState)), request -> {
+            searches.add(request);
+            return CompletableFuture.completedFuture(ResultListPage.empty());
+        }).join();
+    }
+
+    @Test
+    public void testFirstPagesServedFromMemory() {
+        related(video1, 10, null);
+        related(video1, 10, null);
+        related(video1, 20, null);
+        related(video2, 10, null);
+
+        assertEquals(3, searches.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testNextPagesAlwaysRead() {
+        related(video1, 10, "next");
+        related(video1, 10, "next");
+
+        assertEquals(2, searches.size());
+        assertEquals(Optional.of("next"), searches.get(1).getPagingState());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testChangedVideoDropsItsPages() {
+        related(video1, 10, null);
+        related(video1, 20, null);
+        related(video2, 10, null);
+
+        assertEquals(2, cache.onVideoChanged(video1));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getInvalidationCount());
+
+        related(video1, 10, null);
+        related(video2, 10, null);
+        assertEquals(4, searches.size());
+    }
+
+    @Test
+    public void testMetricsExported() throws IOException {
+        related(video1, 10, null);
+        related(video1, 10, null);
+        related(video2, 10, null);
+
+        StringBuilder out = new StringBuilder();
+        cache.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_related_videos_cache_hits_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_related_videos_cache_hits_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_related_videos_cache_misses_total 2\n"), text);
+        assertTrue(text.contains("killrvideo_related_videos_cache_entries 2.0\n"), text);
+    }
+
+    @Test
+    public void testFailedSearchNotCached() {
+        GetRelatedVideosRequestData request = new GetRelatedVideosRequestData(video1, 10, Optional.empty());
+        CompletableFuture<ResultListPage<Video>> failed = cache.get(request,
+                r -> CompletableFuture.failedFuture(new IllegalArgumentException("Video not found")));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysSearches() {
+        cache = new RelatedVideosCache(false, 100, 60);
+        related(video1, 10, null);
+        related(video1, 10, null);
+
+        assertEquals(2, searches.size());
+        assertEquals(0, cache.onVideoChanged(video1));
+    }
+}
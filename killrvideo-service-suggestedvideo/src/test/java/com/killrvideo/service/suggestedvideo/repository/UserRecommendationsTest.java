@@ -0,0 +1,106 @@
+package com.killrvideo.service.suggestedvideo.repository;
+
+import com.killrvideo.dse.dto.Video;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRecommendationsTest {
+    private final UUID user = UUID.randomUUID();
+    private final UUID otherUser = UUID.randomUUID();
+    private final Map<UUID, List<Video>> lists = new HashMap<>();
+    private int computations;
+    private long now;
+    private UserRecommendations recommendations;
+
+    @BeforeEach
+    public void setUp() {
+        lists.put(user, Arrays.asList(video(), video()));
+        lists.put(otherUser, Collections.singletonList(video()));
+        recommendations = new UserRecommendations(userId -> {
+            computations++;
+            return CompletableFuture.completedFuture(lists.get(userId));
+        }, 10, Duration.ofSeconds(300), Duration.ofSeconds(3600), 10, () -> now);
+    }
+
+    @Test
+    public void testComputedOnceThenLookedUp() {
+        assertEquals(2, recommendations.get(user).join().size());
+        assertEquals(2, recommendations.get(user).join().size());
+
+        assertEquals(1, computations);
+        assertEquals(1, recommendations.getHitCount());
+        assertEquals(1, recommendations.getMissCount());
+        // Fresh lists are not recomputed
+        recommendations.refresh().join();
+        assertEquals(1, computations);
+    }
+
+    @Test
+    public void testRatingRemovesVideoAndRecomputes() {
+        List<Video> initial = recommendations.get(user).join();
+        UUID rated = initial.get(0).getVideoid();
+
+        assertTrue(recommendations.onRating(user, rated));
+        assertFalse(recommendations.onRating(otherUser, rated));
+        List<Video> afterRating = recommendations.get(user).join();
+        assertEquals(1, afterRating.size());
+        assertEquals(initial.get(1).getVideoid(), afterRating.get(0).getVideoid());
+
+        lists.put(user, Arrays.asList(video(), video(), video()));
+        recommendations.refresh().join();
+        assertEquals(2, computations);
+        assertEquals(1, recommendations.getRefreshCount());
+        assertEquals(3, recommendations.get(user).join().size());
+        assertEquals(0, recommendations.queuedSize());
+    }
+
+    @Test
+    public void testOldListsServedThenRecomputed() {
+        recommendations.get(user).join();
+        now += TimeUnit.SECONDS.toNanos(301);
+
+        assertEquals(2, recommendations.get(user).join().size());
+        assertEquals(1, recommendations.queuedSize());
+        recommendations.refresh().join();
+        assertEquals(2, computations);
+    }
+
+    @Test
+    public void testIdleUsersDropped() {
+        recommendations.get(user).join();
+        now += TimeUnit.SECONDS.toNanos(1800);
+        recommendations.get(otherUser).join();
+        now += TimeUnit.SECONDS.toNanos(1801);
+
+        recommendations.refresh().join();
+        assertEquals(1, recommendations.size());
+        recommendations.get(otherUser).join();
+        assertEquals(2, computations);
+    }
+
+    @Test
+    public void testLeastRecentlyReadEvicted() {
+        recommendations = new UserRecommendations(userId -> CompletableFuture.completedFuture(lists.get(userId)),
+                1, Duration.ofSeconds(300), Duration.ofSeconds(3600), 10, () -> now);
+        recommendations.get(user).join();
+        now++;
+        recommendations.get(otherUser).join();
+
+        assertEquals(1, recommendations.size());
+        recommendations.get(otherUser).join();
+        assertEquals(1, recommendations.getHitCount());
+    }
+
+    private Video video() {
+        Video video = new Video();
+        video.setVideoid(UUID.randomUUID());
+        return video;
+    }
+}
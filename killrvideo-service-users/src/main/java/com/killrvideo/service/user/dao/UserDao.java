@@ -1,10 +1,8 @@
 package com.killrvideo.service.user.dao;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.mapper.annotations.*;
 import com.killrvideo.service.user.dto.User;
 
-import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -14,7 +12,7 @@ public interface UserDao {
     @StatementAttributes(consistencyLevel = "LOCAL_QUORUM")
     CompletableFuture<Boolean> insert(User user);
 
-    @Select(customWhereClause = "userid in :userids")
+    @Select
     @StatementAttributes(consistencyLevel = "LOCAL_ONE")
-    CompletableFuture<MappedAsyncPagingIterable<User>> getUserProfiles(@CqlName("userids") List<UUID> userids);
+    CompletableFuture<User> getUserProfile(UUID userid);
 }
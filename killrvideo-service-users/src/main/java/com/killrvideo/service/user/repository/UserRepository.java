@@ -1,6 +1,6 @@
 package com.killrvideo.service.user.repository;
 
-import com.killrvideo.dse.utils.MappedAsyncPagingIterableUtils;
+import com.killrvideo.dse.utils.MultiGetUtils;
 import com.killrvideo.service.user.dao.UserCredentialsDao;
 import com.killrvideo.service.user.dao.UserDao;
 import com.killrvideo.service.user.dao.UserMapper;
@@ -8,6 +8,7 @@ import com.killrvideo.service.user.dto.User;
 import com.killrvideo.service.user.dto.UserCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -25,10 +26,13 @@ public class UserRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserRepository.class);
     private final UserDao userDao;
     private final UserCredentialsDao userCredentialsDao;
+    private final int multiGetConcurrency;
 
-    public UserRepository(UserMapper mapper) {
+    public UserRepository(UserMapper mapper,
+                          @Value("${killrvideo.cassandra.multiGetConcurrency: " + MultiGetUtils.DEFAULT_MAX_CONCURRENCY + "}") int multiGetConcurrency) {
         this.userDao = mapper.getUserDao();
         this.userCredentialsDao = mapper.getUserCredentialsDao();
+        this.multiGetConcurrency = multiGetConcurrency;
     }
 
     /**
@@ -69,13 +73,12 @@ public class UserRepository {
     }
 
     /**
-     * Retrieve user profiles.
+     * Retrieve user profiles, one select per user.
      *
      * @param userids
-     * @return
+     * @return existing users, in the order of the userids
      */
     public CompletableFuture<List<User>> getUserProfilesAsync(List<UUID> userids) {
-        return userDao.getUserProfiles(userids)
-                .thenApply(MappedAsyncPagingIterableUtils::all);
+        return MultiGetUtils.getAll(userids, userDao::getUserProfile, multiGetConcurrency);
     }
 }
@@ -1,6 +1,5 @@
 package com.killrvideo.service.user.repository;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.killrvideo.service.user.dao.UserCredentialsDao;
 import com.killrvideo.service.user.dao.UserDao;
 import com.killrvideo.service.user.dao.UserMapper;
@@ -9,11 +8,11 @@ import com.killrvideo.service.user.dto.UserCredentials;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
-import static com.killrvideo.utils.test.CassandraTestUtils.mockMappedAsyncPagingIterable;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,7 +30,7 @@ class UserRepositoryTest {
         when(mapper.getUserDao()).thenReturn(userDao);
         when(mapper.getUserCredentialsDao()).thenReturn(userCredentialsDao);
 
-        this.repository = new UserRepository(mapper);
+        this.repository = new UserRepository(mapper, 4);
     }
 
     @Test
@@ -77,16 +76,14 @@ class UserRepositoryTest {
     @Test
     public void testGetUserProfilesAsync() {
         UUID userid = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
         User user = mock(User.class);
-        List<UUID> userids = singletonList(userid);
-        List<User> users = singletonList(user);
+        List<UUID> userids = Arrays.asList(userid, unknown);
 
-        MappedAsyncPagingIterable<User> iter = mockMappedAsyncPagingIterable(users);
-        when(this.userDao.getUserProfiles(any())).thenReturn(
-                CompletableFuture.completedFuture(iter)
-        );
+        when(this.userDao.getUserProfile(userid)).thenReturn(CompletableFuture.completedFuture(user));
+        when(this.userDao.getUserProfile(unknown)).thenReturn(CompletableFuture.completedFuture(null));
         this.repository.getUserProfilesAsync(userids).whenComplete((result, error) -> {
-            assertEquals(1, result.size());
+            assertEquals(singletonList(user), result);
             assertNull(error);
         });
     }
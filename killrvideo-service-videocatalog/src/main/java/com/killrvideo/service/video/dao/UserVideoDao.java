@@ -1,5 +1,6 @@
 package com.killrvideo.service.video.dao;
 
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.mapper.annotations.Dao;
 import com.datastax.oss.driver.api.mapper.annotations.Insert;
 import com.datastax.oss.driver.api.mapper.annotations.StatementAttributes;
@@ -12,4 +13,7 @@ public interface UserVideoDao {
     @Insert
     @StatementAttributes(consistencyLevel = "LOCAL_QUORUM")
     CompletableFuture<Void> insert(UserVideo userVideo);
+
+    @Insert
+    BoundStatement insertStatement(UserVideo userVideo);
 }
@@ -1,13 +1,30 @@
 package com.killrvideo.service.video.dao;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.killrvideo.dse.dto.TimeBucketing;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
 @Configuration
 public class VideoCatalogDaoConfig {
     @Bean
     public VideoCatalogMapper videoCatalogMapper(CqlSession session) {
         return VideoCatalogMapper.build(session).build();
     }
+
+    /**
+     * Partitioning of 'latest_videos': hourly buckets for a high upload rate, multi-day ones for a low one.
+     */
+    @Bean
+    public TimeBucketing latestVideosBucketing(
+            @Value("${killrvideo.latestVideos.bucketing.unit: DAYS}") ChronoUnit unit,
+            @Value("${killrvideo.latestVideos.bucketing.unitsPerBucket: 1}") int unitsPerBucket,
+            @Value("${killrvideo.latestVideos.bucketing.lookbackBuckets: 8}") int lookbackBuckets,
+            @Value("${killrvideo.latestVideos.bucketing.zone: UTC}") ZoneId zone) {
+        return new TimeBucketing(unit, unitsPerBucket, lookbackBuckets, zone);
+    }
 }
@@ -1,10 +1,9 @@
 package com.killrvideo.service.video.dao;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.mapper.annotations.*;
 import com.killrvideo.dse.dto.Video;
 
-import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -14,11 +13,10 @@ public interface VideoDao {
     @StatementAttributes(consistencyLevel = "LOCAL_QUORUM")
     CompletableFuture<Video> insert(Video video);
 
+    @Insert
+    BoundStatement insertStatement(Video video);
+
     @Select
     @StatementAttributes(consistencyLevel = "LOCAL_ONE")
     CompletableFuture<Video> getVideoById(UUID videoid);
-
-    @Select(customWhereClause = "videoid in :listofVideoId")
-    @StatementAttributes(consistencyLevel = "LOCAL_ONE")
-    CompletableFuture<MappedAsyncPagingIterable<Video>> getVideoPreview(@CqlName("listofVideoId") List<UUID> listofVideoId);
 }
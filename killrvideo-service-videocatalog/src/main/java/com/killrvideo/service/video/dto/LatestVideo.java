@@ -1,14 +1,12 @@
 package com.killrvideo.service.video.dto;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 
 import com.datastax.oss.driver.api.mapper.annotations.CqlName;
 import com.datastax.oss.driver.api.mapper.annotations.Entity;
 import com.datastax.oss.driver.api.mapper.annotations.PartitionKey;
+import com.killrvideo.dse.dto.TimeBucketing;
 import com.killrvideo.dse.dto.Video;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -24,20 +22,18 @@ import lombok.Setter;
 @Getter @Setter @NoArgsConstructor
 public class LatestVideo extends VideoPreview {
     private static final long serialVersionUID = -8527565276521920973L;
-    private static final DateTimeFormatter DATEFORMATTER =
-            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneId.from(ZoneOffset.UTC));
 
     /** Column names in the DB. */
     public static final String COLUMN_YYYYMMDD = "yyyymmdd";
     
+    /** Bucket key, see {@link TimeBucketing}: 'yyyyMMdd' unless buckets are hourly. */
     @PartitionKey
     private String yyyymmdd;
     private UUID userid;
 
-    public static LatestVideo from(Video v, Instant now) {
-        String yyyyMMdd = DATEFORMATTER.format(now);
+    public static LatestVideo from(Video v, Instant now, TimeBucketing bucketing) {
         return new LatestVideo(
-                yyyyMMdd,
+                bucketing.bucketKey(now),
                 v.getUserid(),
                 v.getVideoid(),
                 v.getName(),
@@ -0,0 +1,98 @@
+package com.killrvideo.service.video.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Position of the last row returned in a 'latest_videos' bucket, used to resume reading a bucket when no
+ * Cassandra paging state is available (page served from memory). Serialized in place of the Cassandra
+ * paging state with a '@' prefix, which never appears in an hexadecimal paging state.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Getter @AllArgsConstructor
+public class LatestVideoCursor {
+
+    /** Prefix to distinguish a cursor from a Cassandra paging state. */
+    private static final String PREFIX = "@";
+
+    /** Rows order in a bucket, CLUSTERING ORDER BY (added_date DESC, videoid ASC). */
+    public static final Comparator<LatestVideo> CLUSTERING_ORDER =
+            Comparator.comparing(LatestVideo::getAddedDate, Comparator.reverseOrder())
+                    .thenComparing(LatestVideo::getVideoid, LatestVideoCursor::compareUuid);
+
+    private final Instant addedDate;
+
+    private final UUID videoid;
+
+    public static LatestVideoCursor of(LatestVideo latestVideo) {
+        return new LatestVideoCursor(latestVideo.getAddedDate(), latestVideo.getVideoid());
+    }
+
+    public static boolean isCursor(String pagingState) {
+        return isNotBlank(pagingState) && pagingState.startsWith(PREFIX);
+    }
+
+    public static Optional<LatestVideoCursor> deserialize(String pagingState) {
+        if (!isCursor(pagingState)) {
+            return Optional.empty();
+        }
+        int separator = pagingState.indexOf('_');
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new LatestVideoCursor(
+                    Instant.ofEpochMilli(Long.parseLong(pagingState.substring(PREFIX.length(), separator))),
+                    UUID.fromString(pagingState.substring(separator + 1))
+            ));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
+    public String serialize() {
+        return PREFIX + addedDate.toEpochMilli() + "_" + videoid;
+    }
+
+    /**
+     * Tell if the row comes after the cursor in the bucket.
+     */
+    public boolean isBefore(LatestVideo latestVideo) {
+        int byDate = latestVideo.getAddedDate().compareTo(addedDate);
+        return byDate < 0 || (byDate == 0 && compareUuid(latestVideo.getVideoid(), videoid) > 0);
+    }
+
+    /**
+     * Same semantic as 'AND (added_date, videoid) <= (:ad, :vid)'.
+     */
+    public static boolean matchesStartingPoint(LatestVideo latestVideo, Instant startDate, UUID startVideoId) {
+        int byDate = latestVideo.getAddedDate().compareTo(startDate);
+        return byDate < 0 || (byDate == 0 && compareUuid(latestVideo.getVideoid(), startVideoId) <= 0);
+    }
+
+    /**
+     * Cassandra 'uuid' ordering: version first, then timestamp for time based uuids, then unsigned bytes.
+     */
+    public static int compareUuid(UUID left, UUID right) {
+        int byVersion = Integer.compare(left.version(), right.version());
+        if (byVersion != 0) {
+            return byVersion;
+        }
+        if (left.version() == 1) {
+            int byTimestamp = Long.compare(left.timestamp(), right.timestamp());
+            if (byTimestamp != 0) {
+                return byTimestamp;
+            }
+        }
+        int byMsb = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return byMsb != 0 ? byMsb : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    }
+}
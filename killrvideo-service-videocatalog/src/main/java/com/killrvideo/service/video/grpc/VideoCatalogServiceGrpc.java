@@ -1,7 +1,7 @@
 package com.killrvideo.service.video.grpc;
 
-import com.killrvideo.dse.dto.CustomPagingState;
 import com.killrvideo.dse.dto.Video;
+import com.killrvideo.grpc.PageStreamer;
 import com.killrvideo.messaging.dao.MessagingDao;
 import com.killrvideo.service.video.repository.VideoCatalogRepository;
 import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
@@ -34,6 +34,11 @@ import static java.util.stream.Collectors.toList;
 public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
     private static final Logger LOGGER = LoggerFactory.getLogger(VideoCatalogServiceGrpc.class);
 
+    /**
+     * Rows fetched per page when streaming user videos and the client does not provide a page size.
+     */
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 100;
+
     /**
      * Send new videos.
      */
@@ -43,6 +48,22 @@ public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
     @Value("${killrvideo.discovery.services.videoCatalog : VideoCatalogService}")
     private String serviceKey;
 
+    /**
+     * Bulk ingestion: videos being written at the same time, events per broker batch, delay before a partial batch
+     * is sent and failed videos listed in the response.
+     */
+    @Value("${killrvideo.videoCatalog.ingestion.maxInFlight : 16}")
+    private int ingestionMaxInFlight;
+
+    @Value("${killrvideo.videoCatalog.ingestion.eventBatchSize : 100}")
+    private int ingestionEventBatchSize;
+
+    @Value("${killrvideo.videoCatalog.ingestion.eventFlushMillis : 1000}")
+    private long ingestionEventFlushMillis;
+
+    @Value("${killrvideo.videoCatalog.ingestion.maxReportedFailures : 1000}")
+    private int ingestionMaxReportedFailures;
+
     private final VideoCatalogRepository videoCatalogRepository;
     private final MessagingDao messagingDao;
     private final VideoCatalogServiceGrpcValidator validator;
@@ -90,32 +111,57 @@ public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
                 });
     }
 
+    /**
+     * Bulk ingestion of YouTube videos (client stream).
+     * <p>
+     * Writes are pipelined with a bounded number in flight, events are sent to the broker by batches and the
+     * single response holds the counts and the failed videos, a failing video does not fail the stream.
+     */
+    @Override
+    public StreamObserver<SubmitYouTubeVideoRequest> submitYouTubeVideos(StreamObserver<SubmitYouTubeVideosResponse> grpcResObserver) {
+        // Stands as stopwatch for logging and messaging
+        final Instant starts = Instant.now();
+
+        return new YouTubeVideosIngestion(grpcResObserver, videoCatalogRepository, messagingDao, validator, mapper,
+                topicVideoCreated, ingestionMaxInFlight, ingestionEventBatchSize, ingestionEventFlushMillis,
+                ingestionMaxReportedFailures, error -> {
+                    if (error != null) {
+                        traceError("submitYouTubeVideos", starts, error);
+                    } else {
+                        traceSuccess("submitYouTubeVideos", starts);
+                    }
+                });
+    }
+
     /**
      * Get the latest video (Home Page)
      * <p>
-     * In this method, we craft our own paging state. The custom paging state format is:
+     * In this method, we craft our own paging state. The custom paging state is an URL safe base64 binary token:
      * <br/>
      * <br/>
      * <code>
-     * yyyyMMdd_yyyyMMdd_yyyyMMdd_yyyyMMdd_yyyyMMdd_yyyyMMdd_yyyyMMdd_yyyyMMdd,&lt;index&gt;,&lt;Cassandra paging state as string&gt;
+     * &lt;version&gt;&lt;bucket unit&gt;&lt;units per bucket&gt;&lt;number of buckets&gt;&lt;first bucket&gt;&lt;index&gt;&lt;paging state kind&gt;&lt;paging state bytes&gt;
      * </code>
      * <br/>
      * <br/>
      * <ul>
-     *     <li>The first field is the date of 7 days in the past, starting from <strong>now</strong></li>
-     *     <li>The second field is the index in this date list, to know at which day in the past we stop at the previous query</li>
-     *     <li>The last field is the serialized form of the native Cassandra paging state</li>
+     *     <li>The first bucket holds now, the previous ones are derived from it following the configured
+     *     {@link com.killrvideo.dse.dto.TimeBucketing} (hourly, daily or multi-day buckets)</li>
+     *     <li>The index is the position in this bucket list, to know at which bucket in the past we stop at the previous query</li>
+     *     <li>The last field is the raw native Cassandra paging state (or the position of the last row served)</li>
      * </ul>
+     * The former daily formats (<code>yyyyMMdd_..._yyyyMMdd,&lt;index&gt;,&lt;paging state&gt;</code>) are still accepted,
+     * a token issued with another bucketing than the current one restarts from the first page.
      * <p>
-     * On the first query, we create our own custom paging state in the server by computing the list of 8 days
-     * in the past, the <strong>index</strong> is set to 0 and there is no native Cassandra paging state
+     * On the first query, we create our own custom paging state in the server by computing the list of buckets
+     * of the lookback window, the <strong>index</strong> is set to 0 and there is no native Cassandra paging state
      * <p>
      * <br/>
      * On subsequent request, we decode the custom paging state coming from the web app and resume querying from
      * the appropriate date, and we inject also the native Cassandra paging state.
      * <br/>
      * <strong>However, we can only use the native Cassandra paging state for the 1st query in the for loop. Indeed
-     * Cassandra paging state is a hash of query string and bound values. We may switch partition to move one day
+     * Cassandra paging state is a hash of query string and bound values. We may switch partition to move one bucket
      * back in the past to fetch more results so the paging state will no longer be usable</strong>]
      */
     @Override
@@ -128,7 +174,7 @@ public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
 
         // GRPC Parameters Mappings
         GetLatestVideoPreviewsRequestData requestData = mapper.parseGetLatestVideoPreviewsRequest(
-                grpcReq, CustomPagingState::buildFirstCustomPagingState
+                grpcReq, videoCatalogRepository::buildFirstLatestVideosPagingState
         );
 
         videoCatalogRepository.getLatestVideoPreviewsAsync(requestData)
@@ -240,6 +286,41 @@ public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
                 });
     }
 
+    /**
+     * Stream every video of a user in a single call (channel export).
+     * <p>
+     * Pages of 'user_videos' are read one at a time and sent as the client consumes them (gRPC flow control),
+     * memory is bounded by one page whatever the number of videos of the user.
+     */
+    @Override
+    public void streamUserVideoPreviews(GetUserVideoPreviewsRequest grpcReq, StreamObserver<VideoPreview> grpcResObserver) {
+        // GRPC Parameters Validation
+        validator.validateGrpcRequest_streamUserVideoPreviews(grpcReq, grpcResObserver);
+
+        // Stands as stopwatch for logging and messaging
+        final Instant starts = Instant.now();
+
+        // GRPC Parameters Mappings
+        GetUserVideoPreviewsRequestData parsed = mapper.parseGetUserVideoPreviewsRequest(grpcReq);
+        final GetUserVideoPreviewsRequestData requestData = grpcReq.getPageSize() > 0 ?
+                parsed : parsed.withPagingSize(DEFAULT_STREAM_FETCH_SIZE);
+
+        PageStreamer.stream(grpcResObserver,
+                pagingState -> videoCatalogRepository
+                        .getUserVideosPreview(requestData.withPagingState(pagingState))
+                        .thenApply(mapper::mapToVideoPreviewPage),
+                requestData.getPagingState())
+                .whenComplete((count, error) -> {
+                    if (PageStreamer.isCancelled(error)) {
+                        traceCancelled("streamUserVideoPreviews", starts);
+                    } else if (error != null) {
+                        traceError("streamUserVideoPreviews", starts, error);
+                    } else {
+                        traceSuccess("streamUserVideoPreviews", starts);
+                    }
+                });
+    }
+
     /**
      * Utility to TRACE.
      *
@@ -248,7 +329,19 @@ public class VideoCatalogServiceGrpc extends VideoCatalogServiceImplBase {
      */
     private void traceSuccess(String method, Instant starts) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).getNano() / 1000);
+            LOGGER.debug("End successfully '{}' in {} millis", method, Duration.between(starts, Instant.now()).toMillis());
+        }
+    }
+
+    /**
+     * Utility to TRACE a call cancelled by the client.
+     *
+     * @param method current operation
+     * @param starts timestamp for starting
+     */
+    private void traceCancelled(String method, Instant starts) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("'{}' cancelled by the client after {} millis", method, Duration.between(starts, Instant.now()).toMillis());
         }
     }
 
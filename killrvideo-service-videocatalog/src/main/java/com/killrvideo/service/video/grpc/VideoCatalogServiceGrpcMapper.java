@@ -122,9 +122,11 @@ public class VideoCatalogServiceGrpcMapper {
     public GetLatestVideoPreviewsRequestData parseGetLatestVideoPreviewsRequest(
             GetLatestVideoPreviewsRequest grpcReq,
             Supplier<CustomPagingState> firstCustomPagingStateFactory) {
+        CustomPagingState firstPageState = firstCustomPagingStateFactory.get();
         CustomPagingState pageState =
                 CustomPagingState.deserialize(grpcReq.getPagingState())
-                        .orElse(firstCustomPagingStateFactory.get());
+                        .filter(firstPageState::hasSameBucketing)
+                        .orElse(firstPageState);
         int pageSize = grpcReq.getPageSize();
         final Optional<Instant> startDate = Optional.of(grpcReq.getStartingAddedDate())
                 .filter(x -> isNotBlank(x.toString()))
@@ -177,6 +179,13 @@ public class VideoCatalogServiceGrpcMapper {
         );
     }
 
+    public ResultListPage<VideoPreview> mapToVideoPreviewPage(ResultListPage<UserVideo> resultPage) {
+        return new ResultListPage<>(
+                resultPage.getResults().stream().map(this::mapFromUserVideotoVideoPreview).collect(Collectors.toList()),
+                resultPage.getPagingState()
+        );
+    }
+
     public GetUserVideoPreviewsResponse mapToGetUserVideoPreviewsResponse(ResultListPage<UserVideo> resultPage, UUID userId) {
         CommonTypes.Uuid userGrpcUUID = GrpcMappingUtils.uuidToUuid(userId);
         final GetUserVideoPreviewsResponse.Builder builder = GetUserVideoPreviewsResponse.newBuilder().setUserId(userGrpcUUID);
@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
@@ -22,13 +24,25 @@ public class VideoCatalogServiceGrpcValidator {
      * Validate arguments for 'SubmitYouTubeVideo'
      */
     public void validateGrpcRequest_submitYoutubeVideo(SubmitYouTubeVideoRequest request, StreamObserver<?> streamObserver) {
-        FluentValidator.of("submitVideo", request, LOGGER, streamObserver)
+        submitYoutubeVideoRules(request, streamObserver).validate();
+    }
+
+    /**
+     * Check arguments of one video of 'SubmitYouTubeVideos' without failing the stream.
+     *
+     * @return the error description for an invalid video
+     */
+    public Optional<String> checkGrpcRequest_submitYoutubeVideo(SubmitYouTubeVideoRequest request) {
+        return submitYoutubeVideoRules(request, null).check();
+    }
+
+    private FluentValidator submitYoutubeVideoRules(SubmitYouTubeVideoRequest request, StreamObserver<?> streamObserver) {
+        return FluentValidator.of("submitVideo", request, LOGGER, streamObserver)
                 .notEmpty("video id", isBlank(request.getVideoId().getValue()))
                 .notEmpty("user id", isBlank(request.getUserId().getValue()))
                 .notEmpty("video name", isBlank(request.getName()))
                 .notEmpty("video description", isBlank(request.getDescription()))
-                .notEmpty("video youtube id", isBlank(request.getYouTubeVideoId()))
-                .validate();
+                .notEmpty("video youtube id", isBlank(request.getYouTubeVideoId()));
     }
 
     /**
@@ -40,6 +54,13 @@ public class VideoCatalogServiceGrpcValidator {
                 .validate();
     }
 
+    public void validateGrpcRequest_streamUserVideoPreviews(GetUserVideoPreviewsRequest request, StreamObserver<?> streamObserver) {
+        FluentValidator.of("streamUserVideoPreviews", request, LOGGER, streamObserver)
+                .notEmpty("user id", isBlank(request.getUserId().getValue()))
+                .error("page size should not be negative for streamUserVideoPreviews", request.getPageSize() < 0)
+                .validate();
+    }
+
     public void validateGrpcRequest_getVideo(GetVideoRequest request, StreamObserver<?> streamObserver) {
         FluentValidator.of("getVideo", request, LOGGER, streamObserver)
                 .notEmpty("video id", isBlank(request.getVideoId().getValue()))
@@ -0,0 +1,249 @@
+package com.killrvideo.service.video.grpc;
+
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.messaging.dao.MessagingDao;
+import com.killrvideo.service.video.repository.VideoCatalogRepository;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideoRequest;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideoResult;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideosResponse;
+import killrvideo.common.CommonTypes.Uuid;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Handle the client stream of 'SubmitYouTubeVideos'.
+ * <p>
+ * Inbound flow control is manual: at most {@code maxInFlight} videos are being written at any time, a new request
+ * message is asked to the client each time a write completes. 'YouTubeVideoAdded' events of the written videos are
+ * sent to the broker by batches of {@code eventBatchSize}, or {@code eventFlushMillis} after the first event of a
+ * partial batch. The response, counts and the first {@code maxReportedFailures} failed videos, is sent once the
+ * client half-closes the stream and every write and event is done. When the client cancels, the events of the
+ * writes still in progress are sent once they complete.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+class YouTubeVideosIngestion implements StreamObserver<SubmitYouTubeVideoRequest> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(YouTubeVideosIngestion.class);
+
+    private final ServerCallStreamObserver<SubmitYouTubeVideosResponse> grpcResObserver;
+    private final VideoCatalogRepository videoCatalogRepository;
+    private final MessagingDao messagingDao;
+    private final VideoCatalogServiceGrpcValidator validator;
+    private final VideoCatalogServiceGrpcMapper mapper;
+    private final String topicVideoCreated;
+    private final int eventBatchSize;
+    private final long eventFlushMillis;
+    private final int maxReportedFailures;
+    private final Consumer<Throwable> onDone;
+
+    private long submitted;
+    private long failed;
+
+    /** First failed videos, in the order of the failures. */
+    private final List<SubmitYouTubeVideoResult> failures = new ArrayList<>();
+
+    /** Ids and events of written videos not sent to the broker yet. */
+    private final List<Uuid> pendingVideoIds = new ArrayList<>();
+    private final List<YouTubeVideoAdded> pendingEvents = new ArrayList<>();
+
+    /** Incremented on every batch sent, a timed flush only sends the batch it was scheduled for. */
+    private long batchGeneration;
+
+    /** Event batches sent to the broker and not acknowledged yet. */
+    private int eventBatchesInFlight;
+
+    private int inFlight;
+    private boolean halfClosed;
+    private boolean done;
+
+    /** Every write is done, the response is sent once the event batches in flight are. */
+    private boolean awaitingEvents;
+
+    YouTubeVideosIngestion(StreamObserver<SubmitYouTubeVideosResponse> grpcResObserver,
+                           VideoCatalogRepository videoCatalogRepository,
+                           MessagingDao messagingDao,
+                           VideoCatalogServiceGrpcValidator validator,
+                           VideoCatalogServiceGrpcMapper mapper,
+                           String topicVideoCreated,
+                           int maxInFlight,
+                           int eventBatchSize,
+                           long eventFlushMillis,
+                           int maxReportedFailures,
+                           Consumer<Throwable> onDone) {
+        this.grpcResObserver = (ServerCallStreamObserver<SubmitYouTubeVideosResponse>) grpcResObserver;
+        this.videoCatalogRepository = videoCatalogRepository;
+        this.messagingDao = messagingDao;
+        this.validator = validator;
+        this.mapper = mapper;
+        this.topicVideoCreated = topicVideoCreated;
+        this.eventBatchSize = Math.max(1, eventBatchSize);
+        this.eventFlushMillis = Math.max(1, eventFlushMillis);
+        this.maxReportedFailures = Math.max(0, maxReportedFailures);
+        this.onDone = onDone;
+
+        // Must be done before the gRPC method returns
+        this.grpcResObserver.disableAutoRequest();
+        this.grpcResObserver.request(Math.max(1, maxInFlight));
+    }
+
+    @Override
+    public synchronized void onNext(SubmitYouTubeVideoRequest grpcReq) {
+        if (done) {
+            return;
+        }
+        submitted++;
+
+        Optional<String> invalid = validator.checkGrpcRequest_submitYoutubeVideo(grpcReq);
+        if (invalid.isPresent()) {
+            addFailure(grpcReq.getVideoId(), invalid.get());
+            grpcResObserver.request(1);
+            return;
+        }
+
+        Video video = mapper.mapSubmitYouTubeVideoRequestAsVideo(grpcReq);
+        inFlight++;
+        CompletableFuture<Void> write;
+        try {
+            write = videoCatalogRepository.insertVideoAsync(video);
+        } catch (RuntimeException ex) {
+            write = CompletableFuture.failedFuture(ex);
+        }
+        write.whenComplete((rs, error) -> onWritten(grpcReq, video, error));
+    }
+
+    private synchronized void onWritten(SubmitYouTubeVideoRequest grpcReq, Video video, Throwable error) {
+        inFlight--;
+        if (error != null) {
+            addFailure(grpcReq.getVideoId(), "Cannot save video: " + error.getMessage());
+        } else {
+            pendingVideoIds.add(grpcReq.getVideoId());
+            pendingEvents.add(mapper.createYouTubeVideoAddedEvent(video));
+            if (pendingEvents.size() >= eventBatchSize) {
+                sendPendingEvents();
+            } else if (pendingEvents.size() == 1) {
+                scheduleFlush();
+            }
+        }
+        if (!done) {
+            if (halfClosed) {
+                completeIfIdle();
+            } else {
+                grpcResObserver.request(1);
+            }
+        } else if (inFlight == 0) {
+            // Cancelled: the videos are saved, their events must not be lost
+            sendPendingEvents();
+        }
+    }
+
+    private void scheduleFlush() {
+        final long generation = batchGeneration;
+        CompletableFuture.runAsync(() -> flush(generation),
+                CompletableFuture.delayedExecutor(eventFlushMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private synchronized void flush(long generation) {
+        if (generation == batchGeneration) {
+            sendPendingEvents();
+        }
+    }
+
+    private void sendPendingEvents() {
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+        batchGeneration++;
+        final List<Uuid> videoIds = new ArrayList<>(pendingVideoIds);
+        List<YouTubeVideoAdded> events = new ArrayList<>(pendingEvents);
+        pendingVideoIds.clear();
+        pendingEvents.clear();
+        CompletableFuture<Void> sent;
+        try {
+            sent = messagingDao.sendEvents(topicVideoCreated, events);
+        } catch (RuntimeException ex) {
+            sent = CompletableFuture.failedFuture(ex);
+        }
+        eventBatchesInFlight++;
+        sent.whenComplete((rs, error) -> onEventsSent(videoIds, error));
+    }
+
+    private void onEventsSent(List<Uuid> videoIds, Throwable error) {
+        synchronized (this) {
+            if (error != null) {
+                LOGGER.error("Cannot send {} YouTubeVideoAdded event(s)", videoIds.size(), error);
+                for (Uuid videoId : videoIds) {
+                    addFailure(videoId, "Video saved but event not sent: " + error.getMessage());
+                }
+            }
+            eventBatchesInFlight--;
+            if (!awaitingEvents || eventBatchesInFlight > 0) {
+                return;
+            }
+        }
+        sendResponse();
+    }
+
+    private void addFailure(Uuid videoId, String errorMessage) {
+        failed++;
+        if (failures.size() < maxReportedFailures) {
+            failures.add(SubmitYouTubeVideoResult.newBuilder()
+                    .setVideoId(videoId)
+                    .setErrorMessage(errorMessage)
+                    .build());
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        // Client cancelled the stream, writes in progress complete in the background
+        if (!done) {
+            done = true;
+            if (inFlight == 0) {
+                sendPendingEvents();
+            }
+            onDone.accept(t);
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        halfClosed = true;
+        completeIfIdle();
+    }
+
+    private void completeIfIdle() {
+        if (done || inFlight > 0) {
+            return;
+        }
+        done = true;
+        sendPendingEvents();
+        awaitingEvents = true;
+        if (eventBatchesInFlight == 0) {
+            sendResponse();
+        }
+    }
+
+    private void sendResponse() {
+        SubmitYouTubeVideosResponse response;
+        synchronized (this) {
+            response = SubmitYouTubeVideosResponse.newBuilder()
+                    .setSubmittedCount(submitted)
+                    .setFailedCount(failed)
+                    .addAllResults(failures)
+                    .build();
+        }
+        grpcResObserver.onNext(response);
+        grpcResObserver.onCompleted();
+        onDone.accept(null);
+    }
+}
@@ -1,6 +1,7 @@
 package com.killrvideo.service.video.repository;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.killrvideo.dse.dto.CustomPagingState;
 import com.killrvideo.dse.dto.ResultListPage;
 import com.killrvideo.dse.utils.PageableQuery;
@@ -9,24 +10,25 @@ import com.killrvideo.service.video.dao.LatestVideoDao;
 import com.killrvideo.service.video.dao.LatestVideoRowMapper;
 import com.killrvideo.service.video.dao.VideoCatalogMapper;
 import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
 import com.killrvideo.service.video.dto.LatestVideosPage;
 import com.killrvideo.service.video.request.GetLatestVideoPreviewsForGivenDateRequestData;
 import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 
 @Component
 public class LatestVideoPreviewsRepository {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(VideoCatalogRepository.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatestVideoPreviewsRepository.class);
     private static final String QUERY_LATEST_VIDEO_PREVIEW_STARTING_POINT =
             "SELECT * " +
                     "FROM killrvideo.latest_videos " +
@@ -36,18 +38,37 @@ public class LatestVideoPreviewsRepository {
             "SELECT * " +
                     "FROM killrvideo.latest_videos " +
                     "WHERE yyyymmdd = :ymd ";
+    private static final String QUERY_LATEST_VIDEO_PREVIEW_FROM_CURSOR =
+            "SELECT * " +
+                    "FROM killrvideo.latest_videos " +
+                    "WHERE yyyymmdd = :ymd " +
+                    "AND added_date <= :ad";
 
     private final LatestVideoDao latestVideoDao;
+    private final LatestVideosCache latestVideosCache;
+    private final LatestVideosSnapshot latestVideosSnapshot;
     /**
      * Prepare Statements 'getLatestVideso'.
      */
     private final PageableQuery<LatestVideo> findLatestVideoPreview_startingPoint;
     private final PageableQuery<LatestVideo> findLatestVideoPreview_noStartingPoint;
+    private final PageableQuery<LatestVideo> findLatestVideoPreview_fromCursor;
+
+    /**
+     * Number of buckets queried concurrently, 1 means one bucket at a time.
+     */
+    private final int bucketsFanOut;
 
     public LatestVideoPreviewsRepository(PageableQueryFactory pageableQueryFactory,
                                          VideoCatalogMapper mapper,
-                                         LatestVideoRowMapper latestVideoRowMapper) {
+                                         LatestVideoRowMapper latestVideoRowMapper,
+                                         LatestVideosCache latestVideosCache,
+                                         LatestVideosSnapshot latestVideosSnapshot,
+                                         @Value("${killrvideo.latestVideos.bucketsFanOut: 1}") int bucketsFanOut) {
         this.latestVideoDao = mapper.getLatestVideoDao();
+        this.latestVideosCache = latestVideosCache;
+        this.latestVideosSnapshot = latestVideosSnapshot;
+        this.bucketsFanOut = Math.max(1, bucketsFanOut);
 
         this.findLatestVideoPreview_startingPoint = pageableQueryFactory.newPageableQuery(
                 QUERY_LATEST_VIDEO_PREVIEW_STARTING_POINT,
@@ -59,101 +80,166 @@ public class LatestVideoPreviewsRepository {
                 ConsistencyLevel.LOCAL_ONE,
                 latestVideoRowMapper::map
         );
+        this.findLatestVideoPreview_fromCursor = pageableQueryFactory.newPageableQuery(
+                QUERY_LATEST_VIDEO_PREVIEW_FROM_CURSOR,
+                ConsistencyLevel.LOCAL_ONE,
+                latestVideoRowMapper::map
+        );
     }
 
     public CompletableFuture<Void> insert(LatestVideo latestVideo) {
-        return this.latestVideoDao.insert(latestVideo);
+        return this.latestVideoDao.insert(latestVideo)
+                .thenRun(() -> inserted(latestVideo));
     }
 
+    /**
+     * Insert statement, to be executed in a batch by the caller which then invokes {@link #inserted(LatestVideo)}.
+     */
+    public BoundStatement insertStatement(LatestVideo latestVideo) {
+        return this.latestVideoDao.insertStatement(latestVideo);
+    }
+
+    /**
+     * Notify a successful insert.
+     */
+    public void inserted(LatestVideo latestVideo) {
+        latestVideosCache.add(latestVideo);
+        latestVideosSnapshot.add(latestVideo);
+    }
+
+    /**
+     * Latest video partition key is the Date. As such we need to perform a query per date. As the user
+     * ask for a number of video on a given page we may have to trigger several queries, on for each day.
+     * <p>
+     * Buckets are read by rounds of {@code bucketsFanOut} concurrent queries: the current bucket resumes from
+     * the Cassandra paging state (or a {@link LatestVideoCursor}), the following ones are read speculatively
+     * from their first row. Results are then consumed bucket after bucket (buckets are disjoint days, most
+     * recent first, and each partition is clustered on added_date DESC) until the page is full. Nothing
+     * blocks: each round is chained to the previous one. Buckets held by {@link LatestVideosCache} are read
+     * from memory, and pages within the materialized {@link LatestVideosSnapshot} skip the buckets entirely.
+     *
+     * @param request request.
+     * @return requested page and the custom paging state to resume from.
+     */
     public CompletableFuture<LatestVideosPage> getLatestVideoPreviewsAsync(
             GetLatestVideoPreviewsRequestData request
     ) {
-        try {
-            LatestVideosPage returnedPage = getLatestVideoPreviews(
-                    request.getPageState(),
-                    request.getPageSize(),
-                    request.getStartDate(),
-                    request.getStartVideoId()
-            );
+        LOGGER.debug("Looking for {} latest video(s)", request.getPageSize());
+        Optional<LatestVideosPage> snapshotPage = latestVideosSnapshot.read(request);
+        if (snapshotPage.isPresent()) {
+            return CompletableFuture.completedFuture(snapshotPage.get());
+        }
+        return loadNextBuckets(new LatestVideosPage(), request.getPageState(), request)
+                .whenComplete((returnedPage, error) -> LOGGER.debug("End getting latest video preview"));
+    }
+
+    /**
+     * Query the next round of buckets and chain another round while the page is not full.
+     */
+    private CompletableFuture<LatestVideosPage> loadNextBuckets(
+            LatestVideosPage returnedPage,
+            CustomPagingState currState,
+            GetLatestVideoPreviewsRequestData request
+    ) {
+        if (currState.getCurrentBucket() >= currState.getListOfBucketsSize()) {
+            // No more bucket available, there is no next page
+            returnedPage.setNextPageState("");
             return CompletableFuture.completedFuture(returnedPage);
-        } catch (Exception ex) {
-            return CompletableFuture.failedFuture(ex);
-        } finally {
-            LOGGER.debug("End getting latest video preview");
         }
+
+        int remaining = request.getPageSize() - returnedPage.getResultSize();
+        int lastBucket = Math.min(currState.getCurrentBucket() + bucketsFanOut, currState.getListOfBucketsSize());
+
+        List<CompletableFuture<ResultListPage<LatestVideo>>> bucketPages = new ArrayList<>();
+        for (int bucket = currState.getCurrentBucket(); bucket < lastBucket; bucket++) {
+            // Cassandra paging state is only valid for the bucket it has been issued for
+            Optional<String> pagingState = (bucket == currState.getCurrentBucket()) ?
+                    Optional.ofNullable(currState.getCassandraPagingState()).filter(StringUtils::isNotBlank) :
+                    Optional.empty();
+            bucketPages.add(loadCurrentPage(
+                    buildQuery(currState.getListOfBuckets().get(bucket), pagingState, remaining, request)
+            ));
+        }
+
+        return CompletableFuture.allOf(bucketPages.toArray(new CompletableFuture[0]))
+                .thenCompose(v -> mergeBucketPages(returnedPage, currState, bucketPages, request))
+                .thenCompose(nextState -> {
+                    if (!gotEnough(returnedPage, request.getPageSize())) {
+                        return loadNextBuckets(returnedPage, nextState, request);
+                    }
+                    boolean lastBucketDone = nextState.getCurrentBucket() >= nextState.getListOfBucketsSize();
+                    returnedPage.setNextPageState(lastBucketDone ? "" : nextState.serialize());
+                    return CompletableFuture.completedFuture(returnedPage);
+                });
     }
 
     /**
-     * Latest video partition key is the Date. As such we need to perform a query per date. As the user
-     * ask for a number of video on a given page we may have to trigger several queries, on for each day.
-     * To do it we implement a couple
-     * <p>
-     * For those of you wondering where the call to fetchMoreResults() is take a look here for an explanation.
-     * https://docs.datastax.com/en/drivers/java/3.2/com/datastax/driver/core/PagingIterable.html#getAvailableWithoutFetching--
+     * Append completed bucket pages in bucket order until the page is full.
      * <p>
-     * Quick summary, when getAvailableWithoutFetching() == 0 it automatically calls fetchMoreResults()
-     * We could use it to force a fetch in a "prefetch" scenario, but that is not what we are doing here.
-     *
-     * @throws ExecutionException   error duing invoation
-     * @throws InterruptedException error in asynchronism
+     * A speculative page may hold more rows than still needed; its Cassandra paging state would then skip rows
+     * on the next request, so that bucket is read again with the exact remaining size.
      */
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private LatestVideosPage getLatestVideoPreviews(
-            final CustomPagingState cpState,
-            final int pageSize,
-            final Optional<Instant> startDate,
-            final Optional<UUID> startVid
-    ) throws InterruptedException, ExecutionException {
-        LatestVideosPage returnedPage = new LatestVideosPage();
-        LOGGER.debug("Looking for {} latest video(s)", pageSize);
-
-        CustomPagingState currState = cpState;
-
-        do {
-            // (1) - Paging state (custom or cassandra)
-            final Optional<String> pagingState =
-                    Optional.ofNullable(currState.getCassandraPagingState())  // Only if present .get()
-                            .filter(StringUtils::isNotBlank);                // ..and not empty
-
-            GetLatestVideoPreviewsForGivenDateRequestData query =
-                    new GetLatestVideoPreviewsForGivenDateRequestData(
-                            currState.getCurrentBucketValue(),
-                            pagingState,
-                            pageSize - returnedPage.getResultSize(),
-                            startDate,
-                            startVid
-                    );
-
-            ResultListPage<LatestVideo> currentPage =
-                    loadCurrentPage(query).get();
-
-            returnedPage.getListOfPreview().addAll(currentPage.getResults());
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug(" + bucket:{}/{} with results:{}/{} and pagingState:{}",
-                        currState.getCurrentBucket(),
-                        currState.getListOfBucketsSize(),
-                        returnedPage.getResultSize(),
-                        pageSize,
-                        returnedPage.getCassandraPagingState()
-                );
+    private CompletableFuture<CustomPagingState> mergeBucketPages(
+            LatestVideosPage returnedPage,
+            CustomPagingState currState,
+            List<CompletableFuture<ResultListPage<LatestVideo>>> bucketPages,
+            GetLatestVideoPreviewsRequestData request
+    ) {
+        CustomPagingState state = currState;
+        for (CompletableFuture<ResultListPage<LatestVideo>> bucketPage : bucketPages) {
+            ResultListPage<LatestVideo> currentPage = bucketPage.join();
+            int remaining = request.getPageSize() - returnedPage.getResultSize();
+            if (currentPage.getResults().size() > remaining) {
+                final CustomPagingState overflowState = state;
+                return loadCurrentPage(buildQuery(state.getCurrentBucketValue(), Optional.empty(), remaining, request))
+                        .thenApply(exactPage -> appendPage(returnedPage, overflowState, exactPage, request.getPageSize()));
+            }
+            int currentBucket = state.getCurrentBucket();
+            state = appendPage(returnedPage, state, currentPage, request.getPageSize());
+            if (gotEnough(returnedPage, request.getPageSize()) || state.getCurrentBucket() == currentBucket) {
+                // Page is full, or the bucket has to be read again from a cursor
+                break;
             }
+        }
+        return CompletableFuture.completedFuture(state);
+    }
 
-            currState = nextState(
-                    currState,
-                    currentPage.getPagingState(),
-                    gotEnough(returnedPage, pageSize)
+    private CustomPagingState appendPage(
+            LatestVideosPage returnedPage,
+            CustomPagingState currState,
+            ResultListPage<LatestVideo> currentPage,
+            int pageSize
+    ) {
+        returnedPage.getListOfPreview().addAll(currentPage.getResults());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(" + bucket:{}/{} with results:{}/{} and pagingState:{}",
+                    currState.getCurrentBucket(),
+                    currState.getListOfBucketsSize(),
+                    returnedPage.getResultSize(),
+                    pageSize,
+                    currentPage.getPagingState().orElse("")
             );
+        }
+        return nextState(currState, currentPage.getPagingState(), gotEnough(returnedPage, pageSize));
+    }
 
-        } while ((returnedPage.getListOfPreview().size() < pageSize)               // Result has enough element to fill the page
-                && currState.getCurrentBucket() < currState.getListOfBucketsSize()); // No nore bucket available
-
-        returnedPage.setNextPageState(currState.serialize());
-
-        return returnedPage;
+    private GetLatestVideoPreviewsForGivenDateRequestData buildQuery(
+            String yyyymmdd,
+            Optional<String> pagingState,
+            int pageSize,
+            GetLatestVideoPreviewsRequestData request
+    ) {
+        return new GetLatestVideoPreviewsForGivenDateRequestData(
+                yyyymmdd,
+                pagingState,
+                pageSize,
+                request.getStartDate(),
+                request.getStartVideoId()
+        );
     }
 
     /**
-     * Load current page.
+     * Load current page, from memory when the cache can answer.
      *
      * @param request Query for latest videos for given date.
      * @return latest videos for current bucket date.
@@ -161,6 +247,20 @@ public class LatestVideoPreviewsRepository {
     private CompletableFuture<ResultListPage<LatestVideo>> loadCurrentPage(
             GetLatestVideoPreviewsForGivenDateRequestData request
     ) {
+        Optional<ResultListPage<LatestVideo>> cachedPage = latestVideosCache.readBucket(request);
+        if (cachedPage.isPresent()) {
+            return CompletableFuture.completedFuture(cachedPage.get());
+        }
+        Optional<LatestVideoCursor> cursor = request.getPagingState().flatMap(LatestVideoCursor::deserialize);
+        if (cursor.isPresent()) {
+            // One more row as the cursor row itself is read again
+            return findLatestVideoPreview_fromCursor.queryNext(
+                    Optional.of(request.getPageSize() + 1),
+                    Optional.empty(),
+                    request.getYyyymmdd(),
+                    cursor.get().getAddedDate()
+            ).thenApply(page -> resumeAfterCursor(cursor.get(), page, request));
+        }
         if (request.getStartDate().isPresent() && request.getStartVideoId().isPresent()) {
             return findLatestVideoPreview_startingPoint.queryNext(
                     Optional.of(request.getPageSize()),
@@ -178,16 +278,52 @@ public class LatestVideoPreviewsRepository {
         }
     }
 
+    /**
+     * Skip rows up to the cursor (same added_date) and keep resuming with a cursor, not a Cassandra paging state.
+     */
+    private ResultListPage<LatestVideo> resumeAfterCursor(
+            LatestVideoCursor cursor,
+            ResultListPage<LatestVideo> page,
+            GetLatestVideoPreviewsForGivenDateRequestData request
+    ) {
+        List<LatestVideo> results = new ArrayList<>(request.getPageSize());
+        boolean trimmed = false;
+        for (LatestVideo row : page.getResults()) {
+            if (!cursor.isBefore(row) || !matchesStartingPoint(row, request)) {
+                continue;
+            }
+            if (results.size() == request.getPageSize()) {
+                trimmed = true;
+                break;
+            }
+            results.add(row);
+        }
+        boolean moreRows = trimmed || page.getPagingState().isPresent();
+        Optional<String> nextPagingState = (moreRows && !results.isEmpty()) ?
+                Optional.of(LatestVideoCursor.of(results.get(results.size() - 1)).serialize()) :
+                Optional.empty();
+        return new ResultListPage<>(results, nextPagingState);
+    }
+
+    private boolean matchesStartingPoint(LatestVideo row, GetLatestVideoPreviewsForGivenDateRequestData request) {
+        return request.getStartDate().isEmpty() || request.getStartVideoId().isEmpty() ||
+                LatestVideoCursor.matchesStartingPoint(row, request.getStartDate().get(), request.getStartVideoId().get());
+    }
+
     private boolean gotEnough(LatestVideosPage returnedPage, int pageSize) {
-        return returnedPage.getResultSize() == pageSize;
+        return returnedPage.getResultSize() >= pageSize;
     }
 
+    /**
+     * Stay on the current bucket if it has more rows and the page is full (or a cursor was returned).
+     */
     private CustomPagingState nextState(
             CustomPagingState cpState,
             Optional<String> pagingState,
             boolean gotEnough) {
-        return gotEnough ?
-                cpState.changeCassandraPagingState(pagingState.orElse("")):
+        Optional<String> morePages = pagingState.filter(StringUtils::isNotBlank);
+        return morePages.isPresent() && (gotEnough || LatestVideoCursor.isCursor(morePages.get())) ?
+                cpState.changeCassandraPagingState(morePages.get()) :
                 cpState.incCurrentBucketIndex();
     }
 }
@@ -0,0 +1,255 @@
+package com.killrvideo.service.video.repository;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.killrvideo.dse.dto.CustomPagingState;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.killrvideo.metrics.MetricsWriter;
+import com.killrvideo.service.video.dao.LatestVideoRowMapper;
+import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
+import com.killrvideo.service.video.request.GetLatestVideoPreviewsForGivenDateRequestData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory copy of the newest rows of each 'latest_videos' bucket.
+ * <p>
+ * Each bucket keeps at most {@code maxVideosPerBucket} rows, sorted in clustering order, in an immutable array
+ * swapped on every change. Buckets are fed by the videos inserted through this instance and refreshed
+ * periodically from Cassandra, which bounds staleness for videos added by other instances to the refresh period.
+ * A bucket is <i>complete</i> when it holds every row of the partition; a read running past the rows of an
+ * incomplete bucket is a miss and goes to Cassandra.
+ * <p>
+ * Hits, misses, number of buckets and the hit rate are written on 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class LatestVideosCache implements MetricsWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatestVideosCache.class);
+    private static final String QUERY_LATEST_VIDEOS_BUCKET =
+            "SELECT * " +
+                    "FROM killrvideo.latest_videos " +
+                    "WHERE yyyymmdd = :ymd ";
+
+    private static final String METRICS_PREFIX = "killrvideo_latest_videos_cache_";
+
+    private final TimeBucketing bucketing;
+    private final boolean enabled;
+    private final int maxVideosPerBucket;
+    private final int refreshPeriodSeconds;
+    private final PageableQuery<LatestVideo> findLatestVideosBucket;
+
+    /** Rows per yyyymmdd bucket. */
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ScheduledExecutorService refresher;
+
+    public LatestVideosCache(PageableQueryFactory pageableQueryFactory,
+                             LatestVideoRowMapper latestVideoRowMapper,
+                             TimeBucketing bucketing,
+                             @Value("${killrvideo.latestVideos.cache.enabled: false}") boolean enabled,
+                             @Value("${killrvideo.latestVideos.cache.maxVideosPerBucket: 200}") int maxVideosPerBucket,
+                             @Value("${killrvideo.latestVideos.cache.refreshPeriodSeconds: 30}") int refreshPeriodSeconds) {
+        this.bucketing = bucketing;
+        this.enabled = enabled;
+        this.maxVideosPerBucket = Math.max(1, maxVideosPerBucket);
+        this.refreshPeriodSeconds = Math.max(1, refreshPeriodSeconds);
+        this.findLatestVideosBucket = pageableQueryFactory.newPageableQuery(
+                QUERY_LATEST_VIDEOS_BUCKET,
+                ConsistencyLevel.LOCAL_ONE,
+                latestVideoRowMapper::map
+        );
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            refresher = Executors.newSingleThreadScheduledExecutor(new KillrVideoThreadFactory());
+            refresher.scheduleWithFixedDelay(this::refreshAndWait, 0, refreshPeriodSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add a freshly inserted video to its bucket.
+     */
+    public void add(LatestVideo latestVideo) {
+        if (enabled) {
+            buckets.compute(latestVideo.getYyyymmdd(), (yyyymmdd, bucket) ->
+                    (bucket == null ? Bucket.EMPTY : bucket).merge(
+                            Collections.singletonList(latestVideo), false, maxVideosPerBucket)
+            );
+        }
+    }
+
+    /**
+     * Read a page of a bucket from memory.
+     *
+     * @param request query for latest videos for given date.
+     * @return the page with a cursor as paging state, or empty when the cache cannot answer.
+     */
+    public Optional<ResultListPage<LatestVideo>> readBucket(GetLatestVideoPreviewsForGivenDateRequestData request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<String> pagingState = request.getPagingState().filter(state -> !state.isEmpty());
+        Bucket bucket = buckets.get(request.getYyyymmdd());
+        if (bucket == null || (pagingState.isPresent() && !LatestVideoCursor.isCursor(pagingState.get()))) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        Optional<LatestVideoCursor> cursor = pagingState.flatMap(LatestVideoCursor::deserialize);
+        List<LatestVideo> results = new ArrayList<>(request.getPageSize());
+        int index = 0;
+        while (index < bucket.rows.length && results.size() < request.getPageSize()) {
+            LatestVideo row = bucket.rows[index++];
+            if (cursor.map(c -> c.isBefore(row)).orElse(true) && matchesStartingPoint(row, request)) {
+                results.add(row);
+            }
+        }
+
+        boolean moreRows = index < bucket.rows.length || !bucket.complete;
+        if (results.size() < request.getPageSize() && moreRows) {
+            // Page runs past the cached rows
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        Optional<String> nextPagingState = (moreRows && !results.isEmpty()) ?
+                Optional.of(LatestVideoCursor.of(results.get(results.size() - 1)).serialize()) :
+                Optional.empty();
+        return Optional.of(new ResultListPage<>(results, nextPagingState));
+    }
+
+    /**
+     * Reload the buckets of the lookback window from Cassandra and drop older ones.
+     */
+    public CompletableFuture<Void> refresh() {
+        List<String> lookback = CustomPagingState.buildFirstCustomPagingState(bucketing).getListOfBuckets();
+        buckets.keySet().retainAll(lookback);
+        return CompletableFuture.allOf(lookback.stream()
+                .map(yyyymmdd -> findLatestVideosBucket
+                        .queryNext(Optional.of(maxVideosPerBucket), Optional.empty(), yyyymmdd)
+                        .thenAccept(page -> buckets.compute(yyyymmdd, (key, bucket) ->
+                                (bucket == null ? Bucket.EMPTY : bucket).merge(
+                                        page.getResults(), page.getPagingState().isEmpty(), maxVideosPerBucket)
+                        )))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private void refreshAndWait() {
+        try {
+            refresh().join();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Latest videos cache refreshed, {} bucket(s), hit rate:{}", buckets.size(), getHitRate());
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Cannot refresh latest videos cache: {}", ex.getMessage());
+        }
+    }
+
+    private boolean matchesStartingPoint(LatestVideo row, GetLatestVideoPreviewsForGivenDateRequestData request) {
+        return request.getStartDate().isEmpty() || request.getStartVideoId().isEmpty() ||
+                LatestVideoCursor.matchesStartingPoint(row, request.getStartDate().get(), request.getStartVideoId().get());
+    }
+
+    /**
+     * Write the hits, misses, number of buckets and hit rate.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "hits_total",
+                "Pages of latest videos served from the latest videos cache.", getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "misses_total",
+                "Pages of latest videos the latest videos cache could not serve.", getMissCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "buckets", "Cached buckets of latest videos.", buckets.size());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "hit_ratio",
+                "Share of the pages of latest videos served from the latest videos cache.", getHitRate());
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Share of the pages served from memory. */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Immutable sorted rows of one bucket.
+     */
+    private static final class Bucket {
+        private static final Bucket EMPTY = new Bucket(new LatestVideo[0], false);
+
+        private final LatestVideo[] rows;
+
+        /** Flag telling if every row of the partition is in {@code rows}. */
+        private final boolean complete;
+
+        private Bucket(LatestVideo[] rows, boolean complete) {
+            this.rows = rows;
+            this.complete = complete;
+        }
+
+        /**
+         * Union of current and new rows (by videoid, new rows win), trimmed to the newest {@code maxRows}.
+         */
+        private Bucket merge(List<LatestVideo> newRows, boolean newRowsComplete, int maxRows) {
+            Map<UUID, LatestVideo> byVideoId = new HashMap<>();
+            for (LatestVideo row : rows) {
+                byVideoId.put(row.getVideoid(), row);
+            }
+            for (LatestVideo row : newRows) {
+                byVideoId.put(row.getVideoid(), row);
+            }
+            LatestVideo[] merged = byVideoId.values().toArray(new LatestVideo[0]);
+            Arrays.sort(merged, LatestVideoCursor.CLUSTERING_ORDER);
+            boolean trimmed = merged.length > maxRows;
+            return new Bucket(
+                    trimmed ? Arrays.copyOf(merged, maxRows) : merged,
+                    (complete || newRowsComplete) && !trimmed
+            );
+        }
+    }
+}
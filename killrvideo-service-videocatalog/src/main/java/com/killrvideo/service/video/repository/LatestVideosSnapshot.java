@@ -0,0 +1,358 @@
+package com.killrvideo.service.video.repository;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.killrvideo.dse.dto.CustomPagingState;
+import com.killrvideo.dse.dto.TimeBucketing;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
+import com.killrvideo.metrics.MetricsWriter;
+import com.killrvideo.service.video.dao.LatestVideoRowMapper;
+import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
+import com.killrvideo.service.video.dto.LatestVideosPage;
+import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Materialized top-K newest videos of the whole lookback window, rebuilt periodically by a background job.
+ * <p>
+ * The rows are kept in an immutable array sorted as the home page reads them (bucket after bucket, each in
+ * clustering order) and swapped atomically, so a page is a binary search for its first row followed by an array
+ * slice, whatever the number of buckets to cross. A starting point ('(added_date, videoid) <= ...') adds a binary
+ * search per bucket for its first row not newer than the starting point. Pages resume with a {@link LatestVideoCursor} inside the
+ * {@link CustomPagingState}, the same token the Cassandra path understands. The snapshot answers a page only when
+ * it holds every row the page needs: while it is incomplete (top-K reached) a page running past its last row
+ * goes to Cassandra, as well as any page resuming from a native Cassandra paging state.
+ * <p>
+ * Pages served, pages falling back to Cassandra, the size of the snapshot and the hit rate are written on
+ * 'GET /metrics'.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+@Component
+public class LatestVideosSnapshot implements MetricsWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatestVideosSnapshot.class);
+    private static final String QUERY_LATEST_VIDEOS_BUCKET =
+            "SELECT * " +
+                    "FROM killrvideo.latest_videos " +
+                    "WHERE yyyymmdd = :ymd ";
+
+    private static final String METRICS_PREFIX = "killrvideo_latest_videos_snapshot_";
+
+    /** Home page order: most recent bucket first, then clustering order in the bucket. */
+    private static final Comparator<LatestVideo> SNAPSHOT_ORDER =
+            Comparator.comparing(LatestVideo::getYyyymmdd, Comparator.reverseOrder())
+                    .thenComparing(LatestVideoCursor.CLUSTERING_ORDER);
+
+    private final TimeBucketing bucketing;
+    private final boolean enabled;
+    private final int topK;
+    private final int refreshPeriodSeconds;
+    private final PageableQuery<LatestVideo> findLatestVideosBucket;
+
+    /** Current snapshot, null until the first build. */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ScheduledExecutorService materializer;
+
+    public LatestVideosSnapshot(PageableQueryFactory pageableQueryFactory,
+                                LatestVideoRowMapper latestVideoRowMapper,
+                                TimeBucketing bucketing,
+                                @Value("${killrvideo.latestVideos.snapshot.enabled: false}") boolean enabled,
+                                @Value("${killrvideo.latestVideos.snapshot.topK: 500}") int topK,
+                                @Value("${killrvideo.latestVideos.snapshot.refreshPeriodSeconds: 10}") int refreshPeriodSeconds) {
+        this.bucketing = bucketing;
+        this.enabled = enabled;
+        this.topK = Math.max(1, topK);
+        this.refreshPeriodSeconds = Math.max(1, refreshPeriodSeconds);
+        this.findLatestVideosBucket = pageableQueryFactory.newPageableQuery(
+                QUERY_LATEST_VIDEOS_BUCKET,
+                ConsistencyLevel.LOCAL_ONE,
+                latestVideoRowMapper::map
+        );
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            materializer = Executors.newSingleThreadScheduledExecutor(new KillrVideoThreadFactory());
+            materializer.scheduleWithFixedDelay(this::rebuildAndWait, 0, refreshPeriodSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (materializer != null) {
+            materializer.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add a freshly inserted video.
+     */
+    public void add(LatestVideo latestVideo) {
+        if (enabled) {
+            snapshot.updateAndGet(current -> current == null ? null :
+                    current.merge(Collections.singletonList(latestVideo), topK));
+        }
+    }
+
+    /**
+     * Read a page of latest videos from the snapshot.
+     *
+     * @param request page request
+     * @return the page with its next paging state, or empty when the snapshot cannot answer
+     */
+    public Optional<LatestVideosPage> read(GetLatestVideoPreviewsRequestData request) {
+        Snapshot current = snapshot.get();
+        CustomPagingState state = request.getPageState();
+        String pagingState = StringUtils.defaultString(state.getCassandraPagingState());
+        if (!enabled || current == null
+                || !current.buckets.equals(state.getListOfBuckets())
+                || (!pagingState.isEmpty() && !LatestVideoCursor.isCursor(pagingState))) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        LatestVideo[] rows = current.rows;
+        String bucket = state.getCurrentBucket() < state.getListOfBucketsSize() ? state.getCurrentBucketValue() : "";
+        Optional<LatestVideoCursor> cursor = LatestVideoCursor.deserialize(pagingState);
+        int from = cursor.isPresent() ?
+                lowerBound(rows, 0, row -> row.getYyyymmdd().compareTo(bucket) < 0 ||
+                        (row.getYyyymmdd().equals(bucket) && cursor.get().isBefore(row))) :
+                lowerBound(rows, 0, row -> row.getYyyymmdd().compareTo(bucket) <= 0);
+
+        LatestVideosPage page = new LatestVideosPage();
+        int index = from;
+        while (index < rows.length && page.getResultSize() < request.getPageSize()) {
+            LatestVideo row = rows[index];
+            if (matchesStartingPoint(row, request)) {
+                page.getListOfPreview().add(row);
+                index++;
+            } else if (row.getAddedDate().isAfter(request.getStartDate().get())) {
+                // Newer than the starting point: jump to the first row of the bucket which is not
+                index = lowerBound(rows, index, startingPointOrOlder(row.getYyyymmdd(), request.getStartDate().get()));
+            } else {
+                // Same date as the starting point, greater videoid
+                index++;
+            }
+        }
+
+        boolean moreRows = index < rows.length || !current.complete;
+        if (page.getResultSize() < request.getPageSize() && moreRows) {
+            // Page runs past the materialized rows
+            misses.increment();
+            return Optional.empty();
+        }
+        String nextPageState = "";
+        if (moreRows && page.getResultSize() > 0) {
+            LatestVideo last = page.getListOfPreview().get(page.getResultSize() - 1);
+            int lastBucket = state.getListOfBuckets().indexOf(last.getYyyymmdd());
+            if (lastBucket < 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            nextPageState = state.changeCurrentBucket(lastBucket, LatestVideoCursor.of(last).serialize()).serialize();
+        }
+        page.setNextPageState(nextPageState);
+        hits.increment();
+        return Optional.of(page);
+    }
+
+    /**
+     * Materialize the top-K newest rows of the lookback window and swap the snapshot.
+     */
+    public CompletableFuture<Void> rebuild() {
+        final Instant starts = Instant.now();
+        final CustomPagingState window = CustomPagingState.buildFirstCustomPagingState(bucketing);
+        return loadBuckets(window.getListOfBuckets(), 0, Optional.empty(), new ArrayList<>())
+                .thenAccept(built -> snapshot.updateAndGet(current -> {
+                    Snapshot rebuilt = new Snapshot(window.getListOfBuckets(), built.rows, built.complete);
+                    if (current == null) {
+                        return rebuilt;
+                    }
+                    // Keep videos added while the snapshot was being built
+                    List<LatestVideo> addedMeanwhile = new ArrayList<>();
+                    for (LatestVideo row : current.rows) {
+                        if (!row.getAddedDate().isBefore(starts)) {
+                            addedMeanwhile.add(row);
+                        }
+                    }
+                    return rebuilt.merge(addedMeanwhile, topK);
+                }));
+    }
+
+    /**
+     * Read buckets newest first, page by page, until top-K rows are collected or every bucket is exhausted.
+     */
+    private CompletableFuture<Snapshot> loadBuckets(List<String> buckets, int bucket, Optional<String> pagingState,
+                                                    List<LatestVideo> collected) {
+        if (bucket >= buckets.size()) {
+            return CompletableFuture.completedFuture(new Snapshot(buckets, collected.toArray(new LatestVideo[0]), true));
+        }
+        return findLatestVideosBucket
+                .queryNext(Optional.of(topK - collected.size()), pagingState, buckets.get(bucket))
+                .thenCompose(page -> {
+                    collected.addAll(page.getResults());
+                    Optional<String> next = page.getPagingState().filter(StringUtils::isNotBlank);
+                    if (collected.size() >= topK) {
+                        boolean exhausted = next.isEmpty() && bucket == buckets.size() - 1;
+                        return CompletableFuture.completedFuture(new Snapshot(buckets,
+                                collected.subList(0, topK).toArray(new LatestVideo[0]), exhausted));
+                    }
+                    return next.isPresent() ?
+                            loadBuckets(buckets, bucket, next, collected) :
+                            loadBuckets(buckets, bucket + 1, Optional.empty(), collected);
+                });
+    }
+
+    private void rebuildAndWait() {
+        try {
+            rebuild().join();
+            if (LOGGER.isDebugEnabled()) {
+                Snapshot current = snapshot.get();
+                LOGGER.debug("Latest videos snapshot rebuilt, {} video(s) complete:{}, hit rate:{}",
+                        current.rows.length, current.complete, getHitRate());
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Cannot rebuild latest videos snapshot: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * First index from {@code from} of the sorted rows matching a predicate which is false then true along the array.
+     */
+    private static int lowerBound(LatestVideo[] rows, int from, Predicate<LatestVideo> predicate) {
+        int low = from;
+        int high = rows.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (predicate.test(rows[mid])) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rows of an older bucket, or of the bucket not newer than the starting point: false then true along the rows
+     * of a bucket, sorted by descending date.
+     */
+    private static Predicate<LatestVideo> startingPointOrOlder(String bucket, Instant startDate) {
+        return row -> row.getYyyymmdd().compareTo(bucket) < 0 ||
+                (row.getYyyymmdd().equals(bucket) && !row.getAddedDate().isAfter(startDate));
+    }
+
+    private boolean matchesStartingPoint(LatestVideo row, GetLatestVideoPreviewsRequestData request) {
+        return request.getStartDate().isEmpty() || request.getStartVideoId().isEmpty() ||
+                LatestVideoCursor.matchesStartingPoint(row, request.getStartDate().get(), request.getStartVideoId().get());
+    }
+
+    /**
+     * Write the pages served and fallen back to Cassandra, the size of the snapshot and the hit rate.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "served_total",
+                "Home pages served from the latest videos snapshot.", getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "fallbacks_total",
+                "Home pages read from Cassandra, the latest videos snapshot could not serve them.", getMissCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "videos", "Videos in the latest videos snapshot.", size());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "hit_ratio",
+                "Share of the home pages served from the latest videos snapshot.", getHitRate());
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Share of the pages served from the snapshot. */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /** Number of videos in the snapshot, 0 until the first build. */
+    public int size() {
+        Snapshot current = snapshot.get();
+        return current == null ? 0 : current.rows.length;
+    }
+
+    /**
+     * Immutable sorted rows of the lookback window.
+     */
+    private static final class Snapshot {
+
+        /** Buckets of the window this snapshot was built for. */
+        private final List<String> buckets;
+
+        private final LatestVideo[] rows;
+
+        /** Flag telling if every row of the window is in {@code rows}. */
+        private final boolean complete;
+
+        private Snapshot(List<String> buckets, LatestVideo[] rows, boolean complete) {
+            this.buckets = buckets;
+            this.rows = rows;
+            this.complete = complete;
+        }
+
+        /**
+         * Union of current and new rows (by videoid, new rows win), trimmed to the newest {@code maxRows}.
+         * New rows older than the last row of an incomplete snapshot are ignored: rows between would be missing.
+         */
+        private Snapshot merge(List<LatestVideo> newRows, int maxRows) {
+            Map<UUID, LatestVideo> byVideoId = new HashMap<>();
+            for (LatestVideo row : rows) {
+                byVideoId.put(row.getVideoid(), row);
+            }
+            LatestVideo last = rows.length > 0 ? rows[rows.length - 1] : null;
+            for (LatestVideo row : newRows) {
+                if (complete || last == null || SNAPSHOT_ORDER.compare(row, last) < 0) {
+                    byVideoId.put(row.getVideoid(), row);
+                }
+            }
+            LatestVideo[] merged = byVideoId.values().toArray(new LatestVideo[0]);
+            Arrays.sort(merged, SNAPSHOT_ORDER);
+            boolean trimmed = merged.length > maxRows;
+            return new Snapshot(
+                    buckets,
+                    trimmed ? Arrays.copyOf(merged, maxRows) : merged,
+                    complete && !trimmed
+            );
+        }
+    }
+}
@@ -1,32 +1,53 @@
 package com.killrvideo.service.video.repository;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.killrvideo.dse.dto.CustomPagingState;
 import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
 import com.killrvideo.dse.dto.Video;
-import com.killrvideo.dse.utils.MappedAsyncPagingIterableUtils;
+import com.killrvideo.dse.utils.MultiGetUtils;
 import com.killrvideo.dse.utils.PageableQuery;
 import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.metrics.LatencyHistograms;
+import com.killrvideo.metrics.MetricsWriter;
 import com.killrvideo.service.video.dao.*;
 import com.killrvideo.service.video.dto.LatestVideo;
 import com.killrvideo.service.video.dto.LatestVideosPage;
 import com.killrvideo.service.video.dto.UserVideo;
 import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
 import com.killrvideo.service.video.request.GetUserVideoPreviewsRequestData;
+import com.killrvideo.utils.SingleFlightCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementations of operation for Videos.
+ * <p>
+ * Hits, collapsed lookups and queries of the 'getVideoById' cache are written on 'GET /metrics'.
  *
  * @author DataStax Developer Advocates team.
  */
 @Repository
-public class VideoCatalogRepository {
+public class VideoCatalogRepository implements MetricsWriter {
+    /**
+     * Name of 'insertVideoAsync' in the latency histograms, with the write mode as shape.
+     */
+    static final String INSERT_VIDEO_RPC = "insertVideo";
+
+    private static final String METRICS_PREFIX = "killrvideo_video_cache_";
+
     private static final String QUERY_USER_VIDEO_PREVIEW_STARTING_POINT =
             "SELECT * " +
                     "FROM killrvideo.user_videos " +
@@ -41,6 +62,28 @@ public class VideoCatalogRepository {
     private final VideoDao videoDao;
     private final UserVideoDao userVideoDao;
     private final LatestVideoPreviewsRepository latestVideoPreviewsRequestRepository;
+    private final CqlSession session;
+
+    /**
+     * Partitioning of 'latest_videos'.
+     */
+    private final TimeBucketing latestVideosBucketing;
+
+    /**
+     * How a new video is written, the latency of the writes being recorded for each mode.
+     */
+    private final VideoWriteMode writeMode;
+    private final LatencyHistograms latencyHistograms;
+
+    /**
+     * Concurrent 'getVideoById' for the same video share one query, results are kept for a short time.
+     */
+    private final SingleFlightCache<UUID, Video> videoByIdCache;
+
+    /**
+     * Maximum number of concurrent selects when reading many videos.
+     */
+    private final int multiGetConcurrency;
 
     /**
      * Prepare Statements 'getUserVideo'.
@@ -51,10 +94,23 @@ public class VideoCatalogRepository {
     public VideoCatalogRepository(PageableQueryFactory pageableQueryFactory,
                                   VideoCatalogMapper mapper,
                                   UserVideoRowMapper userVideoRowMapper,
-                                  LatestVideoPreviewsRepository latestVideoPreviewsRequestRepository) {
+                                  LatestVideoPreviewsRepository latestVideoPreviewsRequestRepository,
+                                  CqlSession session,
+                                  TimeBucketing latestVideosBucketing,
+                                  LatencyHistograms latencyHistograms,
+                                  @Value("${killrvideo.videoCatalog.writeMode: INDEPENDENT}") VideoWriteMode writeMode,
+                                  @Value("${killrvideo.videoCatalog.videoCache.ttlMillis: 0}") long videoCacheTtlMillis,
+                                  @Value("${killrvideo.videoCatalog.videoCache.maxEntries: 10000}") int videoCacheMaxEntries,
+                                  @Value("${killrvideo.cassandra.multiGetConcurrency: " + MultiGetUtils.DEFAULT_MAX_CONCURRENCY + "}") int multiGetConcurrency) {
         this.videoDao = mapper.getVideoDao();
         this.userVideoDao = mapper.getUserVideoDao();
         this.latestVideoPreviewsRequestRepository = latestVideoPreviewsRequestRepository;
+        this.session = session;
+        this.latestVideosBucketing = latestVideosBucketing;
+        this.writeMode = writeMode;
+        this.latencyHistograms = latencyHistograms;
+        this.videoByIdCache = new SingleFlightCache<>(Duration.ofMillis(videoCacheTtlMillis), videoCacheMaxEntries);
+        this.multiGetConcurrency = multiGetConcurrency;
 
         this.findUserVideoPreview_startingPoint = pageableQueryFactory.newPageableQuery(
                 QUERY_USER_VIDEO_PREVIEW_STARTING_POINT,
@@ -69,28 +125,89 @@ public class VideoCatalogRepository {
     }
 
     /**
-     * Insert a VIDEO in the DB (ASYNC).
+     * First page of latest videos, the lookback window of the configured bucketing ending now.
+     */
+    public CustomPagingState buildFirstLatestVideosPagingState() {
+        return CustomPagingState.buildFirstCustomPagingState(latestVideosBucketing);
+    }
+
+    /**
+     * Insert a VIDEO in the DB (ASYNC), in 'videos', 'user_videos' and 'latest_videos' following the write mode.
+     * The latency is recorded in the {@link LatencyHistograms} ('insertVideo' RPC, write mode as shape).
      */
     public CompletableFuture<Void> insertVideoAsync(Video v) {
-        Instant now = Instant.now();
+        // Cassandra timestamps are stored with millisecond precision
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
         v.setAddedDate(now);
+        UserVideo userVideo = UserVideo.from(v, now);
+        LatestVideo latestVideo = LatestVideo.from(v, now, latestVideosBucketing);
 
-        return CompletableFuture.allOf(
-                this.videoDao.insert(v),
-                this.userVideoDao.insert(UserVideo.from(v, now)),
-                this.latestVideoPreviewsRequestRepository.insert(LatestVideo.from(v, now))
-        );
+        final long starts = System.nanoTime();
+        CompletableFuture<Void> write;
+        if (writeMode == VideoWriteMode.INDEPENDENT) {
+            write = CompletableFuture.allOf(
+                    this.videoDao.insert(v),
+                    this.userVideoDao.insert(userVideo),
+                    this.latestVideoPreviewsRequestRepository.insert(latestVideo)
+            );
+        } else {
+            write = insertBatchAsync(v, userVideo, latestVideo);
+        }
+        return write.whenComplete((result, error) -> latencyHistograms.record(INSERT_VIDEO_RPC, writeMode.name(),
+                error == null, Duration.ofNanos(System.nanoTime() - starts)));
+    }
+
+    private CompletableFuture<Void> insertBatchAsync(Video v, UserVideo userVideo, LatestVideo latestVideo) {
+        BatchStatement batch = BatchStatement
+                .builder(writeMode == VideoWriteMode.LOGGED_BATCH ? DefaultBatchType.LOGGED : DefaultBatchType.UNLOGGED)
+                .addStatements(
+                        this.videoDao.insertStatement(v),
+                        this.userVideoDao.insertStatement(userVideo),
+                        this.latestVideoPreviewsRequestRepository.insertStatement(latestVideo))
+                .setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM)
+                .build();
+        return this.session.executeAsync(batch).toCompletableFuture()
+                .thenRun(() -> this.latestVideoPreviewsRequestRepository.inserted(latestVideo));
+    }
+
+    /**
+     * Write mode of new videos.
+     */
+    public VideoWriteMode getWriteMode() {
+        return writeMode;
     }
 
+    /**
+     * Read a video (ASYNC), concurrent lookups for the same video are coalesced into a single query.
+     */
     public CompletableFuture<Video> getVideoById(UUID videoid) {
-        return this.videoDao.getVideoById(videoid);
+        return this.videoByIdCache.get(videoid, this.videoDao::getVideoById);
     }
 
+    /**
+     * Write the lookups of 'getVideoById' served from memory, collapsed into a running query or queried.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "hits_total",
+                "Video lookups served from the video cache.", videoByIdCache.getHitCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "collapsed_total",
+                "Video lookups which joined the same lookup running.", videoByIdCache.getCollapsedCount());
+        MetricsWriter.writeCounter(out, METRICS_PREFIX + "loads_total",
+                "Video lookups queried by the video cache.", videoByIdCache.getLoadCount());
+        MetricsWriter.writeGauge(out, METRICS_PREFIX + "entries", "Cached videos.", videoByIdCache.size());
+    }
+
+    /**
+     * Read many videos (ASYNC), one select per video.
+     *
+     * @param listofVideoId videos to read
+     * @return existing videos, in the order of the list
+     */
     public CompletableFuture<List<Video>> getVideoPreview(List<UUID> listofVideoId) {
         Assert.notNull(listofVideoId, "videoid list cannot be null");
 
-        return this.videoDao.getVideoPreview(listofVideoId)
-                .thenApply(MappedAsyncPagingIterableUtils::all);
+        return MultiGetUtils.getAll(listofVideoId, this::getVideoById, multiGetConcurrency);
     }
 
     /**
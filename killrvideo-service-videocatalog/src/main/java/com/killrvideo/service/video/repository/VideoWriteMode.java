@@ -0,0 +1,18 @@
+package com.killrvideo.service.video.repository;
+
+/**
+ * How the denormalized rows of a new video ('videos', 'user_videos', 'latest_videos') are written.
+ *
+ * @author DataStax Developer Advocates team.
+ */
+public enum VideoWriteMode {
+
+    /** Three concurrent inserts, a partial failure leaves the tables inconsistent. */
+    INDEPENDENT,
+
+    /** One logged batch, all rows are eventually written once the batch log accepted it. */
+    LOGGED_BATCH,
+
+    /** One unlogged batch, a single round trip without atomicity guarantee. */
+    UNLOGGED_BATCH
+}
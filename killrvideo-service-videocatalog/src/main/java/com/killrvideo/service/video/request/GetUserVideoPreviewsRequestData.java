@@ -25,4 +25,18 @@ public class GetUserVideoPreviewsRequestData {
                 Optional.empty(),
                 Optional.empty());
     }
+
+    /**
+     * Same request, resuming from another page.
+     */
+    public GetUserVideoPreviewsRequestData withPagingState(Optional<String> pagingState) {
+        return new GetUserVideoPreviewsRequestData(userId, startingVideoId, startingAddedDate, pagingSize, pagingState);
+    }
+
+    /**
+     * Same request, with another page size.
+     */
+    public GetUserVideoPreviewsRequestData withPagingSize(int pagingSize) {
+        return new GetUserVideoPreviewsRequestData(userId, startingVideoId, startingAddedDate, Optional.of(pagingSize), pagingState);
+    }
 }
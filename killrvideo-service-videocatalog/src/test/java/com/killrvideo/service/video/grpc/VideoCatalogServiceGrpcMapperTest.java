@@ -2,6 +2,7 @@ package com.killrvideo.service.video.grpc;
 
 import com.killrvideo.dse.dto.CustomPagingState;
 import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
 import com.killrvideo.dse.dto.Video;
 import com.killrvideo.service.video.dto.LatestVideo;
 import com.killrvideo.service.video.dto.LatestVideosPage;
@@ -52,7 +53,7 @@ class VideoCatalogServiceGrpcMapperTest {
     @Test
     public void testMapLatestVideoToGrpcResponse() {
         Video v = video();
-        LatestVideo latestVideo = LatestVideo.from(v, Instant.now());
+        LatestVideo latestVideo = LatestVideo.from(v, Instant.now(), TimeBucketing.DEFAULT);
         String nextPageState = "next page state";
         String cassandraPagingState = "cassandra paging state";
         LatestVideosPage latestVideosPage = new LatestVideosPage(singletonList(latestVideo),
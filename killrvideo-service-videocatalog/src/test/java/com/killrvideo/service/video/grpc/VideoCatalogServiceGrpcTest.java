@@ -9,6 +9,7 @@ import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
 import com.killrvideo.service.video.request.GetUserVideoPreviewsRequestData;
 import com.killrvideo.service.video.repository.VideoCatalogRepository;
 import com.killrvideo.utils.GrpcMappingUtils;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import killrvideo.video_catalog.VideoCatalogServiceOuterClass.*;
 import killrvideo.video_catalog.events.VideoCatalogEvents;
@@ -22,6 +23,7 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -384,6 +386,34 @@ class VideoCatalogServiceGrpcTest {
         verify(grpcResObserver, times(1)).onCompleted();
     }
 
+    @Test
+    void testStreamUserVideoPreviews() {
+        UUID userid = UUID.randomUUID();
+        GetUserVideoPreviewsRequest grpcReq = getUserVideoPreviewsRequest(userid);
+        ServerCallStreamObserver<VideoPreview> grpcResObserver = mock(ServerCallStreamObserver.class);
+        when(grpcResObserver.isReady()).thenReturn(true);
+
+        doNothing().when(this.validator).validateGrpcRequest_streamUserVideoPreviews(any(), any());
+        when(this.mapper.parseGetUserVideoPreviewsRequest(grpcReq)).thenReturn(new GetUserVideoPreviewsRequestData(userid));
+
+        ResultListPage<UserVideo> firstPage = new ResultListPage<>(singletonList(mock(UserVideo.class)), Optional.of("0x01"));
+        ResultListPage<UserVideo> lastPage = new ResultListPage<>(singletonList(mock(UserVideo.class)), Optional.empty());
+        when(this.videoCatalogRepository.getUserVideosPreview(any())).thenReturn(
+                CompletableFuture.completedFuture(firstPage),
+                CompletableFuture.completedFuture(lastPage)
+        );
+        when(this.mapper.mapToVideoPreviewPage(any())).thenAnswer(invocation -> {
+            ResultListPage<UserVideo> page = invocation.getArgument(0);
+            return new ResultListPage<>(singletonList(VideoPreview.getDefaultInstance()), page.getPagingState());
+        });
+
+        service.streamUserVideoPreviews(grpcReq, grpcResObserver);
+        verify(this.videoCatalogRepository, times(2)).getUserVideosPreview(any());
+        verify(grpcResObserver, times(0)).onError(any());
+        verify(grpcResObserver, times(2)).onNext(any());
+        verify(grpcResObserver, times(1)).onCompleted();
+    }
+
     private GetVideoRequest getVideoRequest(UUID videoid) {
         return GetVideoRequest.newBuilder()
                 .setVideoId(uuidToUuid(videoid))
@@ -0,0 +1,202 @@
+package com.killrvideo.service.video.grpc;
+
+import com.killrvideo.dse.dto.Video;
+import com.killrvideo.messaging.dao.MessagingDao;
+import com.killrvideo.service.video.repository.VideoCatalogRepository;
+import io.grpc.stub.ServerCallStreamObserver;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideoRequest;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideoResult;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.SubmitYouTubeVideosResponse;
+import killrvideo.video_catalog.events.VideoCatalogEvents.YouTubeVideoAdded;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.killrvideo.utils.GrpcMappingUtils.uuidToUuid;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+class YouTubeVideosIngestionTest {
+    private ServerCallStreamObserver<SubmitYouTubeVideosResponse> grpcResObserver;
+    private VideoCatalogRepository videoCatalogRepository;
+    private MessagingDao messagingDao;
+    private VideoCatalogServiceGrpcValidator validator;
+    private VideoCatalogServiceGrpcMapper mapper;
+    private List<CompletableFuture<Void>> writes;
+    private List<Throwable> doneErrors;
+
+    @BeforeEach
+    public void setUp() {
+        grpcResObserver = mock(ServerCallStreamObserver.class);
+        videoCatalogRepository = mock(VideoCatalogRepository.class);
+        messagingDao = mock(MessagingDao.class);
+        validator = mock(VideoCatalogServiceGrpcValidator.class);
+        mapper = mock(VideoCatalogServiceGrpcMapper.class);
+        writes = new ArrayList<>();
+        doneErrors = new ArrayList<>();
+
+        when(validator.checkGrpcRequest_submitYoutubeVideo(any())).thenReturn(Optional.empty());
+        when(mapper.mapSubmitYouTubeVideoRequestAsVideo(any())).thenReturn(mock(Video.class));
+        when(mapper.createYouTubeVideoAddedEvent(any())).thenReturn(YouTubeVideoAdded.getDefaultInstance());
+        when(videoCatalogRepository.insertVideoAsync(any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> write = new CompletableFuture<>();
+            writes.add(write);
+            return write;
+        });
+        when(messagingDao.sendEvents(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    private YouTubeVideosIngestion ingestion(int maxInFlight, int eventBatchSize) {
+        return ingestion(maxInFlight, eventBatchSize, 60_000, 100);
+    }
+
+    private YouTubeVideosIngestion ingestion(int maxInFlight, int eventBatchSize, long eventFlushMillis, int maxReportedFailures) {
+        return new YouTubeVideosIngestion(grpcResObserver, videoCatalogRepository, messagingDao, validator, mapper,
+                "topic", maxInFlight, eventBatchSize, eventFlushMillis, maxReportedFailures, doneErrors::add);
+    }
+
+    private SubmitYouTubeVideoRequest request() {
+        return SubmitYouTubeVideoRequest.newBuilder().setVideoId(uuidToUuid(UUID.randomUUID())).build();
+    }
+
+    @Test
+    public void testInFlightWindowAndBatchedEvents() {
+        YouTubeVideosIngestion ingestion = ingestion(2, 2);
+        verify(grpcResObserver).disableAutoRequest();
+        verify(grpcResObserver).request(2);
+
+        ingestion.onNext(request());
+        ingestion.onNext(request());
+        writes.get(1).complete(null);
+        // One write done: one more video requested, event kept for the batch
+        verify(grpcResObserver, times(1)).request(1);
+        verify(messagingDao, never()).sendEvents(any(), any());
+
+        SubmitYouTubeVideoRequest failing = request();
+        ingestion.onNext(failing);
+        writes.get(0).complete(null);
+        verify(messagingDao, times(1)).sendEvents(eq("topic"), argThat(events -> events.size() == 2));
+
+        ingestion.onCompleted();
+        verify(grpcResObserver, never()).onCompleted();
+        writes.get(2).completeExceptionally(new IllegalStateException("write timeout"));
+
+        ArgumentCaptor<SubmitYouTubeVideosResponse> response = ArgumentCaptor.forClass(SubmitYouTubeVideosResponse.class);
+        verify(grpcResObserver).onNext(response.capture());
+        verify(grpcResObserver).onCompleted();
+        assertEquals(3, response.getValue().getSubmittedCount());
+        assertEquals(1, response.getValue().getFailedCount());
+        List<SubmitYouTubeVideoResult> results = response.getValue().getResultsList();
+        assertEquals(1, results.size());
+        assertEquals(failing.getVideoId(), results.get(0).getVideoId());
+        assertEquals(1, doneErrors.size());
+        assertNull(doneErrors.get(0));
+    }
+
+    @Test
+    public void testInvalidVideoDoesNotFailTheStream() {
+        when(validator.checkGrpcRequest_submitYoutubeVideo(any())).thenReturn(Optional.of("video name should be provided"));
+        YouTubeVideosIngestion ingestion = ingestion(4, 10);
+
+        ingestion.onNext(request());
+        ingestion.onCompleted();
+
+        ArgumentCaptor<SubmitYouTubeVideosResponse> response = ArgumentCaptor.forClass(SubmitYouTubeVideosResponse.class);
+        verify(grpcResObserver).onNext(response.capture());
+        assertEquals("video name should be provided", response.getValue().getResults(0).getErrorMessage());
+        verify(videoCatalogRepository, never()).insertVideoAsync(any());
+        verify(messagingDao, never()).sendEvents(any(), any());
+    }
+
+    @Test
+    public void testEventFailureIsReported() {
+        when(messagingDao.sendEvents(any(), any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        YouTubeVideosIngestion ingestion = ingestion(4, 10);
+
+        ingestion.onNext(request());
+        writes.get(0).complete(null);
+        ingestion.onCompleted();
+
+        ArgumentCaptor<SubmitYouTubeVideosResponse> response = ArgumentCaptor.forClass(SubmitYouTubeVideosResponse.class);
+        verify(grpcResObserver).onNext(response.capture());
+        assertTrue(response.getValue().getResults(0).getErrorMessage().startsWith("Video saved but event not sent"));
+    }
+
+    @Test
+    public void testResponseWaitsForEventBatchesInFlight() {
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        when(messagingDao.sendEvents(any(), any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> batch = new CompletableFuture<>();
+            batches.add(batch);
+            return batch;
+        });
+        YouTubeVideosIngestion ingestion = ingestion(4, 1);
+
+        ingestion.onNext(request());
+        ingestion.onNext(request());
+        writes.get(0).complete(null);
+        writes.get(1).complete(null);
+        ingestion.onCompleted();
+        assertEquals(2, batches.size());
+
+        batches.get(1).complete(null);
+        verify(grpcResObserver, never()).onNext(any());
+        batches.get(0).completeExceptionally(new IllegalStateException("broker down"));
+
+        ArgumentCaptor<SubmitYouTubeVideosResponse> response = ArgumentCaptor.forClass(SubmitYouTubeVideosResponse.class);
+        verify(grpcResObserver).onNext(response.capture());
+        verify(grpcResObserver).onCompleted();
+        assertEquals(1, response.getValue().getFailedCount());
+    }
+
+    @Test
+    public void testOnlyFirstFailuresListed() {
+        when(validator.checkGrpcRequest_submitYoutubeVideo(any())).thenReturn(Optional.of("video name should be provided"));
+        YouTubeVideosIngestion ingestion = ingestion(4, 10, 60_000, 2);
+
+        for (int i = 0; i < 5; i++) {
+            ingestion.onNext(request());
+        }
+        ingestion.onCompleted();
+
+        ArgumentCaptor<SubmitYouTubeVideosResponse> response = ArgumentCaptor.forClass(SubmitYouTubeVideosResponse.class);
+        verify(grpcResObserver).onNext(response.capture());
+        assertEquals(5, response.getValue().getSubmittedCount());
+        assertEquals(5, response.getValue().getFailedCount());
+        assertEquals(2, response.getValue().getResultsCount());
+    }
+
+    @Test
+    public void testPartialBatchSentAfterDelay() {
+        YouTubeVideosIngestion ingestion = ingestion(4, 10, 20, 100);
+
+        ingestion.onNext(request());
+        writes.get(0).complete(null);
+
+        verify(messagingDao, timeout(2000)).sendEvents(eq("topic"), argThat(events -> events.size() == 1));
+        verify(grpcResObserver, never()).onNext(any());
+    }
+
+    @Test
+    public void testEventsOfWritesInProgressSentAfterCancel() {
+        YouTubeVideosIngestion ingestion = ingestion(4, 10);
+
+        ingestion.onNext(request());
+        ingestion.onNext(request());
+        writes.get(0).complete(null);
+        ingestion.onError(new IllegalStateException("cancelled"));
+        verify(messagingDao, never()).sendEvents(any(), any());
+
+        writes.get(1).complete(null);
+        verify(messagingDao, times(1)).sendEvents(eq("topic"), argThat(events -> events.size() == 2));
+        verify(grpcResObserver, never()).onNext(any());
+        assertEquals(1, doneErrors.size());
+    }
+}
@@ -8,12 +8,15 @@ import com.killrvideo.service.video.dao.LatestVideoDao;
 import com.killrvideo.service.video.dao.LatestVideoRowMapper;
 import com.killrvideo.service.video.dao.VideoCatalogMapper;
 import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
+import com.killrvideo.service.video.dto.LatestVideosPage;
 import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -24,11 +27,15 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItems;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class LatestVideoPreviewsRepositoryTest {
     private LatestVideoPreviewsRepository repository;
+    private LatestVideoPreviewsRepository fanOutRepository;
     private LatestVideoDao latestVideoDao;
+    private LatestVideosCache latestVideosCache;
+    private LatestVideosSnapshot latestVideosSnapshot;
     private PageableQuery<LatestVideo> findLatestVideoPreview_startingPoint;
     private PageableQuery<LatestVideo> findLatestVideoPreview_noStartingPoint;
 
@@ -47,7 +54,13 @@ class LatestVideoPreviewsRepositoryTest {
 
         LatestVideoRowMapper latestVideoRowMapper = mock(LatestVideoRowMapper.class);
 
-        this.repository = new LatestVideoPreviewsRepository(pageableQueryFactory, mapper, latestVideoRowMapper);
+        this.latestVideosCache = mock(LatestVideosCache.class);
+        this.latestVideosSnapshot = mock(LatestVideosSnapshot.class);
+        when(latestVideosSnapshot.read(any())).thenReturn(Optional.empty());
+        this.repository = new LatestVideoPreviewsRepository(
+                pageableQueryFactory, mapper, latestVideoRowMapper, latestVideosCache, latestVideosSnapshot, 1);
+        this.fanOutRepository = new LatestVideoPreviewsRepository(
+                pageableQueryFactory, mapper, latestVideoRowMapper, latestVideosCache, latestVideosSnapshot, 3);
     }
 
     @Test
@@ -60,6 +73,8 @@ class LatestVideoPreviewsRepositoryTest {
             assertNull(error);
         });
         verify(this.latestVideoDao, times(1)).insert(any());
+        verify(this.latestVideosCache, times(1)).add(latestVideo);
+        verify(this.latestVideosSnapshot, times(1)).add(latestVideo);
     }
 
     @Test
@@ -110,7 +125,7 @@ class LatestVideoPreviewsRepositoryTest {
         ResultListPage<LatestVideo> resultListPage2 = resultListPage(
                 latestVideo2, "paging state 2"
         );
-        when(this.findLatestVideoPreview_noStartingPoint.queryNext(any(), any(), any(), any(), any()))
+        when(this.findLatestVideoPreview_startingPoint.queryNext(any(), any(), any(), any(), any()))
                 .thenReturn(
                         CompletableFuture.completedFuture(resultListPage1),
                         CompletableFuture.completedFuture(resultListPage2)
@@ -122,9 +137,151 @@ class LatestVideoPreviewsRepositoryTest {
         });
     }
 
+    @Test
+    public void testGetLatestVideoPreviewsAsyncWithFanOut() {
+        CustomPagingState cpState = CustomPagingState.buildFirstCustomPagingState();
+        int pageSize = 3;
+
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                cpState, pageSize, Optional.empty(), Optional.empty()
+        );
+
+        LatestVideo latestVideo1 = mock(LatestVideo.class);
+        LatestVideo latestVideo2 = mock(LatestVideo.class);
+        LatestVideo latestVideo3 = mock(LatestVideo.class);
+        when(this.findLatestVideoPreview_noStartingPoint.queryNext(any(), any(), any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(resultListPage(latestVideo1, null)),
+                        CompletableFuture.completedFuture(resultListPage(latestVideo2, null)),
+                        CompletableFuture.completedFuture(resultListPage(latestVideo3, "paging state 3"))
+                );
+
+        LatestVideosPage result = fanOutRepository.getLatestVideoPreviewsAsync(request).join();
+
+        assertEquals(Arrays.asList(latestVideo1, latestVideo2, latestVideo3), result.getListOfPreview());
+        verify(this.findLatestVideoPreview_noStartingPoint, times(3)).queryNext(any(), any(), any());
+
+        CustomPagingState nextState = CustomPagingState.deserialize(result.getNextPageState()).orElseThrow();
+        assertEquals(2, nextState.getCurrentBucket());
+        assertEquals("paging state 3", nextState.getCassandraPagingState());
+    }
+
+    @Test
+    public void testGetLatestVideoPreviewsAsyncWithFanOutRereadsOverflowingBucket() {
+        CustomPagingState cpState = CustomPagingState.buildFirstCustomPagingState();
+        int pageSize = 2;
+
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                cpState, pageSize, Optional.empty(), Optional.empty()
+        );
+
+        LatestVideo latestVideo1 = mock(LatestVideo.class);
+        LatestVideo latestVideo2 = mock(LatestVideo.class);
+        LatestVideo latestVideo3 = mock(LatestVideo.class);
+        when(this.findLatestVideoPreview_noStartingPoint.queryNext(any(), any(), any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(resultListPage(latestVideo1, null)),
+                        CompletableFuture.completedFuture(new ResultListPage<>(
+                                Arrays.asList(latestVideo2, latestVideo3), Optional.of("too far"))),
+                        CompletableFuture.completedFuture(resultListPage(latestVideo3, null)),
+                        CompletableFuture.completedFuture(resultListPage(latestVideo2, "paging state 2"))
+                );
+
+        LatestVideosPage result = fanOutRepository.getLatestVideoPreviewsAsync(request).join();
+
+        assertEquals(Arrays.asList(latestVideo1, latestVideo2), result.getListOfPreview());
+        verify(this.findLatestVideoPreview_noStartingPoint, times(4)).queryNext(any(), any(), any());
+        verify(this.findLatestVideoPreview_noStartingPoint, times(1))
+                .queryNext(eq(Optional.of(1)), eq(Optional.empty()), eq(cpState.getListOfBuckets().get(1)));
+
+        CustomPagingState nextState = CustomPagingState.deserialize(result.getNextPageState()).orElseThrow();
+        assertEquals(1, nextState.getCurrentBucket());
+        assertEquals("paging state 2", nextState.getCassandraPagingState());
+    }
+
+    @Test
+    public void testGetLatestVideoPreviewsAsyncWhenAllBucketsRead() {
+        CustomPagingState cpState = CustomPagingState.buildFirstCustomPagingState();
+        for (int i = 0; i < cpState.getListOfBucketsSize(); i++) {
+            cpState = cpState.incCurrentBucketIndex();
+        }
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                cpState, 2, Optional.empty(), Optional.empty()
+        );
+
+        LatestVideosPage result = fanOutRepository.getLatestVideoPreviewsAsync(request).join();
+
+        assertTrue(result.getListOfPreview().isEmpty());
+        assertEquals("", result.getNextPageState());
+        verifyNoInteractions(this.findLatestVideoPreview_noStartingPoint);
+    }
+
+    @Test
+    public void testGetLatestVideoPreviewsAsyncFromCache() {
+        CustomPagingState cpState = CustomPagingState.buildFirstCustomPagingState();
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                cpState, 1, Optional.empty(), Optional.empty()
+        );
+
+        LatestVideo latestVideo = new LatestVideo(cpState.getCurrentBucketValue(), UUID.randomUUID(),
+                UUID.randomUUID(), "name", "preview", Instant.ofEpochMilli(1000L));
+        String cursor = LatestVideoCursor.of(latestVideo).serialize();
+        when(this.latestVideosCache.readBucket(any())).thenReturn(Optional.of(resultListPage(latestVideo, cursor)));
+
+        LatestVideosPage result = repository.getLatestVideoPreviewsAsync(request).join();
+
+        assertEquals(singletonList(latestVideo), result.getListOfPreview());
+        verifyNoInteractions(this.findLatestVideoPreview_noStartingPoint);
+        CustomPagingState nextState = CustomPagingState.deserialize(result.getNextPageState()).orElseThrow();
+        assertEquals(0, nextState.getCurrentBucket());
+        assertEquals(cursor, nextState.getCassandraPagingState());
+    }
+
+    @Test
+    public void testGetLatestVideoPreviewsAsyncFromSnapshot() {
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                CustomPagingState.buildFirstCustomPagingState(), 10, Optional.empty(), Optional.empty()
+        );
+        LatestVideosPage snapshotPage = new LatestVideosPage();
+        when(this.latestVideosSnapshot.read(request)).thenReturn(Optional.of(snapshotPage));
+
+        assertSame(snapshotPage, repository.getLatestVideoPreviewsAsync(request).join());
+        verifyNoInteractions(this.latestVideosCache);
+        verifyNoInteractions(this.findLatestVideoPreview_noStartingPoint);
+    }
+
+    @Test
+    public void testGetLatestVideoPreviewsAsyncFromCursor() {
+        CustomPagingState firstState = CustomPagingState.buildFirstCustomPagingState();
+        UUID userid = UUID.randomUUID();
+        LatestVideo latestVideo1 = new LatestVideo(firstState.getCurrentBucketValue(), userid,
+                UUID.randomUUID(), "name1", "preview1", Instant.ofEpochMilli(3000L));
+        LatestVideo latestVideo2 = new LatestVideo(firstState.getCurrentBucketValue(), userid,
+                UUID.randomUUID(), "name2", "preview2", Instant.ofEpochMilli(2000L));
+        LatestVideo latestVideo3 = new LatestVideo(firstState.getCurrentBucketValue(), userid,
+                UUID.randomUUID(), "name3", "preview3", Instant.ofEpochMilli(1000L));
+        CustomPagingState cpState = firstState.changeCassandraPagingState(
+                LatestVideoCursor.of(latestVideo1).serialize());
+
+        GetLatestVideoPreviewsRequestData request = new GetLatestVideoPreviewsRequestData(
+                cpState, 1, Optional.empty(), Optional.empty()
+        );
+        // Third query prepared is the cursor one (the mocked factory repeats the last query)
+        when(this.findLatestVideoPreview_noStartingPoint.queryNext(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new ResultListPage<>(
+                        Arrays.asList(latestVideo1, latestVideo2, latestVideo3), Optional.empty())));
+
+        LatestVideosPage result = repository.getLatestVideoPreviewsAsync(request).join();
+
+        assertEquals(singletonList(latestVideo2), result.getListOfPreview());
+        CustomPagingState nextState = CustomPagingState.deserialize(result.getNextPageState()).orElseThrow();
+        assertEquals(0, nextState.getCurrentBucket());
+        assertEquals(LatestVideoCursor.of(latestVideo2).serialize(), nextState.getCassandraPagingState());
+    }
+
     private ResultListPage<LatestVideo> resultListPage(LatestVideo latestVideo, String pagingState) {
         return new ResultListPage<LatestVideo>(
-                singletonList(latestVideo), Optional.of(pagingState)
+                singletonList(latestVideo), Optional.ofNullable(pagingState)
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.killrvideo.service.video.repository;
+
+import com.killrvideo.dse.dto.CustomPagingState;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.service.video.dao.LatestVideoRowMapper;
+import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
+import com.killrvideo.service.video.request.GetLatestVideoPreviewsForGivenDateRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.killrvideo.utils.test.CassandraTestUtils.mockPageableQueryFactory;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class LatestVideosCacheTest {
+    private LatestVideosCache cache;
+    private PageableQuery<LatestVideo> findLatestVideosBucket;
+    private String today;
+
+    @BeforeEach
+    public void setUp() {
+        findLatestVideosBucket = mock(PageableQuery.class);
+        PageableQueryFactory pageableQueryFactory = mockPageableQueryFactory(findLatestVideosBucket);
+        cache = new LatestVideosCache(pageableQueryFactory, mock(LatestVideoRowMapper.class), TimeBucketing.DEFAULT, true, 2, 30);
+        today = CustomPagingState.buildFirstCustomPagingState().getCurrentBucketValue();
+    }
+
+    @Test
+    public void testReadBucketMissWhenNotLoaded() {
+        assertFalse(cache.readBucket(request(Optional.empty(), 1)).isPresent());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testReadBucketMissWhenPageRunsPastIncompleteBucket() {
+        cache.add(latestVideo(1000L));
+
+        assertFalse(cache.readBucket(request(Optional.empty(), 2)).isPresent());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testReadBucketWithCursor() {
+        LatestVideo newest = latestVideo(3000L);
+        LatestVideo middle = latestVideo(2000L);
+        cache.add(middle);
+        cache.add(newest);
+
+        Optional<ResultListPage<LatestVideo>> firstPage = cache.readBucket(request(Optional.empty(), 1));
+        assertTrue(firstPage.isPresent());
+        assertEquals(singletonList(newest), firstPage.get().getResults());
+        assertEquals(Optional.of(LatestVideoCursor.of(newest).serialize()), firstPage.get().getPagingState());
+
+        Optional<ResultListPage<LatestVideo>> secondPage = cache.readBucket(request(firstPage.get().getPagingState(), 1));
+        assertTrue(secondPage.isPresent());
+        assertEquals(singletonList(middle), secondPage.get().getResults());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testReadBucketIgnoresCassandraPagingState() {
+        cache.add(latestVideo(1000L));
+
+        assertFalse(cache.readBucket(request(Optional.of("0a0b0c"), 1)).isPresent());
+    }
+
+    @Test
+    public void testRefreshCompletesBucket() {
+        LatestVideo newest = latestVideo(2000L);
+        LatestVideo oldest = latestVideo(1000L);
+        when(findLatestVideosBucket.queryNext(any(), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(new ResultListPage<>(Arrays.asList(newest, oldest), Optional.empty())),
+                CompletableFuture.completedFuture(ResultListPage.empty())
+        );
+
+        cache.refresh().join();
+
+        Optional<ResultListPage<LatestVideo>> page = cache.readBucket(request(Optional.empty(), 5));
+        assertTrue(page.isPresent());
+        assertEquals(Arrays.asList(newest, oldest), page.get().getResults());
+        assertFalse(page.get().getPagingState().isPresent());
+    }
+
+    @Test
+    public void testAddKeepsNewestRows() {
+        LatestVideo oldest = latestVideo(1000L);
+        LatestVideo middle = latestVideo(2000L);
+        LatestVideo newest = latestVideo(3000L);
+        cache.add(oldest);
+        cache.add(newest);
+        cache.add(middle);
+
+        Optional<ResultListPage<LatestVideo>> page = cache.readBucket(request(Optional.empty(), 2));
+        assertTrue(page.isPresent());
+        assertEquals(Arrays.asList(newest, middle), page.get().getResults());
+    }
+
+    @Test
+    public void testMetricsExported() throws IOException {
+        cache.add(latestVideo(2000L));
+        cache.add(latestVideo(1000L));
+        assertTrue(cache.readBucket(request(Optional.empty(), 1)).isPresent());
+        assertFalse(cache.readBucket(request(Optional.empty(), 5)).isPresent());
+
+        StringBuilder out = new StringBuilder();
+        cache.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_latest_videos_cache_hits_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_cache_hits_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_cache_misses_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_cache_buckets 1.0\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_cache_hit_ratio 0.5\n"), text);
+    }
+
+    private LatestVideo latestVideo(long addedDate) {
+        return new LatestVideo(today, UUID.randomUUID(), UUID.randomUUID(),
+                "name", "preview", Instant.ofEpochMilli(addedDate));
+    }
+
+    private GetLatestVideoPreviewsForGivenDateRequestData request(Optional<String> pagingState, int pageSize) {
+        return new GetLatestVideoPreviewsForGivenDateRequestData(
+                today, pagingState, pageSize, Optional.empty(), Optional.empty()
+        );
+    }
+}
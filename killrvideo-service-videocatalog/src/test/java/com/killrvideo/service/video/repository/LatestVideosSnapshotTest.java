@@ -0,0 +1,164 @@
+package com.killrvideo.service.video.repository;
+
+import com.killrvideo.dse.dto.CustomPagingState;
+import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
+import com.killrvideo.dse.utils.PageableQuery;
+import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.service.video.dao.LatestVideoRowMapper;
+import com.killrvideo.service.video.dto.LatestVideo;
+import com.killrvideo.service.video.dto.LatestVideoCursor;
+import com.killrvideo.service.video.dto.LatestVideosPage;
+import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.killrvideo.utils.test.CassandraTestUtils.mockPageableQueryFactory;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class LatestVideosSnapshotTest {
+    private LatestVideosSnapshot snapshot;
+    private PageableQuery<LatestVideo> findLatestVideosBucket;
+    private CustomPagingState firstState;
+
+    @BeforeEach
+    public void setUp() {
+        findLatestVideosBucket = mock(PageableQuery.class);
+        PageableQueryFactory pageableQueryFactory = mockPageableQueryFactory(findLatestVideosBucket);
+        snapshot = new LatestVideosSnapshot(pageableQueryFactory, mock(LatestVideoRowMapper.class), TimeBucketing.DEFAULT, true, 4, 10);
+        firstState = CustomPagingState.buildFirstCustomPagingState();
+        when(findLatestVideosBucket.queryNext(any(), any(), any())).thenReturn(
+                CompletableFuture.completedFuture(ResultListPage.empty()));
+    }
+
+    @Test
+    public void testReadMissWhenNotBuilt() {
+        assertFalse(snapshot.read(request(firstState, 1)).isPresent());
+        assertEquals(1, snapshot.getMissCount());
+    }
+
+    @Test
+    public void testPagesAcrossBuckets() {
+        LatestVideo today = latestVideo(0, 3000L);
+        LatestVideo yesterday1 = latestVideo(1, 2000L);
+        LatestVideo yesterday2 = latestVideo(1, 1000L);
+        bucket(0, today);
+        bucket(1, yesterday1, yesterday2);
+        snapshot.rebuild().join();
+
+        LatestVideosPage firstPage = snapshot.read(request(firstState, 2)).orElseThrow();
+        assertEquals(Arrays.asList(today, yesterday1), firstPage.getListOfPreview());
+        CustomPagingState nextState = CustomPagingState.deserialize(firstPage.getNextPageState()).orElseThrow();
+        assertEquals(1, nextState.getCurrentBucket());
+
+        LatestVideosPage secondPage = snapshot.read(request(nextState, 2)).orElseThrow();
+        assertEquals(singletonList(yesterday2), secondPage.getListOfPreview());
+        assertEquals("", secondPage.getNextPageState());
+        assertEquals(2, snapshot.getHitCount());
+    }
+
+    @Test
+    public void testStartingPoint() {
+        snapshot = new LatestVideosSnapshot(mockPageableQueryFactory(findLatestVideosBucket), mock(LatestVideoRowMapper.class),
+                TimeBucketing.DEFAULT, true, 10, 10);
+        LatestVideo newest = latestVideo(0, 5000L);
+        LatestVideo first = latestVideo(0, 4000L);
+        LatestVideo second = latestVideo(0, 4000L);
+        if (LatestVideoCursor.compareUuid(first.getVideoid(), second.getVideoid()) > 0) {
+            LatestVideo swapped = first;
+            first = second;
+            second = swapped;
+        }
+        LatestVideo older = latestVideo(0, 3000L);
+        LatestVideo yesterday = latestVideo(1, 2000L);
+        bucket(0, newest, first, second, older);
+        bucket(1, yesterday);
+        snapshot.rebuild().join();
+
+        // (added_date, videoid) <= (4000, first)
+        LatestVideosPage page = snapshot.read(new GetLatestVideoPreviewsRequestData(firstState, 3,
+                Optional.of(Instant.ofEpochMilli(4000L)), Optional.of(first.getVideoid()))).orElseThrow();
+        assertEquals(Arrays.asList(first, older, yesterday), page.getListOfPreview());
+        assertEquals("", page.getNextPageState());
+    }
+
+    @Test
+    public void testReadMissWhenPageRunsPastTopK() {
+        bucket(0, latestVideo(0, 5000L), latestVideo(0, 4000L), latestVideo(0, 3000L), latestVideo(0, 2000L));
+        snapshot.rebuild().join();
+
+        assertTrue(snapshot.read(request(firstState, 4)).isPresent());
+        assertFalse(snapshot.read(request(firstState, 5)).isPresent());
+    }
+
+    @Test
+    public void testReadMissWithCassandraPagingState() {
+        snapshot.rebuild().join();
+
+        assertFalse(snapshot.read(request(firstState.changeCassandraPagingState("0a0b0c"), 1)).isPresent());
+    }
+
+    @Test
+    public void testAddKeepsTopK() {
+        LatestVideo oldest = latestVideo(0, 1000L);
+        bucket(0, oldest);
+        snapshot.rebuild().join();
+        LatestVideo newest = latestVideo(0, 3000L);
+        LatestVideo middle = latestVideo(0, 2000L);
+        snapshot.add(newest);
+        snapshot.add(middle);
+
+        LatestVideosPage page = snapshot.read(request(firstState, 3)).orElseThrow();
+        assertEquals(Arrays.asList(newest, middle, oldest), page.getListOfPreview());
+
+        // Top-K reached: the window is not entirely in memory anymore
+        snapshot.add(latestVideo(0, 4000L));
+        snapshot.add(latestVideo(0, 5000L));
+        assertTrue(snapshot.read(request(firstState, 4)).isPresent());
+        assertFalse(snapshot.read(request(firstState, 5)).isPresent());
+    }
+
+    @Test
+    public void testMetricsExported() throws IOException {
+        bucket(0, latestVideo(0, 5000L), latestVideo(0, 4000L), latestVideo(0, 3000L), latestVideo(0, 2000L));
+        snapshot.rebuild().join();
+        assertTrue(snapshot.read(request(firstState, 4)).isPresent());
+        assertFalse(snapshot.read(request(firstState, 5)).isPresent());
+
+        StringBuilder out = new StringBuilder();
+        snapshot.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_latest_videos_snapshot_served_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_snapshot_served_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_snapshot_fallbacks_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_snapshot_videos 4.0\n"), text);
+        assertTrue(text.contains("killrvideo_latest_videos_snapshot_hit_ratio 0.5\n"), text);
+    }
+
+    private void bucket(int bucket, LatestVideo... rows) {
+        when(findLatestVideosBucket.queryNext(any(), any(), eq(firstState.getListOfBuckets().get(bucket)))).thenReturn(
+                CompletableFuture.completedFuture(new ResultListPage<>(Arrays.asList(rows), Optional.empty())));
+    }
+
+    private LatestVideo latestVideo(int bucket, long addedDate) {
+        return new LatestVideo(firstState.getListOfBuckets().get(bucket), UUID.randomUUID(), UUID.randomUUID(),
+                "name", "preview", Instant.ofEpochMilli(addedDate));
+    }
+
+    private GetLatestVideoPreviewsRequestData request(CustomPagingState state, int pageSize) {
+        return new GetLatestVideoPreviewsRequestData(state, pageSize, Optional.empty(), Optional.empty());
+    }
+}
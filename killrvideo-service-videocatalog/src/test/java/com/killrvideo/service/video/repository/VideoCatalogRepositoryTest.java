@@ -1,10 +1,16 @@
 package com.killrvideo.service.video.repository;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
 import com.killrvideo.dse.dto.ResultListPage;
+import com.killrvideo.dse.dto.TimeBucketing;
 import com.killrvideo.dse.dto.Video;
 import com.killrvideo.dse.utils.PageableQuery;
 import com.killrvideo.dse.utils.PageableQueryFactory;
+import com.killrvideo.metrics.LatencyHistograms;
 import com.killrvideo.service.video.dao.UserVideoDao;
 import com.killrvideo.service.video.dao.UserVideoRowMapper;
 import com.killrvideo.service.video.dao.VideoCatalogMapper;
@@ -15,15 +21,17 @@ import com.killrvideo.service.video.request.GetLatestVideoPreviewsRequestData;
 import com.killrvideo.service.video.request.GetUserVideoPreviewsRequestData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import static com.killrvideo.utils.test.CassandraTestUtils.mockMappedAsyncPagingIterable;
 import static com.killrvideo.utils.test.CassandraTestUtils.mockPageableQueryFactory;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -35,6 +43,11 @@ class VideoCatalogRepositoryTest {
     private VideoDao videoDao;
     private UserVideoDao userVideoDao;
     private LatestVideoPreviewsRepository latestVideoPreviewsRequestRepository;
+    private CqlSession session;
+    private PageableQueryFactory pageableQueryFactory;
+    private VideoCatalogMapper mapper;
+    private UserVideoRowMapper userVideoRowMapper;
+    private LatencyHistograms latencyHistograms;
     protected PageableQuery<UserVideo> findUserVideoPreview_startingPoint;
     protected PageableQuery<UserVideo> findUserVideoPreview_noStartingPoint;
 
@@ -43,22 +56,29 @@ class VideoCatalogRepositoryTest {
         //noinspection unchecked
         this.findUserVideoPreview_startingPoint = mock(PageableQuery.class);
         this.findUserVideoPreview_noStartingPoint = mock(PageableQuery.class);
-        PageableQueryFactory pageableQueryFactory = mockPageableQueryFactory(
+        this.pageableQueryFactory = mockPageableQueryFactory(
                 this.findUserVideoPreview_startingPoint,
                 this.findUserVideoPreview_noStartingPoint
         );
 
-        VideoCatalogMapper mapper = mock(VideoCatalogMapper.class);
+        this.mapper = mock(VideoCatalogMapper.class);
         this.videoDao = mock(VideoDao.class);
         this.userVideoDao = mock(UserVideoDao.class);
         when(mapper.getVideoDao()).thenReturn(this.videoDao);
         when(mapper.getUserVideoDao()).thenReturn(this.userVideoDao);
 
-        UserVideoRowMapper userVideoRowMapper = mock(UserVideoRowMapper.class);
+        this.userVideoRowMapper = mock(UserVideoRowMapper.class);
         this.latestVideoPreviewsRequestRepository = mock(LatestVideoPreviewsRepository.class);
+        this.session = mock(CqlSession.class);
+        this.latencyHistograms = new LatencyHistograms(100);
 
-        this.repository = new VideoCatalogRepository(
-                pageableQueryFactory, mapper, userVideoRowMapper, latestVideoPreviewsRequestRepository
+        this.repository = newRepository(VideoWriteMode.INDEPENDENT);
+    }
+
+    private VideoCatalogRepository newRepository(VideoWriteMode writeMode) {
+        return new VideoCatalogRepository(
+                pageableQueryFactory, mapper, userVideoRowMapper, latestVideoPreviewsRequestRepository,
+                session, TimeBucketing.DEFAULT, latencyHistograms, writeMode, 0, 0, 4
         );
     }
 
@@ -75,6 +95,44 @@ class VideoCatalogRepositoryTest {
         verify(this.latestVideoPreviewsRequestRepository, times(1)).insert(any());
     }
 
+    @Test
+    public void testInsertVideoAsyncWithLoggedBatch() {
+        this.repository = newRepository(VideoWriteMode.LOGGED_BATCH);
+        Video v = mock(Video.class);
+        when(this.videoDao.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.userVideoDao.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.latestVideoPreviewsRequestRepository.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.session.executeAsync(any(BatchStatement.class))).thenReturn(
+                CompletableFuture.completedFuture(mock(AsyncResultSet.class))
+        );
+
+        assertNull(this.repository.insertVideoAsync(v).join());
+
+        ArgumentCaptor<BatchStatement> batch = ArgumentCaptor.forClass(BatchStatement.class);
+        verify(this.session, times(1)).executeAsync(batch.capture());
+        assertEquals(DefaultBatchType.LOGGED, batch.getValue().getBatchType());
+        assertEquals(3, batch.getValue().size());
+        verify(this.videoDao, never()).insert(any());
+        verify(this.latestVideoPreviewsRequestRepository, times(1)).inserted(any());
+        assertEquals(1, latencyHistograms.getHistogram(VideoCatalogRepository.INSERT_VIDEO_RPC, "LOGGED_BATCH", true).getTotalCount());
+        assertEquals(0, latencyHistograms.getHistogram(VideoCatalogRepository.INSERT_VIDEO_RPC, "INDEPENDENT", true).getTotalCount());
+    }
+
+    @Test
+    public void testInsertVideoAsyncWithUnloggedBatchFailure() {
+        this.repository = newRepository(VideoWriteMode.UNLOGGED_BATCH);
+        when(this.videoDao.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.userVideoDao.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.latestVideoPreviewsRequestRepository.insertStatement(any())).thenReturn(mock(BoundStatement.class));
+        when(this.session.executeAsync(any(BatchStatement.class))).thenReturn(
+                CompletableFuture.failedFuture(new IllegalStateException("write timeout"))
+        );
+
+        assertThrows(CompletionException.class, () -> this.repository.insertVideoAsync(mock(Video.class)).join());
+        verify(this.latestVideoPreviewsRequestRepository, never()).inserted(any());
+        assertEquals(1, latencyHistograms.getHistogram(VideoCatalogRepository.INSERT_VIDEO_RPC, "UNLOGGED_BATCH", false).getTotalCount());
+    }
+
     @Test
     public void testGetVideoById() {
         UUID videoid = UUID.randomUUID();
@@ -84,16 +142,39 @@ class VideoCatalogRepositoryTest {
         this.repository.getVideoById(videoid).whenComplete((result, error) -> assertEquals(video, result));
     }
 
+    @Test
+    public void testGetVideoByIdCoalescesConcurrentLookups() throws IOException {
+        UUID videoid = UUID.randomUUID();
+        Video video = mock(Video.class);
+        CompletableFuture<Video> pending = new CompletableFuture<>();
+        when(this.videoDao.getVideoById(videoid)).thenReturn(pending);
+
+        CompletableFuture<Video> first = this.repository.getVideoById(videoid);
+        CompletableFuture<Video> second = this.repository.getVideoById(videoid);
+        pending.complete(video);
+
+        assertEquals(video, first.join());
+        assertEquals(video, second.join());
+        verify(this.videoDao, times(1)).getVideoById(videoid);
+
+        StringBuilder out = new StringBuilder();
+        this.repository.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE killrvideo_video_cache_collapsed_total counter\n"), text);
+        assertTrue(text.contains("killrvideo_video_cache_collapsed_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_video_cache_loads_total 1\n"), text);
+        assertTrue(text.contains("killrvideo_video_cache_hits_total 0\n"), text);
+    }
+
     @Test
     public void testGetVideoPreview() {
         UUID videoid = UUID.randomUUID();
         Video video = mock(Video.class);
         List<UUID> videoids = singletonList(videoid);
         List<Video> videos = singletonList(video);
-        MappedAsyncPagingIterable<Video> iter = mockMappedAsyncPagingIterable(videos);
 
-        when(this.videoDao.getVideoPreview(any())).thenReturn(
-                CompletableFuture.completedFuture(iter)
+        when(this.videoDao.getVideoById(any())).thenReturn(
+                CompletableFuture.completedFuture(video)
         );
 
         this.repository.getVideoPreview(videoids).whenComplete((result, error) -> assertEquals(videos, result));
@@ -1,5 +1,9 @@
 package com.killrvideo;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
@@ -11,6 +15,8 @@ import org.springframework.stereotype.Component;
 
 import com.killrvideo.conf.KillrVideoConfiguration;
 import com.killrvideo.discovery.ServiceDiscoveryDao;
+import com.killrvideo.grpc.WarmUpCalls;
+import com.killrvideo.messaging.conf.KillrVideoThreadFactory;
 import com.killrvideo.service.comment.grpc.CommentsServiceGrpc;
 import com.killrvideo.service.rating.grpc.RatingsServiceGrpc;
 import com.killrvideo.service.search.grpc.SearchServiceGrpc;
@@ -24,6 +30,10 @@ import io.grpc.ServerBuilder;
 
 /**
  * Startup a GRPC server on expected port and register all services.
+ * <p>
+ * Services are registered once warmed up by the {@link KillrvideoServicesWarmUp} (or once it failed), on a
+ * background thread: the startup of the application does not wait for it. Calls of the warm-up are told apart by
+ * the {@link WarmUpCalls#SERVER_INTERCEPTOR}.
  *
  * @author DataStax advocates team.
  */
@@ -32,6 +42,9 @@ public class KillrvideoServicesGrpcServer {
 
     /** Some logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(KillrvideoServicesGrpcServer.class);
+
+    /** Wait for the warm-up to stop at shutdown, a call in flight is cancelled. */
+    private static final long WARM_UP_STOP_SECONDS = 5;
     
     /** Listening Port for GRPC. */
     @Value("${killrvideo.grpc-server.port: 50101}")
@@ -45,6 +58,10 @@ public class KillrvideoServicesGrpcServer {
     @Inject
     private ServiceDiscoveryDao serviceDiscoveryDao;
     
+    /** Queries replayed before advertising the services. */
+    @Inject
+    private KillrvideoServicesWarmUp warmUp;
+    
     @Inject
     private CommentsServiceGrpc commentService;
     
@@ -91,13 +108,18 @@ public class KillrvideoServicesGrpcServer {
      * GRPC Server to set up.
      */
     private Server grpcServer;
+
+    /**
+     * Warm-up then registration of the services.
+     */
+    private ExecutorService warmUpExecutor;
     
     @PostConstruct
     public void start() throws Exception {
         LOGGER.info("Initializing Grpc Server...");
         
-        // Create GRPC server referencing only enabled services
-        ServerBuilder<?> builder = ServerBuilder.forPort(grpcPort);
+        // Create GRPC server referencing only enabled services, calls of the warm-up told apart
+        ServerBuilder<?> builder = ServerBuilder.forPort(grpcPort).intercept(WarmUpCalls.SERVER_INTERCEPTOR);
         if (commentServiceEnabled) {
             builder.addService(this.commentService.bindService());
         }
@@ -127,12 +149,35 @@ public class KillrvideoServicesGrpcServer {
         // Start Grpc listener
         grpcServer.start();
         LOGGER.info("[OK] Grpc Server started on port: '{}'", grpcPort);
-        registerServices();
+        
+        // Advertise services once caches are warm and latency is stable, without holding the startup
+        warmUpExecutor = Executors.newSingleThreadExecutor(new KillrVideoThreadFactory());
+        warmUpExecutor.execute(() -> {
+            try {
+                warmUp.warmUp(grpcPort, searchServiceEnabled, videoCatalogServiceEnabled);
+            } catch (RuntimeException e) {
+                LOGGER.error("Warm-up failed, advertising services anyway", e);
+            } finally {
+                if (!Thread.currentThread().isInterrupted()) {
+                    registerServices();
+                }
+            }
+        });
+        warmUpExecutor.shutdown();
     }
     
     @PreDestroy
     public void stopGrpcServer() {
         LOGGER.info("Calling shutdown for GrpcServer");
+        if (warmUpExecutor != null) {
+            // Registration is not done past that point
+            warmUpExecutor.shutdownNow();
+            try {
+                warmUpExecutor.awaitTermination(WARM_UP_STOP_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         grpcServer.shutdown();
         unRegisterServices();
     }
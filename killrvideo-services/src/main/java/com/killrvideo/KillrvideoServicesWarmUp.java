@@ -0,0 +1,185 @@
+package com.killrvideo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.killrvideo.grpc.WarmUpCalls;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
+import killrvideo.search.SearchServiceGrpc;
+import killrvideo.search.SearchServiceGrpc.SearchServiceBlockingStub;
+import killrvideo.search.SearchServiceOuterClass.GetQuerySuggestionsRequest;
+import killrvideo.search.SearchServiceOuterClass.SearchVideosRequest;
+import killrvideo.video_catalog.VideoCatalogServiceGrpc;
+import killrvideo.video_catalog.VideoCatalogServiceGrpc.VideoCatalogServiceBlockingStub;
+import killrvideo.video_catalog.VideoCatalogServiceOuterClass.GetLatestVideoPreviewsRequest;
+
+/**
+ * Replay representative queries against the local Grpc server before the services are advertised.
+ * <p>
+ * Every round sends, through the Grpc endpoint, a search and a suggestion for each of 'killrvideo.warmup.queries'
+ * and a page of the latest videos: the calls go through the whole stack, priming the prepared statements, the DSE
+ * Search caches and the JIT. Calls are sent as {@link WarmUpCalls}: searches skip the results cache and the
+ * latencies of the calls are not recorded. Latency is stable when the median call of a round stays within
+ * 'killrvideo.warmup.tolerancePercent' of the previous round, for 'killrvideo.warmup.stableRounds' rounds in a row.
+ * Past 'killrvideo.warmup.maxRounds' or 'killrvideo.warmup.timeoutSeconds' the services are advertised anyway.
+ * <p>
+ * Runs on the thread of the caller, until stable, given up or interrupted.
+ *
+ * @author DataStax advocates team.
+ */
+@Component
+public class KillrvideoServicesWarmUp {
+
+    /** Some logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(KillrvideoServicesWarmUp.class);
+
+    /** Results asked per search and suggestion call, as the web UI does. */
+    private static final int PAGE_SIZE = 10;
+
+    /** Characters of a query sent for suggestions, as typed in a search box. */
+    private static final int SUGGESTION_PREFIX_LENGTH = 3;
+
+    private final boolean enabled;
+    private final List<String> queries;
+    private final int minRounds;
+    private final int maxRounds;
+    private final int stableRounds;
+    private final int tolerancePercent;
+    private final long callTimeoutMillis;
+    private final long timeoutMillis;
+
+    public KillrvideoServicesWarmUp(
+            @Value("${killrvideo.warmup.enabled: false}") boolean enabled,
+            @Value("#{'${killrvideo.warmup.queries:}'.split(',')}") List<String> queries,
+            @Value("${killrvideo.warmup.minRounds: 3}") int minRounds,
+            @Value("${killrvideo.warmup.maxRounds: 30}") int maxRounds,
+            @Value("${killrvideo.warmup.stableRounds: 2}") int stableRounds,
+            @Value("${killrvideo.warmup.tolerancePercent: 10}") int tolerancePercent,
+            @Value("${killrvideo.warmup.callTimeoutMillis: 2000}") long callTimeoutMillis,
+            @Value("${killrvideo.warmup.timeoutSeconds: 120}") long timeoutSeconds) {
+        this.enabled = enabled;
+        this.queries = new ArrayList<>();
+        queries.stream().map(String::trim).filter(q -> !q.isEmpty()).forEach(this.queries::add);
+        this.minRounds = Math.max(1, minRounds);
+        this.maxRounds = Math.max(this.minRounds, maxRounds);
+        this.stableRounds = Math.max(1, stableRounds);
+        this.tolerancePercent = Math.max(0, tolerancePercent);
+        this.callTimeoutMillis = Math.max(1, callTimeoutMillis);
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(0, timeoutSeconds));
+    }
+
+    /**
+     * Replay the queries until latency stabilizes.
+     *
+     * @param grpcPort       port of the started local Grpc server
+     * @param searchEnabled  search service is served
+     * @param catalogEnabled video catalog service is served
+     * @return latency stabilized, false when disabled, not needed, given up or interrupted
+     */
+    public boolean warmUp(int grpcPort, boolean searchEnabled, boolean catalogEnabled) {
+        if (!enabled || !(searchEnabled || catalogEnabled)) {
+            return false;
+        }
+        LOGGER.info("Warming up services, replaying {} queries...", queries.size());
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", grpcPort).usePlaintext().build();
+        try {
+            Channel warmUpChannel = ClientInterceptors.intercept(channel, WarmUpCalls.CLIENT_INTERCEPTOR);
+            SearchServiceBlockingStub search = SearchServiceGrpc.newBlockingStub(warmUpChannel);
+            VideoCatalogServiceBlockingStub catalog = VideoCatalogServiceGrpc.newBlockingStub(warmUpChannel);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            List<Long> roundMedians = new ArrayList<>();
+            int failures = 0;
+            while (roundMedians.size() < maxRounds && System.currentTimeMillis() < deadline
+                    && !Thread.currentThread().isInterrupted()) {
+                List<Long> latencies = new ArrayList<>();
+                if (searchEnabled) {
+                    for (String query : queries) {
+                        failures += call(latencies, () -> search.withDeadlineAfter(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                                .searchVideos(SearchVideosRequest.newBuilder().setQuery(query).setPageSize(PAGE_SIZE).build()));
+                        String prefix = query.substring(0, Math.min(SUGGESTION_PREFIX_LENGTH, query.length()));
+                        failures += call(latencies, () -> search.withDeadlineAfter(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                                .getQuerySuggestions(GetQuerySuggestionsRequest.newBuilder().setQuery(prefix).setPageSize(PAGE_SIZE).build()));
+                    }
+                }
+                if (catalogEnabled) {
+                    failures += call(latencies, () -> catalog.withDeadlineAfter(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                            .getLatestVideoPreviews(GetLatestVideoPreviewsRequest.newBuilder().setPageSize(PAGE_SIZE).build()));
+                }
+                roundMedians.add(median(latencies));
+                if (isStable(roundMedians, minRounds, stableRounds, tolerancePercent)) {
+                    LOGGER.info("[OK] Services warmed up in {} round(s), median call {} micros, {} failed call(s)",
+                            roundMedians.size(), TimeUnit.NANOSECONDS.toMicros(roundMedians.get(roundMedians.size() - 1)), failures);
+                    return true;
+                }
+            }
+            LOGGER.warn("Latency not stable after {} warm-up round(s), {} failed call(s): advertising services anyway",
+                    roundMedians.size(), failures);
+            return false;
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    /**
+     * Time a call.
+     *
+     * @return 1 if it failed, 0 otherwise
+     */
+    private static int call(List<Long> latencies, Supplier<?> call) {
+        long starts = System.nanoTime();
+        try {
+            call.get();
+            return 0;
+        } catch (StatusRuntimeException e) {
+            LOGGER.debug("Warm-up call failed: {}", e.getStatus());
+            return 1;
+        } finally {
+            latencies.add(System.nanoTime() - starts);
+        }
+    }
+
+    static long median(List<Long> latencies) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Latency is stable when, past the minimum number of rounds, the median call of each of the last rounds stays
+     * within the tolerance of the round before it.
+     *
+     * @param roundMedians     median call latency of each round so far
+     * @param minRounds        rounds always played
+     * @param stableRounds     rounds in a row within the tolerance
+     * @param tolerancePercent tolerance, percent of the previous round
+     */
+    static boolean isStable(List<Long> roundMedians, int minRounds, int stableRounds, int tolerancePercent) {
+        int rounds = roundMedians.size();
+        if (rounds < Math.max(minRounds, stableRounds + 1)) {
+            return false;
+        }
+        for (int i = rounds - stableRounds; i < rounds; i++) {
+            long previous = roundMedians.get(i - 1);
+            long current = roundMedians.get(i);
+            if (Math.abs(current - previous) * 100 > previous * tolerancePercent) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
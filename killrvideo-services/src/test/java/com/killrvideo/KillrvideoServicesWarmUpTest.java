@@ -0,0 +1,47 @@
+package com.killrvideo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class KillrvideoServicesWarmUpTest {
+
+    @Test
+    void testMedian() {
+        assertEquals(0, KillrvideoServicesWarmUp.median(Collections.emptyList()));
+        assertEquals(5, KillrvideoServicesWarmUp.median(Arrays.asList(9L, 5L, 1L)));
+        // Upper median of an even count
+        assertEquals(7, KillrvideoServicesWarmUp.median(Arrays.asList(9L, 1L, 7L, 5L)));
+    }
+
+    @Test
+    void testStableWithinTolerance() {
+        List<Long> medians = Arrays.asList(500L, 110L, 100L, 105L);
+        assertTrue(KillrvideoServicesWarmUp.isStable(medians, 3, 2, 10));
+        // 110 -> 100 and 100 -> 105 are within 10%, not within 5%
+        assertFalse(KillrvideoServicesWarmUp.isStable(medians, 3, 2, 5));
+    }
+
+    @Test
+    void testNotStableBeforeMinRounds() {
+        List<Long> medians = Arrays.asList(100L, 100L, 100L);
+        assertTrue(KillrvideoServicesWarmUp.isStable(medians, 3, 2, 10));
+        assertFalse(KillrvideoServicesWarmUp.isStable(medians, 4, 2, 10));
+        // Stable rounds need a round before them
+        assertFalse(KillrvideoServicesWarmUp.isStable(medians, 1, 3, 10));
+    }
+
+    @Test
+    void testOnlyLastRoundsCounted() {
+        // Still improving: the last round is 20% faster
+        assertFalse(KillrvideoServicesWarmUp.isStable(Arrays.asList(100L, 100L, 100L, 80L), 3, 2, 10));
+        // A slow round earlier does not matter anymore
+        assertTrue(KillrvideoServicesWarmUp.isStable(Arrays.asList(100L, 300L, 100L, 100L, 100L), 3, 2, 10));
+    }
+}
@@ -1,12 +1,10 @@
 package com.killrvideo.utils.test;
 
-import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.core.cql.Row;
 import com.killrvideo.dse.utils.PageableQuery;
 import com.killrvideo.dse.utils.PageableQueryFactory;
 
 import java.util.Arrays;
-import java.util.List;
 import java.util.function.Function;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -14,15 +12,6 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class CassandraTestUtils {
-    @SuppressWarnings("unchecked")
-    public static <T> MappedAsyncPagingIterable<T> mockMappedAsyncPagingIterable(List<T> list) {
-        MappedAsyncPagingIterable<T> iter = mock(MappedAsyncPagingIterable.class);
-        when(iter.hasMorePages()).thenReturn(false);
-        when(iter.currentPage()).thenReturn(list);
-
-        return iter;
-    }
-
     @SuppressWarnings("unchecked")
     @SafeVarargs
     public static <T> PageableQueryFactory mockPageableQueryFactory(PageableQuery<T>... queries) {